@@ -0,0 +1,59 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+// ExtractionBenchmark measures the resume text extraction of uploaded pdfs
+// the text cache is disabled (zero budget) so every invocation parses the pdf, a 1 page resume takes the
+// sequential path and the long one the parallel page ranges
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExtractionBenchmark {
+
+	@Param({ "1", "40" })
+	public int pages;
+
+	private ThreadPoolTaskExecutor pageExecutor;
+	private ResumeTextExtractor extractor;
+	private MockMultipartFile upload;
+
+	@Setup
+	public void setup() {
+		pageExecutor = new ThreadPoolTaskExecutor();
+		pageExecutor.setCorePoolSize(Runtime.getRuntime().availableProcessors());
+		pageExecutor.setThreadNamePrefix("pdf-page-");
+		pageExecutor.initialize();
+		extractor = new ResumeTextExtractor(pageExecutor, new ExtractedTextCache(0, "", 0, Duration.ZERO, null), 10_485_760, 8, 4,
+				BenchmarkData.metrics());
+		upload = new MockMultipartFile("resume", "resume.pdf", "application/pdf", BenchmarkData.pdf(pages));
+	}
+
+	@TearDown
+	public void tearDown() {
+		pageExecutor.shutdown();
+	}
+
+	@Benchmark
+	public String extractText() {
+		return extractor.extract(upload);
+	}
+}
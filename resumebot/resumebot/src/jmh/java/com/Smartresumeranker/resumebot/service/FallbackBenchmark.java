@@ -0,0 +1,53 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// FallbackBenchmark measures the model free path: local scoring of a resume and the fallback suggestions
+// and bullets used when the model is down or answers with empty lists
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FallbackBenchmark {
+
+	private LocalScoringEngine scoring;
+	private LocalScoringEngine.JobAnalysis analysis;
+	private List<String> missing;
+
+	@Setup
+	public void setup() {
+		scoring = new LocalScoringEngine();
+		analysis = scoring.analyzeJob(BenchmarkData.JOB_DESCRIPTION);
+		missing = List.of("Terraform", "GraphQL", "gRPC", "Scala", "Go", "PCI DSS", "AWS Lambda", "Helm",
+				"Prometheus", "Grafana", "Cassandra", "Spark");
+	}
+
+	@Benchmark
+	public LocalScoringEngine.Result localScore() {
+		return scoring.score(analysis, BenchmarkData.RESUME);
+	}
+
+	@Benchmark
+	public List<String> fallbackSuggestions() {
+		return EvaluationService.fallbackSuggestions(missing, BenchmarkData.JOB_DESCRIPTION);
+	}
+
+	@Benchmark
+	public List<String> fallbackBullets() {
+		return EvaluationService.fallbackBullets(missing);
+	}
+}
@@ -0,0 +1,78 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+// ParsingBenchmark measures turning a model answer into insight lists
+// newMapperPerCall is what generateInsights used to do (a new ObjectMapper and a Map for every answer), the
+// parse* benchmarks are InsightsParser on a clean, a fenced and chatty, and a truncated answer
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParsingBenchmark {
+
+	private String fenced;
+	private String truncated;
+	private String combinedAnswer;
+
+	@Setup
+	public void setup() {
+		fenced = "Here is the evaluation:\n```json\n" + BenchmarkData.ANSWER + "```\nLet me know if you need more.";
+		truncated = BenchmarkData.ANSWER.substring(0, BenchmarkData.ANSWER.indexOf("Cut p99"));
+		combinedAnswer = "{\"results\": [" + String.join(",", List.of(BenchmarkData.ANSWER, BenchmarkData.ANSWER,
+				BenchmarkData.ANSWER, BenchmarkData.ANSWER)) + "]}";
+	}
+
+	@Benchmark
+	public void newMapperPerCall(Blackhole bh) throws JsonProcessingException {
+		ObjectMapper om = new ObjectMapper();
+		Map<String, Object> map = om.readValue(BenchmarkData.ANSWER,
+				om.getTypeFactory().constructMapType(Map.class, String.class, Object.class));
+		for (String name : List.of("missingSkills", "suggestions", "rewrittenBullets")) {
+			List<String> out = new ArrayList<>();
+			if (map.get(name) instanceof List<?> l) for (Object x : l) out.add(String.valueOf(x));
+			bh.consume(out);
+		}
+		bh.consume(InsightsParser.toScore(map.get("matchScore")));
+	}
+
+	@Benchmark
+	public InsightsParser.Result parseClean() {
+		return InsightsParser.parse(BenchmarkData.ANSWER);
+	}
+
+	@Benchmark
+	public InsightsParser.Result parseFenced() {
+		return InsightsParser.parse(fenced);
+	}
+
+	@Benchmark
+	public InsightsParser.Result parseTruncated() {
+		return InsightsParser.parse(truncated);
+	}
+
+	@Benchmark
+	public List<String> splitCombinedAnswer() {
+		return EvaluationBatcher.split(combinedAnswer, 4);
+	}
+}
@@ -0,0 +1,83 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+
+import com.Smartresumeranker.resumebot.ResumebotApplication;
+import com.Smartresumeranker.resumebot.dto.EvaluationResponse;
+
+// PipelineBenchmark runs the application (H2, JPA, the real services) with a stub chat model in place of Ollama
+// persistEvaluation is the save of one evaluation, evaluateText the whole request path: job preparation, cache
+// miss, prompt, model call, parsing and save; latencyMs is the simulated model latency, 0 isolates the
+// application overhead; run with -t to measure it under concurrency
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineBenchmark {
+
+	@Param({ "0", "200" })
+	public long latencyMs;
+
+	private final AtomicLong counter = new AtomicLong();
+	private ExecutorService executor;
+	private ConfigurableApplicationContext context;
+	private EvaluationService service;
+	private EvaluationInsights insights;
+	private PreparedJob job;
+
+	@Setup
+	public void setup() {
+		executor = Executors.newCachedThreadPool();
+		LlmRouter stub = BenchmarkData.stubRouter(latencyMs, 64, executor);
+		context = new SpringApplicationBuilder(ResumebotApplication.class)
+				//the stub router is primary, the services get it instead of the configured Ollama backends
+				.initializers(ctx -> ((GenericApplicationContext) ctx).registerBean("stubLlmRouter", LlmRouter.class,
+						() -> stub, bd -> bd.setPrimary(true)))
+				.properties("server.port=0", "spring.main.banner-mode=off", "logging.level.root=WARN",
+						"resumebot.semantic.enabled=false", "resumebot.cache.text.dir=")
+				.run();
+		service = context.getBean(EvaluationService.class);
+		insights = InsightsParser.parse(BenchmarkData.ANSWER).insights();
+		job = service.prepare(BenchmarkData.JOB_DESCRIPTION);
+	}
+
+	@TearDown
+	public void tearDown() {
+		context.close();
+		executor.shutdownNow();
+	}
+
+	@Benchmark
+	public EvaluationResponse persistEvaluation() {
+		//the texts are stored after the first call, this is the evaluation insert alone
+		return service.save(BenchmarkData.RESUME, job, insights, "bench");
+	}
+
+	@Benchmark
+	public EvaluationResponse evaluateText() {
+		//a new resume every time, so the evaluation cache never answers
+		return service.evaluateText(BenchmarkData.RESUME + "\nID " + counter.incrementAndGet(),
+				BenchmarkData.JOB_DESCRIPTION, "bench");
+	}
+}
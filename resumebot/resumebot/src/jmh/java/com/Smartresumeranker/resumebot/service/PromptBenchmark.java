@@ -0,0 +1,74 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// PromptBenchmark measures the work done before a model call: preparing the job description (normalization,
+// reduction, skill analysis), reducing the resume and building the single and combined prompts
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PromptBenchmark {
+
+	private ExecutorService executor;
+	private PromptPreprocessor preprocessor;
+	private EvaluationService service;
+	private PreparedJob job;
+	private String promptResume;
+	private List<String> bucket;
+
+	@Setup
+	public void setup() {
+		executor = Executors.newCachedThreadPool();
+		preprocessor = new PromptPreprocessor(true, 1500, 800);
+		//prepare only touches the preprocessor and the scoring engine, the other collaborators stay unset
+		service = new EvaluationService(BenchmarkData.stubRouter(0, 1, executor), null, null, null,
+				new LocalScoringEngine(), null, null, preprocessor, null, null, BenchmarkData.metrics(), 1, executor);
+		job = service.prepare(BenchmarkData.JOB_DESCRIPTION);
+		promptResume = preprocessor.resume(BenchmarkData.RESUME).text();
+		bucket = Collections.nCopies(4, promptResume);
+	}
+
+	@TearDown
+	public void tearDown() {
+		executor.shutdownNow();
+	}
+
+	@Benchmark
+	public PreparedJob prepareJob() {
+		return service.prepare(BenchmarkData.JOB_DESCRIPTION);
+	}
+
+	@Benchmark
+	public PromptPreprocessor.Processed reduceResume() {
+		return preprocessor.resume(BenchmarkData.RESUME);
+	}
+
+	@Benchmark
+	public String buildPrompt() {
+		return EvaluationService.buildPrompt(promptResume, job);
+	}
+
+	@Benchmark
+	public String combinedPrompt() {
+		return EvaluationBatcher.combinedPrompt(bucket, job);
+	}
+}
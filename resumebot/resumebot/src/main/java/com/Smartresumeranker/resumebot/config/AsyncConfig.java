@@ -0,0 +1,220 @@
+package com.Smartresumeranker.resumebot.config;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.core.task.support.ContextPropagatingTaskDecorator;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+import com.Smartresumeranker.resumebot.service.LlmRouter;
+
+// every pool copies the trace context (and logging MDC) of the submitting thread into its tasks, so the log
+// lines and spans of the work it runs carry the traceId of the request that started it
+// with spring.threads.virtual.enabled on Java 21 (the java21 maven profile) Tomcat serves the requests on virtual
+// threads and the model calls run on virtual threads too, the pools that bound CPU work or queue jobs stay as they are
+@Configuration
+public class AsyncConfig {
+  // QUEUE_CAPACITY bounds the queue of the background pools (pdf pages, indexes, analytics)
+  private static final int QUEUE_CAPACITY = 1000;
+
+  //evaluationExecutor runs the asynchronous evaluation jobs
+  //it is bounded on both threads and queue, a full queue rejects new jobs instead of growing without limit
+  @Bean(name = "evaluationExecutor")
+  public ThreadPoolTaskExecutor evaluationExecutor(
+      @Value("${resumebot.jobs.threads:4}") int threads,
+      @Value("${resumebot.jobs.queue-capacity:100}") int queueCapacity) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setThreadNamePrefix("evaluation-");
+    executor.setCorePoolSize(threads);
+    executor.setMaxPoolSize(threads);
+    executor.setQueueCapacity(queueCapacity);
+    executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+    //let running evaluations finish on shutdown
+    executor.setWaitForTasksToCompleteOnShutdown(true);
+    executor.setAwaitTerminationSeconds(30);
+    executor.setTaskDecorator(new ContextPropagatingTaskDecorator());
+    return executor;
+  }
+
+  //batchExtractExecutor extracts the resumes of a batch in parallel, text extraction is CPU bound
+  //its queue holds one full batch, the resumes of a second batch beyond that are extracted by the submitting thread
+  @Bean(name = "batchExtractExecutor")
+  public ThreadPoolTaskExecutor batchExtractExecutor(
+      @Value("${resumebot.batch.extract-threads:0}") int threads,
+      @Value("${resumebot.batch.max-resumes:2000}") int maxResumes) {
+    int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    return fixedPool("batch-extract-", size, maxResumes);
+  }
+
+  //batchLlmExecutor runs the model calls of all batches, its size is the number of concurrent model calls
+  //a full queue rejects the call instead of running it on the submitting thread, which would run more model calls
+  //than the pool size; every batch only queues a window of its calls (see BatchRankingService)
+  @Bean(name = "batchLlmExecutor")
+  public ThreadPoolTaskExecutor batchLlmExecutor(
+      @Value("${resumebot.batch.llm-concurrency:2}") int concurrency,
+      @Value("${resumebot.batch.max-resumes:2000}") int maxResumes) {
+    ThreadPoolTaskExecutor executor = fixedPool("batch-llm-", Math.max(1, concurrency), maxResumes);
+    executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+    return executor;
+  }
+
+  //streamFinishExecutor stores the evaluation at the end of a streamed answer and sends the done event, so the
+  //Reactor thread that delivered the last chunk goes back to reading other streams instead of waiting on the database
+  //a full queue rejects the task, running it on the submitting thread would put the database work back on the
+  //Reactor thread; the rejected stream ends with an error event
+  @Bean(name = "streamFinishExecutor")
+  public ThreadPoolTaskExecutor streamFinishExecutor(
+      @Value("${resumebot.stream.finish-threads:4}") int threads) {
+    ThreadPoolTaskExecutor executor = fixedPool("stream-finish-", Math.max(1, threads), QUEUE_CAPACITY);
+    executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+    return executor;
+  }
+
+  //pdfPageExecutor extracts the page ranges of long pdfs, it is separate from the batch pools so a batch
+  //thread waiting for its pages never waits for its own pool
+  @Bean(name = "pdfPageExecutor")
+  public ThreadPoolTaskExecutor pdfPageExecutor(
+      @Value("${resumebot.extract.page-threads:0}") int threads) {
+    int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    return fixedPool("pdf-page-", size, QUEUE_CAPACITY);
+  }
+
+  //llmExecutor runs the model call attempts of the LlmRouter, every attempt holds a backend slot while it runs,
+  //so the pool has one thread per slot (the backend slots together, capped by max-in-flight) and never more;
+  //an attempt submitted while the thread of the previous one is still returning to the pool waits in the queue,
+  //the slots keep that queue as short as the pool
+  //with virtual threads every call gets a new virtual thread, it only blocks on the http read of the answer
+  @Bean(name = "llmExecutor")
+  public AsyncTaskExecutor llmExecutor(Environment environment,
+      @Value("${resumebot.llm.backends:}") String backends,
+      @Value("${resumebot.llm.max-concurrency:2}") int maxConcurrency,
+      @Value("${resumebot.llm.max-in-flight:0}") int maxInFlight) {
+    if (Threading.VIRTUAL.isActive(environment)) return virtual("llm-");
+    int threads = LlmRouter.maxCalls(backends, maxConcurrency, maxInFlight);
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setThreadNamePrefix("llm-");
+    executor.setCorePoolSize(threads);
+    executor.setMaxPoolSize(threads);
+    executor.setAllowCoreThreadTimeOut(true);
+    executor.setTaskDecorator(new ContextPropagatingTaskDecorator());
+    return executor;
+  }
+
+  //llmBatchExecutor runs the flushes of the EvaluationBatcher, a flush waits in the LlmRouter for a backend slot
+  //and must not take one of the llmExecutor threads the attempts need; there is one flush or answer per waiting
+  //caller at most, the callers are bounded by the admission and the request pools
+  @Bean(name = "llmBatchExecutor")
+  public AsyncTaskExecutor llmBatchExecutor(Environment environment) {
+    if (Threading.VIRTUAL.isActive(environment)) return virtual("llm-batch-");
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setThreadNamePrefix("llm-batch-");
+    executor.setCorePoolSize(0);
+    executor.setMaxPoolSize(Integer.MAX_VALUE);
+    executor.setQueueCapacity(0);
+    executor.setTaskDecorator(new ContextPropagatingTaskDecorator());
+    return executor;
+  }
+
+  //embeddingExecutor indexes new resumes, one thread keeps the embedding model load of indexing away from the
+  //requests
+  @Bean(name = "embeddingExecutor")
+  public ThreadPoolTaskExecutor embeddingExecutor() {
+    return fixedPool("embedding-", 1, QUEUE_CAPACITY);
+  }
+
+  //embeddingBackfillExecutor runs the semantic index backfill on one low priority thread of its own, so a long
+  //backfill never holds up the indexing of new resumes on embeddingExecutor
+  @Bean(name = "embeddingBackfillExecutor")
+  public ThreadPoolTaskExecutor embeddingBackfillExecutor() {
+    ThreadPoolTaskExecutor executor = fixedPool("embedding-backfill-", 1, 1);
+    executor.setThreadPriority(Thread.MIN_PRIORITY);
+    return executor;
+  }
+
+  //searchIndexExecutor indexes new evaluations for the history search and runs its backfill, a single thread is
+  //the one writer of the index, searches do not go through it
+  @Bean(name = "searchIndexExecutor")
+  public ThreadPoolTaskExecutor searchIndexExecutor() {
+    return fixedPool("search-index-", 1, QUEUE_CAPACITY);
+  }
+
+  //analyticsExecutor runs the skill gap analytics backfill and feeds the scoring corpus, the saved evaluations are
+  //counted in the analytics on the saving thread
+  @Bean(name = "analyticsExecutor")
+  public ThreadPoolTaskExecutor analyticsExecutor() {
+    return fixedPool("analytics-", 1, QUEUE_CAPACITY);
+  }
+
+  //passwordHashExecutor runs the BCrypt work of sign in and sign up, a few threads so a login storm cannot take
+  //all the CPU, a full queue rejects the sign-in with 503 instead of piling up requests
+  @Bean(name = "passwordHashExecutor")
+  public ThreadPoolTaskExecutor passwordHashExecutor(
+      @Value("${resumebot.auth.hash-threads:0}") int threads,
+      @Value("${resumebot.auth.hash-queue-capacity:64}") int queueCapacity) {
+    int size = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setThreadNamePrefix("password-hash-");
+    executor.setCorePoolSize(size);
+    executor.setMaxPoolSize(size);
+    executor.setQueueCapacity(queueCapacity);
+    executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+    executor.setTaskDecorator(new ContextPropagatingTaskDecorator());
+    return executor;
+  }
+
+  //batchWindowScheduler ends the collection windows of the EvaluationBatcher, the flush itself runs on llmBatchExecutor
+  @Bean(name = "batchWindowScheduler")
+  public ThreadPoolTaskScheduler batchWindowScheduler() {
+    ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+    scheduler.setThreadNamePrefix("batch-window-");
+    scheduler.setPoolSize(1);
+    return scheduler;
+  }
+
+  //jobWorkerScheduler drives the EvaluationWorker (claiming, lease renewal, purging) and the long polling of job
+  //status requests, both only run short queries, the evaluations themselves run on evaluationExecutor
+  @Bean(name = "jobWorkerScheduler")
+  public ThreadPoolTaskScheduler jobWorkerScheduler() {
+    ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+    scheduler.setThreadNamePrefix("job-worker-");
+    scheduler.setPoolSize(2);
+    return scheduler;
+  }
+
+  //cacheScheduler runs the housekeeping of the caches (retention and size sweep of the text cache disk store,
+  //evaluation cache snapshots), one thread, the caches never wait for it
+  @Bean(name = "cacheScheduler")
+  public ThreadPoolTaskScheduler cacheScheduler() {
+    ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+    scheduler.setThreadNamePrefix("cache-store-");
+    scheduler.setPoolSize(1);
+    return scheduler;
+  }
+
+  private static AsyncTaskExecutor virtual(String prefix) {
+    SimpleAsyncTaskExecutor virtual = new SimpleAsyncTaskExecutor(prefix);
+    virtual.setVirtualThreads(true);
+    virtual.setTaskDecorator(new ContextPropagatingTaskDecorator());
+    return virtual;
+  }
+
+  //fixedPool is a pool of size threads with a bounded queue, once the queue is full the submitting thread runs
+  //the task itself, which slows the producer down instead of queueing without limit (nothing is dropped)
+  private ThreadPoolTaskExecutor fixedPool(String prefix, int size, int queueCapacity) {
+    ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+    executor.setThreadNamePrefix(prefix);
+    executor.setCorePoolSize(size);
+    executor.setMaxPoolSize(size);
+    executor.setQueueCapacity(Math.max(1, queueCapacity));
+    executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+    executor.setTaskDecorator(new ContextPropagatingTaskDecorator());
+    return executor;
+  }
+}
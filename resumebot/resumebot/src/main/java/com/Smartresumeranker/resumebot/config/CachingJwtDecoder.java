@@ -0,0 +1,70 @@
+package com.Smartresumeranker.resumebot.config;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import com.Smartresumeranker.resumebot.service.AuthMetrics;
+import com.Smartresumeranker.resumebot.service.Digests;
+
+// CachingJwtDecoder remembers the tokens the delegate already verified, a client sends the same bearer token
+// with every request and the HMAC check and claims parsing only have to run once per token
+// the key is the SHA-256 of the whole token, signature included, so a forged or changed token never hits;
+// an entry lives until the token expires, tokens without an expiry and failed checks are never cached
+public class CachingJwtDecoder implements JwtDecoder {
+  private final JwtDecoder delegate;
+  private final AuthMetrics metrics;
+  // access ordered map, the eldest entry is the least recently used one; guarded by this
+  private final LinkedHashMap<String, Jwt> entries;
+
+  public CachingJwtDecoder(JwtDecoder delegate, int maxEntries, AuthMetrics metrics) {
+    this.delegate = delegate;
+    this.metrics = metrics;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Jwt> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  @Override
+  public Jwt decode(String token) throws JwtException {
+    long start = System.nanoTime();
+    String key = Digests.sha256(token);
+    Jwt cached;
+    synchronized (this) {
+      cached = entries.get(key);
+      if (cached != null && !cached.getExpiresAt().isAfter(Instant.now())) {
+        entries.remove(key);
+        cached = null;
+      }
+    }
+    if (cached != null) {
+      metrics.jwt("hit", System.nanoTime() - start);
+      return cached;
+    }
+    Jwt jwt;
+    try {
+      jwt = delegate.decode(token);
+    } catch (JwtException e) {
+      metrics.jwt("invalid", System.nanoTime() - start);
+      throw e;
+    }
+    if (jwt.getExpiresAt() != null) {
+      synchronized (this) {
+        entries.put(key, jwt);
+      }
+    }
+    metrics.jwt("miss", System.nanoTime() - start);
+    return jwt;
+  }
+
+  public synchronized int size() {
+    return entries.size();
+  }
+}
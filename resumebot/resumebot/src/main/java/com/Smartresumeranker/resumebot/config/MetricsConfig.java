@@ -0,0 +1,138 @@
+package com.Smartresumeranker.resumebot.config;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import com.Smartresumeranker.resumebot.dto.LlmBackendStats;
+import com.Smartresumeranker.resumebot.service.EvaluationAdmission;
+import com.Smartresumeranker.resumebot.service.EvaluationBatcher;
+import com.Smartresumeranker.resumebot.service.EvaluationCache;
+import com.Smartresumeranker.resumebot.service.EvaluationWorker;
+import com.Smartresumeranker.resumebot.service.ExtractedTextCache;
+import com.Smartresumeranker.resumebot.service.LlmRouter;
+import com.Smartresumeranker.resumebot.service.PromptPreprocessor;
+import com.Smartresumeranker.resumebot.service.UserAccountCache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.tracing.Span;
+import io.micrometer.tracing.Tracer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+// MetricsConfig exports the counters behind /api/stats/* as meters, so Prometheus scrapes the same numbers
+// the stats endpoints show, and gives every response the trace id of its request
+@Configuration
+public class MetricsConfig {
+  // TRACE_HEADER carries the trace id back to the client, quote it when reporting a slow request
+  public static final String TRACE_HEADER = "X-Trace-Id";
+
+  //cacheMetrics binds the evaluation, extracted text and user account caches, named like the Micrometer cache meters
+  @Bean
+  public MeterBinder cacheMetrics(EvaluationCache evaluationCache, ExtractedTextCache textCache,
+      UserAccountCache accountCache) {
+    return registry -> {
+      FunctionCounter.builder("cache.gets", evaluationCache, c -> c.stats().hits())
+          .tags("cache", "evaluation", "result", "hit").register(registry);
+      FunctionCounter.builder("cache.gets", evaluationCache, c -> c.stats().misses())
+          .tags("cache", "evaluation", "result", "miss").register(registry);
+      Gauge.builder("cache.size", evaluationCache, c -> c.stats().size())
+          .tag("cache", "evaluation").register(registry);
+      FunctionCounter.builder("cache.gets", textCache, c -> c.stats().hits())
+          .tags("cache", "extracted-text", "result", "hit").register(registry);
+      FunctionCounter.builder("cache.gets", textCache, c -> c.stats().misses())
+          .tags("cache", "extracted-text", "result", "miss").register(registry);
+      Gauge.builder("cache.size", textCache, c -> c.stats().size())
+          .tag("cache", "extracted-text").register(registry);
+      FunctionCounter.builder("cache.gets", accountCache, c -> c.stats().hits())
+          .tags("cache", "user-account", "result", "hit").register(registry);
+      FunctionCounter.builder("cache.gets", accountCache, c -> c.stats().misses())
+          .tags("cache", "user-account", "result", "miss").register(registry);
+      Gauge.builder("cache.size", accountCache, c -> c.stats().size())
+          .tag("cache", "user-account").register(registry);
+      FunctionCounter.builder("resumebot.cache.bytes.saved", textCache, c -> c.stats().bytesSaved())
+          .description("Upload bytes that did not have to be parsed again").baseUnit("bytes").register(registry);
+    };
+  }
+
+  //llmMetrics binds the backend load of the router, the batching counters and the prompt token savings
+  @Bean
+  public MeterBinder llmMetrics(LlmRouter router, EvaluationBatcher batcher, PromptPreprocessor preprocessor) {
+    return registry -> {
+      //the backends are fixed at startup, their position in stats() never changes
+      List<LlmBackendStats> backends = router.stats();
+      for (int i = 0; i < backends.size(); i++) {
+        int index = i;
+        Gauge.builder("resumebot.llm.in.flight", router, r -> r.stats().get(index).inFlight())
+            .description("Model calls running on the backend").tag("backend", backends.get(i).name())
+            .register(registry);
+        Gauge.builder("resumebot.llm.max.concurrency", router, r -> r.stats().get(index).maxConcurrency())
+            .tag("backend", backends.get(i).name()).register(registry);
+      }
+      Gauge.builder("resumebot.llm.waiting", router, LlmRouter::waiting)
+          .description("Model calls waiting for a permit or a backend slot").register(registry);
+      FunctionCounter.builder("resumebot.llm.batches", batcher, b -> b.stats().batches())
+          .description("Combined prompts sent").register(registry);
+      FunctionCounter.builder("resumebot.llm.batched.items", batcher, b -> b.stats().batchedItems())
+          .description("Evaluations answered by combined prompts").register(registry);
+      FunctionCounter.builder("resumebot.llm.batch.split.failures", batcher, b -> b.stats().splitFailures())
+          .description("Combined answers that had to be asked again per resume").register(registry);
+      FunctionCounter.builder("resumebot.prompt.tokens.estimated", preprocessor, p -> p.stats().tokensBefore())
+          .description("Estimated prompt text tokens").tag("when", "before").register(registry);
+      FunctionCounter.builder("resumebot.prompt.tokens.estimated", preprocessor, p -> p.stats().tokensAfter())
+          .description("Estimated prompt text tokens").tag("when", "after").register(registry);
+    };
+  }
+
+  //admissionMetrics binds the slots and the queue of the evaluation admission
+  @Bean
+  public MeterBinder admissionMetrics(EvaluationAdmission admission) {
+    return registry -> {
+      Gauge.builder("resumebot.admission.active", admission, EvaluationAdmission::active)
+          .description("Evaluations holding a slot").register(registry);
+      Gauge.builder("resumebot.admission.queued", admission, EvaluationAdmission::queued)
+          .description("Evaluations waiting for a slot").register(registry);
+    };
+  }
+
+  //jobWorkerMetrics binds the evaluation worker of this node, the queue length is a database count and not a gauge
+  @Bean
+  public MeterBinder jobWorkerMetrics(EvaluationWorker worker) {
+    return registry -> {
+      Gauge.builder("resumebot.jobs.running", worker, EvaluationWorker::running)
+          .description("Evaluation jobs running on this node").register(registry);
+      FunctionCounter.builder("resumebot.jobs.completed", worker, EvaluationWorker::completed)
+          .description("Evaluation jobs completed on this node").register(registry);
+      FunctionCounter.builder("resumebot.jobs.lost.leases", worker, EvaluationWorker::lostLeases)
+          .description("Evaluation jobs finished after another worker had claimed them").register(registry);
+    };
+  }
+
+  //traceIdFilter adds the trace id header, it runs after the http observation filter that starts the trace
+  @Bean
+  public FilterRegistrationBean<OncePerRequestFilter> traceIdFilter(ObjectProvider<Tracer> tracer) {
+    OncePerRequestFilter filter = new OncePerRequestFilter() {
+      @Override
+      protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+          throws ServletException, IOException {
+        Tracer t = tracer.getIfAvailable();
+        Span span = t == null ? null : t.currentSpan();
+        if (span != null) response.setHeader(TRACE_HEADER, span.context().traceId());
+        chain.doFilter(request, response);
+      }
+    };
+    FilterRegistrationBean<OncePerRequestFilter> registration = new FilterRegistrationBean<>(filter);
+    registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+    return registration;
+  }
+}
@@ -30,6 +30,8 @@ import org.springframework.security.oauth2.jwt.JwtDecoder;
 import org.springframework.security.oauth2.jwt.JwtEncoder;
 import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
 import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
 
 import com.nimbusds.jose.proc.SecurityContext;
 import com.nimbusds.jose.jwk.source.ImmutableSecret;
@@ -39,6 +41,10 @@ import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import com.Smartresumeranker.resumebot.service.AuthMetrics;
+import com.Smartresumeranker.resumebot.service.PasswordHasher;
+import com.Smartresumeranker.resumebot.service.UserAccountCache;
+
 @Configuration
 @EnableMethodSecurity
 @EnableWebSecurity
@@ -48,23 +54,25 @@ public class SecurityConfig {
   private String jwtSecret;
   //store the application.properties jwt.secret in a variable
 
-  private final com.Smartresumeranker.resumebot.repository.UserAccountRepository userRepo;
+  //accounts is the read-through user account cache, shared with the AuthService
+  private final UserAccountCache accounts;
 
-  public SecurityConfig(com.Smartresumeranker.resumebot.repository.UserAccountRepository userRepo) {
-    this.userRepo = userRepo;
-    //store the userRepo in a variable
+  public SecurityConfig(UserAccountCache accounts) {
+    this.accounts = accounts;
+    //store the accounts cache in a variable
   }
 
   @Bean
-  public PasswordEncoder passwordEncoder() {
+  public PasswordEncoder passwordEncoder(@Value("${resumebot.auth.bcrypt-strength:10}") int strength) {
     //generate a random password hash to store it in the database
-    //password look like a 3$2a$10$...
-    return new BCryptPasswordEncoder();
+    //password look like a 3$2a$10$..., 10 is the strength (log2 of the rounds), every +1 doubles the cost
+    //hashes of a lower strength keep working and are upgraded at the next sign in
+    return new BCryptPasswordEncoder(strength);
   }
 
   @SuppressWarnings("removal")
   @Bean
-  public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+  public SecurityFilterChain filterChain(HttpSecurity http, PasswordHasher hasher, JwtEncoder jwtEncoder) throws Exception {
     //configure the security filter chain
     //This code runs AFTER the user is authenticated
     AuthenticationSuccessHandler successHandler = (request, response, authentication) -> {
@@ -78,19 +86,20 @@ public class SecurityConfig {
         return;
       }
       //normalize the email to lowercase example: "Test@example.com" -> "test@example.com"
-      String normalized = email.toLowerCase();
-      com.Smartresumeranker.resumebot.model.UserAccount ua = userRepo.findByEmail(normalized).orElseGet(() -> {
+      String normalized = com.Smartresumeranker.resumebot.model.UserAccount.normalizeEmail(email);
+      UserAccountCache.Account ua = accounts.find(normalized).orElseGet(() -> {
         //if the user is not found, create a new user account
         com.Smartresumeranker.resumebot.model.UserAccount u = new com.Smartresumeranker.resumebot.model.UserAccount();
         //set the email to the normalized email
         u.setEmail(normalized);
         //set the password hash to a random UUID string example: "1234567890"
-        u.setPasswordHash(passwordEncoder().encode(java.util.UUID.randomUUID().toString()));
-        //save the user account to the database
-        return userRepo.save(u);
+        //hashed on the password hash pool like every other password
+        u.setPasswordHash(hasher.encode(java.util.UUID.randomUUID().toString()));
+        //save the user account to the database, the cache keeps the stored account
+        return accounts.save(u);
       });
       //issue a JWT token for the user account
-      String token = issueToken(ua);
+      String token = issueToken(jwtEncoder, ua);
       //get the origin from the request header, default to "http://localhost:5173"
       String origin = Optional.ofNullable(request.getHeader("Origin")).orElse("http://localhost:5173");
       //redirect the user to the callback URL with the token as a query parameter
@@ -114,6 +123,11 @@ public class SecurityConfig {
             "/oauth2/**",
             "/login/oauth2/**",
              "/h2-console/**").permitAll()
+             //health is open for the load balancer, the metrics and the prometheus scrape need an admin token
+            .requestMatchers("/actuator/health/**").permitAll()
+            .requestMatchers("/actuator/**").hasRole("ADMIN")
+             //the error page renders the status of failed /auth requests (401, 429, 503) instead of hiding it
+            .requestMatchers("/error").permitAll()
              //require authentication for all other requests
             .anyRequest().authenticated())
             //use the default form login page
@@ -155,6 +169,17 @@ public class SecurityConfig {
     return source;
   }
 
+  //the roles claim of the tokens becomes the ROLE_ authorities of API calls, e.g. ROLE_ADMIN
+  @Bean
+  public JwtAuthenticationConverter jwtAuthenticationConverter() {
+    JwtGrantedAuthoritiesConverter roles = new JwtGrantedAuthoritiesConverter();
+    roles.setAuthoritiesClaimName("roles");
+    roles.setAuthorityPrefix("ROLE_");
+    JwtAuthenticationConverter converter = new JwtAuthenticationConverter();
+    converter.setJwtGrantedAuthoritiesConverter(roles);
+    return converter;
+  }
+
   //create a new JWT encoder with the secret key
   @Bean
   @SuppressWarnings("Convert2Diamond")
@@ -167,12 +192,15 @@ public class SecurityConfig {
   }
 
   @Bean
-  public JwtDecoder jwtDecoder() {
+  public JwtDecoder jwtDecoder(AuthMetrics metrics,
+      @Value("${resumebot.auth.jwt-cache.max-entries:10000}") int maxEntries) {
     //create a new secret key from the JWT secret
     //HmacSHA256 is the algorithm used to sign the JWT example: "1234567890"
     SecretKey key = new SecretKeySpec(jwtSecret.getBytes(StandardCharsets.UTF_8), "HmacSHA256");
     //create a new Nimbus JWT decoder with the secret key
-    return NimbusJwtDecoder.withSecretKey(key).build();
+    JwtDecoder nimbus = NimbusJwtDecoder.withSecretKey(key).build();
+    //a token is verified once, the following requests with it are answered from the cache
+    return maxEntries > 0 ? new CachingJwtDecoder(nimbus, maxEntries, metrics) : nimbus;
   }
 
   //resolve the email from the OAuth2 user principal based on the registration ID
@@ -200,21 +228,21 @@ public class SecurityConfig {
   }
 
   //issue a JWT token for the given user account
-  private String issueToken(com.Smartresumeranker.resumebot.model.UserAccount ua) {
+  private String issueToken(JwtEncoder jwtEncoder, UserAccountCache.Account ua) {
     //create a new JWT claims set builder
     org.springframework.security.oauth2.jwt.JwtClaimsSet claims = org.springframework.security.oauth2.jwt.JwtClaimsSet.builder()
         //set the subject of the JWT to the email address of the user account
-        .subject(ua.getEmail())
+        .subject(ua.email())
         //set the issued at time of the JWT to the current time
         .issuedAt(Instant.now())
         //set the expiration time of the JWT to 8 hours from the current time
         .expiresAt(Instant.now().plusSeconds(60L * 60L * 8L))
         //add the roles of the user account to the JWT claims as a list of strings
-        .claim("roles", ua.getRoles())
+        .claim("roles", ua.roles())
         .build();
         //create a new JWT header with the HMAC SHA-256 algorithm
     org.springframework.security.oauth2.jwt.JwsHeader header = org.springframework.security.oauth2.jwt.JwsHeader.with(org.springframework.security.oauth2.jose.jws.MacAlgorithm.HS256).build();
     //encode the JWT claims set with the header and the secret key to form the JWT token
-    return jwtEncoder().encode(org.springframework.security.oauth2.jwt.JwtEncoderParameters.from(header, claims)).getTokenValue();
+    return jwtEncoder.encode(org.springframework.security.oauth2.jwt.JwtEncoderParameters.from(header, claims)).getTokenValue();
   }
 }
\ No newline at end of file
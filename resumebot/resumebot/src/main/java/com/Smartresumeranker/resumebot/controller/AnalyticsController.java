@@ -0,0 +1,62 @@
+package com.Smartresumeranker.resumebot.controller;
+
+import com.Smartresumeranker.resumebot.dto.SkillGapReport;
+import com.Smartresumeranker.resumebot.service.JobDescriptionService;
+import com.Smartresumeranker.resumebot.service.SkillGapAnalytics;
+import java.security.Principal;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+@RestController
+public class AnalyticsController {
+  private final SkillGapAnalytics skillGaps;
+  private final JobDescriptionService jobDescriptions;
+
+  public AnalyticsController(SkillGapAnalytics skillGaps, JobDescriptionService jobDescriptions) {
+    this.skillGaps = skillGaps;
+    this.jobDescriptions = jobDescriptions;
+  }
+
+  //skillGaps returns the most often missing skills, in total and per week, from counters kept up to date on every save
+  //the scope is one job description (jobDescriptionId, or jobDescriptionDigest for a text sent with the request),
+  //one user (user, user=me is the caller, another user needs an admin) or, without any of them, all evaluations
+  //for an admin and the caller's own evaluations for anybody else
+  //a registered job description is reported to its owner only (and to admins), like its profile; a digest counts
+  //the evaluations of every user who sent that text, so only an admin may ask for it
+  @GetMapping("/api/analytics/skill-gaps")
+  public SkillGapReport skillGaps(
+      @RequestParam(name = "jobDescriptionId", required = false) Long jobDescriptionId,
+      @RequestParam(name = "jobDescriptionDigest", required = false) String jobDescriptionDigest,
+      @RequestParam(name = "user", required = false) String user,
+      @RequestParam(name = "weeks", defaultValue = "4") int weeks,
+      @RequestParam(name = "k", defaultValue = "10") int k,
+      Principal principal) {
+    boolean jobDescription = jobDescriptionId != null || jobDescriptionDigest != null;
+    if (jobDescription && user != null) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Ask for a job description or a user, not both");
+    }
+    int w = Math.max(0, Math.min(weeks, skillGaps.retainedWeeks()));
+    int top = Math.max(1, Math.min(k, skillGaps.sketchSize()));
+    boolean admin = OwnerScope.admin(principal);
+    if (jobDescriptionId != null && !admin) jobDescriptions.find(jobDescriptionId, owner(principal));
+    if (jobDescriptionId == null && jobDescriptionDigest != null && !admin) {
+      throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Only an admin may see the report of a job description text");
+    }
+    if (jobDescription) {
+      return skillGaps.report(SkillGapAnalytics.Scope.JOB_DESCRIPTION,
+          SkillGapAnalytics.jobDescriptionKey(jobDescriptionId, jobDescriptionDigest), w, top);
+    }
+    if (user != null) {
+      return skillGaps.report(SkillGapAnalytics.Scope.USER, OwnerScope.named(user, principal), w, top);
+    }
+    if (!admin) return skillGaps.report(SkillGapAnalytics.Scope.USER, OwnerScope.named("me", principal), w, top);
+    return skillGaps.report(SkillGapAnalytics.Scope.ALL, null, w, top);
+  }
+
+  private static String owner(Principal principal) {
+    return principal == null ? null : principal.getName();
+  }
+}
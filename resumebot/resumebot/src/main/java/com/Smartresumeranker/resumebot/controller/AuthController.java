@@ -4,6 +4,7 @@ import com.Smartresumeranker.resumebot.dto.AuthResponse;
 import com.Smartresumeranker.resumebot.dto.SignInRequest;
 import com.Smartresumeranker.resumebot.dto.SignUpRequest;
 import com.Smartresumeranker.resumebot.service.AuthService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -20,13 +21,14 @@ public class AuthController {
 
   // signup signs up a new user account
   @PostMapping("/auth/signup")
-  public ResponseEntity<AuthResponse> signup(@RequestBody SignUpRequest req) {
-    return ResponseEntity.ok(auth.signUp(req));
+  public ResponseEntity<AuthResponse> signup(@RequestBody SignUpRequest req, HttpServletRequest request) {
+    return ResponseEntity.ok(auth.signUp(req, request.getRemoteAddr()));
   }
 
   // signin signs in a user account
   @PostMapping("/auth/signin")
-  public ResponseEntity<AuthResponse> signin(@RequestBody SignInRequest req) {
-    return ResponseEntity.ok(auth.signIn(req));
+  // the rate limits use the client address, behind a proxy set server.forward-headers-strategy so it is the real one
+  public ResponseEntity<AuthResponse> signin(@RequestBody SignInRequest req, HttpServletRequest request) {
+    return ResponseEntity.ok(auth.signIn(req, request.getRemoteAddr()));
   }
 }
\ No newline at end of file
@@ -1,46 +1,265 @@
 package com.Smartresumeranker.resumebot.controller;
 
+import com.Smartresumeranker.resumebot.dto.EvaluationJobStatus;
+import com.Smartresumeranker.resumebot.dto.EvaluationPage;
 import com.Smartresumeranker.resumebot.dto.EvaluationResponse;
+import com.Smartresumeranker.resumebot.dto.EvaluationSummary;
+import com.Smartresumeranker.resumebot.dto.SearchHit;
+import com.Smartresumeranker.resumebot.dto.SimilarResume;
 import com.Smartresumeranker.resumebot.model.Evaluation;
 import com.Smartresumeranker.resumebot.repository.EvaluationRepository;
+import com.Smartresumeranker.resumebot.service.BatchRankingService;
+import com.Smartresumeranker.resumebot.service.EvaluationAdmission;
+import com.Smartresumeranker.resumebot.service.EvaluationJobService;
+import com.Smartresumeranker.resumebot.service.EvaluationSearch;
 import com.Smartresumeranker.resumebot.service.EvaluationService;
+import com.Smartresumeranker.resumebot.service.JobDescriptionService;
+import com.Smartresumeranker.resumebot.service.PreparedJob;
+import com.Smartresumeranker.resumebot.service.SearchIndex;
+import com.Smartresumeranker.resumebot.service.SemanticMatcher;
+import java.net.URI;
+import java.security.Principal;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @Validated
 public class EvaluationController {
+  // MAX_PAGE_SIZE caps the limit of one listing page
+  private static final int MAX_PAGE_SIZE = 100;
+  // MAX_SIMILAR caps k of a similar resume search
+  private static final int MAX_SIMILAR = 500;
   private final EvaluationService service;
   private final EvaluationRepository repository;
+  private final EvaluationJobService jobs;
+  private final BatchRankingService batch;
+  private final SemanticMatcher semantic;
+  private final JobDescriptionService jobDescriptions;
+  private final EvaluationAdmission admission;
+  private final EvaluationSearch search;
+  private final Duration streamTimeout;
+  private final Duration batchTimeout;
 
-  public EvaluationController(EvaluationService service, EvaluationRepository repository) {
+  public EvaluationController(EvaluationService service, EvaluationRepository repository, EvaluationJobService jobs,
+      BatchRankingService batch, SemanticMatcher semantic, JobDescriptionService jobDescriptions,
+      EvaluationAdmission admission, EvaluationSearch search,
+      @Value("${resumebot.stream.timeout:PT5M}") Duration streamTimeout,
+      @Value("${resumebot.batch.timeout:PT2H}") Duration batchTimeout) {
     this.service = service;
     this.repository = repository;
+    this.jobs = jobs;
+    this.batch = batch;
+    this.semantic = semantic;
+    this.jobDescriptions = jobDescriptions;
+    this.admission = admission;
+    this.search = search;
+    this.streamTimeout = streamTimeout;
+    this.batchTimeout = batchTimeout;
   }
 
   //rank is the method to evaluate the resume and job description
+  //every rank endpoint takes the job description as text or, registered once, as jobDescriptionId
+  //every rank endpoint goes through the admission: the rate limit of the caller first, before any work, then
+  //the evaluations that call the model wait for a slot in the fair queue
   @PostMapping(path = "/api/rank", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
   public EvaluationResponse rank(
       @RequestPart(name = "resumeFile", required = false) MultipartFile resumeFile,
       @RequestPart(name = "resumeText", required = false) String resumeText,
-      @RequestPart(name = "jobDescription") String jobDescription) {
-    return service.evaluate(resumeFile, resumeText, jobDescription);
+      @RequestPart(name = "jobDescription", required = false) String jobDescription,
+      @RequestParam(name = "jobDescriptionId", required = false) Long jobDescriptionId,
+      @RequestParam(name = "mode", defaultValue = "llm") String mode,
+      Principal principal) {
+    String owner = owner(principal);
+    admission.limit(owner, 1);
+    PreparedJob job = job(jobDescription, jobDescriptionId, owner);
+    String resume = service.resolveResume(resumeFile, resumeText);
+    //mode=fast answers from the local scoring engine without calling the model
+    if ("fast".equalsIgnoreCase(mode)) {
+      return service.evaluateLocal(resume, job, owner);
+    }
+    //mode=semantic scores by embedding similarity, also without calling the chat model
+    if ("semantic".equalsIgnoreCase(mode)) {
+      return service.evaluateSemantic(resume, job, owner);
+    }
+    try (EvaluationAdmission.Ticket ticket = admission.enter(owner, 1)) {
+      return service.evaluatePrepared(resume, job, owner);
+    }
   }
 
+  //rankAsync is POST /api/rank?async=true, it returns a job id right away and evaluates in the background
+  //the uploaded file is read here because multipart parts are gone once the request completes
+  @PostMapping(path = "/api/rank", params = "async=true", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+  public ResponseEntity<EvaluationJobStatus> rankAsync(
+      @RequestPart(name = "resumeFile", required = false) MultipartFile resumeFile,
+      @RequestPart(name = "resumeText", required = false) String resumeText,
+      @RequestPart(name = "jobDescription", required = false) String jobDescription,
+      @RequestParam(name = "jobDescriptionId", required = false) Long jobDescriptionId,
+      Principal principal) {
+    //the slot is taken by the background job, it waits in the fair queue like everybody else
+    admission.limit(owner(principal), 1);
+    EvaluationJobStatus job = jobs.submit(service.resolveResume(resumeFile, resumeText),
+        job(jobDescription, jobDescriptionId, owner(principal)), owner(principal));
+    return ResponseEntity.accepted().location(URI.create("/api/rank/jobs/" + job.jobId())).body(job);
+  }
+
+  //rankStream is the streaming variant of rank, insights arrive as Server-Sent Events while the model writes them
+  @PostMapping(path = "/api/rank/stream", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter rankStream(
+      @RequestPart(name = "resumeFile", required = false) MultipartFile resumeFile,
+      @RequestPart(name = "resumeText", required = false) String resumeText,
+      @RequestPart(name = "jobDescription", required = false) String jobDescription,
+      @RequestParam(name = "jobDescriptionId", required = false) Long jobDescriptionId,
+      Principal principal) {
+    String owner = owner(principal);
+    admission.limit(owner, 1);
+    PreparedJob job = job(jobDescription, jobDescriptionId, owner);
+    String resume = service.resolveResume(resumeFile, resumeText);
+    SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+    stream(emitter, admission.enter(owner, 1), () -> service.streamEvaluation(resume, job, owner, emitter));
+    return emitter;
+  }
+
+  //rankBatch ranks many resumes against one job description, resumes are uploaded as several files and/or zips
+  //every finished resume is sent as a result event, the sorted list follows as a ranking event
+  //mode=fast scores every resume locally, llmTopN and minLocalScore only send the best local scores to the model
+  @PostMapping(path = "/api/rank/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter rankBatch(
+      @RequestPart(name = "resumes") List<MultipartFile> resumes,
+      @RequestPart(name = "jobDescription", required = false) String jobDescription,
+      @RequestParam(name = "jobDescriptionId", required = false) Long jobDescriptionId,
+      @RequestParam(name = "mode", defaultValue = "llm") String mode,
+      @RequestParam(name = "llmTopN", required = false) Integer llmTopN,
+      @RequestParam(name = "minLocalScore", defaultValue = "0") int minLocalScore,
+      Principal principal) {
+    String owner = owner(principal);
+    PreparedJob job = job(jobDescription, jobDescriptionId, owner);
+    List<BatchRankingService.Upload> uploads = batch.collect(resumes);
+    BatchRankingService.Screening screening = new BatchRankingService.Screening("fast".equalsIgnoreCase(mode), llmTopN, minLocalScore);
+    //a batch costs one token per resume and weighs in the fair queue with the resumes it may send to the model,
+    //it holds a slot for every model call it runs at once
+    admission.limit(owner, uploads.size());
+    int toModel = screening.fast() ? 0 : Math.min(uploads.size(), llmTopN == null ? Integer.MAX_VALUE : llmTopN);
+    SseEmitter emitter = new SseEmitter(batchTimeout.toMillis());
+    if (toModel == 0) {
+      batch.rank(job, uploads, screening, owner, emitter);
+      return emitter;
+    }
+    stream(emitter, admission.enter(owner, toModel, Math.min(toModel, batch.concurrency())), () -> batch.rank(job, uploads, screening, owner, emitter));
+    return emitter;
+  }
+
+  //similar returns the k past resumes closest to the job description by embedding similarity, best first
+  //no model call per resume, every stored resume is already in the vector index; a user only finds the resumes
+  //they evaluated, an admin finds every stored resume, see OwnerScope
+  @PostMapping(path = "/api/rank/similar", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+  public List<SimilarResume> similar(
+      @RequestPart(name = "jobDescription", required = false) String jobDescription,
+      @RequestParam(name = "jobDescriptionId", required = false) Long jobDescriptionId,
+      @RequestParam(name = "k", defaultValue = "50") int k,
+      Principal principal) {
+    admission.limit(owner(principal), 1);
+    //a sent text is embedded as it is, there is no prompt to prepare for it
+    String text = jobDescriptionId != null ? jobDescriptions.prepared(jobDescriptionId, owner(principal)).text() : jobDescription;
+    if (text == null) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "jobDescription or jobDescriptionId is required");
+    return semantic.similar(text, Math.max(1, Math.min(k, MAX_SIMILAR)), OwnerScope.filter(null, principal));
+  }
+
+  //job polls an asynchronous evaluation, waitMs > 0 holds the request until the job finishes or the wait is over
+  @GetMapping("/api/rank/jobs/{jobId}")
+  public CompletableFuture<EvaluationJobStatus> job(@PathVariable String jobId,
+      @RequestParam(name = "waitMs", defaultValue = "0") long waitMs) {
+    return jobs.status(jobId, Math.min(waitMs, 30_000L));
+  }
+
+  //list is a page of evaluation summaries, newest first, the texts and insights are only in /api/rank/{id}
+  //cursor is the nextCursor of the previous page; a user lists their own evaluations, an admin lists everybody's
+  //or names an owner, see OwnerScope
   @GetMapping("/api/rank")
-  public List<Evaluation> list() {
-    return repository.findAll();
+  public EvaluationPage list(
+      @RequestParam(name = "cursor", required = false) Long cursor,
+      @RequestParam(name = "limit", defaultValue = "20") int limit,
+      @RequestParam(name = "owner", required = false) String owner,
+      @RequestParam(name = "from", required = false) Instant from,
+      @RequestParam(name = "to", required = false) Instant to,
+      Principal principal) {
+    int size = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+    String ownerFilter = OwnerScope.filter(owner, principal);
+    //one extra row tells whether there is a next page
+    List<EvaluationSummary> rows = repository.findSummaries(cursor, ownerFilter, from, to, Limit.of(size + 1));
+    if (rows.size() <= size) return new EvaluationPage(rows, null);
+    List<EvaluationSummary> page = rows.subList(0, size);
+    return new EvaluationPage(page, page.get(size - 1).id());
   }
 
+  //search finds evaluations in the history by query, best first: terms and "phrases" with AND, OR, NOT and the
+  //fields resume:, jd: and gap: (the missing skills), e.g. q=gap:kubernetes&maxGaps=1 are the candidates missing
+  //only Kubernetes; owner, from and to filter like the listing (a user only finds their own evaluations),
+  //maxGaps caps the number of missing skills
+  @GetMapping("/api/rank/search")
+  public List<SearchHit> search(
+      @RequestParam(name = "q") String q,
+      @RequestParam(name = "limit", defaultValue = "20") int limit,
+      @RequestParam(name = "owner", required = false) String owner,
+      @RequestParam(name = "from", required = false) Instant from,
+      @RequestParam(name = "to", required = false) Instant to,
+      @RequestParam(name = "maxGaps", required = false) Integer maxGaps,
+      Principal principal) {
+    String ownerFilter = OwnerScope.filter(owner, principal);
+    return search.search(q, new SearchIndex.Filter(ownerFilter, from, to, maxGaps),
+        Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+  }
+
+  //get is one evaluation with its texts and insights, a user only gets their own, an admin gets any
+  //another user's evaluation is a 404 like an unknown id, so ids do not tell which evaluations exist
   @GetMapping("/api/rank/{id}")
-  public Evaluation get(@PathVariable Long id) {
-    return repository.findById(id).orElse(null);
+  public Evaluation get(@PathVariable Long id, Principal principal) {
+    Evaluation evaluation = service.find(id);
+    if (evaluation == null || !(OwnerScope.admin(principal) || owner(principal) != null
+        && owner(principal).equals(evaluation.getOwner()))) {
+      throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown evaluation " + id);
+    }
+    return evaluation;
+  }
+
+  //stream starts an evaluation that answers through the emitter, the ticket is held until the emitter completes
+  private static void stream(SseEmitter emitter, EvaluationAdmission.Ticket ticket, Runnable start) {
+    emitter.onCompletion(ticket::close);
+    try {
+      start.run();
+    } catch (RuntimeException e) {
+      ticket.close();
+      throw e;
+    }
+  }
+
+  //job is the caller's registered job description when there is an id, the sent text otherwise
+  private PreparedJob job(String jobDescription, Long jobDescriptionId, String owner) {
+    if (jobDescriptionId != null) return jobDescriptions.prepared(jobDescriptionId, owner);
+    if (jobDescription == null) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "jobDescription or jobDescriptionId is required");
+    }
+    return service.prepare(jobDescription);
+  }
+
+  //owner is the name of the authenticated user, the JWT subject (email) for API calls
+  private static String owner(Principal principal) {
+    return principal == null ? null : principal.getName();
   }
 }
@@ -0,0 +1,50 @@
+package com.Smartresumeranker.resumebot.controller;
+
+import com.Smartresumeranker.resumebot.dto.JobDescriptionProfileResponse;
+import com.Smartresumeranker.resumebot.dto.JobDescriptionRequest;
+import com.Smartresumeranker.resumebot.service.JobDescriptionService;
+import java.net.URI;
+import java.security.Principal;
+import java.util.List;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+public class JobDescriptionController {
+  // MAX_PAGE_SIZE caps the limit of one listing
+  private static final int MAX_PAGE_SIZE = 100;
+  private final JobDescriptionService jobDescriptions;
+
+  public JobDescriptionController(JobDescriptionService jobDescriptions) {
+    this.jobDescriptions = jobDescriptions;
+  }
+
+  //register stores a job description once, its id is the jobDescriptionId of the rank endpoints
+  @PostMapping("/api/job-descriptions")
+  public ResponseEntity<JobDescriptionProfileResponse> register(@RequestBody JobDescriptionRequest req, Principal principal) {
+    JobDescriptionProfileResponse profile = jobDescriptions.register(req, owner(principal));
+    return ResponseEntity.created(URI.create("/api/job-descriptions/" + profile.id())).body(profile);
+  }
+
+  //get returns a job description registered by the caller with its skills and requirements
+  @GetMapping("/api/job-descriptions/{id}")
+  public JobDescriptionProfileResponse get(@PathVariable Long id, Principal principal) {
+    return jobDescriptions.find(id, owner(principal));
+  }
+
+  //list returns the job descriptions registered by the caller, newest first
+  @GetMapping("/api/job-descriptions")
+  public List<JobDescriptionProfileResponse> list(@RequestParam(name = "limit", defaultValue = "20") int limit,
+      Principal principal) {
+    return jobDescriptions.list(owner(principal), Math.max(1, Math.min(limit, MAX_PAGE_SIZE)));
+  }
+
+  private static String owner(Principal principal) {
+    return principal == null ? null : principal.getName();
+  }
+}
@@ -0,0 +1,44 @@
+package com.Smartresumeranker.resumebot.controller;
+
+import java.security.Principal;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.Authentication;
+import org.springframework.web.server.ResponseStatusException;
+
+// OwnerScope decides whose evaluations a listing, a search or a report may show
+// a user only sees their own (owner=me, their own name, or no owner at all); an admin (role ADMIN in the token)
+// may name any owner and sees every owner without one
+final class OwnerScope {
+  static final String ADMIN = "ROLE_ADMIN";
+
+  private OwnerScope() {
+  }
+
+  // filter is the owner to filter by, null for every owner, which only an admin gets
+  static String filter(String requested, Principal principal) {
+    String caller = caller(principal);
+    if (requested == null) return admin(principal) ? null : caller;
+    return named(requested, principal);
+  }
+
+  // named is the owner a request names, me is the caller; another user than the caller needs an admin
+  static String named(String requested, Principal principal) {
+    String caller = caller(principal);
+    if ("me".equals(requested) || requested.equals(caller)) return caller;
+    if (!admin(principal)) {
+      throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Only an admin may see the evaluations of other users");
+    }
+    return requested;
+  }
+
+  static boolean admin(Principal principal) {
+    return principal instanceof Authentication a
+        && a.getAuthorities().stream().anyMatch(g -> ADMIN.equals(g.getAuthority()));
+  }
+
+  private static String caller(Principal principal) {
+    if (principal == null) throw new ResponseStatusException(HttpStatus.UNAUTHORIZED);
+    return principal.getName();
+  }
+}
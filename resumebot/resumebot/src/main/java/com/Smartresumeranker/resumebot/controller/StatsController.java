@@ -0,0 +1,103 @@
+package com.Smartresumeranker.resumebot.controller;
+
+import com.Smartresumeranker.resumebot.dto.AdmissionStats;
+import com.Smartresumeranker.resumebot.dto.BatchingStats;
+import com.Smartresumeranker.resumebot.dto.CacheStats;
+import com.Smartresumeranker.resumebot.dto.ExtractionStats;
+import com.Smartresumeranker.resumebot.dto.LlmBackendStats;
+import com.Smartresumeranker.resumebot.dto.PromptStats;
+import com.Smartresumeranker.resumebot.dto.SearchIndexStats;
+import com.Smartresumeranker.resumebot.dto.TextCacheStats;
+import com.Smartresumeranker.resumebot.service.EvaluationAdmission;
+import com.Smartresumeranker.resumebot.service.EvaluationBatcher;
+import com.Smartresumeranker.resumebot.service.EvaluationCache;
+import com.Smartresumeranker.resumebot.service.EvaluationSearch;
+import com.Smartresumeranker.resumebot.service.ExtractedTextCache;
+import com.Smartresumeranker.resumebot.service.LlmRouter;
+import com.Smartresumeranker.resumebot.service.PromptPreprocessor;
+import com.Smartresumeranker.resumebot.service.ResumeTextExtractor;
+import com.Smartresumeranker.resumebot.service.UserAccountCache;
+import java.util.List;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+public class StatsController {
+  private final EvaluationCache evaluationCache;
+  private final ResumeTextExtractor extractor;
+  private final ExtractedTextCache textCache;
+  private final LlmRouter router;
+  private final EvaluationBatcher batcher;
+  private final PromptPreprocessor preprocessor;
+  private final UserAccountCache accounts;
+  private final EvaluationAdmission admission;
+  private final EvaluationSearch search;
+
+  public StatsController(EvaluationCache evaluationCache, ResumeTextExtractor extractor, ExtractedTextCache textCache,
+      LlmRouter router, EvaluationBatcher batcher, PromptPreprocessor preprocessor, UserAccountCache accounts,
+      EvaluationAdmission admission, EvaluationSearch search) {
+    this.evaluationCache = evaluationCache;
+    this.extractor = extractor;
+    this.textCache = textCache;
+    this.router = router;
+    this.batcher = batcher;
+    this.preprocessor = preprocessor;
+    this.accounts = accounts;
+    this.admission = admission;
+    this.search = search;
+  }
+
+  //evaluationCache returns the hit and miss counters of the evaluation cache
+  @GetMapping("/api/stats/evaluation-cache")
+  public CacheStats evaluationCache() {
+    return evaluationCache.stats();
+  }
+
+  //userCache returns the hit and miss counters of the user account cache
+  @GetMapping("/api/stats/user-cache")
+  public CacheStats userCache() {
+    return accounts.stats();
+  }
+
+  //extraction returns the per stage timing of resume text extraction
+  @GetMapping("/api/stats/extraction")
+  public ExtractionStats extraction() {
+    return extractor.stats();
+  }
+
+  //textCache returns the hit ratio and bytes saved of the extracted text cache
+  @GetMapping("/api/stats/text-cache")
+  public TextCacheStats textCache() {
+    return textCache.stats();
+  }
+
+  //llm returns the load and latency of every model backend
+  @GetMapping("/api/stats/llm")
+  public List<LlmBackendStats> llm() {
+    return router.stats();
+  }
+
+  //llmBatching returns how many model calls were coalesced into combined prompts
+  @GetMapping("/api/stats/llm-batching")
+  public BatchingStats llmBatching() {
+    return batcher.stats();
+  }
+
+  //prompt returns the estimated tokens the prompt preprocessing kept away from the model
+  @GetMapping("/api/stats/prompt")
+  public PromptStats prompt() {
+    return preprocessor.stats();
+  }
+
+  //admission returns the evaluation slots and queue
+  @GetMapping("/api/stats/admission")
+  public AdmissionStats admission() {
+    return admission.stats();
+  }
+
+  //search returns the size of the evaluation search index
+  @GetMapping("/api/stats/search")
+  public SearchIndexStats search() {
+    return search.stats();
+  }
+}
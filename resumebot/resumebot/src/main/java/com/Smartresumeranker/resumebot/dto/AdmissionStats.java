@@ -0,0 +1,6 @@
+package com.Smartresumeranker.resumebot.dto;
+
+//state of the evaluation admission --> active and maxActive slots, queued and maxQueued evaluations,
+//queuedUsers (users with at least one queued evaluation), admitted and rejected since startup
+public record AdmissionStats(int active, int maxActive, int queued, int maxQueued, long queuedUsers, long admitted,
+    long rejected) {}
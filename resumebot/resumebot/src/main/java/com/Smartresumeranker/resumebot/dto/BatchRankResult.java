@@ -0,0 +1,16 @@
+package com.Smartresumeranker.resumebot.dto;
+
+import java.util.List;
+
+//one ranked resume of a batch --> fileName, evaluationId, matchScore, localScore (model free pre-score),
+//stage ("llm" when the model gave the match score, "local" when the local engine did: screened out before the
+//model, or the model was unavailable or gave no score; the ranking never compares scores of different stages),
+//missingSkills, error (when the resume failed)
+public record BatchRankResult(
+    String fileName,
+    Long evaluationId,
+    Integer matchScore,
+    Integer localScore,
+    String stage,
+    List<String> missingSkills,
+    String error) {}
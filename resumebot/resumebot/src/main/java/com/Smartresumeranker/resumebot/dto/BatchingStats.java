@@ -0,0 +1,6 @@
+package com.Smartresumeranker.resumebot.dto;
+
+//micro-batching of model calls --> batches (combined prompts sent), batchedItems (calls answered by them),
+//singles (calls sent alone because nothing joined them), splitFailures (combined answers that had to be re-asked
+//per resume), avgBatchSize
+public record BatchingStats(long batches, long batchedItems, long singles, long splitFailures, double avgBatchSize) {}
@@ -0,0 +1,4 @@
+package com.Smartresumeranker.resumebot.dto;
+
+//hit and miss counters of an in-process cache --> hits, misses, size, hitRatio
+public record CacheStats(long hits, long misses, long size, double hitRatio) {}
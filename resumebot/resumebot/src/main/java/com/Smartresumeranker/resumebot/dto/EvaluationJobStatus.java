@@ -0,0 +1,6 @@
+package com.Smartresumeranker.resumebot.dto;
+
+import com.Smartresumeranker.resumebot.model.JobStatus;
+
+//state of an asynchronous evaluation --> jobId, status, result (when DONE), error (when FAILED)
+public record EvaluationJobStatus(String jobId, JobStatus status, EvaluationResponse result, String error) {}
@@ -0,0 +1,6 @@
+package com.Smartresumeranker.resumebot.dto;
+
+import java.util.List;
+
+//one page of the evaluation listing --> items (newest first), nextCursor (pass as cursor for the next page, null on the last page)
+public record EvaluationPage(List<EvaluationSummary> items, Long nextCursor) {}
@@ -2,7 +2,7 @@ package com.Smartresumeranker.resumebot.dto;
 
 import java.util.List;
 
-//ai generate response in this variables of data format to shown in web page --> id, missingSkills, suggestions, rewrittenBullets, resumeText, jobDescription
+//ai generate response in this variables of data format to shown in web page --> id, missingSkills, suggestions, rewrittenBullets, resumeText, jobDescription, matchScore
 public record EvaluationResponse(
     // id is the unique identifier for the evaluation
     Long id,
@@ -10,4 +10,8 @@ public record EvaluationResponse(
     List<String> suggestions,
     List<String> rewrittenBullets,
     String resumeText,
-    String jobDescription) {}
\ No newline at end of file
+    String jobDescription,
+    // jobDescriptionId is the registered job description profile, null for a job description sent with the request
+    Long jobDescriptionId,
+    // matchScore is the 0-100 fit of the resume for the job description
+    Integer matchScore) {}
\ No newline at end of file
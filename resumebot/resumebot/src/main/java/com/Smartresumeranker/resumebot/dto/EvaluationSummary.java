@@ -0,0 +1,6 @@
+package com.Smartresumeranker.resumebot.dto;
+
+import java.time.Instant;
+
+//one row of the evaluation listing, without the resume and job description texts --> id, owner, matchScore, createdAt
+public record EvaluationSummary(Long id, String owner, Integer matchScore, Instant createdAt) {}
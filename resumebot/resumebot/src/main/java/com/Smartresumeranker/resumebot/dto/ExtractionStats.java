@@ -0,0 +1,5 @@
+package com.Smartresumeranker.resumebot.dto;
+
+//cumulative timing of resume text extraction --> documents, pages, bytes, average milliseconds per stage
+//readMs is reading the upload, parseMs is loading the pdf, extractMs is the text extraction of the pages
+public record ExtractionStats(long documents, long pages, long bytes, double avgReadMs, double avgParseMs, double avgExtractMs) {}
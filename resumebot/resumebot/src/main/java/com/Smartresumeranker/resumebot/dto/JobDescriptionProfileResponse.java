@@ -0,0 +1,17 @@
+package com.Smartresumeranker.resumebot.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+//a registered job description with its precomputed analysis --> id, title, owner, skills (by weight),
+//requirements (the lines of its requirements sections), promptTokens (size of its prompt section), createdAt
+public record JobDescriptionProfileResponse(
+    // id is what /api/rank and friends take as jobDescriptionId
+    Long id,
+    String title,
+    String owner,
+    String jobDescription,
+    List<String> skills,
+    List<String> requirements,
+    int promptTokens,
+    Instant createdAt) {}
@@ -0,0 +1,4 @@
+package com.Smartresumeranker.resumebot.dto;
+
+//register a job description once --> title (optional), jobDescription
+public record JobDescriptionRequest(String title, String jobDescription) {}
@@ -0,0 +1,6 @@
+package com.Smartresumeranker.resumebot.dto;
+
+//load and latency of one model backend --> name (model@url), inFlight, maxConcurrency, calls, failures,
+//hedges (calls hedged onto this backend), p50Millis and p95Millis of the recent calls
+public record LlmBackendStats(String name, int inFlight, int maxConcurrency, long calls, long failures, long hedges,
+    long p50Millis, long p95Millis) {}
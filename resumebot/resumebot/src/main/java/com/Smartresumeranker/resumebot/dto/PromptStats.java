@@ -0,0 +1,5 @@
+package com.Smartresumeranker.resumebot.dto;
+
+//prompt preprocessing --> texts (resumes and job descriptions reduced), estimated tokens before and after,
+//tokensSaved and savedRatio (share of the tokens that never reached the model)
+public record PromptStats(long texts, long tokensBefore, long tokensAfter, long tokensSaved, double savedRatio) {}
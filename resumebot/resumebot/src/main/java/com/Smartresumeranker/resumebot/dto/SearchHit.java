@@ -0,0 +1,9 @@
+package com.Smartresumeranker.resumebot.dto;
+
+import java.time.Instant;
+import java.util.List;
+
+//one evaluation found by the history search --> evaluationId, owner, matchScore, createdAt and missingSkills of the
+//evaluation, score (BM25 of the query, higher is better, only comparable within one search)
+public record SearchHit(Long evaluationId, String owner, Integer matchScore, Instant createdAt,
+    List<String> missingSkills, double score) {}
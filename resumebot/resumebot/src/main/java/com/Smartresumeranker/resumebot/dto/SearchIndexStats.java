@@ -0,0 +1,5 @@
+package com.Smartresumeranker.resumebot.dto;
+
+//size of the evaluation search index --> documents (evaluations indexed), buffered (not sealed into a segment yet),
+//segments (searched one after the other, the buffer counts as one), terms and postings summed over the segments
+public record SearchIndexStats(long documents, long buffered, int segments, long terms, long postings) {}
@@ -0,0 +1,7 @@
+package com.Smartresumeranker.resumebot.dto;
+
+import java.time.Instant;
+
+//one past resume found by semantic search --> evaluationId (latest evaluation of that resume), owner, matchScore
+//and createdAt of that evaluation, similarity (cosine, -1..1) of the resume to the searched job description
+public record SimilarResume(Long evaluationId, String owner, Integer matchScore, Instant createdAt, double similarity) {}
@@ -0,0 +1,5 @@
+package com.Smartresumeranker.resumebot.dto;
+
+//one missing skill of a skill gap report --> skill (lower case), count (evaluations that missed it, an upper bound),
+//error (count minus error is a lower bound, 0 means exact), share (count / evaluations of the period)
+public record SkillCount(String skill, long count, long error, double share) {}
@@ -0,0 +1,8 @@
+package com.Smartresumeranker.resumebot.dto;
+
+import java.util.List;
+
+//the most often missing skills of one scope --> scope (all, job-description or user), key (job description id or
+//digest, user, empty for all), evaluations counted, allTime top skills, weeks (newest first)
+public record SkillGapReport(String scope, String key, long evaluations, List<SkillCount> allTime,
+    List<SkillGapWeek> weeks) {}
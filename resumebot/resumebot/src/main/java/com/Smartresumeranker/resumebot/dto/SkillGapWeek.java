@@ -0,0 +1,7 @@
+package com.Smartresumeranker.resumebot.dto;
+
+import java.time.LocalDate;
+import java.util.List;
+
+//the skill gaps of one week --> weekStart (Monday, UTC), evaluations of that week, skills most often missing
+public record SkillGapWeek(LocalDate weekStart, long evaluations, List<SkillCount> skills) {}
@@ -0,0 +1,5 @@
+package com.Smartresumeranker.resumebot.dto;
+
+//counters of the extracted text cache --> hits, misses, size (entries in memory), hitRatio,
+//bytesSaved (upload bytes that did not have to be parsed again), diskHits (hits served from the disk store)
+public record TextCacheStats(long hits, long misses, long size, double hitRatio, long bytesSaved, long diskHits) {}
@@ -1,11 +1,16 @@
 package com.Smartresumeranker.resumebot.model;
 
-import jakarta.persistence.ElementCollection;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Entity;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Lob;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
 import java.time.Instant;
 import java.util.List;
 import lombok.Getter;
@@ -13,6 +18,8 @@ import lombok.NoArgsConstructor;
 import lombok.Setter;
 
 @Entity
+// listing pages by id, optionally per owner, so both are covered by an index
+@Table(indexes = {@Index(columnList = "owner, id"), @Index(columnList = "createdAt")})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -21,20 +28,48 @@ public class Evaluation {
   @GeneratedValue(strategy = GenerationType.IDENTITY)
   private Long id;
 
-  @Lob
+  // owner is the authenticated user (JWT subject) who ran the evaluation
+  private String owner;
+
+  // the texts live once in text_blob, the evaluation only points at them by SHA-256
+  @JsonIgnore
+  @Column(length = 64)
+  private String resumeDigest;
+
+  @JsonIgnore
+  @Column(length = 64)
+  private String jobDescriptionDigest;
+
+  // jobDescriptionId is the registered job description profile, null for a job description sent with the request
+  private Long jobDescriptionId;
+
+  // resumeText and jobDescription are filled from text_blob by TextBlobStore, never stored in this table
+  @Transient
   private String resumeText;
 
-  @Lob
+  @Transient
   private String jobDescription;
 
-  @ElementCollection
-  private List<String> missingSkills;
-
-  @ElementCollection
-  private List<String> suggestions;
+  // the three insight lists in one JSON column, a save is a single insert instead of one per list element
+  @JsonIgnore
+  @Lob
+  @Convert(converter = InsightsConverter.class)
+  private Insights insights = Insights.EMPTY;
 
-  @ElementCollection
-  private List<String> rewrittenBullets;
+  // matchScore is the 0-100 fit of the resume for the job description, null when the model gave none
+  private Integer matchScore;
 
   private Instant createdAt = Instant.now();
-}
\ No newline at end of file
+
+  public List<String> getMissingSkills() {
+    return insights.missingSkills();
+  }
+
+  public List<String> getSuggestions() {
+    return insights.suggestions();
+  }
+
+  public List<String> getRewrittenBullets() {
+    return insights.rewrittenBullets();
+  }
+}
@@ -0,0 +1,74 @@
+package com.Smartresumeranker.resumebot.model;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// EvaluationJob is one asynchronous evaluation in the durable job queue, shared by every node on the database
+// a worker claims PENDING jobs and RUNNING jobs whose lease ran out, a claim sets workerId and leaseUntil and
+// the worker extends the lease while it evaluates; finishing only counts when the worker still holds the lease
+// the texts live in text_blob like the evaluation texts, the job only points at them
+@Entity
+@Table(name = "evaluation_job", indexes = {
+    @Index(name = "ux_evaluation_job_public_id", columnList = "publicId", unique = true),
+    @Index(columnList = "status, id"),
+    @Index(columnList = "status, updatedAt")})
+@Getter
+@Setter
+@NoArgsConstructor
+public class EvaluationJob {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  // publicId is the job id the client polls with, the numeric id is never handed out
+  @Column(length = 36, nullable = false)
+  private String publicId;
+
+  private String owner;
+
+  @Column(length = 64)
+  private String resumeDigest;
+
+  @Column(length = 64)
+  private String jobDescriptionDigest;
+
+  // jobDescriptionId is the registered job description profile, null for a job description sent with the request
+  private Long jobDescriptionId;
+
+  @Enumerated(EnumType.STRING)
+  @Column(length = 16, nullable = false)
+  private JobStatus status = JobStatus.PENDING;
+
+  // attempts counts the claims, a job claimed max-attempts times without finishing is given up
+  private int attempts;
+
+  // workerId and leaseUntil are set while a worker holds the job
+  private String workerId;
+
+  private Instant leaseUntil;
+
+  // availableAt delays a retried job, it is not claimed before it
+  private Instant availableAt = Instant.now();
+
+  // evaluationId is the stored evaluation of a DONE job
+  private Long evaluationId;
+
+  @Column(length = 500)
+  private String error;
+
+  private Instant createdAt = Instant.now();
+
+  private Instant updatedAt = Instant.now();
+}
@@ -0,0 +1,18 @@
+package com.Smartresumeranker.resumebot.model;
+
+import java.util.List;
+
+// Insights are the three insight lists of one evaluation, stored together in one column
+public record Insights(List<String> missingSkills, List<String> suggestions, List<String> rewrittenBullets) {
+  public static final Insights EMPTY = new Insights(List.of(), List.of(), List.of());
+
+  public Insights {
+    missingSkills = copy(missingSkills);
+    suggestions = copy(suggestions);
+    rewrittenBullets = copy(rewrittenBullets);
+  }
+
+  private static List<String> copy(List<String> list) {
+    return list == null ? List.of() : list.stream().filter(s -> s != null).toList();
+  }
+}
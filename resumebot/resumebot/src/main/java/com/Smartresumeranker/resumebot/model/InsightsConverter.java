@@ -0,0 +1,34 @@
+package com.Smartresumeranker.resumebot.model;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+// InsightsConverter stores the insight lists as one compact JSON document
+// {"missingSkills":[...],"suggestions":[...],"rewrittenBullets":[...]}
+@Converter
+public class InsightsConverter implements AttributeConverter<Insights, String> {
+  private static final ObjectMapper MAPPER = new ObjectMapper();
+
+  @Override
+  public String convertToDatabaseColumn(Insights insights) {
+    if (insights == null) return null;
+    try {
+      return MAPPER.writeValueAsString(insights);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Cannot serialize insights", e);
+    }
+  }
+
+  @Override
+  public Insights convertToEntityAttribute(String json) {
+    if (json == null || json.isBlank()) return Insights.EMPTY;
+    try {
+      return MAPPER.readValue(json, Insights.class);
+    } catch (JsonProcessingException e) {
+      throw new IllegalStateException("Cannot read stored insights", e);
+    }
+  }
+}
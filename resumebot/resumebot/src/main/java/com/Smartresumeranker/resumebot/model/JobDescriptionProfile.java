@@ -0,0 +1,39 @@
+package com.Smartresumeranker.resumebot.model;
+
+import java.time.Instant;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+// JobDescriptionProfile is a job description registered once and evaluated against many resumes by its id
+// the normalized text lives in text_blob like the evaluation texts, the analysis (skills, requirements,
+// prompt section) is derived from it and cached by JobDescriptionService, it is never stored
+// a profile is never changed after it was registered, a changed job description is a new profile
+@Entity
+@Table(name = "job_description_profile", indexes = @Index(columnList = "owner, id"))
+@Getter
+@Setter
+@NoArgsConstructor
+public class JobDescriptionProfile {
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  // owner is the authenticated user (JWT subject) who registered it
+  private String owner;
+
+  private String title;
+
+  @Column(length = 64, nullable = false)
+  private String textDigest;
+
+  private Instant createdAt = Instant.now();
+}
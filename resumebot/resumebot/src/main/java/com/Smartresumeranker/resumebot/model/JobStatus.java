@@ -0,0 +1,9 @@
+package com.Smartresumeranker.resumebot.model;
+
+// JobStatus is the lifecycle of an asynchronous evaluation job
+public enum JobStatus {
+  PENDING,
+  RUNNING,
+  DONE,
+  FAILED
+}
@@ -0,0 +1,58 @@
+package com.Smartresumeranker.resumebot.model;
+
+import java.time.Instant;
+
+import org.springframework.data.domain.Persistable;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Lob;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Table;
+import jakarta.persistence.Transient;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+// TextBlob is a resume or job description text stored once under its SHA-256
+// evaluations only keep the digest, so a job description used for hundreds of resumes is stored a single time
+@Entity
+@Table(name = "text_blob")
+@Getter
+@NoArgsConstructor
+public class TextBlob implements Persistable<String> {
+  @Id
+  @Column(length = 64)
+  private String digest;
+
+  @Lob
+  private String content;
+
+  private Instant createdAt = Instant.now();
+
+  // fresh tells spring data to insert right away instead of selecting first to decide between insert and merge
+  @Transient
+  private boolean fresh = true;
+
+  public TextBlob(String digest, String content) {
+    this.digest = digest;
+    this.content = content;
+  }
+
+  @Override
+  public String getId() {
+    return digest;
+  }
+
+  @Override
+  public boolean isNew() {
+    return fresh;
+  }
+
+  @PostLoad
+  @PostPersist
+  void markStored() {
+    fresh = false;
+  }
+}
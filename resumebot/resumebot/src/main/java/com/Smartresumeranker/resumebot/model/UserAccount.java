@@ -1,6 +1,7 @@
 package com.Smartresumeranker.resumebot.model;
 
 import java.time.Instant;
+import java.util.Locale;
 import java.util.Set;
 
 import jakarta.persistence.Column;
@@ -10,14 +11,19 @@ import jakarta.persistence.FetchType;
 import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
 
+// email is stored normalized (trimmed, lower case), so a lookup of a normalized email is a plain equality on the
+// unique index, no lower() in the query and no scan
 @Entity
+@Table(indexes = @Index(name = "ux_user_account_email", columnList = "email", unique = true))
 public class UserAccount {
   @Id
   @GeneratedValue(strategy = GenerationType.IDENTITY)
   private Long id;
 
-  @Column(unique = true, nullable = false)
+  @Column(nullable = false)
   private String email;
 
   @Column(nullable = false)
@@ -33,10 +39,15 @@ public class UserAccount {
 
   public Long getId() { return id; }
   public String getEmail() { return email; }
-  public void setEmail(String email) { this.email = email; }
+  public void setEmail(String email) { this.email = normalizeEmail(email); }
   public String getPasswordHash() { return passwordHash; }
   public void setPasswordHash(String passwordHash) { this.passwordHash = passwordHash; }
   public Instant getCreatedAt() { return createdAt; }
   public Set<String> getRoles() { return roles; }
   public void setRoles(Set<String> roles) { this.roles = roles; }
+
+  // normalizeEmail is the stored and looked up form of an email, Locale.ROOT so "I" is "i" in every locale
+  public static String normalizeEmail(String email) {
+    return email == null ? null : email.trim().toLowerCase(Locale.ROOT);
+  }
 }
\ No newline at end of file
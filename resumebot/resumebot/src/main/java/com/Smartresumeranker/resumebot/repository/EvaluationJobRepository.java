@@ -0,0 +1,83 @@
+package com.Smartresumeranker.resumebot.repository;
+
+import com.Smartresumeranker.resumebot.model.EvaluationJob;
+import com.Smartresumeranker.resumebot.model.JobStatus;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface EvaluationJobRepository extends JpaRepository<EvaluationJob, Long> {
+  Optional<EvaluationJob> findByPublicId(String publicId);
+
+  long countByStatus(JobStatus status);
+
+  // lockClaimable locks the oldest jobs a worker may take: pending and due, or running with an expired lease
+  // rows locked by another claim are skipped instead of waited for, so concurrent workers never block each
+  // other and never get the same job; native because Hibernate's H2 dialect renders no SKIP LOCKED, the
+  // statement itself runs on H2, PostgreSQL and MySQL 8
+  @Query(value = """
+      select id from evaluation_job
+      where (status = 'PENDING' and available_at <= :now)
+         or (status = 'RUNNING' and lease_until < :now)
+      order by id
+      limit :limit
+      for update skip locked""", nativeQuery = true)
+  List<Long> lockClaimable(@Param("now") Instant now, @Param("limit") int limit);
+
+  // extendLeases is the heartbeat, only jobs the worker still holds are extended
+  @Modifying
+  @Query("""
+      update EvaluationJob j set j.leaseUntil = :until, j.updatedAt = :now
+      where j.id in :ids and j.workerId = :worker and j.status = com.Smartresumeranker.resumebot.model.JobStatus.RUNNING""")
+  int extendLeases(@Param("worker") String worker, @Param("ids") Collection<Long> ids, @Param("until") Instant until,
+      @Param("now") Instant now);
+
+  // findHeld returns the jobs of ids the worker still holds
+  @Query("""
+      select j.id from EvaluationJob j
+      where j.id in :ids and j.workerId = :worker and j.status = com.Smartresumeranker.resumebot.model.JobStatus.RUNNING""")
+  List<Long> findHeld(@Param("worker") String worker, @Param("ids") Collection<Long> ids);
+
+  // finish ends a job the worker still holds, 0 when its lease was lost and another worker took it over
+  @Modifying
+  @Query("""
+      update EvaluationJob j
+      set j.status = :status, j.evaluationId = :evaluationId, j.error = :error, j.leaseUntil = null, j.updatedAt = :now
+      where j.id = :id and j.workerId = :worker and j.status = com.Smartresumeranker.resumebot.model.JobStatus.RUNNING""")
+  int finish(@Param("worker") String worker, @Param("id") Long id, @Param("status") JobStatus status,
+      @Param("evaluationId") Long evaluationId, @Param("error") String error, @Param("now") Instant now);
+
+  // requeue gives jobs the worker holds back to the queue, available again at availableAt
+  @Modifying
+  @Query("""
+      update EvaluationJob j
+      set j.status = com.Smartresumeranker.resumebot.model.JobStatus.PENDING, j.workerId = null, j.leaseUntil = null,
+          j.availableAt = :availableAt, j.error = :error, j.updatedAt = :now
+      where j.id in :ids and j.workerId = :worker and j.status = com.Smartresumeranker.resumebot.model.JobStatus.RUNNING""")
+  int requeue(@Param("worker") String worker, @Param("ids") Collection<Long> ids, @Param("availableAt") Instant availableAt,
+      @Param("error") String error, @Param("now") Instant now);
+
+  // giveBack returns jobs the worker holds but never started to the queue, available again at availableAt; the
+  // claim counted an attempt for them, it is taken back
+  @Modifying
+  @Query("""
+      update EvaluationJob j
+      set j.status = com.Smartresumeranker.resumebot.model.JobStatus.PENDING, j.workerId = null, j.leaseUntil = null,
+          j.availableAt = :availableAt, j.attempts = j.attempts - 1, j.updatedAt = :now
+      where j.id in :ids and j.workerId = :worker and j.status = com.Smartresumeranker.resumebot.model.JobStatus.RUNNING""")
+  int giveBack(@Param("worker") String worker, @Param("ids") Collection<Long> ids,
+      @Param("availableAt") Instant availableAt, @Param("now") Instant now);
+
+  // deleteFinishedBefore drops done and failed jobs nobody polls any more
+  @Modifying
+  @Query("""
+      delete from EvaluationJob j
+      where j.status in (com.Smartresumeranker.resumebot.model.JobStatus.DONE, com.Smartresumeranker.resumebot.model.JobStatus.FAILED)
+        and j.updatedAt < :before""")
+  int deleteFinishedBefore(@Param("before") Instant before);
+}
@@ -1,6 +1,45 @@
 package com.Smartresumeranker.resumebot.repository;
 
+import com.Smartresumeranker.resumebot.dto.EvaluationSummary;
 import com.Smartresumeranker.resumebot.model.Evaluation;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
-public interface EvaluationRepository extends JpaRepository<Evaluation, Long> {}
\ No newline at end of file
+public interface EvaluationRepository extends JpaRepository<Evaluation, Long> {
+  // findSummaries is keyset pagination over the evaluations, newest first
+  // only the summary columns are selected, the insights column and the text blobs are never loaded
+  // every filter is optional: cursor (ids below it), owner, createdAt in [from, to)
+  @Query("""
+      select new com.Smartresumeranker.resumebot.dto.EvaluationSummary(e.id, e.owner, e.matchScore, e.createdAt)
+      from Evaluation e
+      where (:cursor is null or e.id < :cursor)
+        and (:owner is null or e.owner = :owner)
+        and (:from is null or e.createdAt >= :from)
+        and (:to is null or e.createdAt < :to)
+      order by e.id desc""")
+  List<EvaluationSummary> findSummaries(@Param("cursor") Long cursor, @Param("owner") String owner,
+      @Param("from") Instant from, @Param("to") Instant to, Limit limit);
+
+  // findSummariesByIds is the summary projection of the given evaluations, in no particular order
+  @Query("""
+      select new com.Smartresumeranker.resumebot.dto.EvaluationSummary(e.id, e.owner, e.matchScore, e.createdAt)
+      from Evaluation e
+      where e.id in :ids""")
+  List<EvaluationSummary> findSummariesByIds(@Param("ids") Collection<Long> ids);
+
+  // findLatestIdsByResume is the newest evaluation of every resume of an owner, as [resumeDigest, id] rows
+  @Query("""
+      select e.resumeDigest, max(e.id)
+      from Evaluation e
+      where e.owner = :owner and e.resumeDigest is not null
+      group by e.resumeDigest""")
+  List<Object[]> findLatestIdsByResume(@Param("owner") String owner);
+
+  // findByIdGreaterThanOrderByIdAsc walks the whole history in id order, one chunk at a time, for backfills
+  List<Evaluation> findByIdGreaterThanOrderByIdAsc(Long id, Limit limit);
+}
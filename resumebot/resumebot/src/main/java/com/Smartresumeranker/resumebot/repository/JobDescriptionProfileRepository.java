@@ -0,0 +1,11 @@
+package com.Smartresumeranker.resumebot.repository;
+
+import com.Smartresumeranker.resumebot.model.JobDescriptionProfile;
+import java.util.List;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface JobDescriptionProfileRepository extends JpaRepository<JobDescriptionProfile, Long> {
+  // findByOwnerOrderByIdDesc lists the profiles of one user, newest first
+  List<JobDescriptionProfile> findByOwnerOrderByIdDesc(String owner, Limit limit);
+}
@@ -0,0 +1,7 @@
+package com.Smartresumeranker.resumebot.repository;
+
+import com.Smartresumeranker.resumebot.model.TextBlob;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface TextBlobRepository extends JpaRepository<TextBlob, String> {
+}
@@ -0,0 +1,72 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// AuthMetrics records the cost of the authentication path, exported on /actuator/prometheus
+//   resumebot.auth.duration{operation,outcome}  timer of sign in and sign up requests: success, invalid, limited, busy
+//   resumebot.auth.jwt.decode{result}           timer of bearer token checks: hit (cache), miss (verified), invalid
+//   resumebot.auth.hash{operation}              timer of the BCrypt work itself: encode, matches
+//   resumebot.auth.hash.wait                    timer of the time a BCrypt task waited for a hashing thread
+//   resumebot.auth.rate.limited{scope}          counter of requests refused by the account or ip rate limit
+//   resumebot.auth.rehash                       counter of password hashes upgraded to the configured strength
+@Component
+public class AuthMetrics {
+  private final MeterRegistry registry;
+  private final Timer hashWait;
+  private final Counter rehash;
+
+  public AuthMetrics(MeterRegistry registry) {
+    this.registry = registry;
+    hashWait = Timer.builder("resumebot.auth.hash.wait")
+        .description("Time a password hash waited for a hashing thread").publishPercentileHistogram().register(registry);
+    rehash = Counter.builder("resumebot.auth.rehash")
+        .description("Password hashes upgraded to the configured BCrypt strength").register(registry);
+  }
+
+  // request records one sign in or sign up from start to answer
+  public void request(String operation, String outcome, long nanos) {
+    Timer.builder("resumebot.auth.duration")
+        .description("Sign in and sign up requests")
+        .tags("operation", operation, "outcome", outcome)
+        .publishPercentileHistogram()
+        .register(registry)
+        .record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  // jwt records one bearer token check
+  public void jwt(String result, long nanos) {
+    Timer.builder("resumebot.auth.jwt.decode")
+        .description("Bearer token checks")
+        .tag("result", result)
+        .publishPercentileHistogram()
+        .register(registry)
+        .record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  public void hash(String operation, long nanos) {
+    Timer.builder("resumebot.auth.hash")
+        .description("BCrypt work")
+        .tag("operation", operation)
+        .publishPercentileHistogram()
+        .register(registry)
+        .record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  public void hashWait(long nanos) {
+    hashWait.record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  public void rateLimited(String scope) {
+    registry.counter("resumebot.auth.rate.limited", "scope", scope).increment();
+  }
+
+  public void rehashed() {
+    rehash.increment();
+  }
+}
@@ -1,74 +1,153 @@
 package com.Smartresumeranker.resumebot.service;
 
 import com.Smartresumeranker.resumebot.dto.*;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.Optional;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.security.oauth2.jwt.JwtClaimsSet;
 import org.springframework.security.oauth2.jwt.JwtEncoder;
 import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
 import org.springframework.security.oauth2.jwt.JwsHeader;
 import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.server.ResponseStatusException;
 
+// AuthService signs users up and in, the BCrypt work runs on the PasswordHasher pool and every attempt first
+// passes the rate limits: per client ip for sign up and sign in, per account for sign in
 @Service
 public class AuthService {
-  // repo is the user account repository
-  private final com.Smartresumeranker.resumebot.repository.UserAccountRepository repo;
-  // encoder is the password encoder
-  private final PasswordEncoder encoder;
+  // accounts is the read-through cache in front of the user account repository
+  private final UserAccountCache accounts;
+  // hasher hashes and checks passwords off the request thread
+  private final PasswordHasher hasher;
   // jwtEncoder is the JWT encoder
   private final JwtEncoder jwtEncoder;
+  // accountLimit and ipLimit bound the attempts per account and per client ip
+  private final TokenBucketLimiter accountLimit;
+  private final TokenBucketLimiter ipLimit;
+  private final AuthMetrics metrics;
 
-  // constructor injects the user account repository, password encoder, and JWT encoder
-  public AuthService(com.Smartresumeranker.resumebot.repository.UserAccountRepository repo, PasswordEncoder encoder, JwtEncoder jwtEncoder) {
-    this.repo = repo;
-    this.encoder = encoder;
+  // constructor injects the user account repository, password hasher, and JWT encoder
+  public AuthService(UserAccountCache accounts, PasswordHasher hasher,
+      JwtEncoder jwtEncoder, AuthMetrics metrics,
+      @Value("${resumebot.auth.rate.account.capacity:10}") int accountCapacity,
+      @Value("${resumebot.auth.rate.account.period:PT1M}") Duration accountPeriod,
+      @Value("${resumebot.auth.rate.ip.capacity:300}") int ipCapacity,
+      @Value("${resumebot.auth.rate.ip.period:PT1M}") Duration ipPeriod,
+      @Value("${resumebot.auth.rate.max-keys:100000}") int maxKeys) {
+    this.accounts = accounts;
+    this.hasher = hasher;
     this.jwtEncoder = jwtEncoder;
+    this.metrics = metrics;
+    this.accountLimit = new TokenBucketLimiter(accountCapacity, accountPeriod, maxKeys);
+    this.ipLimit = new TokenBucketLimiter(ipCapacity, ipPeriod, maxKeys);
   }
 
-  // signUp signs up a new user account
-  @Transactional
-  public AuthResponse signUp(SignUpRequest req) {
+  // signUp signs up a new user account, clientIp is the address the request came from
+  // there is no transaction around it: the hash takes long and must not hold a database connection, the unique
+  // email column still rejects a concurrent second sign up with the same email
+  public AuthResponse signUp(SignUpRequest req, String clientIp) {
+    long start = System.nanoTime();
+    String outcome = "invalid";
+    try {
+      AuthResponse response = register(req, clientIp);
+      outcome = "success";
+      return response;
+    } catch (TooManyRequestsException e) {
+      outcome = "limited";
+      throw e;
+    } catch (ResponseStatusException e) {
+      if (e.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE) outcome = "busy";
+      throw e;
+    } finally {
+      metrics.request("signup", outcome, System.nanoTime() - start);
+    }
+  }
+
+  private AuthResponse register(SignUpRequest req, String clientIp) {
     // validate the signup request
     if (req.email() == null || req.password() == null || !req.password().equals(req.confirmPassword())) {
       // if the email or password is null, or the password and confirm password do not match, throw an exception
-      throw new IllegalArgumentException("Invalid signup data");
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid signup data");
     }
+    limit(ipLimit, "ip", clientIp);
     // check if the email is already registered
-    Optional<com.Smartresumeranker.resumebot.model.UserAccount> existing = repo.findByEmail(req.email().toLowerCase());
+    Optional<UserAccountCache.Account> existing = accounts.find(req.email());
     // if the email is already registered, throw an exception
-    if (existing.isPresent()) throw new IllegalStateException("Email already registered");
+    if (existing.isPresent()) throw new ResponseStatusException(HttpStatus.CONFLICT, "Email already registered");
     // create a new user account
     com.Smartresumeranker.resumebot.model.UserAccount ua = new com.Smartresumeranker.resumebot.model.UserAccount();
     // set the email and password hash of the user account
-    ua.setEmail(req.email().toLowerCase());
-    ua.setPasswordHash(encoder.encode(req.password()));
-    // save the user account to the repository
-    repo.save(ua);
+    ua.setEmail(req.email());
+    ua.setPasswordHash(hasher.encode(req.password()));
+    // save the user account to the repository, the cache keeps the stored account
+    UserAccountCache.Account saved = accounts.save(ua);
     // generate a JWT token for the user account
-    return new AuthResponse(generateToken(ua));
+    return new AuthResponse(generateToken(saved));
+
+  }
 
+  // signIn signs in a user account, clientIp is the address the request came from
+  public AuthResponse signIn(SignInRequest req, String clientIp) {
+    long start = System.nanoTime();
+    String outcome = "invalid";
+    try {
+      AuthResponse response = authenticate(req, clientIp);
+      outcome = "success";
+      return response;
+    } catch (TooManyRequestsException e) {
+      outcome = "limited";
+      throw e;
+    } catch (ResponseStatusException e) {
+      if (e.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE) outcome = "busy";
+      throw e;
+    } finally {
+      metrics.request("signin", outcome, System.nanoTime() - start);
+    }
   }
 
-  // signIn signs in a user account
-  public AuthResponse signIn(SignInRequest req) {
+  private AuthResponse authenticate(SignInRequest req, String clientIp) {
+    if (req.email() == null || req.password() == null) throw invalidCredentials();
+    String email = com.Smartresumeranker.resumebot.model.UserAccount.normalizeEmail(req.email());
+    // the limits are checked before the database and the hash, a refused attempt costs nothing
+    limit(ipLimit, "ip", clientIp);
+    limit(accountLimit, "account", email);
     // find the user account by email, or throw an exception if not found
-    com.Smartresumeranker.resumebot.model.UserAccount ua = repo.findByEmail(req.email().toLowerCase()).orElseThrow(() -> new IllegalArgumentException("Invalid credentials"));
+    UserAccountCache.Account ua = accounts.find(email).orElseThrow(AuthService::invalidCredentials);
     // check if the password matches the password hash of the user account, or throw an exception if not
-    if (!encoder.matches(req.password(), ua.getPasswordHash())) throw new IllegalArgumentException("Invalid credentials");
+    if (!hasher.matches(req.password(), ua.passwordHash())) throw invalidCredentials();
+    // a hash made with a lower strength than configured is replaced now that the password is known
+    if (hasher.needsRehash(ua.passwordHash())) {
+      String rehashed = hasher.encode(req.password());
+      ua = accounts.update(ua.id(), account -> account.setPasswordHash(rehashed));
+      metrics.rehashed();
+    }
     return new AuthResponse(generateToken(ua));
   }
 
+  private static ResponseStatusException invalidCredentials() {
+    return new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Invalid credentials");
+  }
+
+  // limit takes a token of the key's bucket or refuses the request with 429 and the time until the next token
+  private void limit(TokenBucketLimiter limiter, String scope, String key) {
+    if (key == null) return;
+    long wait = limiter.tryAcquire(key);
+    if (wait == 0) return;
+    metrics.rateLimited(scope);
+    throw new TooManyRequestsException("Too many sign-in attempts, try again later", Duration.ofNanos(wait));
+  }
+
   // generateToken generates a JWT token for a user account
-  private String generateToken(com.Smartresumeranker.resumebot.model.UserAccount ua) {
+  private String generateToken(UserAccountCache.Account ua) {
     // create a JWT claims set with the user account email, issued at time, expiration time, and roles
     JwtClaimsSet claims = JwtClaimsSet.builder()
-        .subject(ua.getEmail())
+        .subject(ua.email())
         .issuedAt(Instant.now())
         .expiresAt(Instant.now().plusSeconds(60L * 60L * 8L))
-        .claim("roles", ua.getRoles())
+        .claim("roles", ua.roles())
         .build();
     // create a JWT header with the HS256 algorithm
     JwsHeader header = JwsHeader.with(MacAlgorithm.HS256).build();
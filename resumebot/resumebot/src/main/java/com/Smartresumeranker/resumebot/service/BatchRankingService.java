@@ -0,0 +1,283 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.Smartresumeranker.resumebot.dto.BatchRankResult;
+import com.Smartresumeranker.resumebot.dto.EvaluationResponse;
+
+// BatchRankingService ranks many resumes against one job description
+// the job description is prepared once, resumes are extracted and pre-scored in parallel and the model calls
+// run at the concurrency of the batchLlmExecutor, every result is streamed as soon as it is ready
+// the executor is shared by all batches: a batch keeps its model calls in a Lane of its own and hands the executor
+// at most concurrency of them at a time, so the executor queue holds a few calls of every batch and the batches
+// take turns instead of the first one filling the queue; the executor never runs a call on the submitting thread
+@Service
+public class BatchRankingService {
+  // Upload is one resume file of a batch, read into memory while the request is still open
+  public record Upload(String fileName, byte[] bytes) {}
+
+  // RANKING puts the resumes the model scored first, then the ones the local engine scored, failed ones last,
+  // and orders by score within each tier; model and local scores are on different scales and never compared
+  private static final Comparator<BatchRankResult> RANKING = Comparator
+      .comparingInt(BatchRankingService::tier)
+      .thenComparing(BatchRankResult::matchScore, Comparator.nullsLast(Comparator.reverseOrder()))
+      .thenComparing(BatchRankResult::fileName);
+
+  private final EvaluationService evaluationService;
+  private final ResumeTextExtractor extractor;
+  private final ThreadPoolTaskExecutor extractExecutor;
+  private final ThreadPoolTaskExecutor llmExecutor;
+  private final int maxResumes;
+  // maxBytes caps the resume bytes one batch holds in memory, zip entries count with their expanded size
+  private final long maxBytes;
+
+  public BatchRankingService(EvaluationService evaluationService, ResumeTextExtractor extractor,
+      @Qualifier("batchExtractExecutor") ThreadPoolTaskExecutor extractExecutor,
+      @Qualifier("batchLlmExecutor") ThreadPoolTaskExecutor llmExecutor,
+      @Value("${resumebot.batch.max-resumes:2000}") int maxResumes,
+      @Value("${resumebot.batch.max-bytes:268435456}") long maxBytes) {
+    this.evaluationService = evaluationService;
+    this.extractor = extractor;
+    this.extractExecutor = extractExecutor;
+    this.llmExecutor = llmExecutor;
+    this.maxResumes = maxResumes;
+    this.maxBytes = maxBytes;
+  }
+
+  // collect reads the uploaded files, every .zip is expanded into its .pdf and .txt entries
+  // a batch over max-resumes resumes or max-bytes bytes is refused with 413
+  public List<Upload> collect(List<MultipartFile> files) {
+    List<Upload> uploads = new ArrayList<>();
+    long held = 0;
+    try {
+      for (MultipartFile file : files) {
+        if (file == null || file.isEmpty()) continue;
+        String name = file.getOriginalFilename() == null ? "resume" : file.getOriginalFilename();
+        if (name.toLowerCase().endsWith(".zip")) {
+          try (ZipInputStream zip = new ZipInputStream(file.getInputStream())) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+              String entryName = entry.getName();
+              String lower = entryName.toLowerCase();
+              if (entry.isDirectory() || !(lower.endsWith(".pdf") || lower.endsWith(".txt"))) continue;
+              held = add(uploads, new Upload(entryName, extractor.readLimited(zip, entryName)), held);
+            }
+          }
+        } else {
+          held = add(uploads, new Upload(name, extractor.readLimited(file.getInputStream(), name)), held);
+        }
+      }
+    } catch (IOException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cannot read uploaded resumes", e);
+    }
+    if (uploads.isEmpty()) throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No resumes uploaded");
+    return uploads;
+  }
+
+  // rank evaluates every upload against the job description and streams the results to the emitter:
+  // one result event per resume in completion order, then a ranking event with all results sorted by score
+  // every resume is pre-scored by the local engine first, with screening only the best ones reach the model
+  // the job description side of the prompt and its skill analysis are prepared once for the whole batch
+  public void rank(PreparedJob job, List<Upload> uploads, Screening screening, String owner, SseEmitter emitter) {
+    Lane lane = new Lane(concurrency());
+    List<CompletableFuture<Scored>> scored = new ArrayList<>(uploads.size());
+    for (Upload upload : uploads) {
+      scored.add(CompletableFuture.supplyAsync(() -> score(upload, job), extractExecutor));
+    }
+    if (!screening.screens()) {
+      //no screening, every resume goes to the model as soon as its text is ready
+      List<CompletableFuture<BatchRankResult>> results = new ArrayList<>(scored.size());
+      for (CompletableFuture<Scored> f : scored) {
+        results.add(f.thenCompose(sc -> lane.submit(sc, () -> evaluate(sc, job, true, owner)))
+            .whenComplete((r, e) -> send(emitter, "result", r)));
+      }
+      finish(results, emitter);
+      return;
+    }
+    //screening needs every local score before it can pick the best ones
+    CompletableFuture.allOf(scored.toArray(CompletableFuture[]::new)).whenComplete((v, e) -> {
+      List<Scored> all = new ArrayList<>(scored.size());
+      scored.forEach(f -> all.add(f.join()));
+      all.sort(Comparator.comparingInt(Scored::localScore).reversed());
+      List<CompletableFuture<BatchRankResult>> results = new ArrayList<>(all.size());
+      int sent = 0;
+      for (Scored sc : all) {
+        boolean toModel = sc.error() == null && screening.passes(sc.localScore(), sent);
+        if (toModel) sent++;
+        CompletableFuture<BatchRankResult> result = toModel
+            ? lane.submit(sc, () -> evaluate(sc, job, true, owner))
+            : CompletableFuture.supplyAsync(() -> evaluate(sc, job, false, owner), extractExecutor);
+        results.add(result.whenComplete((r, ex) -> send(emitter, "result", r)));
+      }
+      finish(results, emitter);
+    });
+  }
+
+  // Screening decides which resumes of a batch are worth a model call
+  // fast skips the model for every resume, llmTopN keeps the N best local scores, minLocalScore drops weak resumes
+  public record Screening(boolean fast, Integer llmTopN, int minLocalScore) {
+    boolean screens() {
+      return fast || llmTopN != null || minLocalScore > 0;
+    }
+
+    boolean passes(int localScore, int alreadySent) {
+      return !fast && localScore >= minLocalScore && (llmTopN == null || alreadySent < llmTopN);
+    }
+  }
+
+  // Scored is an extracted resume with its local pre-score, or the extraction error
+  private record Scored(Upload upload, String resume, LocalScoringEngine.Result local, String error) {
+    int localScore() {
+      return local == null ? -1 : local.score();
+    }
+  }
+
+  private Scored score(Upload upload, PreparedJob job) {
+    try {
+      String resume = extractor.extract(upload.fileName(), upload.bytes());
+      return new Scored(upload, resume, evaluationService.preScore(resume, job), null);
+    } catch (RuntimeException e) {
+      return new Scored(upload, null, null, rootMessage(e));
+    }
+  }
+
+  //evaluate stores the evaluation of one resume, through the model or with the local engine only
+  private BatchRankResult evaluate(Scored sc, PreparedJob job, boolean model, String owner) {
+    String name = sc.upload().fileName();
+    if (sc.error() != null) return new BatchRankResult(name, null, null, null, null, List.of(), sc.error());
+    try {
+      //a model that was unavailable or gave no score leaves the local score, that resume ranks with the local tier
+      EvaluationService.Rated rated = model
+          ? evaluationService.evaluateRated(sc.resume(), job, owner)
+          : new EvaluationService.Rated(evaluationService.evaluateLocal(sc.resume(), job, owner), false);
+      EvaluationResponse r = rated.response();
+      return new BatchRankResult(name, r.id(), r.matchScore(), sc.localScore(), rated.modelScore() ? "llm" : "local",
+          r.missingSkills(), null);
+    } catch (RuntimeException e) {
+      return new BatchRankResult(name, null, null, sc.localScore(), null, List.of(), rootMessage(e));
+    }
+  }
+
+  //Lane is the model call queue of one batch, at most window calls are on the executor (queued or running)
+  //a call the executor rejects (its queue is full of other batches' calls) fails with its own result, it is not
+  //run on the calling thread
+  private final class Lane {
+    private record Call(Scored scored, Supplier<BatchRankResult> work, CompletableFuture<BatchRankResult> result) {}
+
+    private final int window;
+    private final Queue<Call> waiting = new ArrayDeque<>();
+    private int inFlight;
+
+    Lane(int window) {
+      this.window = Math.max(1, window);
+    }
+
+    CompletableFuture<BatchRankResult> submit(Scored scored, Supplier<BatchRankResult> work) {
+      CompletableFuture<BatchRankResult> result = new CompletableFuture<>();
+      synchronized (this) {
+        waiting.add(new Call(scored, work, result));
+      }
+      drain();
+      return result;
+    }
+
+    private void drain() {
+      while (true) {
+        Call next;
+        synchronized (this) {
+          if (inFlight >= window || waiting.isEmpty()) return;
+          next = waiting.poll();
+          inFlight++;
+        }
+        try {
+          llmExecutor.execute(() -> run(next));
+        } catch (TaskRejectedException e) {
+          synchronized (this) {
+            inFlight--;
+          }
+          next.result().complete(new BatchRankResult(next.scored().upload().fileName(), null, null,
+              next.scored().localScore(), null, List.of(), "Model calls are saturated, try again later"));
+        }
+      }
+    }
+
+    private void run(Call call) {
+      try {
+        call.result().complete(call.work().get());
+      } catch (RuntimeException e) {
+        call.result().completeExceptionally(e);
+      } finally {
+        synchronized (this) {
+          inFlight--;
+        }
+        drain();
+      }
+    }
+  }
+
+  private static int tier(BatchRankResult r) {
+    if ("llm".equals(r.stage())) return 0;
+    return "local".equals(r.stage()) ? 1 : 2;
+  }
+
+  // concurrency is the number of model calls a batch runs at once
+  public int concurrency() {
+    return llmExecutor.getMaxPoolSize();
+  }
+
+  //finish sends the sorted ranking once every result is in and closes the stream
+  private void finish(List<CompletableFuture<BatchRankResult>> results, SseEmitter emitter) {
+    CompletableFuture.allOf(results.toArray(CompletableFuture[]::new)).whenComplete((v, e) -> {
+      List<BatchRankResult> ranking = new ArrayList<>(results.size());
+      results.forEach(f -> ranking.add(f.join()));
+      ranking.sort(RANKING);
+      send(emitter, "ranking", ranking);
+      emitter.complete();
+    });
+  }
+
+  private void send(SseEmitter emitter, String name, Object data) {
+    try {
+      emitter.send(SseEmitter.event().name(name).data(data));
+    } catch (IOException | IllegalStateException e) {
+      //the client went away, the evaluations are still stored
+    }
+  }
+
+  //add returns the bytes the batch holds with the new upload
+  private long add(List<Upload> uploads, Upload upload, long held) {
+    if (uploads.size() >= maxResumes) {
+      throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "A batch holds at most " + maxResumes + " resumes");
+    }
+    long total = held + upload.bytes().length;
+    if (total > maxBytes) {
+      throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, "A batch holds at most " + maxBytes + " bytes");
+    }
+    uploads.add(upload);
+    return total;
+  }
+
+  private static String rootMessage(Throwable e) {
+    while (e.getCause() != null) e = e.getCause();
+    return String.valueOf(e.getMessage());
+  }
+}
@@ -0,0 +1,301 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.Smartresumeranker.resumebot.dto.AdmissionStats;
+
+// EvaluationAdmission decides when an evaluation of a user may start, the user is the JWT subject
+// 1. every user has a token bucket (resumebot.admission.rate.*), an empty bucket is answered with 429 at once
+// 2. at most max-active evaluations run at the same time, the others wait in one bounded queue
+// 3. the queue is served by weighted fair queuing, not in arrival order: every evaluation gets a finish tag,
+//    max(virtual time, finish tag of the previous evaluation of the same user) + cost / weight, and the
+//    smallest waiting tag starts next; evaluations that start at once are charged too, so a user who holds
+//    the slots already or queued fifty evaluations waits behind that while the single evaluation of another
+//    user starts with the next free slot
+//    a batch costs the resumes it sends to the model and holds as many slots as it runs model calls at once
+// 4. a full queue is answered with 429 and a Retry-After estimated from the recent evaluation times,
+//    a wait longer than max-wait with 503
+// a slot is held from admit until the ticket is closed, for streams and batches until the emitter completes
+// the lock is a ReentrantLock with a condition per waiter, waiting does not pin a virtual thread and a
+// released slot wakes exactly the evaluation that gets it
+@Component
+public class EvaluationAdmission {
+  // ANONYMOUS is the user key of calls without a principal
+  private static final String ANONYMOUS = "anonymous";
+
+  // Ticket is an admitted evaluation, closing it frees its slot, closing it again does nothing
+  public final class Ticket implements AutoCloseable {
+    private final AtomicBoolean closed = new AtomicBoolean();
+    private final long admittedAt = System.nanoTime();
+    private final int slots;
+
+    private Ticket(int slots) {
+      this.slots = slots;
+    }
+
+    @Override
+    public void close() {
+      if (slots > 0 && closed.compareAndSet(false, true)) release(System.nanoTime() - admittedAt, slots);
+    }
+  }
+
+  private static final class Waiter {
+    final String user;
+    final double finish;
+    final int slots;
+    final long seq;
+    final Condition admitted;
+    boolean done;
+
+    Waiter(String user, double finish, int slots, long seq, Condition admitted) {
+      this.user = user;
+      this.finish = finish;
+      this.slots = slots;
+      this.seq = seq;
+      this.admitted = admitted;
+    }
+  }
+
+  // Flow is the fair queuing state of one user, dropped when the user has nothing queued and is not ahead
+  private static final class Flow {
+    double lastFinish;
+    int waiting;
+  }
+
+  private final boolean enabled;
+  private final int maxActive;
+  private final int maxQueued;
+  private final Duration maxWait;
+  private final int rateCapacity;
+  private final TokenBucketLimiter rate;
+  private final Map<String, Double> weights;
+  private final EvaluationMetrics metrics;
+  private final ReentrantLock lock = new ReentrantLock();
+  // waiting evaluations by finish tag, ties in arrival order; guarded by lock
+  private final PriorityQueue<Waiter> queue = new PriorityQueue<>(
+      Comparator.<Waiter>comparingDouble(w -> w.finish).thenComparingLong(w -> w.seq));
+  // guarded by lock
+  private final Map<String, Flow> flows = new HashMap<>();
+  private int active;
+  private double virtualTime;
+  private long seq;
+  // serviceNanos is the moving average of the time an evaluation holds its slot, for the Retry-After estimate
+  private double serviceNanos;
+  private final AtomicLong admitted = new AtomicLong();
+  private final AtomicLong rejected = new AtomicLong();
+
+  public EvaluationAdmission(
+      @Value("${resumebot.admission.enabled:true}") boolean enabled,
+      @Value("${resumebot.admission.max-active:4}") int maxActive,
+      @Value("${resumebot.admission.max-queued:100}") int maxQueued,
+      @Value("${resumebot.admission.max-wait:PT2M}") Duration maxWait,
+      @Value("${resumebot.admission.rate.capacity:30}") int rateCapacity,
+      @Value("${resumebot.admission.rate.period:PT1M}") Duration ratePeriod,
+      @Value("${resumebot.admission.weights:}") String weights,
+      EvaluationMetrics metrics) {
+    if (maxActive < 1) throw new IllegalArgumentException("resumebot.admission.max-active must be at least 1");
+    this.enabled = enabled;
+    this.maxActive = maxActive;
+    this.maxQueued = Math.max(0, maxQueued);
+    this.maxWait = maxWait;
+    this.rateCapacity = rateCapacity;
+    this.rate = new TokenBucketLimiter(rateCapacity, ratePeriod, 10_000);
+    this.weights = parseWeights(weights);
+    this.metrics = metrics;
+    this.serviceNanos = Duration.ofSeconds(10).toNanos();
+  }
+
+  // admit takes cost tokens from the bucket of the user and waits for a slot, close the ticket when done
+  public Ticket admit(String user, double cost) {
+    limit(user, cost);
+    return enter(user, cost);
+  }
+
+  // limit only takes the tokens, for work that does not compete for the model (local scoring) or that
+  // enters the queue later (background jobs)
+  public void limit(String user, double cost) {
+    if (!enabled) return;
+    long wait = rate.tryAcquire(key(user), Math.min(cost, rateCapacity));
+    if (wait > 0) {
+      reject("rate");
+      throw new TooManyRequestsException("Too many evaluations, slow down", Duration.ofNanos(wait));
+    }
+  }
+
+  // enter waits for a slot without touching the bucket
+  public Ticket enter(String user, double cost) {
+    return enter(user, cost, 1);
+  }
+
+  // enter waits for slots slots, for work that runs several model calls at once (batches)
+  public Ticket enter(String user, double cost, int slots) {
+    if (!enabled) return new Ticket(0);
+    String key = key(user);
+    int needed = Math.max(1, Math.min(slots, maxActive));
+    long start = System.nanoTime();
+    lock.lock();
+    try {
+      if (active + needed <= maxActive && queue.isEmpty()) {
+        //start time fair queuing: the virtual time is the start tag of the latest evaluation that started
+        virtualTime = Math.max(virtualTime, charge(key, cost) - cost / weight(key));
+        active += needed;
+        admitted.incrementAndGet();
+        metrics.admissionWait("admitted", 0);
+        return new Ticket(needed);
+      }
+      if (queue.size() >= maxQueued) {
+        reject("queue");
+        throw new TooManyRequestsException("Evaluation queue is full", retryAfter());
+      }
+      double tag = charge(key, cost);
+      flows.get(key).waiting++;
+      Waiter w = new Waiter(key, tag, needed, seq++, lock.newCondition());
+      queue.add(w);
+      long left = maxWait.toNanos();
+      try {
+        while (!w.done && left > 0) left = w.admitted.awaitNanos(left);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        abandon(w);
+        throw new IllegalStateException("Interrupted while waiting for an evaluation slot", e);
+      }
+      if (!w.done) {
+        abandon(w);
+        metrics.admissionWait("timeout", System.nanoTime() - start);
+        reject("timeout");
+        throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "No evaluation slot within " + maxWait);
+      }
+      admitted.incrementAndGet();
+      metrics.admissionWait("admitted", System.nanoTime() - start);
+      return new Ticket(needed);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // queued is the number of evaluations waiting for a slot
+  public int queued() {
+    lock.lock();
+    try {
+      return queue.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public int active() {
+    lock.lock();
+    try {
+      return active;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public AdmissionStats stats() {
+    lock.lock();
+    try {
+      long users = flows.values().stream().filter(f -> f.waiting > 0).count();
+      return new AdmissionStats(active, maxActive, queue.size(), maxQueued, users, admitted.get(), rejected.get());
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void release(long heldNanos, int slots) {
+    lock.lock();
+    try {
+      serviceNanos = 0.9 * serviceNanos + 0.1 * heldNanos;
+      freeSlots(slots);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  //charge gives an evaluation its finish tag and moves the flow of its user on, the tag is returned
+  //called with the lock held
+  private double charge(String key, double cost) {
+    Flow flow = flows.computeIfAbsent(key, k -> new Flow());
+    flow.lastFinish = Math.max(virtualTime, flow.lastFinish) + cost / weight(key);
+    return flow.lastFinish;
+  }
+
+  //freeSlots gives slots back and hands the free slots to the smallest finish tags, in tag order: an evaluation
+  //that needs more slots than are free waits for them and the ones behind it wait too; called with the lock held
+  private void freeSlots(int slots) {
+    active -= slots;
+    while (!queue.isEmpty() && active + queue.peek().slots <= maxActive) {
+      Waiter next = queue.poll();
+      virtualTime = next.finish;
+      next.done = true;
+      active += next.slots;
+      flows.get(next.user).waiting--;
+      next.admitted.signal();
+    }
+    //a user without queued evaluations and not ahead of the virtual time would start from it anyway
+    flows.values().removeIf(f -> f.waiting == 0 && f.lastFinish <= virtualTime);
+  }
+
+  //abandon takes a waiter out of the queue, or gives its slot back when it got one in the meantime
+  //called with the lock held
+  private void abandon(Waiter w) {
+    if (w.done) {
+      freeSlots(w.slots);
+      return;
+    }
+    queue.remove(w);
+    flows.get(w.user).waiting--;
+  }
+
+  //retryAfter is the time the queue needs to drain, with the recent evaluation time; called with the lock held
+  private Duration retryAfter() {
+    return Duration.ofNanos((long) (serviceNanos * (queue.size() + 1) / maxActive));
+  }
+
+  private void reject(String reason) {
+    rejected.incrementAndGet();
+    metrics.admissionRejected(reason);
+  }
+
+  private double weight(String key) {
+    return weights.getOrDefault(key, 1.0);
+  }
+
+  private static String key(String user) {
+    return StringUtils.hasText(user) ? user : ANONYMOUS;
+  }
+
+  //parseWeights reads comma separated user=weight entries, a user without an entry has weight 1
+  static Map<String, Double> parseWeights(String weights) {
+    Map<String, Double> out = new HashMap<>();
+    if (weights == null) return out;
+    for (String entry : weights.split(",")) {
+      entry = entry.trim();
+      if (entry.isEmpty()) continue;
+      int eq = entry.lastIndexOf('=');
+      double weight;
+      try {
+        weight = eq < 0 ? Double.NaN : Double.parseDouble(entry.substring(eq + 1).trim());
+      } catch (NumberFormatException e) {
+        weight = Double.NaN;
+      }
+      if (!(weight > 0)) throw new IllegalArgumentException("Invalid resumebot.admission.weights entry: " + entry);
+      out.put(entry.substring(0, eq).trim(), weight);
+    }
+    return out;
+  }
+}
@@ -0,0 +1,191 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+
+import com.Smartresumeranker.resumebot.dto.BatchingStats;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+
+// EvaluationBatcher coalesces concurrent model calls for the same job description
+// the first call opens a bucket for its job description, calls arriving within the window join it, and the
+// bucket is flushed when the window ends or it holds max-items calls
+// a bucket of several resumes is sent as one prompt with the job description once and the resumes numbered,
+// the model answers {"results":[...]} in the same order and every caller gets its own element back
+// a single call, or an answer that cannot be split, goes out as the normal one resume prompt
+// running several prompts side by side on one backend is the router's job (resumebot.llm.max-concurrency,
+// matched to the OLLAMA_NUM_PARALLEL of the backend)
+// with structured output every call carries its schema, the combined one asks for exactly one answer per resume
+@Component
+public class EvaluationBatcher {
+  // Item is one waiting call, prompt is its own single resume prompt
+  private record Item(String resume, String prompt, CompletableFuture<String> answer) {}
+
+  private static final class Bucket {
+    final PreparedJob job;
+    final List<Item> items = new ArrayList<>();
+    ScheduledFuture<?> timer;
+
+    Bucket(PreparedJob job) {
+      this.job = job;
+    }
+  }
+
+  private final LlmRouter router;
+  private final TaskScheduler scheduler;
+  private final Executor executor;
+  private final boolean enabled;
+  private final Duration window;
+  private final int maxItems;
+  // open maps the job description text to the bucket that is still collecting, guarded by this
+  private final Map<String, Bucket> open = new HashMap<>();
+  private final AtomicLong batches = new AtomicLong();
+  private final AtomicLong batchedItems = new AtomicLong();
+  private final AtomicLong singles = new AtomicLong();
+  private final AtomicLong splitFailures = new AtomicLong();
+
+  public EvaluationBatcher(LlmRouter router,
+      @Qualifier("batchWindowScheduler") TaskScheduler scheduler,
+      @Qualifier("llmBatchExecutor") Executor executor,
+      @Value("${resumebot.llm.batching.enabled:false}") boolean enabled,
+      @Value("${resumebot.llm.batching.window:PT0.01S}") Duration window,
+      @Value("${resumebot.llm.batching.max-items:4}") int maxItems) {
+    this.router = router;
+    this.scheduler = scheduler;
+    this.executor = executor;
+    this.enabled = enabled;
+    this.window = window;
+    this.maxItems = maxItems;
+  }
+
+  // call returns the model answer for one resume, batched with the other calls for the same job description
+  // it throws like LlmRouter.call when the model cannot be reached
+  public String call(String resume, PreparedJob job, String prompt) {
+    if (!enabled || maxItems < 2) return router.call(prompt, InsightsSchema.ANSWER);
+    Item item = new Item(resume, prompt, new CompletableFuture<>());
+    Bucket full = null;
+    synchronized (this) {
+      Bucket bucket = open.get(job.text());
+      if (bucket == null) {
+        Bucket created = new Bucket(job);
+        created.timer = scheduler.schedule(() -> windowEnded(created), Instant.now().plus(window));
+        open.put(job.text(), created);
+        bucket = created;
+      }
+      bucket.items.add(item);
+      if (bucket.items.size() >= maxItems) {
+        open.remove(job.text());
+        bucket.timer.cancel(false);
+        full = bucket;
+      }
+    }
+    //a full bucket is flushed by the call that filled it, it would wait for the answer anyway
+    if (full != null) flush(full);
+    try {
+      return item.answer().join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException re) throw re;
+      throw e;
+    }
+  }
+
+  public BatchingStats stats() {
+    long b = batches.get();
+    return new BatchingStats(b, batchedItems.get(), singles.get(), splitFailures.get(),
+        b == 0 ? 0.0 : (double) batchedItems.get() / b);
+  }
+
+  private void windowEnded(Bucket bucket) {
+    synchronized (this) {
+      //already flushed because it filled up
+      if (open.get(bucket.job.text()) != bucket) return;
+      open.remove(bucket.job.text());
+    }
+    //the scheduler thread only starts the flush, the model call runs on the llm pool
+    executor.execute(() -> flush(bucket));
+  }
+
+  private void flush(Bucket bucket) {
+    List<Item> items = bucket.items;
+    if (items.size() == 1) {
+      singles.incrementAndGet();
+      answer(items.get(0));
+      return;
+    }
+    batches.incrementAndGet();
+    batchedItems.addAndGet(items.size());
+    List<String> answers;
+    try {
+      String combined = combinedPrompt(items.stream().map(Item::resume).toList(), bucket.job);
+      answers = split(router.call(combined, InsightsSchema.combined(items.size())), items.size());
+    } catch (RuntimeException e) {
+      //no backend answered, the single prompts would not get through either
+      items.forEach(i -> i.answer().completeExceptionally(e));
+      return;
+    }
+    if (answers != null) {
+      for (int i = 0; i < items.size(); i++) items.get(i).answer().complete(answers.get(i));
+      return;
+    }
+    //the combined answer cannot be split, every resume gets its own call
+    splitFailures.incrementAndGet();
+    items.forEach(i -> executor.execute(() -> answer(i)));
+  }
+
+  private void answer(Item item) {
+    try {
+      item.answer().complete(router.call(item.prompt(), InsightsSchema.ANSWER));
+    } catch (RuntimeException e) {
+      item.answer().completeExceptionally(e);
+    }
+  }
+
+  //combinedPrompt asks for the answers of all the resumes of a bucket at once, the job description is sent once
+  //it starts with the same job prefix as the single prompt, the number of resumes only shows up after it
+  static String combinedPrompt(List<String> resumes, PreparedJob job) {
+    StringBuilder sb = new StringBuilder(job.promptPrefix())
+        .append("There are ").append(resumes.size()).append(" numbered RESUMES, evaluate every resume on its own.\n");
+    for (int i = 0; i < resumes.size(); i++) {
+      sb.append("RESUME ").append(i + 1).append(":\n").append(resumes.get(i)).append('\n');
+    }
+    return sb.append("Return JSON {\"results\": [...]} with exactly one object per resume, in the order of the ")
+        .append("resumes. Every object has the keys: ").append(EvaluationService.INSIGHT_FIELDS).append('.')
+        .toString();
+  }
+
+  //split returns the per resume answers as JSON strings, or null when the answer does not have one per resume
+  static List<String> split(String content, int expected) {
+    if (content == null) return null;
+    int start = content.indexOf('{');
+    int end = content.lastIndexOf('}');
+    if (start < 0 || end < start) return null;
+    JsonNode root;
+    try {
+      root = InsightsParser.MAPPER.readTree(content.substring(start, end + 1));
+    } catch (JsonProcessingException e) {
+      return null;
+    }
+    JsonNode results = root.path("results");
+    if (!results.isArray() || results.size() != expected) return null;
+    List<String> out = new ArrayList<>(expected);
+    for (JsonNode r : results) {
+      if (!r.isObject()) return null;
+      out.add(r.toString());
+    }
+    return out;
+  }
+}
@@ -0,0 +1,180 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.Normalizer;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import com.Smartresumeranker.resumebot.dto.CacheStats;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// EvaluationCache keeps the model insights of already seen (resume, job description) pairs
+// the key is a SHA-256 of the normalized texts plus the prompt version and model name,
+// so changing the prompt or the model never serves a stale answer
+// the snapshot file is written every flush-every puts on the cache store thread, never on the request thread
+@Component
+public class EvaluationCache {
+  // Entry is one cached answer with its absolute expiry time in epoch millis
+  record Entry(EvaluationInsights insights, long expiresAt) {}
+
+  private final ObjectMapper mapper = new ObjectMapper();
+  private final int maxEntries;
+  private final Duration ttl;
+  private final Path file;
+  private final int flushEvery;
+  private final Executor writer;
+  // flushing is set while a background save is queued or running, more puts in the meantime need no second one
+  private final AtomicBoolean flushing = new AtomicBoolean();
+  private final Object writeLock = new Object();
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  // access ordered map, the eldest entry is the least recently used one
+  private final LinkedHashMap<String, Entry> entries;
+  private int dirty;
+
+  public EvaluationCache(
+      @Value("${resumebot.cache.evaluation.max-entries:1000}") int maxEntries,
+      @Value("${resumebot.cache.evaluation.ttl:PT24H}") Duration ttl,
+      @Value("${resumebot.cache.evaluation.file:}") String file,
+      @Value("${resumebot.cache.evaluation.flush-every:20}") int flushEvery,
+      @Qualifier("cacheScheduler") Executor writer) {
+    this.maxEntries = maxEntries;
+    this.ttl = ttl;
+    this.file = StringUtils.hasText(file) ? Path.of(file) : null;
+    this.flushEvery = Math.max(1, flushEvery);
+    this.writer = writer;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        return size() > EvaluationCache.this.maxEntries;
+      }
+    };
+  }
+
+  // key builds the content address of one evaluation
+  public String key(String resume, String jd, String promptVersion, String model) {
+    try {
+      MessageDigest md = MessageDigest.getInstance("SHA-256");
+      for (String part : List.of(promptVersion, model, normalize(resume), normalize(jd))) {
+        md.update(part.getBytes(StandardCharsets.UTF_8));
+        //separator so that ("ab","c") and ("a","bc") do not collide
+        md.update((byte) 0);
+      }
+      return HexFormat.of().formatHex(md.digest());
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not available", e);
+    }
+  }
+
+  // get returns the cached insights or null when absent or expired
+  public synchronized EvaluationInsights get(String key) {
+    Entry e = entries.get(key);
+    if (e != null && e.expiresAt() < System.currentTimeMillis()) {
+      entries.remove(key);
+      e = null;
+    }
+    if (e == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    return e.insights();
+  }
+
+  public void put(String key, EvaluationInsights insights) {
+    boolean flush;
+    synchronized (this) {
+      entries.put(key, new Entry(insights, System.currentTimeMillis() + ttl.toMillis()));
+      flush = ++dirty >= flushEvery;
+    }
+    if (flush && file != null && flushing.compareAndSet(false, true)) {
+      writer.execute(() -> {
+        flushing.set(false);
+        save();
+      });
+    }
+  }
+
+  public synchronized CacheStats stats() {
+    long h = hits.get();
+    long m = misses.get();
+    return new CacheStats(h, m, entries.size(), h + m == 0 ? 0.0 : (double) h / (h + m));
+  }
+
+  //load the cache written by a previous run, expired entries are dropped
+  @PostConstruct
+  synchronized void load() {
+    if (file == null || !Files.isRegularFile(file)) return;
+    try {
+      Map<String, Entry> stored = mapper.readValue(file.toFile(), new TypeReference<LinkedHashMap<String, Entry>>() {});
+      long now = System.currentTimeMillis();
+      stored.forEach((k, v) -> {
+        if (v.expiresAt() >= now) entries.put(k, v);
+      });
+    } catch (IOException e) {
+      //a broken cache file is not fatal, start empty
+      entries.clear();
+    }
+  }
+
+  //write the cache to disk, through a temp file so a crash never leaves half a file
+  //the temp file name is unique and the writes are serialized, the shutdown save may meet a background one
+  @PreDestroy
+  public void save() {
+    if (file == null) return;
+    //the snapshot is taken under the write lock too, so an older snapshot never replaces a newer file
+    synchronized (writeLock) {
+      Map<String, Entry> snapshot;
+      synchronized (this) {
+        snapshot = new LinkedHashMap<>(entries);
+        dirty = 0;
+      }
+      Path tmp = null;
+      try {
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+        mapper.writeValue(tmp.toFile(), snapshot);
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (IOException e) {
+        //persistence is best effort, the in-memory cache keeps working
+        deleteQuietly(tmp);
+      }
+    }
+  }
+
+  private static void deleteQuietly(Path tmp) {
+    try {
+      if (tmp != null) Files.deleteIfExists(tmp);
+    } catch (IOException e) {
+      //nothing left to do
+    }
+  }
+
+  //normalize collapses whitespace so re-pasted or re-extracted text maps to the same key
+  static String normalize(String s) {
+    if (s == null) return "";
+    return Normalizer.normalize(s, Normalizer.Form.NFC).replaceAll("\\s+", " ").trim();
+  }
+}
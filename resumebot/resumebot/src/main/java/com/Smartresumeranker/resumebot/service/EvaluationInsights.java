@@ -0,0 +1,49 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+import com.Smartresumeranker.resumebot.model.Insights;
+import com.Smartresumeranker.resumebot.service.InsightsParser.Field;
+
+// EvaluationInsights is the answer of one evaluation: the three insight lists and the match score, null when
+// nobody scored the resume; it is what the evaluation cache keeps and what an evaluation is stored from
+// the JSON shape is the one of the model answer, so cache files written before stay readable
+public record EvaluationInsights(List<String> missingSkills, List<String> suggestions, List<String> rewrittenBullets,
+    Integer matchScore) {
+
+  public EvaluationInsights {
+    missingSkills = copy(missingSkills);
+    suggestions = copy(suggestions);
+    rewrittenBullets = copy(rewrittenBullets);
+  }
+
+  // lists are the insights without the score, as stored on the evaluation
+  public Insights lists() {
+    return new Insights(missingSkills, suggestions, rewrittenBullets);
+  }
+
+  // list returns a list by its answer field name
+  public List<String> list(String name) {
+    return switch (name) {
+      case "missingSkills" -> missingSkills;
+      case "suggestions" -> suggestions;
+      case "rewrittenBullets" -> rewrittenBullets;
+      default -> throw new IllegalArgumentException("Unknown insight list " + name);
+    };
+  }
+
+  // with takes the given fields from other and keeps the rest, it merges a retry answer into the first one
+  public EvaluationInsights with(EvaluationInsights other, Set<Field> fields) {
+    return new EvaluationInsights(
+        fields.contains(Field.MISSING_SKILLS) ? other.missingSkills : missingSkills,
+        fields.contains(Field.SUGGESTIONS) ? other.suggestions : suggestions,
+        fields.contains(Field.REWRITTEN_BULLETS) ? other.rewrittenBullets : rewrittenBullets,
+        fields.contains(Field.MATCH_SCORE) ? other.matchScore : matchScore);
+  }
+
+  private static List<String> copy(List<String> list) {
+    return list == null ? List.of() : list.stream().filter(Objects::nonNull).toList();
+  }
+}
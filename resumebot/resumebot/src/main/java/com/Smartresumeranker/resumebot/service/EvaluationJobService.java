@@ -0,0 +1,134 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.Smartresumeranker.resumebot.dto.EvaluationJobStatus;
+import com.Smartresumeranker.resumebot.model.EvaluationJob;
+import com.Smartresumeranker.resumebot.model.JobStatus;
+
+// EvaluationJobService runs evaluations in the background so the request thread returns right away
+// a job is a row of the durable queue (EvaluationJobStore), the texts go to the blob store first, so any node
+// can accept a job, any worker can run it and any node can answer the polling of it
+@Service
+public class EvaluationJobService {
+  // POLL_INTERVAL is how often a waiting status request reads the job again
+  private static final Duration POLL_INTERVAL = Duration.ofMillis(250);
+  // DEFER_DELAY is how long a job that found no evaluation slot waits before it is claimed again
+  private static final Duration DEFER_DELAY = Duration.ofSeconds(5);
+
+  private final EvaluationJobStore store;
+  private final EvaluationService evaluationService;
+  private final JobDescriptionService jobDescriptions;
+  private final TextBlobStore blobs;
+  private final EvaluationAdmission admission;
+  private final TaskScheduler scheduler;
+  // maxPending bounds the queue, beyond it new jobs are refused instead of queueing without limit
+  private final long maxPending;
+
+  public EvaluationJobService(EvaluationJobStore store, EvaluationService evaluationService,
+      JobDescriptionService jobDescriptions, TextBlobStore blobs, EvaluationAdmission admission,
+      @Qualifier("jobWorkerScheduler") TaskScheduler scheduler,
+      @Value("${resumebot.jobs.max-pending:10000}") long maxPending) {
+    this.store = store;
+    this.evaluationService = evaluationService;
+    this.jobDescriptions = jobDescriptions;
+    this.blobs = blobs;
+    this.admission = admission;
+    this.scheduler = scheduler;
+    this.maxPending = maxPending;
+  }
+
+  // submit stores the job and returns its id, a worker on any node picks it up
+  public EvaluationJobStatus submit(String resume, PreparedJob jobDescription, String owner) {
+    //the count is not exact under concurrent submits, a few jobs more than max-pending do no harm
+    if (store.pending() >= maxPending) {
+      throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Evaluation queue is full");
+    }
+    EvaluationJob job = store.enqueue(owner, blobs.store(resume), blobs.store(jobDescription.text()),
+        jobDescription.id());
+    return new EvaluationJobStatus(job.getPublicId(), JobStatus.PENDING, null, null);
+  }
+
+  // status returns the current state of a job, waiting up to waitMillis for it to finish
+  public CompletableFuture<EvaluationJobStatus> status(String jobId, long waitMillis) {
+    EvaluationJob job = find(jobId);
+    if (waitMillis <= 0 || finished(job)) return CompletableFuture.completedFuture(toStatus(job));
+    //long polling: the job may run on another node, so the row is read again until it finished or the wait
+    //is over; the checks run on the scheduler, no thread is held while waiting
+    CompletableFuture<EvaluationJobStatus> result = new CompletableFuture<>();
+    Instant deadline = Instant.now().plusMillis(waitMillis);
+    schedule(jobId, deadline, result);
+    return result;
+  }
+
+  // execute evaluates a claimed job and returns the id of the stored evaluation, called by the EvaluationWorker
+  public Long execute(EvaluationJob job) {
+    String resume = blobs.load(job.getResumeDigest());
+    if (resume == null) throw new IllegalStateException("Resume of job " + job.getPublicId() + " is missing");
+    PreparedJob jobDescription = job.getJobDescriptionId() != null
+        ? jobDescriptions.prepared(job.getJobDescriptionId(), job.getOwner())
+        : evaluationService.prepare(blobs.load(job.getJobDescriptionDigest()));
+    //the job is queued for an evaluation slot like a blocking request
+    try (EvaluationAdmission.Ticket ticket = enter(admission, job)) {
+      return evaluationService.evaluatePrepared(resume, jobDescription, job.getOwner()).id();
+    }
+  }
+
+  // enter waits for an evaluation slot for a job, a full admission queue (429) or a wait beyond max-wait (503)
+  // defers the job instead of failing it, local back pressure must not use up the attempts of a durable job
+  static EvaluationAdmission.Ticket enter(EvaluationAdmission admission, EvaluationJob job) {
+    try {
+      return admission.enter(job.getOwner(), 1);
+    } catch (TooManyRequestsException e) {
+      throw new JobDeferredException(e.getReason(), Duration.ofSeconds(e.getRetryAfterSeconds()));
+    } catch (ResponseStatusException e) {
+      throw new JobDeferredException(e.getReason(), DEFER_DELAY);
+    }
+  }
+
+  private void schedule(String jobId, Instant deadline, CompletableFuture<EvaluationJobStatus> result) {
+    Instant next = Instant.now().plus(POLL_INTERVAL);
+    scheduler.schedule(() -> check(jobId, deadline, result), next.isAfter(deadline) ? deadline : next);
+  }
+
+  private void check(String jobId, Instant deadline, CompletableFuture<EvaluationJobStatus> result) {
+    try {
+      EvaluationJob job = find(jobId);
+      if (finished(job) || !Instant.now().isBefore(deadline)) {
+        result.complete(toStatus(job));
+      } else {
+        schedule(jobId, deadline, result);
+      }
+    } catch (RuntimeException e) {
+      result.completeExceptionally(e);
+    }
+  }
+
+  private EvaluationJob find(String jobId) {
+    return store.find(jobId)
+        .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown job " + jobId));
+  }
+
+  private static boolean finished(EvaluationJob job) {
+    return job.getStatus() == JobStatus.DONE || job.getStatus() == JobStatus.FAILED;
+  }
+
+  private EvaluationJobStatus toStatus(EvaluationJob job) {
+    if (job.getStatus() == JobStatus.DONE) {
+      return new EvaluationJobStatus(job.getPublicId(), JobStatus.DONE, evaluationService.response(job.getEvaluationId()),
+          null);
+    }
+    //a job waiting for its retry is PENDING again, the error of its last attempt stays visible
+    String error = job.getStatus() == JobStatus.FAILED && job.getError() == null ? "Evaluation failed" : job.getError();
+    return new EvaluationJobStatus(job.getPublicId(), job.getStatus(), null, error);
+  }
+}
@@ -0,0 +1,136 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.Smartresumeranker.resumebot.model.EvaluationJob;
+import com.Smartresumeranker.resumebot.model.JobStatus;
+import com.Smartresumeranker.resumebot.repository.EvaluationJobRepository;
+
+// EvaluationJobStore is the durable evaluation queue, every state change of a job is one short transaction
+// claiming locks the due rows with SKIP LOCKED and marks them RUNNING in the same transaction, so any number
+// of workers on any number of nodes can claim side by side without handing out a job twice
+// a job is delivered at least once: a worker that loses its lease (stalled, crashed) may still finish its
+// evaluation, but only the worker holding the lease can mark the job DONE
+@Component
+public class EvaluationJobStore {
+  private final EvaluationJobRepository repository;
+
+  public EvaluationJobStore(EvaluationJobRepository repository) {
+    this.repository = repository;
+  }
+
+  // enqueue stores a new PENDING job for the stored texts
+  @Transactional
+  public EvaluationJob enqueue(String owner, String resumeDigest, String jobDescriptionDigest, Long jobDescriptionId) {
+    EvaluationJob job = new EvaluationJob();
+    job.setPublicId(UUID.randomUUID().toString());
+    job.setOwner(owner);
+    job.setResumeDigest(resumeDigest);
+    job.setJobDescriptionDigest(jobDescriptionDigest);
+    job.setJobDescriptionId(jobDescriptionId);
+    return repository.save(job);
+  }
+
+  @Transactional(readOnly = true)
+  public Optional<EvaluationJob> find(String publicId) {
+    return repository.findByPublicId(publicId);
+  }
+
+  @Transactional(readOnly = true)
+  public long pending() {
+    return repository.countByStatus(JobStatus.PENDING);
+  }
+
+  // claim takes up to limit due jobs for the worker, a job already claimed maxAttempts times is failed instead
+  @Transactional
+  public List<EvaluationJob> claim(String worker, int limit, Duration lease, int maxAttempts) {
+    if (limit <= 0) return List.of();
+    Instant now = Instant.now();
+    List<Long> ids = repository.lockClaimable(now, limit);
+    if (ids.isEmpty()) return List.of();
+    List<EvaluationJob> claimed = new ArrayList<>(ids.size());
+    for (EvaluationJob job : repository.findAllById(ids)) {
+      job.setUpdatedAt(now);
+      if (job.getAttempts() >= maxAttempts) {
+        //its workers kept dying or stalling on it, running it again would not end differently
+        job.setStatus(JobStatus.FAILED);
+        job.setWorkerId(null);
+        job.setLeaseUntil(null);
+        job.setError("Gave up after " + job.getAttempts() + " attempts");
+        continue;
+      }
+      job.setStatus(JobStatus.RUNNING);
+      job.setWorkerId(worker);
+      job.setLeaseUntil(now.plus(lease));
+      job.setAttempts(job.getAttempts() + 1);
+      claimed.add(job);
+    }
+    return claimed;
+  }
+
+  // heartbeat extends the leases of the jobs the worker runs and returns the ones it still holds
+  @Transactional
+  public Set<Long> heartbeat(String worker, Collection<Long> ids, Duration lease) {
+    if (ids.isEmpty()) return Set.of();
+    Instant now = Instant.now();
+    repository.extendLeases(worker, ids, now.plus(lease), now);
+    return new HashSet<>(repository.findHeld(worker, ids));
+  }
+
+  // complete marks the job DONE with its evaluation, false when the worker no longer held it
+  @Transactional
+  public boolean complete(String worker, Long id, Long evaluationId) {
+    return repository.finish(worker, id, JobStatus.DONE, evaluationId, null, Instant.now()) == 1;
+  }
+
+  // fail marks the job FAILED, false when the worker no longer held it
+  @Transactional
+  public boolean fail(String worker, Long id, String error) {
+    return repository.finish(worker, id, JobStatus.FAILED, null, truncate(error), Instant.now()) == 1;
+  }
+
+  // retry puts a job back into the queue, claimable again after the delay
+  @Transactional
+  public boolean retry(String worker, Long id, Duration delay, String error) {
+    Instant now = Instant.now();
+    return repository.requeue(worker, List.of(id), now.plus(delay), truncate(error), now) == 1;
+  }
+
+  // release gives claimed jobs that never started back at once, without using up one of their attempts
+  @Transactional
+  public int release(String worker, Collection<Long> ids) {
+    if (ids.isEmpty()) return 0;
+    Instant now = Instant.now();
+    return repository.giveBack(worker, ids, now, now);
+  }
+
+  // defer gives a claimed job that could not start back, claimable again after the delay, without using up
+  // one of its attempts
+  @Transactional
+  public boolean defer(String worker, Long id, Duration delay) {
+    Instant now = Instant.now();
+    return repository.giveBack(worker, List.of(id), now.plus(delay), now) == 1;
+  }
+
+  // purge drops the finished jobs older than the retention
+  @Transactional
+  public int purge(Duration retention) {
+    return repository.deleteFinishedBefore(Instant.now().minus(retention));
+  }
+
+  private static String truncate(String error) {
+    if (error == null) return null;
+    return error.length() <= 500 ? error : error.substring(0, 500);
+  }
+}
@@ -0,0 +1,152 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+// EvaluationMetrics records where the time of an evaluation goes, exported on /actuator/prometheus
+//   resumebot.evaluation.stage{stage}           timer with histogram: extract, prepare, prompt, llm, parse, save
+//   resumebot.evaluation.in.flight{kind}        gauge of evaluations running now (blocking, stream)
+//   resumebot.evaluation.fallbacks{reason}      counter of answers completed without the model
+//   resumebot.evaluation.parse.failures         counter of model answers without a single usable field
+//   resumebot.evaluation.parse.recovered        counter of fenced, chatty or cut off answers that were salvaged
+//   resumebot.evaluation.retries{field}         counter of fields asked for again after an invalid answer
+//   resumebot.evaluation.retries.per.request    summary of the retry calls of every model evaluation, 0 included
+//   resumebot.admission.wait{outcome}           timer of the wait for an evaluation slot: admitted, timeout
+//   resumebot.admission.rejected{reason}        counter of evaluations refused: rate, queue (full), timeout
+//   resumebot.llm.call{backend,outcome}         timer of every model call attempt
+//   resumebot.llm.tokens{backend,type}          counter of prompt and completion tokens reported by the model
+// exemplars and log lines carry the trace id of the request, so one slow request can be followed end to end
+@Component
+public class EvaluationMetrics {
+  // Stage is one step of an evaluation
+  public enum Stage { EXTRACT, PREPARE, PROMPT, LLM, PARSE, SAVE }
+
+  private final MeterRegistry registry;
+  private final Map<Stage, Timer> stages = new EnumMap<>(Stage.class);
+  private final AtomicInteger blocking = new AtomicInteger();
+  private final AtomicInteger streams = new AtomicInteger();
+  private final Counter parseFailures;
+  private final Counter parseRecovered;
+  private final DistributionSummary retriesPerRequest;
+
+  public EvaluationMetrics(MeterRegistry registry) {
+    this.registry = registry;
+    for (Stage stage : Stage.values()) {
+      stages.put(stage, Timer.builder("resumebot.evaluation.stage")
+          .description("Time spent in one stage of an evaluation")
+          .tag("stage", stage.name().toLowerCase(Locale.ROOT))
+          .publishPercentileHistogram()
+          .register(registry));
+    }
+    Gauge.builder("resumebot.evaluation.in.flight", blocking, AtomicInteger::get)
+        .description("Evaluations running now").tag("kind", "blocking").register(registry);
+    Gauge.builder("resumebot.evaluation.in.flight", streams, AtomicInteger::get)
+        .description("Evaluations running now").tag("kind", "stream").register(registry);
+    parseFailures = Counter.builder("resumebot.evaluation.parse.failures")
+        .description("Model answers that could not be parsed").register(registry);
+    parseRecovered = Counter.builder("resumebot.evaluation.parse.recovered")
+        .description("Model answers that a plain JSON parse would have lost").register(registry);
+    retriesPerRequest = DistributionSummary.builder("resumebot.evaluation.retries.per.request")
+        .description("Retry calls per model evaluation").register(registry);
+  }
+
+  // time runs the work and records its duration under the stage, also when it throws
+  public <T> T time(Stage stage, Supplier<T> work) {
+    long start = System.nanoTime();
+    try {
+      return work.get();
+    } finally {
+      stages.get(stage).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  // record adds a duration measured by the caller to the stage
+  public void record(Stage stage, long nanos) {
+    stages.get(stage).record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  // inFlight runs a blocking evaluation and counts it in the in flight gauge while it runs
+  public <T> T inFlight(Supplier<T> work) {
+    blocking.incrementAndGet();
+    try {
+      return work.get();
+    } finally {
+      blocking.decrementAndGet();
+    }
+  }
+
+  public void streamStarted() {
+    streams.incrementAndGet();
+  }
+
+  public void streamEnded() {
+    streams.decrementAndGet();
+  }
+
+  // fallback counts an answer part that came from the local engine or the fallback generators
+  public void fallback(String reason) {
+    registry.counter("resumebot.evaluation.fallbacks", "reason", reason).increment();
+  }
+
+  public void parseFailure() {
+    parseFailures.increment();
+  }
+
+  public void parseRecovered() {
+    parseRecovered.increment();
+  }
+
+  // retried counts one field asked for again by a retry call
+  public void retried(InsightsParser.Field field) {
+    registry.counter("resumebot.evaluation.retries", "field", field.json()).increment();
+  }
+
+  // retries records the number of retry calls one evaluation needed
+  public void retries(int count) {
+    retriesPerRequest.record(count);
+  }
+
+  // admissionWait records how long an evaluation waited for its slot, 0 when one was free
+  public void admissionWait(String outcome, long nanos) {
+    Timer.builder("resumebot.admission.wait")
+        .description("Wait of an evaluation for a slot")
+        .tag("outcome", outcome)
+        .publishPercentileHistogram()
+        .register(registry)
+        .record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  public void admissionRejected(String reason) {
+    registry.counter("resumebot.admission.rejected", "reason", reason).increment();
+  }
+
+  // llmCall records one model call attempt on a backend, hedged and failed over attempts count separately
+  public void llmCall(String backend, long nanos, boolean success) {
+    Timer.builder("resumebot.llm.call")
+        .description("Model call attempts per backend")
+        .tags("backend", backend, "outcome", success ? "success" : "failure")
+        .publishPercentileHistogram()
+        .register(registry)
+        .record(nanos, TimeUnit.NANOSECONDS);
+  }
+
+  // tokens counts the prompt and completion tokens the backend reported for one call, 0 when it reported none
+  public void tokens(String backend, long prompt, long completion) {
+    if (prompt > 0) registry.counter("resumebot.llm.tokens", "backend", backend, "type", "prompt").increment(prompt);
+    if (completion > 0) {
+      registry.counter("resumebot.llm.tokens", "backend", backend, "type", "completion").increment(completion);
+    }
+  }
+}
@@ -0,0 +1,19 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.time.Instant;
+import java.util.List;
+
+// EvaluationSavedEvent is published after an evaluation has been stored
+// listeners (semantic index, ...) keep their derived data up to date from it instead of re-reading the table
+public record EvaluationSavedEvent(
+    Long id,
+    String owner,
+    Instant createdAt,
+    String resumeDigest,
+    String resumeText,
+    String jobDescriptionDigest,
+    String jobDescription,
+    // jobDescriptionId is the registered job description profile, null for a job description sent with the request
+    Long jobDescriptionId,
+    List<String> missingSkills,
+    Integer matchScore) {}
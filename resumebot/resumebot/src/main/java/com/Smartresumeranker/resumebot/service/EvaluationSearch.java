@@ -0,0 +1,187 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.Smartresumeranker.resumebot.dto.SearchHit;
+import com.Smartresumeranker.resumebot.dto.SearchIndexStats;
+import com.Smartresumeranker.resumebot.model.Evaluation;
+import com.Smartresumeranker.resumebot.repository.EvaluationRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// EvaluationSearch answers queries over the evaluation history from the SearchIndex, no table scan and no text
+// blob is read for a search
+// the index is updated from EvaluationSavedEvent, its segments are persisted to the index directory and the
+// evaluations saved since the last persisted segment are backfilled at startup
+// every write runs on the single searchIndexExecutor thread, searches run on the request threads
+@Component
+public class EvaluationSearch {
+  private static final Logger log = LoggerFactory.getLogger(EvaluationSearch.class);
+  private static final int PAGE = 200;
+  // BACKFILL_OVERLAP is how far below the highest indexed id the backfill starts, it catches evaluations whose
+  // event came after a later one was already sealed; evaluations the index has are skipped
+  private static final long BACKFILL_OVERLAP = 1000;
+
+  private final EvaluationRepository repository;
+  private final TextBlobStore blobs;
+  private final Executor executor;
+  private final boolean enabled;
+  private final int segmentDocs;
+  private final boolean backfill;
+  private final Path dir;
+  private volatile SearchIndex index = new SearchIndex(null);
+
+  public EvaluationSearch(EvaluationRepository repository, TextBlobStore blobs,
+      @Qualifier("searchIndexExecutor") Executor executor,
+      @Value("${resumebot.search.enabled:true}") boolean enabled,
+      @Value("${resumebot.search.segment-docs:256}") int segmentDocs,
+      @Value("${resumebot.search.backfill:true}") boolean backfill,
+      @Value("${resumebot.search.index-dir:}") String dir) {
+    this.repository = repository;
+    this.blobs = blobs;
+    this.executor = executor;
+    this.enabled = enabled;
+    this.segmentDocs = Math.max(1, segmentDocs);
+    this.backfill = backfill;
+    this.dir = StringUtils.hasText(dir) ? Path.of(dir) : null;
+  }
+
+  // search returns the k best evaluations for the query, 400 for a query that does not parse
+  public List<SearchHit> search(String query, SearchIndex.Filter filter, int k) {
+    if (!enabled) throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Search is disabled");
+    SearchQuery parsed;
+    try {
+      parsed = SearchQuery.parse(query);
+    } catch (IllegalArgumentException e) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage());
+    }
+    return index.search(parsed, filter, k).stream()
+        .map(h -> new SearchHit(h.id(), h.owner(), h.matchScore(), h.createdAt(), h.missingSkills(), h.score()))
+        .toList();
+  }
+
+  public SearchIndexStats stats() {
+    return index.stats();
+  }
+
+  // onSaved indexes a new evaluation in the background, the texts come with the event
+  @EventListener
+  public void onSaved(EvaluationSavedEvent event) {
+    if (!enabled) return;
+    executor.execute(() -> add(new SearchIndex.Doc(event.id(), event.owner(), event.createdAt(), event.matchScore(),
+        event.resumeText(), event.jobDescription(), event.missingSkills())));
+  }
+
+  //load the segments written by a previous run, then index the evaluations saved after them
+  @PostConstruct
+  void start() {
+    if (!enabled) return;
+    if (dir != null) {
+      try {
+        index = SearchIndex.open(dir);
+      } catch (IOException | RuntimeException e) {
+        //a broken index is not fatal, the backfill rebuilds it
+        log.warn("Cannot read search index {}, rebuilding it: {}", dir, e.getMessage());
+        reset();
+      }
+    }
+    if (backfill) executor.execute(this::backfill);
+  }
+
+  //the buffer is written as a last segment, without it the next start backfills those evaluations
+  @PreDestroy
+  public void save() {
+    if (enabled) flush();
+  }
+
+  //backfill walks the history in id order from just below the highest indexed id, in chunks of PAGE
+  private void backfill() {
+    if (!matchesDatabase()) {
+      log.warn("Search index {} was built from another database, rebuilding it", dir);
+      reset();
+    }
+    long after = Math.max(0, index.maxId() - BACKFILL_OVERLAP);
+    int added = 0;
+    try {
+      while (true) {
+        List<Evaluation> page = repository.findByIdGreaterThanOrderByIdAsc(after, Limit.of(PAGE));
+        if (page.isEmpty()) break;
+        after = page.get(page.size() - 1).getId();
+        //a page often repeats a resume or a job description, each text is read once
+        Map<String, String> texts = new HashMap<>();
+        for (Evaluation e : page) {
+          if (index.contains(e.getId())) continue;
+          String resume = texts.computeIfAbsent(e.getResumeDigest(), blobs::load);
+          String jd = texts.computeIfAbsent(e.getJobDescriptionDigest(), blobs::load);
+          if (add(new SearchIndex.Doc(e.getId(), e.getOwner(), e.getCreatedAt(), e.getMatchScore(), resume, jd,
+              e.getMissingSkills()))) added++;
+        }
+      }
+      flush();
+      if (added > 0) log.info("Search index backfilled with {} evaluations", added);
+    } catch (RuntimeException e) {
+      //the saved event keeps adding new evaluations, the next start backfills the rest
+      log.warn("Search index backfill stopped after {} evaluations: {}", added, e.getMessage());
+    }
+  }
+
+  //matchesDatabase checks the newest indexed evaluation against the table, an index kept on disk while the
+  //database was dropped (the default in-memory H2) would otherwise answer with evaluations that do not exist
+  private boolean matchesDatabase() {
+    long last = index.maxId();
+    if (last == 0) return true;
+    Instant indexed = index.createdAt(last);
+    return repository.findById(last)
+        .map(e -> indexed != null && e.getCreatedAt() != null && e.getCreatedAt().toEpochMilli() == indexed.toEpochMilli())
+        .orElse(false);
+  }
+
+  private void reset() {
+    index = new SearchIndex(dir);
+    if (dir == null) return;
+    try {
+      SearchIndex.clear(dir);
+    } catch (IOException e) {
+      //the first flush writes a new manifest over it
+      log.warn("Cannot clear search index {}: {}", dir, e.getMessage());
+    }
+  }
+
+  private boolean add(SearchIndex.Doc doc) {
+    try {
+      if (!index.add(doc)) return false;
+    } catch (RuntimeException e) {
+      log.debug("Cannot index evaluation {}: {}", doc.id(), e.getMessage());
+      return false;
+    }
+    if (index.buffered() >= segmentDocs) flush();
+    return true;
+  }
+
+  private void flush() {
+    try {
+      index.flush();
+    } catch (IOException e) {
+      //persistence is best effort, the buffer stays searchable and is written with the next flush
+      log.warn("Cannot write search index {}: {}", dir, e.getMessage());
+    }
+  }
+}
@@ -1,162 +1,461 @@
 package com.Smartresumeranker.resumebot.service;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
 
-import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.reader.pdf.PagePdfDocumentReader;
-import org.springframework.ai.reader.pdf.config.PdfDocumentReaderConfig;
-import org.springframework.core.io.FileSystemResource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.StringUtils;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import com.Smartresumeranker.resumebot.dto.EvaluationResponse;
 import com.Smartresumeranker.resumebot.model.Evaluation;
 import com.Smartresumeranker.resumebot.repository.EvaluationRepository;
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.Smartresumeranker.resumebot.service.EvaluationMetrics.Stage;
+import com.Smartresumeranker.resumebot.service.InsightsParser.Field;
+
+import reactor.core.Disposable;
 
 // EvaluationService is the service layer for the Evaluation entity
 @Service
 public class EvaluationService {
-  // ChatClient is the client for the AI model
-  private final ChatClient chatClient;
+  // PROMPT_VERSION is part of the cache key, bump it whenever the prompt text changes
+  static final String PROMPT_VERSION = "4";
+  // INSIGHT_KEYS are the top level arrays of the model answer, in the order they are streamed
+  private static final List<String> INSIGHT_KEYS = List.of("missingSkills", "suggestions", "rewrittenBullets");
+  // INSIGHT_FIELDS describes the keys of one answer, shared by the single and the combined (batched) prompt
+  static final String INSIGHT_FIELDS = InsightsSchema.describe(EnumSet.allOf(Field.class));
+  // PROMPT_HEADER and INSTRUCTIONS open every prompt, the single, the retry and the combined one
+  // the answer format is asked for at the very end, so all of them share the prefix up to the resumes
+  static final String PROMPT_HEADER = "You are an ATS resume expert. Review the RESUME against the JOB DESCRIPTION.\n";
+  // INSTRUCTIONS are the evaluation rules of every prompt
+  static final String INSTRUCTIONS = """
+      Score how well the resume fits the job description, 100 is a perfect fit.
+      Identify missing skills based on the job description.
+      Provide actionable suggestions to improve the resume.
+      Rewrite bullet points to be more impactful using action verbs and metrics.
+      Keep responses concise. Return only JSON.
+      """;
+  // router sends the prompts to the configured model backends
+  private final LlmRouter router;
+  // batcher coalesces concurrent evaluations of the same job description into one model call
+  private final EvaluationBatcher batcher;
   // EvaluationRepository is the repository for the Evaluation entity
   private final EvaluationRepository repository;
+  // cache holds the insights of already evaluated resume and job description pairs
+  private final EvaluationCache cache;
+  // model is the list of backend models, part of the cache key
+  private final String model;
+  // scoring is the local, model free scoring engine
+  private final LocalScoringEngine scoring;
+  // extractor turns uploaded resumes into text
+  private final ResumeTextExtractor extractor;
+  // blobs stores the resume and job description texts once per distinct text
+  private final TextBlobStore blobs;
+  // preprocessor cuts the resume and job description down to what the model needs
+  private final PromptPreprocessor preprocessor;
+  // semantic scores with embeddings for mode=semantic
+  private final SemanticMatcher semantic;
+  // events tells the listeners (semantic index, ...) about every stored evaluation
+  private final ApplicationEventPublisher events;
+  // metrics times every stage and counts fallbacks and parse failures
+  private final EvaluationMetrics metrics;
+  // maxRetries is the number of extra model calls one evaluation may make for the fields of an invalid answer
+  private final int maxRetries;
+  // streamFinisher stores the streamed evaluations, the end of a stream is signalled on a Reactor thread that must
+  // not run the database writes
+  private final Executor streamFinisher;
 
   // EvaluationService constructor
-  public EvaluationService(ChatClient.Builder chatClientBuilder, EvaluationRepository repository) {
-    // ChatClient is the client for the AI model
-    this.chatClient = chatClientBuilder.build();
+  public EvaluationService(LlmRouter router, EvaluationBatcher batcher, EvaluationRepository repository, EvaluationCache cache,
+      LocalScoringEngine scoring, ResumeTextExtractor extractor, TextBlobStore blobs, PromptPreprocessor preprocessor,
+      SemanticMatcher semantic, ApplicationEventPublisher events, EvaluationMetrics metrics,
+      @Value("${resumebot.llm.structured.max-retries:1}") int maxRetries,
+      @Qualifier("streamFinishExecutor") Executor streamFinisher) {
+    this.router = router;
+    this.batcher = batcher;
     // EvaluationRepository is the repository for the Evaluation entity
     this.repository = repository;
+    this.cache = cache;
+    this.model = router.models();
+    this.scoring = scoring;
+    this.extractor = extractor;
+    this.blobs = blobs;
+    this.preprocessor = preprocessor;
+    this.semantic = semantic;
+    this.events = events;
+    this.metrics = metrics;
+    this.maxRetries = Math.max(0, maxRetries);
+    this.streamFinisher = streamFinisher;
+  }
+
+  // find loads a stored evaluation with its texts, null when there is none
+  public Evaluation find(Long id) {
+    return repository.findById(id).map(blobs::fill).orElse(null);
   }
 
   // evaluate is the method to evaluate the resume
-  @Transactional
-  public EvaluationResponse evaluate(MultipartFile resumeFile, String resumeText, String jobDescription) {
-    // resume is the text of the resume
-    String resume = StringUtils.hasText(resumeText) ? resumeText : extractText(resumeFile);
-    // jd is the job description
-    String jd = jobDescription == null ? "" : jobDescription;
+  // there is no transaction around it on purpose: the model call can take seconds and must not hold a
+  // database connection, only repository.save runs in its own transaction
+  // owner is the authenticated user the evaluation is stored for
+  public EvaluationResponse evaluate(MultipartFile resumeFile, String resumeText, String jobDescription, String owner) {
+    return evaluateText(resolveResume(resumeFile, resumeText), jobDescription, owner);
+  }
+
+  // resolveResume returns the pasted resume text, or the text extracted from the uploaded file
+  public String resolveResume(MultipartFile resumeFile, String resumeText) {
+    return StringUtils.hasText(resumeText) ? resumeText : extractor.extract(resumeFile);
+  }
+
+  // evaluateText runs the model on already extracted resume text and stores the evaluation
+  public EvaluationResponse evaluateText(String resume, String jobDescription, String owner) {
+    return evaluatePrepared(resume, prepare(jobDescription), owner);
+  }
+
+  // evaluatePrepared is evaluateText for a job description that was already prepared
+  public EvaluationResponse evaluatePrepared(String resume, PreparedJob job, String owner) {
+    return evaluateRated(resume, job, owner).response();
+  }
 
-    Map<String, Object> ai = generateInsights(resume, jd);
+  // Rated is a stored evaluation and whether its match score came from the model (false: from the local engine)
+  // the two scales are not calibrated against each other, a ranking must not mix them
+  public record Rated(EvaluationResponse response, boolean modelScore) {}
 
+  // evaluateRated is evaluatePrepared that also tells where the match score came from
+  public Rated evaluateRated(String resume, PreparedJob job, String owner) {
+    return metrics.inFlight(() -> {
+      Generated g = generateInsights(resume, job);
+      return new Rated(save(resume, job, g.insights(), owner), g.modelScore());
+    });
+  }
+
+  // Generated are the insights of a model call and whether the model gave the match score
+  private record Generated(EvaluationInsights insights, boolean modelScore) {}
+
+  // evaluateFast scores the resume with the local engine only, no model call
+  // missing skills and score come from the skill dictionary, suggestions and bullets from the fallback generators
+  public EvaluationResponse evaluateFast(String resume, String jobDescription, String owner) {
+    return evaluateLocal(resume, prepare(jobDescription), owner);
+  }
+
+  // evaluateLocal is evaluateFast for a job description that was already prepared
+  public EvaluationResponse evaluateLocal(String resume, PreparedJob job, String owner) {
+    return metrics.inFlight(() -> {
+      LocalScoringEngine.Result local = scoring.score(job.analysis(), resume);
+      return save(resume, job, insights(local.missingSkills(), List.of(), List.of(), local.score(), job.text()), owner);
+    });
+  }
+
+  // evaluateSemantic scores the resume by embedding similarity instead of exact skill names, no chat model call
+  // without a working embedding model it answers like evaluateFast
+  public EvaluationResponse evaluateSemantic(String resume, PreparedJob job, String owner) {
+    if (!semantic.enabled()) return evaluateLocal(resume, job, owner);
+    LocalScoringEngine.Result result;
+    try {
+      result = semantic.score(resume, job);
+    } catch (RuntimeException e) {
+      return evaluateLocal(resume, job, owner);
+    }
+    return save(resume, job, insights(result.missingSkills(), List.of(), List.of(), result.score(), job.text()), owner);
+  }
+
+  // preScore is the local score of a resume, used to screen a batch before the model stage
+  public LocalScoringEngine.Result preScore(String resume, PreparedJob job) {
+    return scoring.score(job.analysis(), resume);
+  }
+
+  // prepare normalizes the job description and builds its part of the prompt
+  // batch ranking calls it once per batch instead of once per resume, a registered job description profile
+  // once for all its evaluations
+  public PreparedJob prepare(String jobDescription) {
+    return prepare(null, jobDescription);
+  }
+
+  // prepare for a registered job description profile, the evaluations are stored with its id
+  public PreparedJob prepare(Long profileId, String jobDescription) {
+    return metrics.time(Stage.PREPARE, () -> prepareUntimed(profileId, jobDescription));
+  }
+
+  private PreparedJob prepareUntimed(Long profileId, String jobDescription) {
+    String jd = jobDescription == null ? "" : jobDescription
+        .replace("\r\n", "\n")
+        .replaceAll("[ \\t\\x0B\\f]+", " ")
+        .replaceAll("\n\\s*\n(\\s*\n)+", "\n\n")
+        .trim();
+    //the prompt gets the reduced job description, scoring and storage the full one
+    String promptJd = preprocessor.jobDescription(jd).text();
+    String prefix = PROMPT_HEADER + INSTRUCTIONS + "JOB DESCRIPTION:\n" + promptJd + "\n";
+    return new PreparedJob(profileId, jd, prefix, scoring.analyzeJob(jd));
+  }
+
+  // streamEvaluation evaluates like evaluateText but sends every insight to the emitter as soon as the model
+  // has finished writing it: events missingSkills, suggestions and rewrittenBullets carry one element each,
+  // the final done event carries the stored EvaluationResponse
+  public void streamEvaluation(String resume, PreparedJob job, String owner, SseEmitter emitter) {
+    String jd = job.text();
+    String key = cache.key(resume, jd, PROMPT_VERSION, model);
+    EvaluationInsights cached = cache.get(key);
+    if (cached != null) {
+      //cache hit, there is nothing to wait for
+      try {
+        for (String name : INSIGHT_KEYS) {
+          for (String item : cached.list(name)) send(emitter, name, item);
+        }
+        send(emitter, "done", save(resume, job, cached, owner));
+        emitter.complete();
+      } catch (IOException | RuntimeException e) {
+        emitter.completeWithError(e);
+      }
+      return;
+    }
+
+    InsightStreamParser parser = new InsightStreamParser((name, item) -> {
+      try {
+        send(emitter, name, item);
+      } catch (IOException e) {
+        //the client went away, stop reading from the model
+        throw new UncheckedIOException(e);
+      }
+    });
+    metrics.streamStarted();
+    //streamed items are already on their way to the client, the stream is constrained but never retried
+    Disposable subscription = router.stream(buildPrompt(preprocessor.resume(resume).text(), job), InsightsSchema.ANSWER)
+        //also on cancel, when the client goes away
+        .doFinally(signal -> metrics.streamEnded())
+        .subscribe(
+        chunk -> {
+          try {
+            parser.feed(chunk);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        },
+        error -> finishLater(emitter, () -> finishStream(emitter, resume, job, owner, key, parser, error)),
+        () -> finishLater(emitter, () -> finishStream(emitter, resume, job, owner, key, parser, null)));
+    emitter.onTimeout(subscription::dispose);
+    emitter.onError(e -> subscription.dispose());
+  }
+
+  //finishLater hands the end of a stream to the streamFinishExecutor, the caller is the Reactor thread and never
+  //runs it itself: when the executor is saturated the stream ends with an error event carrying a 503
+  private void finishLater(SseEmitter emitter, Runnable finish) {
+    try {
+      streamFinisher.execute(finish);
+    } catch (TaskRejectedException e) {
+      try {
+        send(emitter, "error", Map.of("status", HttpStatus.SERVICE_UNAVAILABLE.value(),
+            "message", "Evaluation could not be stored, try again"));
+      } catch (IOException | RuntimeException ignored) {
+        //the client is gone, completing the emitter is all that is left
+      }
+      emitter.completeWithError(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Stream finish rejected"));
+    }
+  }
+
+  //finishStream sends the fallback items the model did not produce, stores the evaluation and closes the stream
+  //it runs on the streamFinishExecutor, after the last chunk of the model answer
+  private void finishStream(SseEmitter emitter, String resume, PreparedJob job, String owner, String key,
+      InsightStreamParser parser, Throwable error) {
+    String jd = job.text();
+    try {
+      EvaluationInsights ai;
+      if (error != null && parser.result().isEmpty()) {
+        //nothing usable arrived, same answer as the blocking path
+        ai = unavailableInsights(resume, job);
+        for (String item : ai.missingSkills()) send(emitter, "missingSkills", item);
+        for (String item : ai.suggestions()) send(emitter, "suggestions", item);
+      } else {
+        List<String> ms = parser.list("missingSkills");
+        List<String> sug = parser.list("suggestions");
+        List<String> bullets = parser.list("rewrittenBullets");
+        Integer score = InsightsParser.toScore(parser.value("matchScore"));
+        countFallbacks(sug, bullets, score);
+        ai = insights(ms, sug, bullets, scoreOrLocal(score, resume, job), jd);
+        //only send the fallbacks, the model items were already sent
+        if (sug.isEmpty()) for (String item : ai.suggestions()) send(emitter, "suggestions", item);
+        if (bullets.isEmpty()) for (String item : ai.rewrittenBullets()) send(emitter, "rewrittenBullets", item);
+        //same rule as the blocking path: only a complete answer that passes the schema is cached, a cached answer
+        //counts as model output, so neither the local score substitute nor the fallback items may end up in it
+        boolean valid = score != null && !sug.isEmpty() && !bullets.isEmpty();
+        if (error == null && parser.finished() && valid) cache.put(key, ai);
+      }
+      send(emitter, "done", save(resume, job, ai, owner));
+      emitter.complete();
+    } catch (IOException | RuntimeException e) {
+      emitter.completeWithError(e);
+    }
+  }
+
+  private void send(SseEmitter emitter, String name, Object data) throws IOException {
+    emitter.send(SseEmitter.event().name(name).data(data));
+  }
+
+  //save stores the evaluation and converts it to the response, package private for the benchmarks
+  //the texts go to the blob store (no write at all when already stored), the evaluation itself is one insert
+  EvaluationResponse save(String resume, PreparedJob job, EvaluationInsights ai, String owner) {
+    return metrics.time(Stage.SAVE, () -> store(resume, job, ai, owner));
+  }
+
+  private EvaluationResponse store(String resume, PreparedJob job, EvaluationInsights ai, String owner) {
+    String jd = job.text();
     Evaluation entity = new Evaluation();
+    entity.setOwner(owner);
     entity.setResumeText(resume);
     entity.setJobDescription(jd);
-    entity.setMissingSkills((List<String>) ai.getOrDefault("missingSkills", List.of()));
-    entity.setSuggestions((List<String>) ai.getOrDefault("suggestions", List.of()));
-    entity.setRewrittenBullets((List<String>) ai.getOrDefault("rewrittenBullets", List.of()));
+    entity.setResumeDigest(blobs.store(resume));
+    entity.setJobDescriptionDigest(blobs.store(jd));
+    entity.setJobDescriptionId(job.id());
+    entity.setInsights(ai.lists());
+    entity.setMatchScore(ai.matchScore());
     repository.save(entity);
+    events.publishEvent(new EvaluationSavedEvent(entity.getId(), owner, entity.getCreatedAt(), entity.getResumeDigest(),
+        resume, entity.getJobDescriptionDigest(), jd, job.id(), entity.getMissingSkills(), entity.getMatchScore()));
+    return toResponse(entity);
+  }
+
+  // response reads a stored evaluation back as a response, null when there is none with this id
+  public EvaluationResponse response(Long id) {
+    Evaluation entity = find(id);
+    return entity == null ? null : toResponse(entity);
+  }
 
+  private static EvaluationResponse toResponse(Evaluation entity) {
     return new EvaluationResponse(
         entity.getId(),
         entity.getMissingSkills(),
         entity.getSuggestions(),
         entity.getRewrittenBullets(),
         entity.getResumeText(),
-        entity.getJobDescription());
-  }
-
-  private String extractText(MultipartFile file) {
-    //if the resume have no file name return nothing response
-    if (file == null || file.isEmpty()) return "";
-    //But resume have a original name store in original variable
-    String original = file.getOriginalFilename();
-    //if original have no name return default name resume but it's have name return into lowercase
-    String name = (original == null) ? "resume" : original.toLowerCase();
-
-    //if the resume have pdf extension then read the pdf file and extract the text
-    try {
-      if (name.endsWith(".pdf")) {
-        //create a temporary file to store the pdf file
-        File tmp = Files.createTempFile("resume-", ".pdf").toFile();
-        //transfer the pdf file to the temporary file
-        file.transferTo(tmp);
-        //read the pdf file and extract the text
-        PdfDocumentReaderConfig cfg = PdfDocumentReaderConfig.builder().build();
-        //read the pdf file and extract the text
-        PagePdfDocumentReader reader = new PagePdfDocumentReader(new FileSystemResource(tmp), cfg);
-        StringBuilder sb = new StringBuilder();
-        //store the pdf file text in sb variable
-        reader.get().forEach(d -> sb.append(d.getText()).append("\n"));
-        //delete the temporary file
-        tmp.delete();
-        //return the pdf file text
-        return sb.toString();
-      }
-      //if the resume have not pdf extension then read the file and extract the text
-      return new String(file.getBytes());
-    } catch (IOException e) {
-      return "";
-    }
+        entity.getJobDescription(),
+        entity.getJobDescriptionId(),
+        entity.getMatchScore());
   }
 
   //generateInsights is the method to generate the insights from the resume and job description
   //insights are missingSkills, suggestions, rewrittenBullets
-  private Map<String, Object> generateInsights(String resume, String jd) {
-
-    //prompt is the prompt to generate the insights from the resume and job description
-    String prompt = """
-                    You are an ATS resume expert. Given RESUME and JOB DESCRIPTION, return JSON with keys: missingSkills (array), suggestions (array of short strings), rewrittenBullets (array of bullet strings).
-                    Identify missing skills based on the job description.
-                    Provide actionable suggestions to improve the resume.
-                    Rewrite bullet points to be more impactful using action verbs and metrics.
-                    Keep responses concise. Return only JSON.
-                    RESUME:
-                    """ + resume + "\nJOB DESCRIPTION:\n" + jd + "\nReturn only JSON.";
+  //modelScore of the result is false when the match score is the local engine's substitute
+  private Generated generateInsights(String resume, PreparedJob job) {
+    String jd = job.text();
+    //a repeated resume and job description pair is answered from the cache without calling the model
+    String key = cache.key(resume, jd, PROMPT_VERSION, model);
+    EvaluationInsights cached = cache.get(key);
+    if (cached != null) return new Generated(cached, true);
+
+    long start = System.nanoTime();
+    String promptResume = preprocessor.resume(resume).text();
+    String prompt = buildPrompt(promptResume, job);
+    metrics.record(Stage.PROMPT, System.nanoTime() - start);
     String content;
     try {
       //call the chat model to generate the insights from the resume and job description
-      content = chatClient.prompt().user(prompt).call().content();
+      //concurrent calls for the same job description may be answered by one combined prompt
+      content = metrics.time(Stage.LLM, () -> batcher.call(promptResume, job, prompt));
     } catch (Exception ex) {
       //if the chat model not available then return the default insights
-      java.util.Map<String, Object> out = new java.util.HashMap<>();
-      out.put("missingSkills", java.util.List.of());
-      out.put("suggestions", java.util.List.of("Chat model not available", "Install or configure Ollama chat model"));
-      out.put("rewrittenBullets", java.util.List.of());
-      return out;
+      return new Generated(unavailableInsights(resume, job), false);
     }
-    try {
-      //parse the json response from the chat model
-      com.fasterxml.jackson.databind.ObjectMapper om = new com.fasterxml.jackson.databind.ObjectMapper();
-      //parse the json response from the chat model and store in map variable
-      Map<String, Object> map = om.readValue(content, om.getTypeFactory().constructMapType(Map.class, String.class, Object.class));
-      //convert the missingSkills, suggestions, rewrittenBullets to list of string
-      List<String> ms = toStringList(map.get("missingSkills"));
-      //convert the suggestions to list of string
-      List<String> sug = toStringList(map.get("suggestions"));
-      //convert the rewrittenBullets to list of string
-      List<String> bullets = toStringList(map.get("rewrittenBullets"));
-
-      //if the suggestions or rewrittenBullets are empty then generate the fallback suggestions or rewrittenBullets
-      if (sug == null || sug.isEmpty()) sug = fallbackSuggestions(ms, jd);
-      if (bullets == null || bullets.isEmpty()) bullets = fallbackBullets(ms);
-
-      //return the insights in map variable
-      //missingSkills, suggestions, rewrittenBullets are the keys in map variable
-      Map<String, Object> out = new java.util.HashMap<>();
-      out.put("missingSkills", ms);
-      out.put("suggestions", sug);
-      out.put("rewrittenBullets", bullets);
-      return out;
-    } catch (JsonProcessingException e) {
-      Map<String, Object> out = new java.util.HashMap<>();
-      out.put("missingSkills", List.of());
-      out.put("suggestions", List.of());
-      out.put("rewrittenBullets", List.of());
-      return out;
+    //parse the json response from the chat model, fenced, chatty or cut off answers keep their complete fields
+    InsightsParser.Result parsed = metrics.time(Stage.PARSE, () -> InsightsParser.parse(content));
+    if (parsed.recovered()) metrics.parseRecovered();
+    EvaluationInsights answer = parsed.insights();
+    Set<Field> missing = EnumSet.copyOf(parsed.missing());
+    Set<Field> invalid = InsightsSchema.invalid(parsed);
+    //ask again for the fields that broke the schema only, the valid ones are kept and not generated twice
+    int retries = 0;
+    while (!invalid.isEmpty() && retries < maxRetries) {
+      retries++;
+      Set<Field> asked = EnumSet.copyOf(invalid);
+      asked.forEach(metrics::retried);
+      String retryPrompt = retryPrompt(promptResume, job, asked);
+      String retryContent;
+      try {
+        retryContent = metrics.time(Stage.LLM, () -> router.call(retryPrompt, InsightsSchema.single(asked)));
+      } catch (RuntimeException e) {
+        //the model went away in between, keep what the first answer had
+        break;
+      }
+      InsightsParser.Result retry = metrics.time(Stage.PARSE, () -> InsightsParser.parse(retryContent));
+      Set<Field> fixed = EnumSet.copyOf(asked);
+      fixed.removeAll(InsightsSchema.invalid(retry));
+      answer = answer.with(retry.insights(), fixed);
+      invalid.removeAll(fixed);
+      missing.removeAll(fixed);
     }
+    metrics.retries(retries);
+    if (missing.size() == Field.values().length) {
+      //not a single usable field, answer from the local engine instead of empty lists
+      metrics.parseFailure();
+      LocalScoringEngine.Result local = scoring.score(job.analysis(), resume);
+      return new Generated(insights(local.missingSkills(), List.of(), List.of(), local.score(), jd), false);
+    }
+    countFallbacks(answer.suggestions(), answer.rewrittenBullets(), answer.matchScore());
+    EvaluationInsights out = insights(answer.missingSkills(), answer.suggestions(), answer.rewrittenBullets(),
+        scoreOrLocal(answer.matchScore(), resume, job), jd);
+    //only complete model answers are cached, the fallbacks and partly recovered answers are not; an empty
+    //suggestions or rewrittenBullets list the retries could not fix was filled with fallbacks, it is not cached either
+    if (missing.isEmpty() && invalid.isEmpty()) cache.put(key, out);
+    return new Generated(out, answer.matchScore() != null);
+  }
+
+  //buildPrompt is the prompt to generate the insights from the resume and job description
+  //resume is the preprocessed resume text; the job prefix comes first and is the same for every resume of the job
+  //the prompt and fallback helpers are static and package private so the benchmarks can call them
+  static String buildPrompt(String resume, PreparedJob job) {
+    return job.promptPrefix() + "RESUME:\n" + resume + "\nReturn JSON with keys: " + INSIGHT_FIELDS + ".";
+  }
+
+  //retryPrompt asks for the given fields only, the ones the first answer was missing or had invalid
+  //it repeats the first prompt up to the end of the resume, the backend can reuse all of it
+  static String retryPrompt(String resume, PreparedJob job, Set<Field> fields) {
+    return job.promptPrefix() + "RESUME:\n" + resume + "\nReturn JSON with only the keys: "
+        + InsightsSchema.describe(fields) + ".";
+  }
+
+  //insights builds the insights from the parsed model lists
+  //if the suggestions or rewrittenBullets are empty then generate the fallback suggestions or rewrittenBullets
+  private EvaluationInsights insights(List<String> ms, List<String> sug, List<String> bullets, Integer score, String jd) {
+    if (sug == null || sug.isEmpty()) sug = fallbackSuggestions(ms, jd);
+    if (bullets == null || bullets.isEmpty()) bullets = fallbackBullets(ms);
+    //score stays null when nobody gave one
+    return new EvaluationInsights(ms, sug, bullets, score);
+  }
+
+  //unavailableInsights is the answer when the chat model cannot be reached
+  //missing skills and score still come from the local engine, the notice tells the user the model was skipped
+  private EvaluationInsights unavailableInsights(String resume, PreparedJob job) {
+    metrics.fallback("model_unavailable");
+    LocalScoringEngine.Result local = scoring.score(job.analysis(), resume);
+    List<String> sug = new ArrayList<>(List.of("Chat model not available", "Install or configure Ollama chat model"));
+    sug.addAll(fallbackSuggestions(local.missingSkills(), job.text()));
+    return new EvaluationInsights(local.missingSkills(), sug, fallbackBullets(local.missingSkills()), local.score());
+  }
+
+  //countFallbacks counts the parts of a model answer that the fallbacks have to fill in
+  private void countFallbacks(List<String> sug, List<String> bullets, Integer modelScore) {
+    if (sug.isEmpty()) metrics.fallback("suggestions");
+    if (bullets.isEmpty()) metrics.fallback("bullets");
+    if (modelScore == null) metrics.fallback("score");
+  }
+
+  //scoreOrLocal is the model match score, or the local score when the model did not give a usable one
+  private Integer scoreOrLocal(Integer modelScore, String resume, PreparedJob job) {
+    return modelScore != null ? modelScore : scoring.score(job.analysis(), resume).score();
   }
 
   //fallbackSuggestions is the method to generate the fallback suggestions from the missingSkills and job description
-  private List<String> fallbackSuggestions(List<String> skills, String jd) {
+  static List<String> fallbackSuggestions(List<String> skills, String jd) {
     List<String> base = skills.size() > 10 ? skills.subList(0, 10) : skills;
     List<String> out = new java.util.ArrayList<>();
     /*
@@ -187,7 +486,7 @@ public class EvaluationService {
   }
 
   //fallbackBullets is the method to generate the fallback rewrittenBullets from the missingSkills
-  private List<String> fallbackBullets(List<String> skills) {
+  static List<String> fallbackBullets(List<String> skills) {
     /*
     it generate default rewrittenBullets for the missingSkills
     like a Delivered measurable outcomes using springboot, improving KPIs and efficiency
@@ -202,15 +501,4 @@ public class EvaluationService {
     out.addAll(set);
     return out;
   }
-
-  //toStringList is the method to convert the object to list of string
-  private List<String> toStringList(Object o) {
-    //if the object is null then return empty list
-    List<String> r = new ArrayList<>();
-    
-    if (o instanceof List<?> l) {
-      for (Object x : l) r.add(String.valueOf(x));
-    }
-    return r;
-  }
 }
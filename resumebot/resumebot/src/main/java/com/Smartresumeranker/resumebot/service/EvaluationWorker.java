@@ -0,0 +1,253 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import com.Smartresumeranker.resumebot.model.EvaluationJob;
+
+import jakarta.annotation.PreDestroy;
+
+// EvaluationWorker pulls jobs from the durable queue and evaluates them, one worker runs on every node
+// every poll-interval it claims as many jobs as it has free threads, while they run it renews their leases
+// every heartbeat; a node that dies stops renewing and its jobs are claimed again by the other workers once
+// their lease expired; a node shutting down gives back the claimed jobs that did not start yet and lets the
+// running ones finish, for up to shutdown-grace, the ones still running after that are claimed again once their
+// lease expired
+// a job that finds no evaluation slot (JobDeferredException) goes back to the queue for later, it keeps its attempts
+// adding nodes adds workers, the claim query is the only point they meet
+// resumebot.jobs.worker.enabled=false keeps a node from evaluating, it still accepts and answers jobs
+@Component
+public class EvaluationWorker {
+  private static final Logger log = LoggerFactory.getLogger(EvaluationWorker.class);
+  private static final Duration PURGE_INTERVAL = Duration.ofMinutes(5);
+
+  private final EvaluationJobStore store;
+  private final Function<EvaluationJob, Long> handler;
+  private final Executor executor;
+  private final String id;
+  private final int concurrency;
+  private final Duration lease;
+  private final int maxAttempts;
+  private final Duration retryDelay;
+  private final Duration shutdownGrace;
+  // running are the ids of the jobs this worker claimed and did not finish, queued the ones among them that wait
+  // for an executor thread; whoever removes a job from queued owns it: run starts it, stop gives it back
+  private final Set<Long> running = ConcurrentHashMap.newKeySet();
+  private final Set<Long> queued = ConcurrentHashMap.newKeySet();
+  private final AtomicBoolean stopped = new AtomicBoolean();
+  private final AtomicLong completed = new AtomicLong();
+  private final AtomicLong lostLeases = new AtomicLong();
+  private TaskScheduler scheduler;
+  private boolean enabled;
+  private Duration pollInterval;
+  private Duration retention;
+  private List<ScheduledFuture<?>> schedules = List.of();
+  private ScheduledFuture<?> heartbeats;
+
+  @Autowired
+  public EvaluationWorker(EvaluationJobStore store, EvaluationJobService jobs,
+      @Qualifier("evaluationExecutor") Executor executor,
+      @Qualifier("jobWorkerScheduler") TaskScheduler scheduler,
+      @Value("${resumebot.jobs.worker.enabled:true}") boolean enabled,
+      @Value("${resumebot.jobs.worker.id:}") String id,
+      @Value("${resumebot.jobs.threads:4}") int concurrency,
+      @Value("${resumebot.jobs.poll-interval:PT0.5S}") Duration pollInterval,
+      @Value("${resumebot.jobs.lease:PT2M}") Duration lease,
+      @Value("${resumebot.jobs.max-attempts:3}") int maxAttempts,
+      @Value("${resumebot.jobs.retention:PT1H}") Duration retention,
+      @Value("${resumebot.jobs.shutdown-grace:PT30S}") Duration shutdownGrace) {
+    this(store, jobs::execute, executor, StringUtils.hasText(id) ? id : defaultId(), concurrency, lease, maxAttempts,
+        shutdownGrace);
+    this.scheduler = scheduler;
+    this.enabled = enabled;
+    this.pollInterval = pollInterval;
+    this.retention = retention;
+  }
+
+  // package private constructor for tests, the worker is driven by calling poll and heartbeat
+  EvaluationWorker(EvaluationJobStore store, Function<EvaluationJob, Long> handler, Executor executor, String id,
+      int concurrency, Duration lease, int maxAttempts, Duration shutdownGrace) {
+    this.store = store;
+    this.handler = handler;
+    this.executor = executor;
+    this.id = id;
+    this.concurrency = Math.max(1, concurrency);
+    this.lease = lease;
+    this.maxAttempts = Math.max(1, maxAttempts);
+    this.retryDelay = Duration.ofSeconds(5);
+    this.shutdownGrace = shutdownGrace;
+  }
+
+  //start schedules the polling once the application is ready, not while the context is still starting
+  //the purge of finished jobs runs on its own timer on every node, also on an idle one or one that does not evaluate
+  @EventListener(ApplicationReadyEvent.class)
+  public void start() {
+    List<ScheduledFuture<?>> started = new ArrayList<>();
+    started.add(scheduler.scheduleWithFixedDelay(this::purgeQuietly, PURGE_INTERVAL));
+    if (enabled) {
+      log.info("Evaluation worker {} started with {} threads", id, concurrency);
+      //the heartbeat has to renew a lease well before it runs out
+      Duration heartbeat = lease.dividedBy(3);
+      started.add(scheduler.scheduleWithFixedDelay(this::pollQuietly, pollInterval));
+      heartbeats = scheduler.scheduleWithFixedDelay(this::heartbeatQuietly, heartbeat);
+    }
+    schedules = List.copyOf(started);
+  }
+
+  //stop claims nothing more, gives the jobs that did not start back (another worker picks them up at once) and
+  //waits up to shutdown-grace for the running ones, the heartbeat keeps their leases until then
+  //a running job is never given back: it would run twice, here and on the worker that claims it
+  @PreDestroy
+  public void stop() {
+    if (!stopped.compareAndSet(false, true)) return;
+    schedules.forEach(s -> s.cancel(false));
+    List<Long> notStarted = new ArrayList<>();
+    for (Long job : Set.copyOf(queued)) {
+      if (queued.remove(job)) {
+        running.remove(job);
+        notStarted.add(job);
+      }
+    }
+    int released = store.release(id, notStarted);
+    if (released > 0) log.info("Evaluation worker {} gave {} queued jobs back", id, released);
+    long deadline = System.nanoTime() + shutdownGrace.toNanos();
+    try {
+      while (!running.isEmpty() && System.nanoTime() < deadline) Thread.sleep(50);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (heartbeats != null) heartbeats.cancel(false);
+    if (!running.isEmpty()) log.warn("Evaluation worker {} stopped with {} jobs still running", id, running.size());
+  }
+
+  // poll claims as many jobs as there are free threads and starts them, it returns the number started
+  public int poll() {
+    if (stopped.get()) return 0;
+    int free = concurrency - running.size();
+    if (free <= 0) return 0;
+    List<EvaluationJob> claimed = store.claim(id, free, lease, maxAttempts);
+    for (EvaluationJob job : claimed) {
+      running.add(job.getId());
+      queued.add(job.getId());
+      try {
+        executor.execute(() -> run(job));
+      } catch (TaskRejectedException e) {
+        queued.remove(job.getId());
+        running.remove(job.getId());
+        store.release(id, List.of(job.getId()));
+      }
+    }
+    return claimed.size();
+  }
+
+  // heartbeat renews the leases of the running jobs, a job whose lease was lost runs to its end but its
+  // result is not recorded, the worker that claimed it again does that
+  public void heartbeat() {
+    if (running.isEmpty()) return;
+    Set<Long> ids = Set.copyOf(running);
+    Set<Long> held = store.heartbeat(id, ids, lease);
+    for (Long job : ids) {
+      if (!held.contains(job) && running.contains(job)) log.warn("Evaluation worker {} lost the lease of job {}", id, job);
+    }
+  }
+
+  public String id() {
+    return id;
+  }
+
+  public int running() {
+    return running.size();
+  }
+
+  public long completed() {
+    return completed.get();
+  }
+
+  public long lostLeases() {
+    return lostLeases.get();
+  }
+
+  private void run(EvaluationJob job) {
+    //stop gave the job back already
+    if (!queued.remove(job.getId())) return;
+    try {
+      Long evaluationId = handler.apply(job);
+      if (store.complete(id, job.getId(), evaluationId)) {
+        completed.incrementAndGet();
+      } else {
+        lostLeases.incrementAndGet();
+      }
+    } catch (JobDeferredException e) {
+      //no slot on this node right now, the job itself is fine
+      store.defer(id, job.getId(), e.delay());
+    } catch (RuntimeException e) {
+      String error = String.valueOf(e.getMessage());
+      //attempts already counts this run, the last attempt fails the job
+      if (job.getAttempts() < maxAttempts) {
+        store.retry(id, job.getId(), retryDelay.multipliedBy(job.getAttempts()), error);
+      } else {
+        store.fail(id, job.getId(), error);
+      }
+    } finally {
+      running.remove(job.getId());
+    }
+  }
+
+  //the scheduled tasks must not die on a database hiccup, the next round tries again
+  private void pollQuietly() {
+    try {
+      poll();
+    } catch (RuntimeException e) {
+      log.warn("Evaluation worker {} could not claim jobs: {}", id, e.getMessage());
+    }
+  }
+
+  private void heartbeatQuietly() {
+    try {
+      heartbeat();
+    } catch (RuntimeException e) {
+      log.warn("Evaluation worker {} could not renew its leases: {}", id, e.getMessage());
+    }
+  }
+
+  private void purgeQuietly() {
+    try {
+      store.purge(retention);
+    } catch (RuntimeException e) {
+      log.warn("Evaluation worker {} could not purge finished jobs: {}", id, e.getMessage());
+    }
+  }
+
+  private static String defaultId() {
+    String host;
+    try {
+      host = InetAddress.getLocalHost().getHostName();
+    } catch (UnknownHostException e) {
+      host = "node";
+    }
+    return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+  }
+}
@@ -0,0 +1,229 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import com.Smartresumeranker.resumebot.dto.TextCacheStats;
+
+import jakarta.annotation.PostConstruct;
+
+// ExtractedTextCache keeps the extracted text of uploaded resumes by SHA-256 of the upload bytes
+// the same pdf uploaded again, for another job, is answered without running PDFBox
+// memory is bounded by total characters with LRU eviction, the optional disk store keeps one file per digest
+// the texts are personal data: a disk file is deleted once it is older than retention, and the disk store is
+// bounded by disk-max-bytes, the oldest files go first; the sweep runs at startup and every SWEEP_INTERVAL
+@Component
+public class ExtractedTextCache {
+  private static final Logger log = LoggerFactory.getLogger(ExtractedTextCache.class);
+  private static final Duration SWEEP_INTERVAL = Duration.ofMinutes(10);
+
+  private final long maxChars;
+  private final Path dir;
+  private final long diskMaxBytes;
+  private final Duration retention;
+  private final TaskScheduler scheduler;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong diskHits = new AtomicLong();
+  private final AtomicLong bytesSaved = new AtomicLong();
+  // access ordered map, the eldest entry is the least recently used one
+  private final LinkedHashMap<String, String> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private long chars;
+  // disk are the sizes of the files in the disk store, oldest written first, guarded by itself
+  private final LinkedHashMap<String, Long> disk = new LinkedHashMap<>();
+  private long diskBytes;
+
+  public ExtractedTextCache(
+      @Value("${resumebot.cache.text.max-chars:20000000}") long maxChars,
+      @Value("${resumebot.cache.text.dir:}") String dir,
+      @Value("${resumebot.cache.text.disk-max-bytes:536870912}") long diskMaxBytes,
+      @Value("${resumebot.cache.text.retention:P7D}") Duration retention,
+      @Qualifier("cacheScheduler") TaskScheduler scheduler) {
+    this.maxChars = maxChars;
+    this.dir = StringUtils.hasText(dir) ? Path.of(dir) : null;
+    this.diskMaxBytes = diskMaxBytes;
+    this.retention = retention;
+    this.scheduler = scheduler;
+  }
+
+  @PostConstruct
+  void start() {
+    if (dir == null) return;
+    sweep();
+    scheduler.scheduleWithFixedDelay(this::sweep, Instant.now().plus(SWEEP_INTERVAL), SWEEP_INTERVAL);
+  }
+
+  // get returns the cached text of the upload with this digest, or null
+  // sourceBytes is the upload size, counted as saved on a hit
+  public String get(String digest, long sourceBytes) {
+    String text;
+    synchronized (this) {
+      text = entries.get(digest);
+    }
+    if (text == null && dir != null) {
+      text = readDisk(digest);
+      if (text != null) {
+        diskHits.incrementAndGet();
+        remember(digest, text);
+      }
+    }
+    if (text == null) {
+      misses.incrementAndGet();
+      return null;
+    }
+    hits.incrementAndGet();
+    bytesSaved.addAndGet(sourceBytes);
+    return text;
+  }
+
+  public void put(String digest, String text) {
+    remember(digest, text);
+    if (dir != null) writeDisk(digest, text);
+  }
+
+  public synchronized TextCacheStats stats() {
+    long h = hits.get();
+    long m = misses.get();
+    return new TextCacheStats(h, m, entries.size(), h + m == 0 ? 0.0 : (double) h / (h + m), bytesSaved.get(), diskHits.get());
+  }
+
+  private synchronized void remember(String digest, String text) {
+    //a single text larger than the whole budget is not kept in memory
+    if (text.length() > maxChars) return;
+    String old = entries.put(digest, text);
+    if (old != null) chars -= old.length();
+    chars += text.length();
+    var it = entries.entrySet().iterator();
+    while (chars > maxChars && it.hasNext()) {
+      Map.Entry<String, String> eldest = it.next();
+      chars -= eldest.getValue().length();
+      it.remove();
+    }
+  }
+
+  //readDisk reads the stored text, a file past its retention is deleted instead, the sweep may not have run yet
+  private String readDisk(String digest) {
+    Path file = dir.resolve(digest + ".txt");
+    try {
+      if (!Files.isRegularFile(file)) return null;
+      if (expired(Files.getLastModifiedTime(file).toInstant())) {
+        delete(digest);
+        return null;
+      }
+      return Files.readString(file, StandardCharsets.UTF_8);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  //write through a temp file so a concurrent reader never sees half a file
+  private void writeDisk(String digest, String text) {
+    try {
+      Files.createDirectories(dir);
+      Path file = dir.resolve(digest + ".txt");
+      if (Files.exists(file)) return;
+      Path tmp = Files.createTempFile(dir, digest, ".tmp");
+      Files.writeString(tmp, text, StandardCharsets.UTF_8);
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      List<String> evicted = new ArrayList<>();
+      synchronized (disk) {
+        Long old = disk.put(digest, Files.size(file));
+        diskBytes += disk.get(digest) - (old == null ? 0 : old);
+        var it = disk.entrySet().iterator();
+        while (diskBytes > diskMaxBytes && it.hasNext()) {
+          Map.Entry<String, Long> eldest = it.next();
+          diskBytes -= eldest.getValue();
+          evicted.add(eldest.getKey());
+          it.remove();
+        }
+      }
+      evicted.forEach(this::delete);
+    } catch (IOException e) {
+      //the disk store is best effort, the memory cache keeps working
+    }
+  }
+
+  //sweep deletes the expired files and the oldest ones beyond disk-max-bytes, and rebuilds the size index from
+  //the directory, files written by another node sharing it count as well; leftover temp files are deleted
+  void sweep() {
+    record Stored(String digest, long size, Instant modified) {}
+    List<Stored> stored = new ArrayList<>();
+    int deleted = 0;
+    try (Stream<Path> files = Files.isDirectory(dir) ? Files.list(dir) : Stream.empty()) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        String name = file.getFileName().toString();
+        BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        Instant modified = attrs.lastModifiedTime().toInstant();
+        if (name.endsWith(".tmp") && modified.isBefore(Instant.now().minus(SWEEP_INTERVAL))) {
+          Files.deleteIfExists(file);
+        } else if (name.endsWith(".txt") && expired(modified)) {
+          Files.deleteIfExists(file);
+          deleted++;
+        } else if (name.endsWith(".txt")) {
+          stored.add(new Stored(name.substring(0, name.length() - 4), attrs.size(), modified));
+        }
+      }
+    } catch (IOException e) {
+      log.warn("Text cache sweep of {} failed: {}", dir, e.getMessage());
+      return;
+    }
+    stored.sort(Comparator.comparing(Stored::modified));
+    List<String> evicted = new ArrayList<>();
+    synchronized (disk) {
+      disk.clear();
+      diskBytes = 0;
+      for (Stored s : stored) {
+        disk.put(s.digest(), s.size());
+        diskBytes += s.size();
+      }
+      var it = disk.entrySet().iterator();
+      while (diskBytes > diskMaxBytes && it.hasNext()) {
+        Map.Entry<String, Long> eldest = it.next();
+        diskBytes -= eldest.getValue();
+        evicted.add(eldest.getKey());
+        it.remove();
+      }
+    }
+    evicted.forEach(this::delete);
+    if (deleted + evicted.size() > 0) {
+      log.info("Text cache deleted {} expired and {} evicted files from {}", deleted, evicted.size(), dir);
+    }
+  }
+
+  private boolean expired(Instant written) {
+    return written.isBefore(Instant.now().minus(retention));
+  }
+
+  private void delete(String digest) {
+    synchronized (disk) {
+      Long size = disk.remove(digest);
+      if (size != null) diskBytes -= size;
+    }
+    try {
+      Files.deleteIfExists(dir.resolve(digest + ".txt"));
+    } catch (IOException e) {
+      //the next sweep tries again
+    }
+  }
+}
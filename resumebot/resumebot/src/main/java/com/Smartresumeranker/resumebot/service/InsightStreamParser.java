@@ -0,0 +1,148 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+
+// InsightStreamParser parses the model answer while it is still being generated
+// every element of a top level array (missingSkills, suggestions, rewrittenBullets) is handed to the listener
+// as soon as it is complete, converted to a string the same way InsightsParser does
+// one instance parses one answer and is not thread safe
+public class InsightStreamParser {
+  private static final JsonFactory FACTORY = InsightsParser.MAPPER.getFactory();
+
+  private final BiConsumer<String, String> listener;
+  private final JsonParser parser;
+  private final ByteArrayFeeder feeder;
+  // lists collects every element seen so far per top level field
+  private final Map<String, List<String>> lists = new LinkedHashMap<>();
+  // values collects the top level scalars, like matchScore
+  private final Map<String, Object> values = new LinkedHashMap<>();
+  // depth is the current nesting, 1 is inside the root object, 2 inside one of its arrays
+  private int depth;
+  private String field;
+  // inArray is true when the container at depth 2 is an array, only array elements are emitted
+  private boolean inArray;
+  // element buffers an object or array element of a top level array until it is complete
+  private TokenBuffer element;
+  private int elementDepth;
+  private boolean started;
+  private boolean finished;
+
+  public InsightStreamParser(BiConsumer<String, String> listener) {
+    this.listener = listener;
+    try {
+      this.parser = FACTORY.createNonBlockingByteArrayParser();
+    } catch (IOException e) {
+      throw new IllegalStateException("Cannot create JSON parser", e);
+    }
+    this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+  }
+
+  // feed parses the next chunk of model output
+  public void feed(String chunk) throws IOException {
+    if (finished || chunk == null || chunk.isEmpty()) return;
+    if (!started) {
+      //skip anything before the JSON object, models like to open with ```json
+      int brace = chunk.indexOf('{');
+      if (brace < 0) return;
+      chunk = chunk.substring(brace);
+      started = true;
+    }
+    byte[] bytes = chunk.getBytes(StandardCharsets.UTF_8);
+    feeder.feedInput(bytes, 0, bytes.length);
+    drain();
+  }
+
+  // result returns every element parsed so far, per top level field
+  public Map<String, List<String>> result() {
+    return lists;
+  }
+
+  public List<String> list(String name) {
+    return lists.getOrDefault(name, List.of());
+  }
+
+  // value returns a top level scalar, a number or a string, or null when absent
+  public Object value(String name) {
+    return values.get(name);
+  }
+
+  // finished is true once the root object has been closed
+  public boolean finished() {
+    return finished;
+  }
+
+  private void drain() throws IOException {
+    JsonToken t;
+    while (!finished && (t = parser.nextToken()) != null && t != JsonToken.NOT_AVAILABLE) {
+      if (element != null) {
+        bufferElement(t);
+        continue;
+      }
+      switch (t) {
+        case START_OBJECT, START_ARRAY -> {
+          if (depth == 2 && inArray) {
+            //an object or array inside a top level array, collect it until it closes
+            element = new TokenBuffer(parser);
+            element.copyCurrentEvent(parser);
+            elementDepth = 1;
+          } else {
+            if (depth == 1) inArray = t == JsonToken.START_ARRAY;
+            depth++;
+          }
+        }
+        case END_OBJECT, END_ARRAY -> {
+          depth--;
+          if (depth == 0) {
+            //root object closed, whatever follows (closing fences, comments) is ignored
+            finished = true;
+            feeder.endOfInput();
+          }
+        }
+        case FIELD_NAME -> {
+          if (depth == 1) field = parser.currentName();
+        }
+        default -> {
+          if (depth == 2 && inArray && t.isScalarValue()) {
+            //null elements are skipped like InsightsParser does
+            if (t != JsonToken.VALUE_NULL) emit(parser.getText());
+          }
+          else if (depth == 1 && field != null && t.isNumeric()) values.put(field, parser.getNumberValue());
+          else if (depth == 1 && field != null && t == JsonToken.VALUE_STRING) values.put(field, parser.getText());
+        }
+      }
+    }
+  }
+
+  private void bufferElement(JsonToken t) throws IOException {
+    element.copyCurrentEvent(parser);
+    if (t == JsonToken.START_OBJECT || t == JsonToken.START_ARRAY) elementDepth++;
+    if (t == JsonToken.END_OBJECT || t == JsonToken.END_ARRAY) elementDepth--;
+    if (elementDepth == 0) {
+      JsonNode value;
+      try (JsonParser p = element.asParser(InsightsParser.MAPPER)) {
+        value = InsightsParser.MAPPER.readTree(p);
+      }
+      element = null;
+      emit(InsightsParser.text(value));
+    }
+  }
+
+  private void emit(String value) {
+    if (field == null) return;
+    lists.computeIfAbsent(field, k -> new ArrayList<>()).add(value);
+    listener.accept(field, value);
+  }
+}
@@ -0,0 +1,163 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.json.JsonReadFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+
+// InsightsParser turns a model answer into EvaluationInsights, it is stateless and thread safe
+// the answer is read with one streaming pass straight into the result lists, no Map or tree in between, and
+// it is lenient about what models get wrong:
+// - text around the JSON object (```json fences, "Here is the result:", a closing remark) is skipped
+// - comments, trailing commas, single quotes and unquoted field names are accepted
+// - a truncated answer keeps every field that was complete before the cut, an array cut in the middle is
+//   dropped, the fallbacks (or a retry) fill it in
+// - array elements that are objects or numbers are turned into text instead of failing the answer
+public final class InsightsParser {
+  // Field is one top level field of the answer
+  public enum Field {
+    MATCH_SCORE("matchScore"), MISSING_SKILLS("missingSkills"), SUGGESTIONS("suggestions"),
+    REWRITTEN_BULLETS("rewrittenBullets");
+
+    private final String json;
+
+    Field(String json) {
+      this.json = json;
+    }
+
+    public String json() {
+      return json;
+    }
+
+    static Field of(String name) {
+      for (Field f : values()) if (f.json.equals(name)) return f;
+      return null;
+    }
+  }
+
+  // Result is the parsed answer, missing are the fields the answer did not have complete, recovered is true
+  // when a plain JSON parse would have lost the answer: fences or text before the object, a cut or broken object
+  public record Result(EvaluationInsights insights, Set<Field> missing, boolean recovered) {
+    public boolean complete() {
+      return missing.isEmpty();
+    }
+
+    // empty is an answer without a single usable field
+    public boolean empty() {
+      return missing.size() == Field.values().length;
+    }
+  }
+
+  // MAPPER is the lenient mapper shared by everything that reads model answers
+  static final JsonMapper MAPPER = JsonMapper.builder()
+      .enable(JsonReadFeature.ALLOW_JAVA_COMMENTS, JsonReadFeature.ALLOW_YAML_COMMENTS,
+          JsonReadFeature.ALLOW_TRAILING_COMMA, JsonReadFeature.ALLOW_SINGLE_QUOTES,
+          JsonReadFeature.ALLOW_UNQUOTED_FIELD_NAMES, JsonReadFeature.ALLOW_UNESCAPED_CONTROL_CHARS,
+          JsonReadFeature.ALLOW_LEADING_PLUS_SIGN_FOR_NUMBERS)
+      .build();
+  private static final JsonFactory FACTORY = MAPPER.getFactory();
+
+  private InsightsParser() {
+  }
+
+  public static Result parse(String content) {
+    Set<Field> missing = EnumSet.allOf(Field.class);
+    int start = content == null ? -1 : content.indexOf('{');
+    if (start < 0) return new Result(new EvaluationInsights(null, null, null, null), missing, false);
+
+    boolean recovered = !content.substring(0, start).isBlank();
+    String json = content.substring(start);
+    Integer score = null;
+    List<String> skills = null, suggestions = null, bullets = null;
+    try (JsonParser p = FACTORY.createParser(json)) {
+      p.nextToken();
+      JsonToken t;
+      while ((t = p.nextToken()) == JsonToken.FIELD_NAME) {
+        Field field = Field.of(p.currentName());
+        t = p.nextToken();
+        if (field == null) {
+          p.skipChildren();
+          continue;
+        }
+        if (field == Field.MATCH_SCORE) {
+          score = t.isScalarValue() ? toScore(t, p) : skip(p);
+          continue;
+        }
+        //a field that is not an array (a string, an object) counts as missing
+        List<String> list = t == JsonToken.START_ARRAY ? readList(p) : skip(p);
+        if (list == null) continue;
+        missing.remove(field);
+        switch (field) {
+          case MISSING_SKILLS -> skills = list;
+          case SUGGESTIONS -> suggestions = list;
+          default -> bullets = list;
+        }
+      }
+      //whatever follows the root object (a closing fence, a remark) is ignored
+      if (t != JsonToken.END_OBJECT) recovered = true;
+    } catch (IOException e) {
+      //truncated or broken in the middle, everything complete before this point is kept
+      recovered = true;
+    }
+    if (score != null) missing.remove(Field.MATCH_SCORE);
+    return new Result(new EvaluationInsights(skills, suggestions, bullets, score), missing, recovered);
+  }
+
+  // toScore reads a match score, a number or a string like "78" or "78%", clamped to 0-100
+  // anything else is no score
+  static Integer toScore(Object o) {
+    double d;
+    if (o instanceof Number n) d = n.doubleValue();
+    else if (o instanceof String str) {
+      try {
+        d = Double.parseDouble(str.trim().replace("%", ""));
+      } catch (NumberFormatException e) {
+        return null;
+      }
+    } else return null;
+    return (int) Math.round(Math.max(0, Math.min(100, d)));
+  }
+
+  // text is the string form of one array element: strings as they are, objects with a single field as that
+  // field's value ({"skill": "Kafka"} is "Kafka"), anything else as its JSON
+  static String text(JsonNode node) {
+    if (node.isTextual()) return node.textValue();
+    if (node.isValueNode()) return node.asText();
+    if (node.isObject() && node.size() == 1 && node.elements().next().isValueNode()) {
+      return node.elements().next().asText();
+    }
+    return node.toString();
+  }
+
+  private static Integer toScore(JsonToken t, JsonParser p) throws IOException {
+    if (t.isNumeric()) return toScore(p.getNumberValue());
+    if (t == JsonToken.VALUE_STRING) return toScore(p.getText());
+    return null;
+  }
+
+  //readList reads the array the parser is on, it throws when the array is cut off so it is never half kept
+  private static List<String> readList(JsonParser p) throws IOException {
+    List<String> out = new ArrayList<>();
+    JsonToken t;
+    while ((t = p.nextToken()) != JsonToken.END_ARRAY) {
+      if (t == null) throw new IOException("Array not closed");
+      if (t == JsonToken.VALUE_NULL) continue;
+      if (t.isScalarValue()) out.add(p.getText());
+      else out.add(text(MAPPER.readTree(p)));
+    }
+    return out;
+  }
+
+  private static <T> T skip(JsonParser p) throws IOException {
+    p.skipChildren();
+    return null;
+  }
+}
@@ -0,0 +1,89 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.Smartresumeranker.resumebot.service.InsightsParser.Field;
+
+// InsightsSchema is the contract of a model answer, as prompt text and as JSON schema
+// with resumebot.llm.structured.enabled the schema goes to Ollama as the format of the call, the backend then
+// only samples tokens that fit it, so the answer is valid JSON with the right keys and types by construction
+// the same rules are checked after parsing (invalid), an answer from a backend that ignores the format or
+// that was cut off is retried for the fields that break them
+public final class InsightsSchema {
+  // DESCRIPTIONS are the prompt text of every field, in the order the fields are asked for
+  private static final Map<Field, String> DESCRIPTIONS = new EnumMap<>(Map.of(
+      Field.MATCH_SCORE, "matchScore (integer 0-100)",
+      Field.MISSING_SKILLS, "missingSkills (array)",
+      Field.SUGGESTIONS, "suggestions (array of short strings)",
+      Field.REWRITTEN_BULLETS, "rewrittenBullets (array of bullet strings)"));
+  // NOT_EMPTY are the lists an answer must fill, an empty missingSkills is a perfect match and valid
+  private static final Set<Field> NOT_EMPTY = EnumSet.of(Field.SUGGESTIONS, Field.REWRITTEN_BULLETS);
+  // ANSWER is the schema of a complete single resume answer
+  public static final Map<String, Object> ANSWER = Collections.unmodifiableMap(single(EnumSet.allOf(Field.class)));
+
+  private InsightsSchema() {
+  }
+
+  // describe is the prompt text for the given fields, "matchScore (integer 0-100), missingSkills (array), ..."
+  public static String describe(Set<Field> fields) {
+    return fields.stream().map(DESCRIPTIONS::get).collect(Collectors.joining(", "));
+  }
+
+  // single is the schema of an answer with only the given fields, all of them required
+  public static Map<String, Object> single(Set<Field> fields) {
+    Map<String, Object> properties = new LinkedHashMap<>();
+    for (Field f : fields) properties.put(f.json(), property(f));
+    Map<String, Object> schema = new LinkedHashMap<>();
+    schema.put("type", "object");
+    schema.put("properties", properties);
+    schema.put("required", fields.stream().map(Field::json).toList());
+    return schema;
+  }
+
+  // combined is the schema of a batched answer, {"results": [...]} with exactly count complete answers
+  public static Map<String, Object> combined(int count) {
+    Map<String, Object> results = new LinkedHashMap<>();
+    results.put("type", "array");
+    results.put("items", single(EnumSet.allOf(Field.class)));
+    results.put("minItems", count);
+    results.put("maxItems", count);
+    Map<String, Object> schema = new LinkedHashMap<>();
+    schema.put("type", "object");
+    schema.put("properties", Map.of("results", results));
+    schema.put("required", List.of("results"));
+    return schema;
+  }
+
+  // invalid are the fields of a parsed answer that break the schema: missing, cut off, of the wrong type or
+  // empty where the schema wants at least one item
+  public static Set<Field> invalid(InsightsParser.Result result) {
+    Set<Field> out = EnumSet.noneOf(Field.class);
+    out.addAll(result.missing());
+    EvaluationInsights insights = result.insights();
+    for (Field f : NOT_EMPTY) {
+      if (insights.list(f.json()).isEmpty()) out.add(f);
+    }
+    return out;
+  }
+
+  private static Map<String, Object> property(Field f) {
+    Map<String, Object> p = new LinkedHashMap<>();
+    if (f == Field.MATCH_SCORE) {
+      p.put("type", "integer");
+      p.put("minimum", 0);
+      p.put("maximum", 100);
+      return p;
+    }
+    p.put("type", "array");
+    p.put("items", Map.of("type", "string"));
+    if (NOT_EMPTY.contains(f)) p.put("minItems", 1);
+    return p;
+  }
+}
@@ -0,0 +1,19 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.time.Duration;
+
+// JobDeferredException tells the EvaluationWorker that a job could not start for a local reason (no evaluation
+// slot on this node), nothing is wrong with the job: it goes back to the queue without using up an attempt
+public class JobDeferredException extends RuntimeException {
+  private final Duration delay;
+
+  public JobDeferredException(String reason, Duration delay) {
+    super(reason);
+    this.delay = delay;
+  }
+
+  // delay is the time the job waits before it can be claimed again
+  public Duration delay() {
+    return delay;
+  }
+}
@@ -0,0 +1,125 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.Smartresumeranker.resumebot.dto.JobDescriptionProfileResponse;
+import com.Smartresumeranker.resumebot.dto.JobDescriptionRequest;
+import com.Smartresumeranker.resumebot.model.JobDescriptionProfile;
+import com.Smartresumeranker.resumebot.repository.JobDescriptionProfileRepository;
+
+// JobDescriptionService registers job descriptions once and hands out their prepared form by id
+// registering normalizes the text, analyzes its skills and requirements and builds the prompt prefix; all of
+// it is kept in memory, so an evaluation against a registered job description does no job description work
+// at all; profiles never change, a cached entry is never stale, an evicted one is rebuilt from text_blob
+@Service
+public class JobDescriptionService {
+  // Entry is a profile with everything derived from its text
+  private record Entry(JobDescriptionProfile profile, PreparedJob job, List<String> requirements) {}
+
+  private final JobDescriptionProfileRepository repository;
+  private final TextBlobStore blobs;
+  private final EvaluationService evaluationService;
+  private final PromptPreprocessor preprocessor;
+  // access ordered map, the eldest entry is the least recently used one; guarded by this
+  private final LinkedHashMap<Long, Entry> entries;
+
+  public JobDescriptionService(JobDescriptionProfileRepository repository, TextBlobStore blobs,
+      EvaluationService evaluationService, PromptPreprocessor preprocessor,
+      @Value("${resumebot.job-descriptions.cache-size:1000}") int cacheSize) {
+    this.repository = repository;
+    this.blobs = blobs;
+    this.evaluationService = evaluationService;
+    this.preprocessor = preprocessor;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+        return size() > cacheSize;
+      }
+    };
+  }
+
+  // register stores the normalized job description and returns it with its analysis
+  public JobDescriptionProfileResponse register(JobDescriptionRequest req, String owner) {
+    if (req == null || !StringUtils.hasText(req.jobDescription())) {
+      throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "jobDescription is required");
+    }
+    PreparedJob prepared = evaluationService.prepare(req.jobDescription());
+    JobDescriptionProfile profile = new JobDescriptionProfile();
+    profile.setOwner(owner);
+    profile.setTitle(StringUtils.hasText(req.title()) ? req.title().trim() : null);
+    profile.setTextDigest(blobs.store(prepared.text()));
+    repository.save(profile);
+    PreparedJob job = new PreparedJob(profile.getId(), prepared.text(), prepared.promptPrefix(), prepared.analysis());
+    return toResponse(put(new Entry(profile, job, preprocessor.requirements(job.text()))));
+  }
+
+  // find returns a profile of the owner, 404 for an unknown id or a profile of another user
+  public JobDescriptionProfileResponse find(Long id, String owner) {
+    return toResponse(owned(id, owner));
+  }
+
+  // list returns the profiles of one user, newest first
+  public List<JobDescriptionProfileResponse> list(String owner, int limit) {
+    return repository.findByOwnerOrderByIdDesc(owner, Limit.of(limit)).stream()
+        .map(p -> toResponse(entry(p.getId())))
+        .toList();
+  }
+
+  // prepared is the job description of a profile of the owner ready for evaluation, 404 for an unknown id
+  // or a profile of another user
+  public PreparedJob prepared(Long id, String owner) {
+    return owned(id, owner).job();
+  }
+
+  //owned answers another user's profile like an unknown one, its existence is not given away either
+  private Entry owned(Long id, String owner) {
+    Entry e = entry(id);
+    if (!Objects.equals(e.profile().getOwner(), owner)) throw notFound(id);
+    return e;
+  }
+
+  private Entry entry(Long id) {
+    synchronized (this) {
+      Entry e = entries.get(id);
+      if (e != null) return e;
+    }
+    //built outside the lock, two concurrent misses both build the same entry
+    JobDescriptionProfile profile = repository.findById(id)
+        .orElseThrow(() -> notFound(id));
+    String text = blobs.load(profile.getTextDigest());
+    if (text == null) throw new IllegalStateException("Text of job description " + id + " is missing");
+    //the stored text is already normalized, normalizing it again changes nothing
+    PreparedJob job = evaluationService.prepare(id, text);
+    return put(new Entry(profile, job, preprocessor.requirements(text)));
+  }
+
+  private static ResponseStatusException notFound(Long id) {
+    return new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown job description " + id);
+  }
+
+  private synchronized Entry put(Entry e) {
+    entries.put(e.profile().getId(), e);
+    return e;
+  }
+
+  private static JobDescriptionProfileResponse toResponse(Entry e) {
+    JobDescriptionProfile p = e.profile();
+    List<String> skills = e.job().analysis().skills().entrySet().stream()
+        .sorted(Map.Entry.<String, Double>comparingByValue(Comparator.reverseOrder()))
+        .map(Map.Entry::getKey)
+        .toList();
+    return new JobDescriptionProfileResponse(p.getId(), p.getTitle(), p.getOwner(), e.job().text(), skills,
+        e.requirements(), PromptPreprocessor.estimateTokens(e.job().promptPrefix()), p.getCreatedAt());
+  }
+}
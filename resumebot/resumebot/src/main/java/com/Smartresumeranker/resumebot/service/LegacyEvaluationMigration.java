@@ -0,0 +1,129 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.Smartresumeranker.resumebot.model.Insights;
+import com.Smartresumeranker.resumebot.model.InsightsConverter;
+
+// LegacyEvaluationMigration moves evaluations stored by the old schema into the compact one
+// old schema: resume_text and job_description lob columns on evaluation plus one join table per insight list
+// new schema: digests into text_blob and one JSON insights column
+// rows are migrated in id order, in chunks, and a row is done once its insights column is set,
+// so an interrupted migration simply continues on the next start
+@Component
+public class LegacyEvaluationMigration implements ApplicationRunner {
+  private static final Logger log = LoggerFactory.getLogger(LegacyEvaluationMigration.class);
+  // LIST_TABLES maps the old join tables to their value column
+  private static final Map<String, String> LIST_TABLES = Map.of(
+      "evaluation_missing_skills", "missing_skills",
+      "evaluation_suggestions", "suggestions",
+      "evaluation_rewritten_bullets", "rewritten_bullets");
+
+  private final JdbcTemplate jdbc;
+  // chunkReader is a copy of the template that returns at most one chunk of rows per query
+  private final JdbcTemplate chunkReader;
+  private final TextBlobStore blobs;
+  private final InsightsConverter converter = new InsightsConverter();
+  private final boolean enabled;
+  private final boolean dropLegacy;
+
+  public LegacyEvaluationMigration(JdbcTemplate jdbc, TextBlobStore blobs,
+      @Value("${resumebot.storage.migrate-legacy:true}") boolean enabled,
+      @Value("${resumebot.storage.drop-legacy:false}") boolean dropLegacy,
+      @Value("${resumebot.storage.migration-chunk:500}") int chunk) {
+    this.jdbc = jdbc;
+    this.chunkReader = new JdbcTemplate(jdbc.getDataSource());
+    this.chunkReader.setMaxRows(Math.max(1, chunk));
+    this.blobs = blobs;
+    this.enabled = enabled;
+    this.dropLegacy = dropLegacy;
+  }
+
+  @Override
+  public void run(ApplicationArguments args) {
+    if (!enabled || !hasColumn("evaluation", "resume_text")) return;
+    long migrated = migrate();
+    log.info("Migrated {} evaluations to the compact storage model", migrated);
+    if (dropLegacy) drop();
+  }
+
+  long migrate() {
+    long lastId = 0, count = 0;
+    while (true) {
+      List<Map<String, Object>> rows = chunkReader.queryForList("select id, resume_text, job_description "
+          + "from evaluation where insights is null and id > ? order by id", lastId);
+      if (rows.isEmpty()) return count;
+      long from = ((Number) rows.get(0).get("id")).longValue();
+      long to = ((Number) rows.get(rows.size() - 1).get("id")).longValue();
+      lastId = to;
+      Map<String, Map<Long, List<String>>> lists = new HashMap<>();
+      LIST_TABLES.forEach((table, column) -> lists.put(table, readList(table, column, from, to)));
+
+      List<Object[]> updates = new ArrayList<>();
+      for (Map<String, Object> row : rows) {
+        long id = ((Number) row.get("id")).longValue();
+        Insights insights = new Insights(
+            lists.get("evaluation_missing_skills").get(id),
+            lists.get("evaluation_suggestions").get(id),
+            lists.get("evaluation_rewritten_bullets").get(id));
+        updates.add(new Object[] {
+            converter.convertToDatabaseColumn(insights),
+            blobs.store((String) row.get("resume_text")),
+            blobs.store((String) row.get("job_description")),
+            id});
+      }
+      jdbc.batchUpdate("update evaluation set insights = ?, resume_digest = ?, job_description_digest = ? where id = ?",
+          updates);
+      count += rows.size();
+    }
+  }
+
+  //readList reads one old join table for an id range, grouped by evaluation
+  private Map<Long, List<String>> readList(String table, String column, long from, long to) {
+    Map<Long, List<String>> out = new HashMap<>();
+    if (!hasTable(table)) return out;
+    jdbc.query("select evaluation_id, " + column + " from " + table + " where evaluation_id between ? and ?",
+        rs -> {
+          out.computeIfAbsent(rs.getLong(1), k -> new ArrayList<>()).add(rs.getString(2));
+        }, from, to);
+    return out;
+  }
+
+  //drop removes the old tables and columns once every row has been migrated
+  private void drop() {
+    Integer left = jdbc.queryForObject("select count(*) from evaluation where insights is null", Integer.class);
+    if (left != null && left > 0) {
+      log.warn("Not dropping the legacy evaluation schema, {} rows are not migrated", left);
+      return;
+    }
+    for (String table : LIST_TABLES.keySet()) {
+      if (hasTable(table)) jdbc.execute("drop table " + table);
+    }
+    jdbc.execute("alter table evaluation drop column resume_text");
+    jdbc.execute("alter table evaluation drop column job_description");
+    log.info("Dropped the legacy evaluation schema");
+  }
+
+  private boolean hasTable(String table) {
+    Integer n = jdbc.queryForObject(
+        "select count(*) from information_schema.tables where lower(table_name) = ?", Integer.class, table);
+    return n != null && n > 0;
+  }
+
+  private boolean hasColumn(String table, String column) {
+    Integer n = jdbc.queryForObject("select count(*) from information_schema.columns "
+        + "where lower(table_name) = ? and lower(column_name) = ?", Integer.class, table, column);
+    return n != null && n > 0;
+  }
+}
@@ -0,0 +1,502 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.ollama.OllamaChatModel;
+import org.springframework.ai.ollama.api.OllamaApi;
+import org.springframework.ai.ollama.api.OllamaChatOptions;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.retry.support.RetryTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.client.RestClient;
+
+import com.Smartresumeranker.resumebot.dto.LlmBackendStats;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import reactor.core.publisher.Flux;
+
+// LlmRouter spreads the model calls over one or more Ollama backends
+// every backend is a bulkhead with its own concurrency limit (model@url#slots in resumebot.llm.backends,
+// max-concurrency without one), a call goes to the least loaded backend that has a free slot and waits for one
+// until its deadline
+// a failed call is retried on another backend while the deadline allows it, and with hedging enabled a call
+// that is slower than the backend's latency percentile is also sent to a second backend, the first answer wins
+// with resumebot.llm.structured.enabled the JSON schema given with a call is sent as the Ollama format, so the
+// backend generates only answers that match it (needs Ollama 0.5 or later, older versions ignore it)
+// resumebot.llm.max-in-flight caps the model calls over all backends together, with virtual threads there is no
+// thread pool left to do it; callers wait on a semaphore and lock conditions and the latency history of a backend
+// has a lock of its own, nothing on the call path waits on a monitor, so a waiting virtual thread unmounts from
+// its carrier instead of pinning it
+@Component
+public class LlmRouter {
+  // LATENCY_SAMPLES is the number of recent call latencies kept per backend for the percentiles
+  private static final int LATENCY_SAMPLES = 256;
+
+  private final List<Backend> backends;
+  private final Executor executor;
+  private final Duration timeout;
+  private final Duration failureCooldown;
+  private final boolean hedge;
+  private final double hedgePercentile;
+  private final int hedgeMinSamples;
+  private final boolean structured;
+  private final EvaluationMetrics metrics;
+  // permits is the global limit of model calls, null without one
+  private final Semaphore permits;
+  // lock guards the inFlight counters of every backend, releasing a slot signals the waiting callers
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition released = lock.newCondition();
+  // waiting are the callers waiting for a permit or a backend slot
+  private final AtomicInteger waiting = new AtomicInteger();
+  private int next;
+
+  @Autowired
+  public LlmRouter(
+      @Value("${resumebot.llm.backends:}") String backends,
+      @Value("${spring.ai.ollama.base-url:http://localhost:11434}") String defaultUrl,
+      @Value("${spring.ai.ollama.chat.model:}") String defaultModel,
+      @Value("${resumebot.llm.max-concurrency:2}") int maxConcurrency,
+      @Value("${resumebot.llm.timeout:PT2M}") Duration timeout,
+      @Value("${resumebot.llm.failure-cooldown:PT10S}") Duration failureCooldown,
+      @Value("${resumebot.llm.hedge.enabled:false}") boolean hedge,
+      @Value("${resumebot.llm.hedge.percentile:95}") double hedgePercentile,
+      @Value("${resumebot.llm.hedge.min-samples:20}") int hedgeMinSamples,
+      @Value("${resumebot.llm.max-in-flight:0}") int maxInFlight,
+      @Value("${resumebot.llm.structured.enabled:false}") boolean structured,
+      @Value("${resumebot.llm.keep-alive:30m}") String keepAlive,
+      @Qualifier("llmExecutor") Executor executor,
+      ObjectProvider<ObservationRegistry> observations,
+      EvaluationMetrics metrics) {
+    this(parse(backends, defaultUrl, defaultModel).stream()
+            .map(spec -> new Backend(spec[0] + "@" + spec[1], spec[0],
+                client(spec[1], spec[0], keepAlive, timeout, observations.getIfAvailable(() -> ObservationRegistry.NOOP)),
+                spec[2] != null ? Integer.parseInt(spec[2]) : maxConcurrency))
+            .toList(),
+        executor, timeout, failureCooldown, hedge, hedgePercentile, hedgeMinSamples, maxInFlight, structured, metrics);
+  }
+
+  // package private constructor for tests, with ready made clients and metrics nobody reads
+  LlmRouter(List<Backend> backends, Executor executor, Duration timeout, Duration failureCooldown,
+      boolean hedge, double hedgePercentile, int hedgeMinSamples) {
+    this(backends, executor, timeout, failureCooldown, hedge, hedgePercentile, hedgeMinSamples, 0, false,
+        new EvaluationMetrics(new SimpleMeterRegistry()));
+  }
+
+  LlmRouter(List<Backend> backends, Executor executor, Duration timeout, Duration failureCooldown,
+      boolean hedge, double hedgePercentile, int hedgeMinSamples, int maxInFlight, boolean structured,
+      EvaluationMetrics metrics) {
+    if (backends.isEmpty()) throw new IllegalArgumentException("At least one LLM backend is required");
+    this.backends = List.copyOf(backends);
+    this.executor = executor;
+    this.timeout = timeout;
+    this.failureCooldown = failureCooldown;
+    this.hedge = hedge;
+    this.hedgePercentile = hedgePercentile;
+    this.hedgeMinSamples = Math.max(1, hedgeMinSamples);
+    this.structured = structured;
+    this.metrics = metrics;
+    //fair, under load the calls get their turn in arrival order
+    this.permits = maxInFlight > 0 ? new Semaphore(maxInFlight, true) : null;
+  }
+
+  // models is the sorted list of distinct backend models, part of the evaluation cache key
+  public String models() {
+    return String.join(",", backends.stream().map(b -> b.model).distinct().sorted().toList());
+  }
+
+  // call sends the prompt and returns the answer, or throws IllegalStateException when no backend answered
+  // before the deadline
+  public String call(String prompt) {
+    return call(prompt, null);
+  }
+
+  // call with a JSON schema constrains the answer to it when structured output is enabled, null is free text
+  public String call(String prompt, Map<String, Object> schema) {
+    OllamaChatOptions options = options(schema);
+    long start = System.nanoTime();
+    long deadline = start + timeout.toNanos();
+    Set<Backend> tried = new HashSet<>();
+    Backend first = acquire(tried, deadline);
+    if (first == null) throw new IllegalStateException("No LLM backend available before the deadline");
+    tried.add(first);
+
+    ExecutorCompletionService<String> attempts = new ExecutorCompletionService<>(executor);
+    attempts.submit(() -> attempt(first, prompt, options));
+    int pending = 1;
+    boolean hedged = !hedge || backends.size() < 2;
+    long hedgeAt = hedged ? Long.MAX_VALUE : hedgeThreshold(first, start);
+    Throwable last = null;
+    try {
+      while (true) {
+        long now = System.nanoTime();
+        if (now >= deadline) break;
+        Future<String> done = attempts.poll(Math.min(deadline, hedgeAt) - now, TimeUnit.NANOSECONDS);
+        if (done == null) {
+          if (!hedged && System.nanoTime() >= hedgeAt) {
+            //slower than usual, send the same prompt to a second backend if one is free right now
+            hedged = true;
+            hedgeAt = Long.MAX_VALUE;
+            Backend second = tryAcquire(tried);
+            if (second != null) {
+              tried.add(second);
+              second.hedges.incrementAndGet();
+              attempts.submit(() -> attempt(second, prompt, options));
+              pending++;
+            }
+          }
+          continue;
+        }
+        pending--;
+        try {
+          return done.get();
+        } catch (ExecutionException e) {
+          last = e.getCause();
+          if (pending > 0) continue;
+          //every attempt failed, fail over to a backend that was not tried yet
+          Backend other = acquire(tried, deadline);
+          if (other == null) break;
+          tried.add(other);
+          attempts.submit(() -> attempt(other, prompt, options));
+          pending++;
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      last = e;
+    }
+    //losing and timed out attempts are not cancelled: an interrupt does not stop a blocking http read, and the
+    //backend is busy with them anyway, so they keep their slot until they end (at the latest at the read timeout)
+    throw new IllegalStateException(last == null ? "LLM deadline exceeded" : "LLM call failed: " + last.getMessage(), last);
+  }
+
+  // stream sends the prompt to the least loaded backend and streams the answer, the slot is held until the
+  // stream ends and the whole stream has to finish before the deadline
+  // streams are not hedged, the first tokens are already on their way to the client
+  public Flux<String> stream(String prompt) {
+    return stream(prompt, null);
+  }
+
+  // stream with a JSON schema, see call
+  public Flux<String> stream(String prompt, Map<String, Object> schema) {
+    OllamaChatOptions options = options(schema);
+    return Flux.defer(() -> {
+      long start = System.nanoTime();
+      Backend b = acquire(Set.of(), start + timeout.toNanos());
+      if (b == null) return Flux.error(new IllegalStateException("No LLM backend available before the deadline"));
+      Duration left = timeout.minusNanos(System.nanoTime() - start);
+      return request(b, prompt, options).stream().chatResponse()
+          .timeout(left)
+          //the last chunk carries the token counts of the whole answer
+          .doOnNext(r -> tokens(b, r))
+          .mapNotNull(LlmRouter::text)
+          .doOnComplete(() -> {
+            b.record(System.nanoTime() - start);
+            metrics.llmCall(b.name, System.nanoTime() - start, true);
+          })
+          .doOnError(e -> {
+            b.fail(failureCooldown);
+            metrics.llmCall(b.name, System.nanoTime() - start, false);
+          })
+          .doFinally(signal -> release(b));
+    });
+  }
+
+  public List<LlmBackendStats> stats() {
+    lock.lock();
+    try {
+      return backends.stream().map(b -> new LlmBackendStats(b.name, b.inFlight, b.maxConcurrency,
+          b.calls.get(), b.failures.get(), b.hedges.get(),
+          b.percentileMillis(50), b.percentileMillis(95))).toList();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // waiting is the number of callers waiting for a permit or a backend slot right now
+  public int waiting() {
+    return waiting.get();
+  }
+
+  private String attempt(Backend b, String prompt, OllamaChatOptions options) {
+    long start = System.nanoTime();
+    try {
+      ChatResponse response = request(b, prompt, options).call().chatResponse();
+      b.record(System.nanoTime() - start);
+      metrics.llmCall(b.name, System.nanoTime() - start, true);
+      tokens(b, response);
+      return text(response);
+    } catch (RuntimeException e) {
+      b.fail(failureCooldown);
+      metrics.llmCall(b.name, System.nanoTime() - start, false);
+      throw e;
+    } finally {
+      release(b);
+    }
+  }
+
+  //request is the prompt for one backend, the model of the backend comes from its default options
+  private static ChatClient.ChatClientRequestSpec request(Backend b, String prompt, OllamaChatOptions options) {
+    ChatClient.ChatClientRequestSpec spec = b.client.prompt().user(prompt);
+    return options == null ? spec : spec.options(options);
+  }
+
+  //options are the call options for a schema, null when there is nothing to constrain
+  private OllamaChatOptions options(Map<String, Object> schema) {
+    return structured && schema != null ? OllamaChatOptions.builder().format(schema).build() : null;
+  }
+
+  private void tokens(Backend b, ChatResponse response) {
+    if (response == null || response.getMetadata() == null) return;
+    Usage usage = response.getMetadata().getUsage();
+    if (usage == null) return;
+    metrics.tokens(b.name, value(usage.getPromptTokens()), value(usage.getCompletionTokens()));
+  }
+
+  private static long value(Integer n) {
+    return n == null ? 0 : n;
+  }
+
+  private static String text(ChatResponse response) {
+    if (response == null || response.getResult() == null || response.getResult().getOutput() == null) return null;
+    return response.getResult().getOutput().getText();
+  }
+
+  //hedgeThreshold is the moment a call on this backend becomes slower than its latency percentile
+  private long hedgeThreshold(Backend b, long start) {
+    long p = b.percentileNanos(hedgePercentile, hedgeMinSamples);
+    return p < 0 ? Long.MAX_VALUE : start + p;
+  }
+
+  //acquire takes a global permit and a slot on the least loaded backend that is not excluded, waiting until
+  //the deadline
+  private Backend acquire(Set<Backend> exclude, long deadline) {
+    if (exclude.size() >= backends.size()) return null;
+    waiting.incrementAndGet();
+    try {
+      if (permits != null && !permits.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) return null;
+      Backend b = slot(exclude, deadline);
+      if (b == null && permits != null) permits.release();
+      return b;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    } finally {
+      waiting.decrementAndGet();
+    }
+  }
+
+  private Backend slot(Set<Backend> exclude, long deadline) throws InterruptedException {
+    lock.lock();
+    try {
+      while (true) {
+        Backend b = pick(exclude);
+        if (b != null) return b;
+        long wait = deadline - System.nanoTime();
+        if (wait <= 0) return null;
+        released.awaitNanos(wait);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  //tryAcquire is acquire without waiting, for hedges
+  private Backend tryAcquire(Set<Backend> exclude) {
+    if (exclude.size() >= backends.size()) return null;
+    if (permits != null && !permits.tryAcquire()) return null;
+    Backend b;
+    lock.lock();
+    try {
+      b = pick(exclude);
+    } finally {
+      lock.unlock();
+    }
+    if (b == null && permits != null) permits.release();
+    return b;
+  }
+
+  //pick chooses the backend with the lowest load (in flight / limit) among the healthy ones with a free slot,
+  //backends cooling down after a failure are used only when no healthy one is left
+  //ties rotate so equal backends get the same share; must hold the lock
+  private Backend pick(Set<Backend> exclude) {
+    long now = System.nanoTime();
+    Backend best = null;
+    boolean bestHealthy = false;
+    double bestLoad = Double.MAX_VALUE;
+    int n = backends.size();
+    for (int i = 0; i < n; i++) {
+      Backend b = backends.get((next + i) % n);
+      if (exclude.contains(b) || b.inFlight >= b.maxConcurrency) continue;
+      boolean healthy = b.coolingUntil <= now;
+      double load = (double) b.inFlight / b.maxConcurrency;
+      if (best == null || (healthy && !bestHealthy) || (healthy == bestHealthy && load < bestLoad)) {
+        best = b;
+        bestHealthy = healthy;
+        bestLoad = load;
+      }
+    }
+    if (best != null) {
+      best.inFlight++;
+      next = (backends.indexOf(best) + 1) % n;
+    }
+    return best;
+  }
+
+  private void release(Backend b) {
+    lock.lock();
+    try {
+      b.inFlight--;
+      released.signalAll();
+    } finally {
+      lock.unlock();
+    }
+    if (permits != null) permits.release();
+  }
+
+  //parse reads "model@url#slots" entries into {model, url, slots}, a plain url uses the default model and
+  //without #slots slots is null (max-concurrency); no entry at all is the default backend
+  static List<String[]> parse(String backends, String defaultUrl, String defaultModel) {
+    List<String[]> out = new ArrayList<>();
+    for (String entry : backends.split(",")) {
+      entry = entry.trim();
+      if (entry.isEmpty()) continue;
+      int hash = entry.lastIndexOf('#');
+      String slots = hash < 0 ? null : entry.substring(hash + 1).trim();
+      String backend = hash < 0 ? entry : entry.substring(0, hash);
+      int at = backend.indexOf('@');
+      String model = at < 0 ? defaultModel : backend.substring(0, at).trim();
+      String url = at < 0 ? backend.trim() : backend.substring(at + 1).trim();
+      if (!StringUtils.hasText(model) || !StringUtils.hasText(url) || (slots != null && !slots.matches("[1-9][0-9]{0,3}"))) {
+        throw new IllegalArgumentException("Invalid resumebot.llm.backends entry: " + entry);
+      }
+      out.add(new String[] {model, url, slots});
+    }
+    if (out.isEmpty()) out.add(new String[] {defaultModel, defaultUrl, null});
+    return out;
+  }
+
+  //maxCalls is the most model calls the router runs at once, the backend slots together capped by max-in-flight
+  //every attempt (first, failover or hedge) holds a slot while it runs, so no more attempt threads are needed
+  public static int maxCalls(String backends, int maxConcurrency, int maxInFlight) {
+    int slots = 0;
+    for (String[] spec : parse(backends, "default", "default")) {
+      slots += spec[2] != null ? Integer.parseInt(spec[2]) : Math.max(1, maxConcurrency);
+    }
+    return maxInFlight > 0 ? Math.min(slots, maxInFlight) : slots;
+  }
+
+  //client builds the chat client of one backend, the router does the retrying so the model does not
+  //keepAlive keeps the model loaded between requests, with it the backend keeps the processed prompt of the
+  //previous request and a prompt with the same start (the job prefix) only costs its new part
+  private static ChatClient client(String url, String model, String keepAlive, Duration timeout,
+      ObservationRegistry observations) {
+    SimpleClientHttpRequestFactory requests = new SimpleClientHttpRequestFactory();
+    requests.setConnectTimeout(Duration.ofSeconds(5));
+    //the read timeout is only a backstop for abandoned attempts, the deadline is enforced by the router
+    requests.setReadTimeout(timeout);
+    OllamaApi api = OllamaApi.builder()
+        .baseUrl(url)
+        .restClientBuilder(RestClient.builder().requestFactory(requests))
+        .build();
+    OllamaChatModel chatModel = OllamaChatModel.builder()
+        .ollamaApi(api)
+        .defaultOptions(OllamaChatOptions.builder().model(model).keepAlive(keepAlive).build())
+        .retryTemplate(RetryTemplate.builder().maxAttempts(1).build())
+        .observationRegistry(observations)
+        .build();
+    return ChatClient.create(chatModel, observations);
+  }
+
+  // Backend is one Ollama endpoint and model with its bulkhead and latency history
+  static final class Backend {
+    final String name;
+    final String model;
+    final ChatClient client;
+    final int maxConcurrency;
+    final AtomicLong calls = new AtomicLong();
+    final AtomicLong failures = new AtomicLong();
+    final AtomicLong hedges = new AtomicLong();
+    // inFlight is guarded by the router lock, coolingUntil is only a hint
+    int inFlight;
+    volatile long coolingUntil;
+    // latencies is a ring buffer of the recent call latencies in nanos, slot is where the next one goes and
+    // filled the number of latencies in it; guarded by history
+    private final ReentrantLock history = new ReentrantLock();
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private int slot;
+    private int filled;
+
+    Backend(String name, String model, ChatClient client, int maxConcurrency) {
+      this.name = name;
+      this.model = model;
+      this.client = client;
+      this.maxConcurrency = Math.max(1, maxConcurrency);
+    }
+
+    void record(long nanos) {
+      calls.incrementAndGet();
+      history.lock();
+      try {
+        latencies[slot] = nanos;
+        slot = (slot + 1) % LATENCY_SAMPLES;
+        if (filled < LATENCY_SAMPLES) filled++;
+      } finally {
+        history.unlock();
+      }
+    }
+
+    void fail(Duration cooldown) {
+      calls.incrementAndGet();
+      failures.incrementAndGet();
+      coolingUntil = System.nanoTime() + cooldown.toNanos();
+    }
+
+    //percentileNanos is the latency percentile of the recent calls, -1 with fewer than minSamples calls
+    //the copy is taken under the lock, the sort runs outside of it
+    long percentileNanos(double percentile, int minSamples) {
+      int n;
+      long[] sorted;
+      history.lock();
+      try {
+        n = filled;
+        if (n < minSamples) return -1;
+        sorted = Arrays.copyOf(latencies, n);
+      } finally {
+        history.unlock();
+      }
+      Arrays.sort(sorted);
+      int index = (int) Math.ceil(percentile / 100.0 * n) - 1;
+      return sorted[Math.max(0, Math.min(n - 1, index))];
+    }
+
+    long percentileMillis(double percentile) {
+      long p = percentileNanos(percentile, 1);
+      return p < 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(p);
+    }
+  }
+}
@@ -0,0 +1,257 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.stereotype.Component;
+
+// LocalScoringEngine scores a resume against a job description without calling the model
+// skills come from the dictionary in scoring/skills.txt, text is tokenized and lightly stemmed,
+// and every job description term is weighted with BM25: term frequency saturation in the job description and
+// the resume, and the idf of the term over the corpus of stored resumes, so a skill every resume lists counts
+// less than a rare one; the document frequencies are fed by observe (ScoringCorpus keeps them up to date)
+// the result is deterministic for a given corpus and takes well under a millisecond for a normal resume
+@Component
+public class LocalScoringEngine {
+  // JobAnalysis is the job description side of the scoring, computed once per job description
+  // skills maps every required skill to its term frequency weight, terms maps the other content terms to theirs;
+  // the idf is applied when scoring, the corpus keeps changing after the job description was analyzed
+  public record JobAnalysis(Map<String, Double> skills, Map<String, Double> terms) {}
+
+  // Result is the local score of one resume --> score (0-100), matchedSkills, missingSkills ordered by weight
+  public record Result(int score, List<String> matchedSkills, List<String> missingSkills) {}
+
+  // BM25 parameters, k1 saturates repeated terms and b normalizes by resume length
+  private static final double K1 = 1.2;
+  private static final double B = 0.75;
+  // AVG_RESUME_TOKENS is the length a resume is normalized against
+  private static final double AVG_RESUME_TOKENS = 450;
+  // skills matter more than plain words, SKILL_SHARE of the score comes from the skill coverage
+  private static final double SKILL_SHARE = 0.75;
+  private static final int MAX_PHRASE_TOKENS = 4;
+  // MIN_DOCUMENTS is the corpus size from which the idf is used, below it every idf is 1 (term frequency only)
+  private static final int MIN_DOCUMENTS = 20;
+  // MAX_DOCUMENTS caps the corpus, a sample of that size gives stable document frequencies
+  private static final int MAX_DOCUMENTS = 50_000;
+  // MAX_VOCABULARY caps the skills and terms with a document frequency, a term beyond it counts as never seen
+  private static final int MAX_VOCABULARY = 200_000;
+
+  private static final Pattern TOKEN = Pattern.compile("[a-z0-9][a-z0-9+#./-]*[a-z0-9+#]|[a-z0-9]");
+  // STOPWORDS are compared with stemmed tokens, so they are stemmed once here
+  private static final Set<String> STOPWORDS = Stream.of(
+      "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "has", "have", "in", "is", "it", "its",
+      "of", "on", "or", "our", "that", "the", "their", "this", "to", "we", "will", "with", "you", "your",
+      "who", "what", "which", "while", "all", "any", "can", "must", "should", "would", "may", "not", "more",
+      "about", "other", "into", "than", "such", "also", "etc", "us", "they", "them", "been", "were", "was",
+      "experience", "year", "years", "work", "working", "team", "strong", "ability", "including", "knowledge",
+      "skill", "skills", "plus", "preferred", "required", "requirement", "requirements", "responsibilities",
+      "job", "role", "candidate", "looking", "good", "excellent", "great", "new", "using", "use", "well", "one",
+      "position", "company", "opportunity", "help", "across", "within", "based", "like", "least", "degree")
+      .map(LocalScoringEngine::stem)
+      .collect(Collectors.toUnmodifiableSet());
+
+  // phrases maps the first stemmed token of every skill alias to the aliases starting with it
+  private final Map<String, List<Alias>> phrases = new HashMap<>();
+  // document frequencies: the resumes of the corpus containing each skill or term, corpus holds their digests
+  private final Map<String, LongAdder> skillDf = new ConcurrentHashMap<>();
+  private final Map<String, LongAdder> termDf = new ConcurrentHashMap<>();
+  private final Set<String> corpus = ConcurrentHashMap.newKeySet();
+
+  private record Alias(String[] tokens, String skill) {}
+
+  public LocalScoringEngine() {
+    ClassPathResource dictionary = new ClassPathResource("scoring/skills.txt");
+    try (BufferedReader r = new BufferedReader(new InputStreamReader(dictionary.getInputStream(), StandardCharsets.UTF_8))) {
+      String line;
+      while ((line = r.readLine()) != null) {
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("#")) continue;
+        String[] names = line.split("\\|");
+        String skill = names[0].trim();
+        for (String name : names) {
+          String[] tokens = tokenize(name.trim()).toArray(String[]::new);
+          if (tokens.length == 0 || tokens.length > MAX_PHRASE_TOKENS) continue;
+          phrases.computeIfAbsent(tokens[0], k -> new ArrayList<>()).add(new Alias(tokens, skill));
+        }
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Cannot read skill dictionary", e);
+    }
+    //longest alias first so "spring boot" wins over "spring"
+    phrases.values().forEach(l -> l.sort(Comparator.comparingInt((Alias a) -> a.tokens().length).reversed()));
+  }
+
+  // analyzeJob extracts the weighted skills and content terms of a job description
+  public JobAnalysis analyzeJob(String jd) {
+    List<String> tokens = tokenize(jd);
+    Map<String, Integer> skillTf = new LinkedHashMap<>();
+    Map<String, Integer> termTf = new LinkedHashMap<>();
+    scan(tokens, skillTf, termTf);
+    Map<String, Double> skills = new LinkedHashMap<>();
+    skillTf.forEach((s, tf) -> skills.put(s, saturate(tf, 1.0)));
+    Map<String, Double> terms = new LinkedHashMap<>();
+    termTf.forEach((t, tf) -> terms.put(t, saturate(tf, 1.0)));
+    return new JobAnalysis(skills, terms);
+  }
+
+  // observe adds a resume to the corpus the document frequencies are counted over, once per digest
+  // it returns false for a resume already in the corpus or when the corpus is full
+  public boolean observe(String digest, String resume) {
+    if (digest == null || resume == null || corpus.size() >= MAX_DOCUMENTS || !corpus.add(digest)) return false;
+    Map<String, Integer> skillTf = new HashMap<>();
+    Map<String, Integer> termTf = new HashMap<>();
+    scan(tokenize(resume), skillTf, termTf);
+    skillTf.keySet().forEach(k -> count(skillDf, k));
+    termTf.keySet().forEach(k -> count(termDf, k));
+    return true;
+  }
+
+  // corpusSize is the number of resumes the document frequencies are counted over
+  public int corpusSize() {
+    return corpus.size();
+  }
+
+  public boolean inCorpus(String digest) {
+    return corpus.contains(digest);
+  }
+
+  public boolean corpusFull() {
+    return corpus.size() >= MAX_DOCUMENTS;
+  }
+
+  // score compares a resume with an analyzed job description
+  public Result score(JobAnalysis job, String resume) {
+    List<String> tokens = tokenize(resume);
+    Map<String, Integer> skillTf = new HashMap<>();
+    Map<String, Integer> termTf = new HashMap<>();
+    scan(tokens, skillTf, termTf);
+    //BM25 length normalization, long resumes need more mentions for the same credit
+    double lengthNorm = 1 - B + B * (tokens.size() / AVG_RESUME_TOKENS);
+
+    double skillTotal = 0, skillHit = 0;
+    List<String> matched = new ArrayList<>();
+    List<Map.Entry<String, Double>> missing = new ArrayList<>();
+    long documents = corpus.size();
+    for (Map.Entry<String, Double> e : job.skills().entrySet()) {
+      double weight = e.getValue() * idf(skillDf, e.getKey(), documents);
+      skillTotal += weight;
+      Integer tf = skillTf.get(e.getKey());
+      if (tf == null) {
+        missing.add(Map.entry(e.getKey(), weight));
+      } else {
+        matched.add(e.getKey());
+        skillHit += weight * Math.min(1.0, saturate(tf, lengthNorm));
+      }
+    }
+    double termTotal = 0, termHit = 0;
+    for (Map.Entry<String, Double> e : job.terms().entrySet()) {
+      double weight = e.getValue() * idf(termDf, e.getKey(), documents);
+      termTotal += weight;
+      Integer tf = termTf.get(e.getKey());
+      if (tf != null) termHit += weight * Math.min(1.0, saturate(tf, lengthNorm));
+    }
+    double skillPart = skillTotal == 0 ? 1.0 : skillHit / skillTotal;
+    double termPart = termTotal == 0 ? 1.0 : termHit / termTotal;
+    //a job description without any dictionary skill is scored on its terms only
+    double score = skillTotal == 0 ? termPart : SKILL_SHARE * skillPart + (1 - SKILL_SHARE) * termPart;
+    if (tokens.isEmpty()) score = 0;
+
+    missing.sort(Map.Entry.<String, Double>comparingByValue().reversed());
+    List<String> missingSkills = missing.stream().map(Map.Entry::getKey).toList();
+    return new Result((int) Math.round(100 * score), matched, missingSkills);
+  }
+
+  // score is the one shot variant for a single resume
+  public Result score(String jd, String resume) {
+    return score(analyzeJob(jd), resume);
+  }
+
+  //scan counts the dictionary skills (longest alias match) and the remaining content terms
+  private void scan(List<String> tokens, Map<String, Integer> skillTf, Map<String, Integer> termTf) {
+    int i = 0;
+    while (i < tokens.size()) {
+      Alias hit = match(tokens, i);
+      if (hit != null) {
+        skillTf.merge(hit.skill(), 1, Integer::sum);
+        i += hit.tokens().length;
+        continue;
+      }
+      String t = tokens.get(i++);
+      if (t.length() > 1 && !STOPWORDS.contains(t) && !isNumber(t)) termTf.merge(t, 1, Integer::sum);
+    }
+  }
+
+  private Alias match(List<String> tokens, int start) {
+    List<Alias> candidates = phrases.get(tokens.get(start));
+    if (candidates == null) return null;
+    for (Alias a : candidates) {
+      if (start + a.tokens().length > tokens.size()) continue;
+      boolean ok = true;
+      for (int k = 1; k < a.tokens().length && ok; k++) ok = a.tokens()[k].equals(tokens.get(start + k));
+      if (ok) return a;
+    }
+    return null;
+  }
+
+  //idf is the BM25 inverse document frequency of a skill or term over the corpus
+  private static double idf(Map<String, LongAdder> df, String key, long documents) {
+    if (documents < MIN_DOCUMENTS) return 1.0;
+    LongAdder count = df.get(key);
+    long n = count == null ? 0 : Math.min(documents, count.sum());
+    return Math.log(1 + (documents - n + 0.5) / (n + 0.5));
+  }
+
+  private static void count(Map<String, LongAdder> df, String key) {
+    LongAdder count = df.get(key);
+    if (count == null) {
+      if (df.size() >= MAX_VOCABULARY) return;
+      count = df.computeIfAbsent(key, k -> new LongAdder());
+    }
+    count.increment();
+  }
+
+  //saturate is the BM25 term frequency factor, 1.0 for a single mention in an average length text
+  private static double saturate(int tf, double lengthNorm) {
+    return tf * (K1 + 1) / (tf + K1 * lengthNorm);
+  }
+
+  // tokenize lower cases, splits on anything that is not part of a technical token and stems every token
+  static List<String> tokenize(String text) {
+    if (text == null || text.isEmpty()) return List.of();
+    Matcher m = TOKEN.matcher(text.toLowerCase());
+    List<String> out = new ArrayList<>();
+    while (m.find()) out.add(stem(m.group()));
+    return out;
+  }
+
+  // stem strips the common English suffixes of plain words, technical tokens like c++ or node.js stay as they are
+  static String stem(String t) {
+    if (t.length() <= 3 || !t.chars().allMatch(Character::isLetter)) return t;
+    if (t.endsWith("sses")) return t.substring(0, t.length() - 2);
+    if (t.endsWith("ies")) return t.substring(0, t.length() - 3) + "y";
+    if (t.endsWith("ing") && t.length() > 5) return t.substring(0, t.length() - 3);
+    if (t.endsWith("ed") && t.length() > 4) return t.substring(0, t.length() - 2);
+    if (t.endsWith("s") && !t.endsWith("ss") && !t.endsWith("us") && !t.endsWith("is")) return t.substring(0, t.length() - 1);
+    return t;
+  }
+
+  private static boolean isNumber(String t) {
+    return t.chars().allMatch(c -> Character.isDigit(c) || c == '.' || c == '+');
+  }
+}
@@ -0,0 +1,83 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+// PasswordHasher runs the BCrypt work on the passwordHashExecutor instead of the request thread
+// the pool is small and its queue bounded, a login storm queues up there and is refused with 503 when the
+// queue is full, the request threads and the rest of the application keep their CPU
+@Component
+public class PasswordHasher {
+  private final PasswordEncoder encoder;
+  private final ThreadPoolTaskExecutor executor;
+  private final AuthMetrics metrics;
+  private final Duration timeout;
+
+  public PasswordHasher(PasswordEncoder encoder,
+      @Qualifier("passwordHashExecutor") ThreadPoolTaskExecutor executor,
+      AuthMetrics metrics,
+      @Value("${resumebot.auth.hash-timeout:PT10S}") Duration timeout) {
+    this.encoder = encoder;
+    this.executor = executor;
+    this.metrics = metrics;
+    this.timeout = timeout;
+  }
+
+  // encode hashes a password with the configured strength
+  public String encode(String raw) {
+    return run("encode", () -> encoder.encode(raw));
+  }
+
+  // matches checks a password against its stored hash
+  public boolean matches(String raw, String hash) {
+    return run("matches", () -> encoder.matches(raw, hash));
+  }
+
+  // needsRehash is true for a hash made with a lower strength than the configured one, it costs no hashing
+  public boolean needsRehash(String hash) {
+    return encoder.upgradeEncoding(hash);
+  }
+
+  private <T> T run(String operation, Supplier<T> work) {
+    long submitted = System.nanoTime();
+    Future<T> future;
+    try {
+      future = executor.submit(() -> {
+        long start = System.nanoTime();
+        metrics.hashWait(start - submitted);
+        try {
+          return work.get();
+        } finally {
+          metrics.hash(operation, System.nanoTime() - start);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many sign-ins, try again shortly");
+    }
+    try {
+      return future.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+    } catch (TimeoutException e) {
+      future.cancel(false);
+      throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many sign-ins, try again shortly");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while hashing the password", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException re) throw re;
+      throw new IllegalStateException("Password hashing failed", e.getCause());
+    }
+  }
+}
@@ -0,0 +1,9 @@
+package com.Smartresumeranker.resumebot.service;
+
+// PreparedJob is a job description after the per job work is done (normalization, prompt prefix, skill analysis)
+// it is computed once and reused for every resume evaluated against the same job
+// id is the registered job description profile it came from, null for a job description sent with the request
+// promptPrefix is the start of every prompt for this job (rules, then the job description), the resumes come
+// after it, so a backend that keeps the processed prompt of the previous request (the Ollama context cache)
+// only has to process the resume part
+public record PreparedJob(Long id, String text, String promptPrefix, LocalScoringEngine.JobAnalysis analysis) {}
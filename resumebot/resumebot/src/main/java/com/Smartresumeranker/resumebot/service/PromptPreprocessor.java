@@ -0,0 +1,325 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.Smartresumeranker.resumebot.dto.PromptStats;
+
+// PromptPreprocessor shrinks the resume and job description text before it goes into a prompt
+// 1. whitespace is normalized and page marks ("Page 2 of 3") and page headers or footers
+//    (lines repeated exactly at the top or bottom of every page) are dropped
+// 2. boilerplate is dropped, equal opportunity and accommodation statements in job descriptions,
+//    "references available upon request" in resumes
+// 3. the text is split into sections by their headings (experience, skills, education, requirements, ...)
+// 4. when the estimated token count is above the budget, the least useful sections are cut first
+//    (benefits and company blurb before education, education before experience, skills last)
+// the stored evaluation and the local scoring always use the full text, only the prompt is reduced
+@Component
+public class PromptPreprocessor {
+  private static final Logger log = LoggerFactory.getLogger(PromptPreprocessor.class);
+
+  // Processed is a reduced text with the estimated token counts before and after
+  public record Processed(String text, int tokensBefore, int tokensAfter) {
+    public int saved() {
+      return tokensBefore - tokensAfter;
+    }
+  }
+
+  // Kind selects the section vocabulary and the token budget
+  public enum Kind { RESUME, JOB_DESCRIPTION }
+
+  // Section is a heading with its lines, priority 1 is cut last, DROP_FIRST and above are dropped whole
+  private record Section(String title, int priority, List<String> lines) {}
+
+  private static final int DROP_FIRST = 8;
+  private static final int MAX_HEADING_CHARS = 40;
+  // PAGE_EDGE_LINES is how many lines at the top and at the bottom of a page can be a page header or footer
+  private static final int PAGE_EDGE_LINES = 2;
+  private static final Pattern TOKEN = Pattern.compile("[\\p{L}\\p{N}]+|[^\\p{L}\\p{N}\\s]");
+  private static final Pattern PAGE_MARK = Pattern.compile("(?i)(page\\s*)?\\d{1,3}\\s*(of|/)\\s*\\d{1,3}|page\\s*\\d{1,3}|-\\s*\\d{1,3}\\s*-");
+  private static final Pattern SENTENCE = Pattern.compile("(?<=[.!?;])\\s+");
+  private static final List<String> JD_BOILERPLATE = List.of(
+      "equal opportunity", "equal employment opportunity", "without regard to", "affirmative action",
+      "reasonable accommodation", "e-verify", "national origin", "sexual orientation", "gender identity",
+      "protected veteran", "veteran status", "genetic information", "marital status", "disability status",
+      "privacy notice", "privacy policy", "applicants with disabilities", "background check");
+  private static final List<String> RESUME_BOILERPLATE = List.of(
+      "references available", "references upon request", "references on request", "i hereby declare",
+      "true to the best of my knowledge");
+
+  // heading vocabularies, heading text (lower case, without punctuation) -> section title and priority
+  private static final Map<String, Section> RESUME_HEADINGS = new HashMap<>();
+  private static final Map<String, Section> JD_HEADINGS = new HashMap<>();
+
+  static {
+    heading(RESUME_HEADINGS, "SKILLS", 1, "skills", "technical skills", "core competencies", "competencies",
+        "technologies", "tech stack", "key skills", "tools", "skills and tools", "technical expertise");
+    heading(RESUME_HEADINGS, "EXPERIENCE", 2, "experience", "work experience", "professional experience",
+        "employment history", "work history", "employment", "career history", "relevant experience");
+    heading(RESUME_HEADINGS, "SUMMARY", 3, "summary", "professional summary", "profile", "objective",
+        "career objective", "about me");
+    heading(RESUME_HEADINGS, "PROJECTS", 4, "projects", "personal projects", "key projects", "selected projects");
+    heading(RESUME_HEADINGS, "EDUCATION", 5, "education", "academic background", "education and training");
+    heading(RESUME_HEADINGS, "CERTIFICATIONS", 5, "certifications", "certificates", "licenses",
+        "licenses and certifications");
+    heading(RESUME_HEADINGS, "OTHER", DROP_FIRST, "hobbies", "interests", "references", "personal details",
+        "personal information", "declaration");
+
+    heading(JD_HEADINGS, "REQUIREMENTS", 1, "requirements", "qualifications", "required qualifications",
+        "minimum qualifications", "basic qualifications", "what you need", "what you'll need", "what you will need",
+        "what we're looking for", "what we are looking for", "must have", "must haves", "who you are", "skills",
+        "required skills");
+    heading(JD_HEADINGS, "RESPONSIBILITIES", 2, "responsibilities", "key responsibilities", "what you'll do",
+        "what you will do", "duties", "the role", "your role", "role", "job description");
+    heading(JD_HEADINGS, "PREFERRED", 3, "preferred qualifications", "nice to have", "nice to haves",
+        "bonus points", "bonus", "preferred", "pluses");
+    heading(JD_HEADINGS, "ABOUT", DROP_FIRST, "about us", "about the company", "who we are", "our company",
+        "company overview", "about");
+    heading(JD_HEADINGS, "BENEFITS", DROP_FIRST + 1, "benefits", "perks", "what we offer", "compensation",
+        "why join us", "perks and benefits");
+  }
+
+  private final boolean enabled;
+  private final int resumeBudget;
+  private final int jobBudget;
+  private final AtomicLong texts = new AtomicLong();
+  private final AtomicLong tokensBefore = new AtomicLong();
+  private final AtomicLong tokensAfter = new AtomicLong();
+
+  public PromptPreprocessor(
+      @Value("${resumebot.prompt.preprocess:true}") boolean enabled,
+      @Value("${resumebot.prompt.resume-token-budget:1500}") int resumeBudget,
+      @Value("${resumebot.prompt.jd-token-budget:800}") int jobBudget) {
+    this.enabled = enabled;
+    this.resumeBudget = resumeBudget;
+    this.jobBudget = jobBudget;
+  }
+
+  public Processed resume(String text) {
+    return process(text, Kind.RESUME);
+  }
+
+  public Processed jobDescription(String text) {
+    return process(text, Kind.JOB_DESCRIPTION);
+  }
+
+  public Processed process(String text, Kind kind) {
+    Processed p = reduce(text, kind);
+    if (!enabled) return p;
+    texts.incrementAndGet();
+    tokensBefore.addAndGet(p.tokensBefore());
+    tokensAfter.addAndGet(p.tokensAfter());
+    log.debug("{} prompt text reduced from {} to {} tokens", kind, p.tokensBefore(), p.tokensAfter());
+    return p;
+  }
+
+  // reduce is process without the statistics, for reduced texts that do not go into a prompt (embeddings)
+  public Processed reduce(String text, Kind kind) {
+    if (text == null) text = "";
+    int before = estimateTokens(text);
+    if (!enabled) return new Processed(text, before, before);
+
+    boolean resume = kind == Kind.RESUME;
+    List<String> lines = clean(text, resume ? RESUME_BOILERPLATE : JD_BOILERPLATE);
+    List<Section> sections = split(lines, resume ? RESUME_HEADINGS : JD_HEADINGS);
+    trim(sections, resume ? resumeBudget : jobBudget);
+    String out = render(sections);
+    return new Processed(out, before, estimateTokens(out));
+  }
+
+  // requirements are the lines of the requirements sections of a job description, without their bullet marks
+  // it works without the preprocessing switch, nothing is cut to a budget
+  public List<String> requirements(String jobDescription) {
+    if (jobDescription == null) return List.of();
+    List<String> out = new ArrayList<>();
+    for (Section section : split(clean(jobDescription, JD_BOILERPLATE), JD_HEADINGS)) {
+      if (!"REQUIREMENTS".equals(section.title())) continue;
+      for (String line : section.lines()) {
+        String item = line.replaceFirst("^\\s*([-*•·▪]|\\d{1,2}[.)])\\s*", "").trim();
+        if (!item.isEmpty()) out.add(item);
+      }
+    }
+    return out;
+  }
+
+  public PromptStats stats() {
+    long b = tokensBefore.get();
+    long a = tokensAfter.get();
+    return new PromptStats(texts.get(), b, a, b - a, b == 0 ? 0.0 : (double) (b - a) / b);
+  }
+
+  // estimateTokens approximates a BPE tokenizer: a word costs one token per 4 characters (at least one),
+  // every punctuation mark is a token of its own; close enough for budgeting, no model vocabulary needed
+  static int estimateTokens(String text) {
+    if (text == null || text.isEmpty()) return 0;
+    Matcher m = TOKEN.matcher(text);
+    int tokens = 0;
+    while (m.find()) {
+      int len = m.end() - m.start();
+      tokens += len == 1 ? 1 : (len + 3) / 4;
+    }
+    return tokens;
+  }
+
+  //clean normalizes whitespace and drops page marks, page headers or footers and boilerplate sentences
+  private static List<String> clean(String text, List<String> boilerplate) {
+    List<List<String>> pages = new ArrayList<>();
+    for (String page : text.replace("\r\n", "\n").replace('\r', '\n').split("\f")) {
+      List<String> lines = new ArrayList<>();
+      for (String line : page.split("\n")) {
+        line = line.replaceAll("[\\s\\u00A0]+", " ").trim();
+        if (!PAGE_MARK.matcher(line).matches()) lines.add(line);
+      }
+      pages.add(lines);
+    }
+    Set<String> headers = pageHeaders(pages);
+    Set<String> kept = new HashSet<>();
+    List<String> out = new ArrayList<>();
+    boolean blank = false;
+    for (List<String> page : pages) {
+      Map<Integer, String> edges = edges(page);
+      for (int i = 0; i < page.size(); i++) {
+        String line = page.get(i);
+        if (line.isEmpty()) {
+          //keep one blank line between paragraphs
+          if (!out.isEmpty() && !blank) out.add("");
+          blank = true;
+          continue;
+        }
+        //a page header or footer keeps its first copy, a repeated line inside a page is content
+        String slot = edges.get(i);
+        if (slot != null && headers.contains(slot + line) && !kept.add(line)) continue;
+        line = dropBoilerplate(line, boilerplate);
+        if (line.isEmpty()) continue;
+        out.add(line);
+        blank = false;
+      }
+    }
+    while (!out.isEmpty() && out.get(out.size() - 1).isEmpty()) out.remove(out.size() - 1);
+    return out;
+  }
+
+  //pageHeaders are the lines that repeat exactly at the same place from the top or the bottom of every page
+  //(the first page may differ, it often has a title instead), keyed by slot and line; text without page
+  //breaks (form feeds) has none
+  private static Set<String> pageHeaders(List<List<String>> pages) {
+    if (pages.size() < 2) return Set.of();
+    Map<String, Integer> counts = new HashMap<>();
+    for (List<String> page : pages) {
+      for (Map.Entry<Integer, String> e : edges(page).entrySet()) {
+        counts.merge(e.getValue() + page.get(e.getKey()), 1, Integer::sum);
+      }
+    }
+    Set<String> headers = new HashSet<>();
+    counts.forEach((key, count) -> {
+      if (count >= 2 && count >= pages.size() - 1) headers.add(key);
+    });
+    return headers;
+  }
+
+  //edges maps the index of the first and last PAGE_EDGE_LINES non blank lines of a page to their slot
+  private static Map<Integer, String> edges(List<String> page) {
+    Map<Integer, String> edges = new HashMap<>();
+    for (int i = 0, n = 0; i < page.size() && n < PAGE_EDGE_LINES; i++) {
+      if (!page.get(i).isEmpty()) edges.put(i, "top" + n++ + ':');
+    }
+    for (int i = page.size() - 1, n = 0; i >= 0 && n < PAGE_EDGE_LINES; i--) {
+      if (!page.get(i).isEmpty()) edges.putIfAbsent(i, "bottom" + n++ + ':');
+    }
+    return edges;
+  }
+
+  private static String dropBoilerplate(String line, List<String> boilerplate) {
+    String lower = line.toLowerCase(Locale.ROOT);
+    if (boilerplate.stream().noneMatch(lower::contains)) return line;
+    //drop only the sentences carrying the boilerplate, the rest of the line may be a real requirement
+    StringBuilder sb = new StringBuilder();
+    for (String sentence : SENTENCE.split(line)) {
+      String s = sentence.toLowerCase(Locale.ROOT);
+      if (boilerplate.stream().anyMatch(s::contains)) continue;
+      if (sb.length() > 0) sb.append(' ');
+      sb.append(sentence);
+    }
+    return sb.toString().trim();
+  }
+
+  //split groups the lines under their headings, lines before the first heading form an untitled section
+  private static List<Section> split(List<String> lines, Map<String, Section> vocabulary) {
+    List<Section> sections = new ArrayList<>();
+    Section current = new Section(null, 4, new ArrayList<>());
+    sections.add(current);
+    for (String line : lines) {
+      Section heading = line.length() <= MAX_HEADING_CHARS ? vocabulary.get(headingKey(line)) : null;
+      if (heading != null) {
+        current = new Section(heading.title(), heading.priority(), new ArrayList<>());
+        sections.add(current);
+      } else if (!(line.isEmpty() && current.lines().isEmpty())) {
+        current.lines().add(line);
+      }
+    }
+    return sections;
+  }
+
+  private static String headingKey(String line) {
+    return line.toLowerCase(Locale.ROOT).replace('’', '\'').replaceAll("[^a-z' ]", "").trim()
+        .replaceAll(" +", " ");
+  }
+
+  //trim cuts the text to the token budget: whole low value sections first, then lines from the end of the
+  //least important remaining section
+  private static void trim(List<Section> sections, int budget) {
+    if (budget <= 0) return;
+    int total = sections.stream().mapToInt(PromptPreprocessor::tokens).sum();
+    while (total > budget) {
+      Section victim = null;
+      for (Section s : sections) {
+        if (s.lines().isEmpty()) continue;
+        if (victim == null || s.priority() >= victim.priority()) victim = s;
+      }
+      if (victim == null) return;
+      if (victim.priority() >= DROP_FIRST) {
+        total -= tokens(victim);
+        victim.lines().clear();
+      } else {
+        String last = victim.lines().remove(victim.lines().size() - 1);
+        total -= estimateTokens(last);
+      }
+    }
+  }
+
+  private static int tokens(Section s) {
+    int t = s.title() == null ? 0 : estimateTokens(s.title()) + 1;
+    for (String line : s.lines()) t += estimateTokens(line);
+    return t;
+  }
+
+  private static String render(List<Section> sections) {
+    StringBuilder sb = new StringBuilder();
+    for (Section s : sections) {
+      List<String> lines = s.lines();
+      while (!lines.isEmpty() && lines.get(lines.size() - 1).isEmpty()) lines.remove(lines.size() - 1);
+      if (lines.isEmpty()) continue;
+      if (sb.length() > 0) sb.append('\n');
+      if (s.title() != null) sb.append(s.title()).append(":\n");
+      for (String line : lines) sb.append(line).append('\n');
+    }
+    return sb.toString().trim();
+  }
+
+  private static void heading(Map<String, Section> vocabulary, String title, int priority, String... names) {
+    for (String name : names) vocabulary.put(name, new Section(title, priority, List.of()));
+  }
+}
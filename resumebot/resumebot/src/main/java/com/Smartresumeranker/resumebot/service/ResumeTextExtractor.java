@@ -0,0 +1,205 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.pdfbox.Loader;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.multipdf.Splitter;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.Smartresumeranker.resumebot.dto.ExtractionStats;
+
+// ResumeTextExtractor turns an uploaded resume into text
+// uploads are read straight from the multipart stream into memory, capped at max-bytes, no temporary file is written
+// long pdfs are parsed once and split into page ranges that are extracted in parallel, each worker with its own
+// small PDDocument since PDDocument is not thread safe
+@Component
+public class ResumeTextExtractor {
+  private final ThreadPoolTaskExecutor pageExecutor;
+  private final ExtractedTextCache textCache;
+  // maxBytes caps the upload and the scratch memory PDFBox may use for one document
+  private final long maxBytes;
+  // parallelMinPages is the page count from which a pdf is extracted in parallel
+  private final int parallelMinPages;
+  private final int pagesPerTask;
+  private final EvaluationMetrics metrics;
+
+  private final LongAdder documents = new LongAdder();
+  private final LongAdder pages = new LongAdder();
+  private final LongAdder bytes = new LongAdder();
+  private final LongAdder readNanos = new LongAdder();
+  private final LongAdder parseNanos = new LongAdder();
+  private final LongAdder extractNanos = new LongAdder();
+
+  public ResumeTextExtractor(@Qualifier("pdfPageExecutor") ThreadPoolTaskExecutor pageExecutor, ExtractedTextCache textCache,
+      @Value("${resumebot.extract.max-bytes:10485760}") long maxBytes,
+      @Value("${resumebot.extract.parallel-min-pages:8}") int parallelMinPages,
+      @Value("${resumebot.extract.pages-per-task:4}") int pagesPerTask,
+      EvaluationMetrics metrics) {
+    this.pageExecutor = pageExecutor;
+    this.textCache = textCache;
+    this.maxBytes = maxBytes;
+    this.parallelMinPages = parallelMinPages;
+    this.pagesPerTask = Math.max(1, pagesPerTask);
+    this.metrics = metrics;
+  }
+
+  // extract reads an uploaded resume, an empty upload is an empty resume
+  public String extract(MultipartFile file) {
+    if (file == null || file.isEmpty()) return "";
+    long start = System.nanoTime();
+    byte[] content;
+    try (InputStream in = file.getInputStream()) {
+      content = readLimited(in, file.getOriginalFilename());
+    } catch (IOException e) {
+      return "";
+    }
+    readNanos.add(System.nanoTime() - start);
+    return extract(file.getOriginalFilename(), content);
+  }
+
+  // extract turns resume bytes into text, pdfs are parsed and anything else is read as UTF-8 text
+  // a pdf that was extracted before (same bytes) comes from the text cache without parsing
+  // an unreadable pdf gives an empty resume like before
+  public String extract(String fileName, byte[] content) {
+    return metrics.time(EvaluationMetrics.Stage.EXTRACT, () -> extractUntimed(fileName, content));
+  }
+
+  //the counters only count real extractions, a text cache hit is counted by the cache
+  private String extractUntimed(String fileName, byte[] content) {
+    String name = fileName == null ? "resume" : fileName.toLowerCase();
+    String digest = name.endsWith(".pdf") ? Digests.sha256(content) : null;
+    if (digest != null) {
+      String cached = textCache.get(digest, content.length);
+      if (cached != null) return cached;
+    }
+    documents.increment();
+    bytes.add(content.length);
+    if (digest == null) return new String(content, StandardCharsets.UTF_8);
+    try {
+      String text = normalize(extractPdf(content));
+      textCache.put(digest, text);
+      return text;
+    } catch (IOException | UncheckedIOException e) {
+      return "";
+    }
+  }
+
+  // normalize drops trailing spaces and runs of blank lines that pdf extraction leaves behind
+  static String normalize(String text) {
+    return text
+        .replace("\r\n", "\n")
+        .replaceAll("[ \\t]+\n", "\n")
+        .replaceAll("\n{3,}", "\n\n")
+        .trim();
+  }
+
+  public ExtractionStats stats() {
+    long n = Math.max(1, documents.sum());
+    return new ExtractionStats(documents.sum(), pages.sum(), bytes.sum(),
+        readNanos.sum() / 1e6 / n, parseNanos.sum() / 1e6 / n, extractNanos.sum() / 1e6 / n);
+  }
+
+  // readLimited reads a stream into memory and fails with 413 once it grows beyond max-bytes
+  public byte[] readLimited(InputStream in, String name) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buf = new byte[8192];
+    int n;
+    while ((n = in.read(buf)) > 0) {
+      out.write(buf, 0, n);
+      if (out.size() > maxBytes) {
+        throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE, name + " is larger than " + maxBytes + " bytes");
+      }
+    }
+    return out.toByteArray();
+  }
+
+  private String extractPdf(byte[] content) throws IOException {
+    long start = System.nanoTime();
+    try (PDDocument doc = load(content)) {
+      int count = doc.getNumberOfPages();
+      long parsed = System.nanoTime();
+      parseNanos.add(parsed - start);
+      pages.add(count);
+      String text = count < parallelMinPages ? strip(doc, 1, count) : extractParallel(doc);
+      extractNanos.add(System.nanoTime() - parsed);
+      return text;
+    }
+  }
+
+  //extractParallel extracts page ranges on the page executor and joins them in page order
+  //the Splitter cuts the parsed document into ranges of pagesPerTask pages once; a split document still shares
+  //objects (fonts, images, the source file) with doc, so every range is saved to a small pdf of its own first
+  //and a worker only ever touches its own copy
+  private String extractParallel(PDDocument doc) throws IOException {
+    List<byte[]> ranges = split(doc);
+    List<CompletableFuture<String>> parts = new ArrayList<>();
+    for (byte[] range : ranges) {
+      parts.add(CompletableFuture.supplyAsync(() -> {
+        try (PDDocument part = load(range)) {
+          return strip(part, 1, part.getNumberOfPages());
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }, pageExecutor));
+    }
+    StringBuilder sb = new StringBuilder();
+    try {
+      for (CompletableFuture<String> part : parts) sb.append(part.join());
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof UncheckedIOException u) throw u;
+      throw e;
+    }
+    return sb.toString();
+  }
+
+  private List<byte[]> split(PDDocument doc) throws IOException {
+    Splitter splitter = new Splitter();
+    splitter.setSplitAtPage(pagesPerTask);
+    splitter.setStreamCacheCreateFunction(MemoryUsageSetting.setupMainMemoryOnly(maxBytes).streamCache);
+    List<PDDocument> split = splitter.split(doc);
+    List<byte[]> ranges = new ArrayList<>(split.size());
+    try {
+      for (PDDocument range : split) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        range.save(out);
+        ranges.add(out.toByteArray());
+      }
+    } finally {
+      for (PDDocument range : split) range.close();
+    }
+    return ranges;
+  }
+
+  private PDDocument load(byte[] content) throws IOException {
+    //keep PDFBox scratch buffers in memory and bounded, no temp files
+    return Loader.loadPDF(content, null, null, null, MemoryUsageSetting.setupMainMemoryOnly(maxBytes).streamCache);
+  }
+
+  private static String strip(PDDocument doc, int from, int to) throws IOException {
+    PDFTextStripper stripper = new PDFTextStripper();
+    stripper.setSortByPosition(true);
+    stripper.setStartPage(from);
+    stripper.setEndPage(to);
+    //a form feed ends every page, the prompt preprocessor finds page headers and footers by it
+    stripper.setPageEnd("\n\f");
+    return stripper.getText(doc);
+  }
+}
@@ -0,0 +1,73 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import com.Smartresumeranker.resumebot.model.Evaluation;
+import com.Smartresumeranker.resumebot.repository.EvaluationRepository;
+
+import jakarta.annotation.PostConstruct;
+
+// ScoringCorpus feeds the stored resumes to the local scoring engine, its idf counts the resumes of this corpus
+// at startup the backfill walks the evaluation table in keyset chunks and loads every distinct resume once,
+// then every saved evaluation adds its resume; both run on the analytics executor, not on the saving thread
+// the engine stops taking resumes once its corpus is full, the backfill stops with it
+@Component
+public class ScoringCorpus {
+  private static final Logger log = LoggerFactory.getLogger(ScoringCorpus.class);
+  private static final int CHUNK = 500;
+
+  private final LocalScoringEngine scoring;
+  private final EvaluationRepository repository;
+  private final TextBlobStore blobs;
+  private final Executor executor;
+
+  public ScoringCorpus(LocalScoringEngine scoring, EvaluationRepository repository, TextBlobStore blobs,
+      @Qualifier("analyticsExecutor") Executor executor) {
+    this.scoring = scoring;
+    this.repository = repository;
+    this.blobs = blobs;
+    this.executor = executor;
+  }
+
+  @EventListener
+  public void onSaved(EvaluationSavedEvent event) {
+    executor.execute(() -> scoring.observe(event.resumeDigest(), event.resumeText()));
+  }
+
+  @PostConstruct
+  void start() {
+    executor.execute(this::backfill);
+  }
+
+  //backfill adds the resumes of the stored evaluations, a resume evaluated many times is loaded once
+  private void backfill() {
+    long after = 0;
+    int before = scoring.corpusSize();
+    try {
+      while (true) {
+        List<Evaluation> page = repository.findByIdGreaterThanOrderByIdAsc(after, Limit.of(CHUNK));
+        if (page.isEmpty()) break;
+        after = page.get(page.size() - 1).getId();
+        for (Evaluation e : page) {
+          String digest = e.getResumeDigest();
+          if (digest == null || scoring.inCorpus(digest)) continue;
+          if (!scoring.observe(digest, blobs.load(digest)) && scoring.corpusFull()) return;
+        }
+      }
+    } catch (RuntimeException e) {
+      //the engine keeps what it has, new evaluations still add their resumes
+      log.warn("Scoring corpus backfill stopped: {}", e.getMessage());
+    } finally {
+      int added = scoring.corpusSize() - before;
+      if (added > 0) log.info("Scoring corpus backfilled with {} resumes", added);
+    }
+  }
+}
@@ -0,0 +1,793 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+import com.Smartresumeranker.resumebot.dto.SearchIndexStats;
+
+// SearchIndex is an inverted index of the evaluations with three fields: the resume, the job description and
+// the missing skills; boolean queries are set operations on the postings of the terms, phrases are checked on
+// the token positions and the hits are ranked by BM25 with the statistics of the whole index
+// new documents go into an in-memory buffer, a full buffer is sealed into an immutable segment, written to the
+// index directory and listed in its manifest; a restart reads the segments back instead of indexing the history
+// again; MERGE_FACTOR segments of the same size tier are merged into one, so there are only a few segments per
+// order of magnitude of documents
+// evaluations are never changed or deleted, a document is added once and a segment never changes
+// thread safe: one writer at a time, searches run on a snapshot of the segments and never wait for a merge
+public class SearchIndex {
+  // Doc is one evaluation to index
+  public record Doc(long id, String owner, Instant createdAt, Integer matchScore, String resume, String jobDescription,
+      List<String> missingSkills) {}
+
+  // Hit is one search result, score is the BM25 score of the query for the evaluation
+  public record Hit(long id, String owner, Instant createdAt, Integer matchScore, List<String> missingSkills,
+      double score) {}
+
+  // Filter restricts the hits by owner, createdAt in [from, to) and the number of missing skills, null allows all
+  public record Filter(String owner, Instant from, Instant to, Integer maxGaps) {
+    public static final Filter NONE = new Filter(null, null, null, null);
+  }
+
+  private static final int SEGMENT_MAGIC = 0x53454731;
+  private static final int MANIFEST_MAGIC = 0x4d414e31;
+  private static final String MANIFEST = "segments";
+  private static final int MERGE_FACTOR = 8;
+  // MAX_FIELD_TOKENS caps the indexed length of a field, it bounds the positions a single huge text can add
+  private static final int MAX_FIELD_TOKENS = 5000;
+  // SKILL_GAP separates the positions of two missing skills, so a phrase never spans two of them
+  private static final int SKILL_GAP = 100;
+  private static final int NO_SCORE = Integer.MIN_VALUE;
+  // BM25 parameters, the usual defaults, the local scoring engine uses the same k1
+  private static final double K1 = 1.2;
+  private static final double B = 0.75;
+  private static final int FIELDS = SearchQuery.Field.values().length;
+
+  private final Path dir;
+  private final ReentrantLock writer = new ReentrantLock();
+  // guarded by writer: the evaluation ids in the index, identity ids are dense so a bit per id is enough
+  private final BitSet indexed = new BitSet();
+  private long generation;
+  private volatile long maxId;
+  // guarded by this: the buffer, its searchable view and the sealed segments change together
+  private Builder buffer = new Builder();
+  private Segment bufferView;
+  private List<Segment> sealed = List.of();
+
+  // SearchIndex is an empty index, kept in memory only when dir is null
+  public SearchIndex(Path dir) {
+    this.dir = dir;
+  }
+
+  // open reads the segments listed in the manifest of the directory, an empty index when there is none
+  // segment files the manifest does not list are the leftovers of an interrupted flush and are deleted
+  public static SearchIndex open(Path dir) throws IOException {
+    SearchIndex index = new SearchIndex(dir);
+    Files.createDirectories(dir);
+    Path manifest = dir.resolve(MANIFEST);
+    if (Files.isRegularFile(manifest)) {
+      List<Segment> segments = new ArrayList<>();
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(manifest)))) {
+        if (in.readInt() != MANIFEST_MAGIC) throw new IOException("Not a search index manifest: " + manifest);
+        index.generation = in.readLong();
+        int count = in.readInt();
+        for (int i = 0; i < count; i++) segments.add(Segment.read(index.file(in.readLong())));
+      }
+      for (Segment s : segments) {
+        for (long id : s.ids) index.mark(id);
+      }
+      index.sealed = List.copyOf(segments);
+    }
+    index.deleteUnlisted();
+    return index;
+  }
+
+  // clear deletes the manifest and the segments of the directory, for an index that cannot be read
+  public static void clear(Path dir) throws IOException {
+    Files.deleteIfExists(dir.resolve(MANIFEST));
+    if (!Files.isDirectory(dir)) return;
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "segment-*.seg")) {
+      for (Path f : files) Files.deleteIfExists(f);
+    }
+  }
+
+  // add buffers the evaluation, false when it is already indexed
+  public boolean add(Doc doc) {
+    if (doc.id() < 0 || doc.id() > Integer.MAX_VALUE) throw new IllegalArgumentException("Evaluation id out of range: " + doc.id());
+    //tokenizing is the expensive part, it runs before any lock is taken
+    Analyzed analyzed = analyze(doc);
+    writer.lock();
+    try {
+      if (indexed.get((int) doc.id())) return false;
+      mark(doc.id());
+      synchronized (this) {
+        buffer.add(analyzed);
+        bufferView = null;
+      }
+      return true;
+    } finally {
+      writer.unlock();
+    }
+  }
+
+  public boolean contains(long id) {
+    writer.lock();
+    try {
+      return id >= 0 && id <= Integer.MAX_VALUE && indexed.get((int) id);
+    } finally {
+      writer.unlock();
+    }
+  }
+
+  // maxId is the highest evaluation id in the index, 0 for an empty index
+  public long maxId() {
+    return maxId;
+  }
+
+  // createdAt is the stored creation time of an indexed evaluation, null when it is not indexed
+  public Instant createdAt(long id) {
+    for (Segment s : snapshot()) {
+      for (int doc = 0; doc < s.size(); doc++) {
+        if (s.ids[doc] == id) return Instant.ofEpochMilli(s.createdAt[doc]);
+      }
+    }
+    return null;
+  }
+
+  public synchronized int buffered() {
+    return buffer.size();
+  }
+
+  public SearchIndexStats stats() {
+    List<Segment> segments = snapshot();
+    long docs = 0, terms = 0, postings = 0;
+    for (Segment s : segments) {
+      docs += s.size();
+      for (Map<String, Postings> field : s.terms) {
+        terms += field.size();
+        for (Postings p : field.values()) postings += p.docs.length;
+      }
+    }
+    return new SearchIndexStats(docs, buffered(), segments.size(), terms, postings);
+  }
+
+  // flush seals the buffer into a segment, writes it, merges the segments of a full tier and writes the manifest
+  // the buffer is only dropped once its segment was written, a failed write leaves it for the next flush
+  public void flush() throws IOException {
+    writer.lock();
+    try {
+      Segment segment;
+      synchronized (this) {
+        if (buffer.size() == 0) return;
+        segment = buffer.build(generation + 1);
+      }
+      if (dir != null) segment.write(file(segment.generation));
+      generation = segment.generation;
+      synchronized (this) {
+        buffer = new Builder();
+        bufferView = null;
+        sealed = append(sealed, List.of(), segment);
+      }
+      merge();
+      if (dir != null) {
+        writeManifest();
+        deleteUnlisted();
+      }
+    } finally {
+      writer.unlock();
+    }
+  }
+
+  // search returns the k best hits of the query that pass the filter, best first, newer first on equal scores
+  public List<Hit> search(SearchQuery query, Filter filter, int k) {
+    List<Segment> segments = snapshot();
+    if (k <= 0 || segments.isEmpty()) return List.of();
+    //collection statistics over every segment, so a hit scores the same whichever segment it is in
+    long docs = 0;
+    double[] avgLength = new double[FIELDS];
+    for (Segment s : segments) {
+      docs += s.size();
+      for (int f = 0; f < FIELDS; f++) avgLength[f] += s.totalLengths[f];
+    }
+    for (int f = 0; f < FIELDS; f++) avgLength[f] = docs == 0 ? 1 : Math.max(1, avgLength[f] / docs);
+    List<SearchQuery.Node> scoring = query.scoring();
+    double[] idf = new double[scoring.size()];
+    for (int i = 0; i < idf.length; i++) idf[i] = idf(segments, scoring.get(i), docs);
+
+    //min heap of the best k, the root is the weakest of them
+    Comparator<Candidate> order = Comparator.<Candidate>comparingDouble(c -> c.score)
+        .thenComparingLong(c -> c.segment.ids[c.doc]);
+    PriorityQueue<Candidate> best = new PriorityQueue<>(order);
+    for (Segment s : segments) {
+      BitSet match = s.match(query.root());
+      s.filter(match, filter);
+      if (match.isEmpty()) continue;
+      double[] scores = new double[s.size()];
+      for (int i = 0; i < scoring.size(); i++) s.score(scoring.get(i), idf[i], avgLength, match, scores);
+      for (int doc = match.nextSetBit(0); doc >= 0; doc = match.nextSetBit(doc + 1)) {
+        Candidate c = new Candidate(s, doc, scores[doc]);
+        if (best.size() < k) {
+          best.add(c);
+        } else if (order.compare(c, best.peek()) > 0) {
+          best.poll();
+          best.add(c);
+        }
+      }
+    }
+    List<Candidate> sorted = new ArrayList<>(best);
+    sorted.sort(order.reversed());
+    List<Hit> hits = new ArrayList<>(sorted.size());
+    for (Candidate c : sorted) hits.add(c.segment.hit(c.doc, c.score));
+    return hits;
+  }
+
+  private record Candidate(Segment segment, int doc, double score) {}
+
+  //snapshot is the list of segments to search, with a segment view of the buffer built once per change
+  private synchronized List<Segment> snapshot() {
+    if (buffer.size() == 0) return sealed;
+    if (bufferView == null) bufferView = buffer.build(0);
+    return append(sealed, List.of(), bufferView);
+  }
+
+  //merge replaces MERGE_FACTOR segments of one size tier by their merge until no tier is full
+  //called with the writer lock held, the merge itself runs without blocking searches
+  private void merge() throws IOException {
+    while (true) {
+      Map<Integer, List<Segment>> tiers = sealed.stream()
+          .collect(Collectors.groupingBy(s -> tier(s.size()), LinkedHashMap::new, Collectors.toList()));
+      List<Segment> group = tiers.values().stream().filter(t -> t.size() >= MERGE_FACTOR).findFirst().orElse(null);
+      if (group == null) return;
+      List<Segment> parts = group.subList(0, MERGE_FACTOR);
+      Segment merged = Segment.merge(generation + 1, parts);
+      if (dir != null) merged.write(file(merged.generation));
+      generation = merged.generation;
+      synchronized (this) {
+        sealed = append(sealed, parts, merged);
+      }
+    }
+  }
+
+  private static int tier(int size) {
+    int tier = 0;
+    for (long limit = MERGE_FACTOR; size >= limit; limit *= MERGE_FACTOR) tier++;
+    return tier;
+  }
+
+  //append returns a new list of the segments without the removed ones and with the added one at the end
+  private static List<Segment> append(List<Segment> segments, List<Segment> removed, Segment added) {
+    List<Segment> out = new ArrayList<>(segments.size() + 1);
+    for (Segment s : segments) {
+      if (!removed.contains(s)) out.add(s);
+    }
+    out.add(added);
+    return List.copyOf(out);
+  }
+
+  private void mark(long id) {
+    indexed.set((int) id);
+    if (id > maxId) maxId = id;
+  }
+
+  private Path file(long generation) {
+    return dir.resolve("segment-" + generation + ".seg");
+  }
+
+  //writeManifest lists the live segments, through a temp file so a crash leaves the previous manifest
+  private void writeManifest() throws IOException {
+    Path manifest = dir.resolve(MANIFEST);
+    Path tmp = dir.resolve(MANIFEST + ".tmp");
+    List<Segment> segments;
+    synchronized (this) {
+      segments = sealed;
+    }
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+      out.writeInt(MANIFEST_MAGIC);
+      out.writeLong(generation);
+      out.writeInt(segments.size());
+      for (Segment s : segments) out.writeLong(s.generation);
+    }
+    Files.move(tmp, manifest, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  //deleteUnlisted removes the segment files of merged segments and of flushes the manifest never listed
+  private void deleteUnlisted() throws IOException {
+    Set<Path> live;
+    synchronized (this) {
+      live = sealed.stream().map(s -> file(s.generation)).collect(Collectors.toSet());
+    }
+    try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "segment-*.seg")) {
+      for (Path f : files) {
+        if (!live.contains(f)) Files.deleteIfExists(f);
+      }
+    }
+  }
+
+  //idf of a term, or of a phrase as the sum of the idf of its terms
+  private static double idf(List<Segment> segments, SearchQuery.Node node, long docs) {
+    if (node instanceof SearchQuery.Term t) return idf(segments, t.field(), t.token(), docs);
+    SearchQuery.Phrase p = (SearchQuery.Phrase) node;
+    double sum = 0;
+    for (String token : p.tokens()) sum += idf(segments, p.field(), token, docs);
+    return sum;
+  }
+
+  private static double idf(List<Segment> segments, SearchQuery.Field field, String token, long docs) {
+    long df = 0;
+    for (Segment s : segments) {
+      Postings p = s.postings(field, token);
+      if (p != null) df += p.docs.length;
+    }
+    return Math.log(1 + (docs - df + 0.5) / (df + 0.5));
+  }
+
+  // Analyzed is a document with its fields tokenized, positions[f][i] is the position of tokens[f][i]
+  private record Analyzed(Doc doc, String[][] tokens, int[][] positions) {}
+
+  private static Analyzed analyze(Doc doc) {
+    String[][] tokens = new String[FIELDS][];
+    int[][] positions = new int[FIELDS][];
+    text(doc.resume(), SearchQuery.Field.RESUME.ordinal(), tokens, positions);
+    text(doc.jobDescription(), SearchQuery.Field.JOB_DESCRIPTION.ordinal(), tokens, positions);
+    List<String> gapTokens = new ArrayList<>();
+    List<Integer> gapPositions = new ArrayList<>();
+    int base = 0;
+    for (String skill : doc.missingSkills() == null ? List.<String>of() : doc.missingSkills()) {
+      List<String> words = LocalScoringEngine.tokenize(skill);
+      for (int i = 0; i < words.size(); i++) {
+        gapTokens.add(words.get(i));
+        gapPositions.add(base + i);
+      }
+      base += words.size() + SKILL_GAP;
+    }
+    int g = SearchQuery.Field.GAP.ordinal();
+    tokens[g] = gapTokens.toArray(String[]::new);
+    positions[g] = gapPositions.stream().mapToInt(Integer::intValue).toArray();
+    return new Analyzed(doc, tokens, positions);
+  }
+
+  private static void text(String text, int field, String[][] tokens, int[][] positions) {
+    List<String> words = LocalScoringEngine.tokenize(text);
+    if (words.size() > MAX_FIELD_TOKENS) words = words.subList(0, MAX_FIELD_TOKENS);
+    tokens[field] = words.toArray(String[]::new);
+    int[] p = new int[words.size()];
+    for (int i = 0; i < p.length; i++) p[i] = i;
+    positions[field] = p;
+  }
+
+  // Postings are the documents of one term in ascending order, with the frequency and the positions per document,
+  // the positions of docs[i] are positions[starts[i] .. starts[i + 1])
+  private record Postings(int[] docs, int[] freqs, int[] starts, int[] positions) {}
+
+  // Segment is an immutable part of the index, its documents are numbered from 0
+  private static final class Segment {
+    final long generation;
+    final long[] ids;
+    final String[] owners;
+    final long[] createdAt;
+    final int[] matchScores;
+    final String[][] gaps;
+    // lengths[f][doc] is the number of tokens of the field, totalLengths[f] their sum
+    final int[][] lengths;
+    final long[] totalLengths;
+    final List<Map<String, Postings>> terms;
+
+    Segment(long generation, long[] ids, String[] owners, long[] createdAt, int[] matchScores, String[][] gaps,
+        int[][] lengths, List<Map<String, Postings>> terms) {
+      this.generation = generation;
+      this.ids = ids;
+      this.owners = owners;
+      this.createdAt = createdAt;
+      this.matchScores = matchScores;
+      this.gaps = gaps;
+      this.lengths = lengths;
+      this.terms = terms;
+      this.totalLengths = new long[FIELDS];
+      for (int f = 0; f < FIELDS; f++) {
+        for (int l : lengths[f]) totalLengths[f] += l;
+      }
+    }
+
+    int size() {
+      return ids.length;
+    }
+
+    Postings postings(SearchQuery.Field field, String token) {
+      return terms.get(field.ordinal()).get(token);
+    }
+
+    Hit hit(int doc, double score) {
+      return new Hit(ids[doc], owners[doc], Instant.ofEpochMilli(createdAt[doc]),
+          matchScores[doc] == NO_SCORE ? null : matchScores[doc], List.of(gaps[doc]), score);
+    }
+
+    //match is the set of documents the clause matches
+    BitSet match(SearchQuery.Node node) {
+      BitSet out = new BitSet(size());
+      if (node instanceof SearchQuery.Term t) {
+        Postings p = postings(t.field(), t.token());
+        if (p != null) for (int doc : p.docs) out.set(doc);
+      } else if (node instanceof SearchQuery.Phrase p) {
+        Postings[] parts = phrase(p);
+        if (parts == null) return out;
+        for (int doc : parts[0].docs) {
+          if (phraseFreq(parts, doc) > 0) out.set(doc);
+        }
+      } else if (node instanceof SearchQuery.And a) {
+        out.set(0, size());
+        for (SearchQuery.Node c : a.clauses()) {
+          out.and(match(c));
+          if (out.isEmpty()) break;
+        }
+      } else if (node instanceof SearchQuery.Or o) {
+        for (SearchQuery.Node c : o.clauses()) out.or(match(c));
+      } else if (node instanceof SearchQuery.Not n) {
+        out.set(0, size());
+        out.andNot(match(n.clause()));
+      }
+      return out;
+    }
+
+    //filter clears the matches the filter does not allow
+    void filter(BitSet match, Filter filter) {
+      if (filter == null) return;
+      long from = filter.from() == null ? Long.MIN_VALUE : filter.from().toEpochMilli();
+      long to = filter.to() == null ? Long.MAX_VALUE : filter.to().toEpochMilli();
+      for (int doc = match.nextSetBit(0); doc >= 0; doc = match.nextSetBit(doc + 1)) {
+        boolean ok = createdAt[doc] >= from && createdAt[doc] < to
+            && (filter.owner() == null || filter.owner().equals(owners[doc]))
+            && (filter.maxGaps() == null || gaps[doc].length <= filter.maxGaps());
+        if (!ok) match.clear(doc);
+      }
+    }
+
+    //score adds the BM25 score of a term or phrase clause to the matched documents
+    void score(SearchQuery.Node node, double idf, double[] avgLength, BitSet match, double[] scores) {
+      if (node instanceof SearchQuery.Term t) {
+        Postings p = postings(t.field(), t.token());
+        if (p == null) return;
+        int f = t.field().ordinal();
+        for (int i = 0; i < p.docs.length; i++) {
+          int doc = p.docs[i];
+          if (match.get(doc)) scores[doc] += bm25(idf, p.freqs[i], lengths[f][doc], avgLength[f]);
+        }
+      } else {
+        SearchQuery.Phrase p = (SearchQuery.Phrase) node;
+        Postings[] parts = phrase(p);
+        if (parts == null) return;
+        int f = p.field().ordinal();
+        for (int doc : parts[0].docs) {
+          if (!match.get(doc)) continue;
+          int tf = phraseFreq(parts, doc);
+          if (tf > 0) scores[doc] += bm25(idf, tf, lengths[f][doc], avgLength[f]);
+        }
+      }
+    }
+
+    private static double bm25(double idf, int tf, int length, double avgLength) {
+      return idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * length / avgLength));
+    }
+
+    //phrase is the postings of the phrase tokens, null when one of them is not in the segment
+    private Postings[] phrase(SearchQuery.Phrase p) {
+      Postings[] parts = new Postings[p.tokens().size()];
+      for (int i = 0; i < parts.length; i++) {
+        parts[i] = postings(p.field(), p.tokens().get(i));
+        if (parts[i] == null) return null;
+      }
+      return parts;
+    }
+
+    //phraseFreq counts the positions where the tokens follow each other in the document
+    private static int phraseFreq(Postings[] parts, int doc) {
+      int[] from = new int[parts.length];
+      int[] to = new int[parts.length];
+      for (int i = 0; i < parts.length; i++) {
+        int at = Arrays.binarySearch(parts[i].docs, doc);
+        if (at < 0) return 0;
+        from[i] = parts[i].starts[at];
+        to[i] = parts[i].starts[at + 1];
+      }
+      int count = 0;
+      for (int j = from[0]; j < to[0]; j++) {
+        int start = parts[0].positions[j];
+        boolean all = true;
+        for (int i = 1; i < parts.length && all; i++) {
+          all = Arrays.binarySearch(parts[i].positions, from[i], to[i], start + i) >= 0;
+        }
+        if (all) count++;
+      }
+      return count;
+    }
+
+    //merge concatenates the segments, the documents of a part are shifted by the sizes of the parts before it
+    static Segment merge(long generation, List<Segment> parts) {
+      int size = parts.stream().mapToInt(Segment::size).sum();
+      long[] ids = new long[size];
+      String[] owners = new String[size];
+      long[] createdAt = new long[size];
+      int[] matchScores = new int[size];
+      String[][] gaps = new String[size][];
+      int[][] lengths = new int[FIELDS][size];
+      int[] offsets = new int[parts.size()];
+      int at = 0;
+      for (int i = 0; i < parts.size(); i++) {
+        Segment s = parts.get(i);
+        offsets[i] = at;
+        System.arraycopy(s.ids, 0, ids, at, s.size());
+        System.arraycopy(s.owners, 0, owners, at, s.size());
+        System.arraycopy(s.createdAt, 0, createdAt, at, s.size());
+        System.arraycopy(s.matchScores, 0, matchScores, at, s.size());
+        System.arraycopy(s.gaps, 0, gaps, at, s.size());
+        for (int f = 0; f < FIELDS; f++) System.arraycopy(s.lengths[f], 0, lengths[f], at, s.size());
+        at += s.size();
+      }
+      List<Map<String, Postings>> terms = new ArrayList<>(FIELDS);
+      for (int f = 0; f < FIELDS; f++) {
+        Map<String, List<Integer>> holders = new HashMap<>();
+        for (int i = 0; i < parts.size(); i++) {
+          for (String term : parts.get(i).terms.get(f).keySet()) holders.computeIfAbsent(term, k -> new ArrayList<>(2)).add(i);
+        }
+        Map<String, Postings> merged = new HashMap<>(holders.size() * 4 / 3 + 1);
+        for (Map.Entry<String, List<Integer>> e : holders.entrySet()) {
+          int n = 0, positions = 0;
+          for (int i : e.getValue()) {
+            Postings p = parts.get(i).terms.get(f).get(e.getKey());
+            n += p.docs.length;
+            positions += p.positions.length;
+          }
+          int[] docs = new int[n], freqs = new int[n], starts = new int[n + 1], pos = new int[positions];
+          int d = 0, q = 0;
+          for (int i : e.getValue()) {
+            Postings p = parts.get(i).terms.get(f).get(e.getKey());
+            for (int j = 0; j < p.docs.length; j++) {
+              docs[d] = p.docs[j] + offsets[i];
+              freqs[d] = p.freqs[j];
+              starts[d] = q;
+              d++;
+              System.arraycopy(p.positions, p.starts[j], pos, q, p.freqs[j]);
+              q += p.freqs[j];
+            }
+          }
+          starts[n] = q;
+          merged.put(e.getKey(), new Postings(docs, freqs, starts, pos));
+        }
+        terms.add(merged);
+      }
+      return new Segment(generation, ids, owners, createdAt, matchScores, gaps, lengths, terms);
+    }
+
+    //write stores the segment, through a temp file so a crash never leaves half a segment
+    //document numbers and positions are written as deltas in variable length ints, most fit in one byte
+    void write(Path file) throws IOException {
+      Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+        out.writeInt(SEGMENT_MAGIC);
+        out.writeLong(generation);
+        out.writeInt(size());
+        for (int doc = 0; doc < size(); doc++) {
+          out.writeLong(ids[doc]);
+          out.writeBoolean(owners[doc] != null);
+          if (owners[doc] != null) out.writeUTF(owners[doc]);
+          out.writeLong(createdAt[doc]);
+          out.writeInt(matchScores[doc]);
+          writeVInt(out, gaps[doc].length);
+          for (String gap : gaps[doc]) out.writeUTF(gap);
+          for (int f = 0; f < FIELDS; f++) writeVInt(out, lengths[f][doc]);
+        }
+        for (int f = 0; f < FIELDS; f++) {
+          Map<String, Postings> field = terms.get(f);
+          out.writeInt(field.size());
+          for (Map.Entry<String, Postings> e : field.entrySet()) {
+            Postings p = e.getValue();
+            out.writeUTF(e.getKey());
+            writeVInt(out, p.docs.length);
+            int last = 0;
+            for (int i = 0; i < p.docs.length; i++) {
+              writeVInt(out, p.docs[i] - last);
+              last = p.docs[i];
+              writeVInt(out, p.freqs[i]);
+              int lastPos = 0;
+              for (int j = p.starts[i]; j < p.starts[i + 1]; j++) {
+                writeVInt(out, p.positions[j] - lastPos);
+                lastPos = p.positions[j];
+              }
+            }
+          }
+        }
+      }
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    static Segment read(Path file) throws IOException {
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+        if (in.readInt() != SEGMENT_MAGIC) throw new IOException("Not a search index segment: " + file);
+        long generation = in.readLong();
+        int size = in.readInt();
+        long[] ids = new long[size];
+        String[] owners = new String[size];
+        long[] createdAt = new long[size];
+        int[] matchScores = new int[size];
+        String[][] gaps = new String[size][];
+        int[][] lengths = new int[FIELDS][size];
+        for (int doc = 0; doc < size; doc++) {
+          ids[doc] = in.readLong();
+          owners[doc] = in.readBoolean() ? in.readUTF() : null;
+          createdAt[doc] = in.readLong();
+          matchScores[doc] = in.readInt();
+          gaps[doc] = new String[readVInt(in)];
+          for (int i = 0; i < gaps[doc].length; i++) gaps[doc][i] = in.readUTF();
+          for (int f = 0; f < FIELDS; f++) lengths[f][doc] = readVInt(in);
+        }
+        List<Map<String, Postings>> terms = new ArrayList<>(FIELDS);
+        for (int f = 0; f < FIELDS; f++) {
+          int count = in.readInt();
+          Map<String, Postings> field = new HashMap<>(count * 4 / 3 + 1);
+          for (int t = 0; t < count; t++) {
+            String term = in.readUTF();
+            int n = readVInt(in);
+            int[] docs = new int[n], freqs = new int[n], starts = new int[n + 1];
+            IntList positions = new IntList();
+            int last = 0;
+            for (int i = 0; i < n; i++) {
+              last += readVInt(in);
+              docs[i] = last;
+              freqs[i] = readVInt(in);
+              starts[i] = positions.size;
+              int pos = 0;
+              for (int j = 0; j < freqs[i]; j++) {
+                pos += readVInt(in);
+                positions.add(pos);
+              }
+            }
+            starts[n] = positions.size;
+            field.put(term, new Postings(docs, freqs, starts, positions.toArray()));
+          }
+          terms.add(field);
+        }
+        return new Segment(generation, ids, owners, createdAt, matchScores, gaps, lengths, terms);
+      }
+    }
+  }
+
+  // Builder collects the documents of the buffer, build turns them into a segment and leaves the builder as it is
+  private static final class Builder {
+    // PostingList is the growing postings of one term
+    private static final class PostingList {
+      final IntList docs = new IntList();
+      final IntList freqs = new IntList();
+      final IntList positions = new IntList();
+    }
+
+    private final List<Doc> docs = new ArrayList<>();
+    private final IntList[] lengths = new IntList[FIELDS];
+    private final List<Map<String, PostingList>> terms = new ArrayList<>(FIELDS);
+
+    Builder() {
+      for (int f = 0; f < FIELDS; f++) {
+        lengths[f] = new IntList();
+        terms.add(new HashMap<>());
+      }
+    }
+
+    int size() {
+      return docs.size();
+    }
+
+    void add(Analyzed a) {
+      int doc = docs.size();
+      Doc d = a.doc();
+      //the texts are in the postings now, the buffer only keeps what a hit shows
+      docs.add(new Doc(d.id(), d.owner(), d.createdAt(), d.matchScore(), null, null, d.missingSkills()));
+      for (int f = 0; f < FIELDS; f++) {
+        String[] tokens = a.tokens()[f];
+        int[] positions = a.positions()[f];
+        lengths[f].add(tokens.length);
+        //positions per term in the order of the text
+        Map<String, IntList> byTerm = new LinkedHashMap<>();
+        for (int i = 0; i < tokens.length; i++) byTerm.computeIfAbsent(tokens[i], k -> new IntList()).add(positions[i]);
+        Map<String, PostingList> field = terms.get(f);
+        for (Map.Entry<String, IntList> e : byTerm.entrySet()) {
+          PostingList p = field.computeIfAbsent(e.getKey(), k -> new PostingList());
+          p.docs.add(doc);
+          p.freqs.add(e.getValue().size);
+          p.positions.addAll(e.getValue());
+        }
+      }
+    }
+
+    Segment build(long generation) {
+      int size = docs.size();
+      long[] ids = new long[size];
+      String[] owners = new String[size];
+      long[] createdAt = new long[size];
+      int[] matchScores = new int[size];
+      String[][] gaps = new String[size][];
+      for (int i = 0; i < size; i++) {
+        Doc d = docs.get(i);
+        ids[i] = d.id();
+        owners[i] = d.owner();
+        createdAt[i] = d.createdAt() == null ? 0 : d.createdAt().toEpochMilli();
+        matchScores[i] = d.matchScore() == null ? NO_SCORE : d.matchScore();
+        gaps[i] = d.missingSkills() == null ? new String[0]
+            : d.missingSkills().stream().filter(Objects::nonNull).toArray(String[]::new);
+      }
+      int[][] fieldLengths = new int[FIELDS][];
+      List<Map<String, Postings>> out = new ArrayList<>(FIELDS);
+      for (int f = 0; f < FIELDS; f++) {
+        fieldLengths[f] = lengths[f].toArray();
+        Map<String, Postings> field = new HashMap<>(terms.get(f).size() * 4 / 3 + 1);
+        for (Map.Entry<String, PostingList> e : terms.get(f).entrySet()) {
+          PostingList p = e.getValue();
+          int[] freqs = p.freqs.toArray();
+          int[] starts = new int[freqs.length + 1];
+          for (int i = 0; i < freqs.length; i++) starts[i + 1] = starts[i] + freqs[i];
+          field.put(e.getKey(), new Postings(p.docs.toArray(), freqs, starts, p.positions.toArray()));
+        }
+        out.add(field);
+      }
+      return new Segment(generation, ids, owners, createdAt, matchScores, gaps, fieldLengths, out);
+    }
+  }
+
+  // IntList is a growable int array without boxing
+  private static final class IntList {
+    int[] values = new int[4];
+    int size;
+
+    void add(int v) {
+      if (size == values.length) values = Arrays.copyOf(values, size * 2);
+      values[size++] = v;
+    }
+
+    void addAll(IntList other) {
+      if (size + other.size > values.length) values = Arrays.copyOf(values, Math.max(size * 2, size + other.size));
+      System.arraycopy(other.values, 0, values, size, other.size);
+      size += other.size;
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(values, size);
+    }
+  }
+
+  private static void writeVInt(DataOutput out, int v) throws IOException {
+    while ((v & ~0x7f) != 0) {
+      out.writeByte((v & 0x7f) | 0x80);
+      v >>>= 7;
+    }
+    out.writeByte(v);
+  }
+
+  private static int readVInt(DataInput in) throws IOException {
+    int v = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      byte b = in.readByte();
+      v |= (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) return v;
+    }
+    throw new IOException("Malformed variable length int");
+  }
+}
@@ -0,0 +1,212 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+// SearchQuery is a parsed query of the SearchIndex
+// syntax: terms and "quoted phrases", AND (also implicit between clauses), OR, NOT or a leading -, parentheses,
+// and a field prefix resume:, jd: or gap: in front of a term, a phrase or a group; a clause without prefix
+// searches the resume
+// examples: gap:kubernetes, kafka AND NOT gap:kafka, "machine learning" OR jd:(data NOT scientist)
+// terms are tokenized like the local scoring engine does it (lower case, stemmed), a term that splits into
+// several tokens is searched as a phrase
+public final class SearchQuery {
+  // Field is a searchable part of an evaluation
+  public enum Field { RESUME, JOB_DESCRIPTION, GAP }
+
+  // Node is one clause of the query tree
+  sealed interface Node permits Term, Phrase, And, Or, Not {}
+
+  // Term is one token in one field
+  record Term(Field field, String token) implements Node {}
+
+  // Phrase is consecutive tokens in one field
+  record Phrase(Field field, List<String> tokens) implements Node {}
+
+  // And matches the documents every clause matches, Not clauses take documents away
+  record And(List<Node> clauses) implements Node {}
+
+  record Or(List<Node> clauses) implements Node {}
+
+  record Not(Node clause) implements Node {}
+
+  // MAX_LENGTH and MAX_CLAUSES bound the work of one query
+  private static final int MAX_LENGTH = 1000;
+  private static final int MAX_CLAUSES = 64;
+
+  private final Node root;
+  // scoring are the term and phrase clauses that are not negated, only they add to the score of a hit
+  private final List<Node> scoring;
+
+  private SearchQuery(Node root, List<Node> scoring) {
+    this.root = root;
+    this.scoring = scoring;
+  }
+
+  Node root() {
+    return root;
+  }
+
+  List<Node> scoring() {
+    return scoring;
+  }
+
+  // parse reads a query, IllegalArgumentException for a query that is empty, too long or not well formed
+  public static SearchQuery parse(String query) {
+    if (query == null || query.isBlank()) throw new IllegalArgumentException("Query is empty");
+    if (query.length() > MAX_LENGTH) throw new IllegalArgumentException("Query is longer than " + MAX_LENGTH + " characters");
+    Parser parser = new Parser(lex(query));
+    Node root = parser.or(Field.RESUME);
+    if (parser.pos < parser.tokens.size()) {
+      throw new IllegalArgumentException("Unexpected " + parser.tokens.get(parser.pos).text + " in query");
+    }
+    if (root == null) throw new IllegalArgumentException("Query has no searchable term");
+    if (parser.clauses > MAX_CLAUSES) throw new IllegalArgumentException("Query has more than " + MAX_CLAUSES + " clauses");
+    List<Node> scoring = new ArrayList<>();
+    collectScoring(root, false, scoring);
+    //a query of only NOT clauses would match nearly everything
+    if (scoring.isEmpty()) throw new IllegalArgumentException("Query needs a term that is not negated");
+    return new SearchQuery(root, scoring);
+  }
+
+  private static void collectScoring(Node node, boolean negated, List<Node> out) {
+    if (node instanceof And a) {
+      a.clauses().forEach(c -> collectScoring(c, negated, out));
+    } else if (node instanceof Or o) {
+      o.clauses().forEach(c -> collectScoring(c, negated, out));
+    } else if (node instanceof Not n) {
+      collectScoring(n.clause(), !negated, out);
+    } else if (!negated) {
+      out.add(node);
+    }
+  }
+
+  private enum Kind { WORD, PHRASE, FIELD, OPEN, CLOSE, AND, OR, NOT }
+
+  private record Token(Kind kind, String text) {}
+
+  //lex splits the query into words, phrases, field prefixes, parentheses and operators
+  private static List<Token> lex(String query) {
+    List<Token> out = new ArrayList<>();
+    int i = 0, n = query.length();
+    while (i < n) {
+      char c = query.charAt(i);
+      if (Character.isWhitespace(c)) {
+        i++;
+      } else if (c == '(') {
+        out.add(new Token(Kind.OPEN, "("));
+        i++;
+      } else if (c == ')') {
+        out.add(new Token(Kind.CLOSE, ")"));
+        i++;
+      } else if (c == '"') {
+        int end = query.indexOf('"', i + 1);
+        if (end < 0) throw new IllegalArgumentException("Unclosed phrase in query");
+        out.add(new Token(Kind.PHRASE, query.substring(i + 1, end)));
+        i = end + 1;
+      } else if (c == '-' && i + 1 < n && !Character.isWhitespace(query.charAt(i + 1))) {
+        //a leading minus negates the clause, inside a word it is part of it (front-end)
+        out.add(new Token(Kind.NOT, "-"));
+        i++;
+      } else {
+        int start = i;
+        while (i < n && !Character.isWhitespace(query.charAt(i)) && "()\"".indexOf(query.charAt(i)) < 0) {
+          if (query.charAt(i) == ':') break;
+          i++;
+        }
+        String word = query.substring(start, i);
+        if (i < n && query.charAt(i) == ':') {
+          out.add(new Token(Kind.FIELD, word));
+          i++;
+        } else if (word.equals("AND")) {
+          out.add(new Token(Kind.AND, word));
+        } else if (word.equals("OR")) {
+          out.add(new Token(Kind.OR, word));
+        } else if (word.equals("NOT")) {
+          out.add(new Token(Kind.NOT, word));
+        } else {
+          out.add(new Token(Kind.WORD, word));
+        }
+      }
+    }
+    return out;
+  }
+
+  //Parser is a recursive descent over: or := and (OR and)*, and := unary ([AND] unary)*,
+  //unary := NOT unary | [field:] (word | phrase | "(" or ")")
+  //a clause that has no token after tokenizing (a lone "+") is dropped, the methods return null for it
+  private static final class Parser {
+    final List<Token> tokens;
+    int pos;
+    int clauses;
+
+    Parser(List<Token> tokens) {
+      this.tokens = tokens;
+    }
+
+    Node or(Field field) {
+      List<Node> clauses = new ArrayList<>();
+      add(clauses, and(field));
+      while (peek(Kind.OR)) {
+        pos++;
+        add(clauses, and(field));
+      }
+      return clauses.isEmpty() ? null : clauses.size() == 1 ? clauses.get(0) : new Or(clauses);
+    }
+
+    Node and(Field field) {
+      List<Node> clauses = new ArrayList<>();
+      add(clauses, unary(field));
+      while (pos < tokens.size() && !peek(Kind.OR) && !peek(Kind.CLOSE)) {
+        if (peek(Kind.AND)) pos++;
+        add(clauses, unary(field));
+      }
+      return clauses.isEmpty() ? null : clauses.size() == 1 ? clauses.get(0) : new And(clauses);
+    }
+
+    Node unary(Field field) {
+      if (pos >= tokens.size()) throw new IllegalArgumentException("Query ends where a term is expected");
+      Token t = tokens.get(pos++);
+      switch (t.kind) {
+        case NOT -> {
+          Node clause = unary(field);
+          return clause == null ? null : new Not(clause);
+        }
+        case FIELD -> {
+          return unary(field(t.text));
+        }
+        case OPEN -> {
+          Node group = or(field);
+          if (!peek(Kind.CLOSE)) throw new IllegalArgumentException("Missing ) in query");
+          pos++;
+          return group;
+        }
+        case WORD, PHRASE -> {
+          List<String> words = LocalScoringEngine.tokenize(t.text);
+          if (words.isEmpty()) return null;
+          clauses++;
+          return words.size() == 1 ? new Term(field, words.get(0)) : new Phrase(field, words);
+        }
+        default -> throw new IllegalArgumentException("Unexpected " + t.text + " in query");
+      }
+    }
+
+    boolean peek(Kind kind) {
+      return pos < tokens.size() && tokens.get(pos).kind == kind;
+    }
+
+    private static void add(List<Node> clauses, Node clause) {
+      if (clause != null) clauses.add(clause);
+    }
+
+    private static Field field(String name) {
+      return switch (name.toLowerCase(Locale.ROOT)) {
+        case "resume" -> Field.RESUME;
+        case "jd" -> Field.JOB_DESCRIPTION;
+        case "gap" -> Field.GAP;
+        default -> throw new IllegalArgumentException("Unknown field " + name + ", use resume:, jd: or gap:");
+      };
+    }
+  }
+}
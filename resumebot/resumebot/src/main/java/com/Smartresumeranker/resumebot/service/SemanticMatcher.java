@@ -0,0 +1,327 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.Smartresumeranker.resumebot.dto.EvaluationSummary;
+import com.Smartresumeranker.resumebot.dto.SimilarResume;
+import com.Smartresumeranker.resumebot.model.Evaluation;
+import com.Smartresumeranker.resumebot.repository.EvaluationRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+// SemanticMatcher scores resumes and searches past resumes with embeddings instead of the chat model
+// score embeds the resume in chunks and every required skill of the job description, a skill is covered when
+// a chunk is similar enough to it, so "built streaming pipelines on Kafka" covers "event streaming"
+// similar finds the past resumes closest to a job description in the VectorIndex of every stored resume,
+// the index is updated from EvaluationSavedEvent, persisted to disk and backfilled from the history; the backfill
+// runs on its own low priority thread, new resumes are indexed on the embedding thread without waiting for it
+// a user only finds the resumes they evaluated themselves, an admin finds every stored resume
+@Component
+public class SemanticMatcher {
+  private static final Logger log = LoggerFactory.getLogger(SemanticMatcher.class);
+  // MAX_CHUNKS caps the embedding work of one resume
+  private static final int MAX_CHUNKS = 48;
+  // EMBED_BATCH is the number of texts sent in one embedding request during the backfill
+  private static final int EMBED_BATCH = 32;
+  private static final int FLUSH_EVERY = 100;
+
+  private final ObjectProvider<EmbeddingModel> models;
+  private final EvaluationRepository repository;
+  private final TextBlobStore blobs;
+  private final PromptPreprocessor preprocessor;
+  private final Executor executor;
+  private final Executor backfillExecutor;
+  private final boolean enabled;
+  private final double threshold;
+  private final double floor;
+  private final int chunkWords;
+  private final boolean backfill;
+  private final Path file;
+  // skillVectors caches the unit vectors of the dictionary skills, the dictionary bounds its size
+  private final Map<String, float[]> skillVectors = new ConcurrentHashMap<>();
+  private final AtomicInteger dirty = new AtomicInteger();
+  // saveLock serializes the index writes, the embedding thread, the backfill and the shutdown all save
+  private final Object saveLock = new Object();
+  private volatile VectorIndex index = new VectorIndex();
+
+  public SemanticMatcher(ObjectProvider<EmbeddingModel> models, EvaluationRepository repository, TextBlobStore blobs,
+      PromptPreprocessor preprocessor, @Qualifier("embeddingExecutor") Executor executor,
+      @Qualifier("embeddingBackfillExecutor") Executor backfillExecutor,
+      @Value("${resumebot.semantic.enabled:false}") boolean enabled,
+      @Value("${resumebot.semantic.threshold:0.6}") double threshold,
+      @Value("${resumebot.semantic.floor:0.4}") double floor,
+      @Value("${resumebot.semantic.chunk-words:60}") int chunkWords,
+      @Value("${resumebot.semantic.backfill:true}") boolean backfill,
+      @Value("${resumebot.semantic.index-file:}") String file) {
+    this.models = models;
+    this.repository = repository;
+    this.blobs = blobs;
+    this.preprocessor = preprocessor;
+    this.executor = executor;
+    this.backfillExecutor = backfillExecutor;
+    this.enabled = enabled;
+    this.threshold = threshold;
+    this.floor = Math.min(floor, threshold - 0.01);
+    this.chunkWords = Math.max(10, chunkWords);
+    this.backfill = backfill;
+    this.file = StringUtils.hasText(file) ? Path.of(file) : null;
+  }
+
+  // score is the semantic coverage of the job description skills by the resume, same shape as the local score
+  public LocalScoringEngine.Result score(String resume, PreparedJob job) {
+    List<String> chunks = chunks(resume);
+    Map<String, Double> weights = job.analysis().skills();
+    if (chunks.isEmpty()) return new LocalScoringEngine.Result(0, List.of(), List.copyOf(weights.keySet()));
+
+    //one embedding request for the resume chunks and the skills seen for the first time
+    List<String> unknown = weights.keySet().stream().filter(s -> !skillVectors.containsKey(s)).toList();
+    List<String> inputs = new ArrayList<>(chunks);
+    inputs.addAll(unknown);
+    boolean noSkills = weights.isEmpty();
+    if (noSkills) inputs.add(preprocessor.reduce(job.text(), PromptPreprocessor.Kind.JOB_DESCRIPTION).text());
+    List<float[]> vectors = embed(inputs);
+    List<float[]> chunkVectors = vectors.subList(0, chunks.size()).stream().map(VectorIndex::normalize).toList();
+    for (int i = 0; i < unknown.size(); i++) {
+      skillVectors.put(unknown.get(i), VectorIndex.normalize(vectors.get(chunks.size() + i)));
+    }
+
+    if (noSkills) {
+      //no dictionary skill in the job description, the best chunk against the whole text decides
+      double best = best(VectorIndex.normalize(vectors.get(vectors.size() - 1)), chunkVectors);
+      return new LocalScoringEngine.Result((int) Math.round(100 * credit(best)), List.of(), List.of());
+    }
+    double total = 0, hit = 0;
+    List<String> matched = new ArrayList<>();
+    List<Map.Entry<String, Double>> missing = new ArrayList<>();
+    for (Map.Entry<String, Double> e : weights.entrySet()) {
+      double best = best(skillVectors.get(e.getKey()), chunkVectors);
+      total += e.getValue();
+      //partial credit between floor and threshold, full credit from the threshold up
+      hit += e.getValue() * credit(best);
+      if (best >= threshold) matched.add(e.getKey());
+      else missing.add(Map.entry(e.getKey(), e.getValue()));
+    }
+    missing.sort(Map.Entry.<String, Double>comparingByValue().reversed());
+    return new LocalScoringEngine.Result((int) Math.round(100 * hit / total), matched,
+        missing.stream().map(Map.Entry::getKey).toList());
+  }
+
+  // similar returns the k stored resumes closest to the job description, best first
+  // owner limits the search to the resumes of that owner, each found through the owner's newest evaluation of it,
+  // null searches every resume
+  public List<SimilarResume> similar(String jobDescription, int k, String owner) {
+    requireEnabled();
+    String jd = preprocessor.reduce(jobDescription, PromptPreprocessor.Kind.JOB_DESCRIPTION).text();
+    float[] query = embed(List.of(jd)).get(0);
+    List<VectorIndex.Hit> hits;
+    if (owner == null) {
+      hits = index.search(query, k);
+    } else {
+      //the index ref is the newest evaluation of a resume by anybody, the owner's own evaluation replaces it
+      Map<String, Long> own = new HashMap<>();
+      for (Object[] row : repository.findLatestIdsByResume(owner)) own.put((String) row[0], (Long) row[1]);
+      if (own.isEmpty()) return List.of();
+      hits = index.search(query, k, own::containsKey).stream()
+          .map(h -> new VectorIndex.Hit(h.key(), own.get(h.key()), h.score()))
+          .toList();
+    }
+    if (hits.isEmpty()) return List.of();
+    Map<Long, EvaluationSummary> summaries = repository
+        .findSummariesByIds(hits.stream().map(VectorIndex.Hit::ref).toList()).stream()
+        .collect(Collectors.toMap(EvaluationSummary::id, Function.identity()));
+    List<SimilarResume> out = new ArrayList<>(hits.size());
+    for (VectorIndex.Hit h : hits) {
+      EvaluationSummary s = summaries.get(h.ref());
+      if (s == null) continue;
+      out.add(new SimilarResume(s.id(), s.owner(), s.matchScore(), s.createdAt(), h.score()));
+    }
+    return out;
+  }
+
+  public boolean enabled() {
+    return enabled;
+  }
+
+  // onSaved indexes the resume of a new evaluation in the background, a resume seen before costs no embedding
+  @EventListener
+  public void onSaved(EvaluationSavedEvent event) {
+    if (!enabled || event.resumeDigest() == null) return;
+    executor.execute(() -> {
+      if (index.updateRef(event.resumeDigest(), event.id(), event.createdAt())) return;
+      try {
+        add(List.of(event.resumeDigest()), List.of(event.id()), List.of(event.createdAt()), List.of(event.resumeText()));
+      } catch (RuntimeException e) {
+        log.debug("Cannot index resume of evaluation {}: {}", event.id(), e.getMessage());
+      }
+    });
+  }
+
+  //load the index written by a previous run, then index the evaluations it does not have yet
+  //an index built from another database (the default in-memory H2 starts empty) is dropped, its refs would point
+  //at ids the new database gives to unrelated evaluations
+  @PostConstruct
+  void start() {
+    if (!enabled) return;
+    if (file != null && Files.isRegularFile(file)) {
+      try {
+        VectorIndex read = VectorIndex.read(file);
+        if (matchesDatabase(read)) {
+          index = read;
+        } else {
+          log.warn("Semantic index {} was built from another database, rebuilding it", file);
+        }
+      } catch (IOException e) {
+        //a broken index file is not fatal, the backfill rebuilds it
+        log.warn("Cannot read semantic index {}, rebuilding it", file);
+      }
+    }
+    if (backfill) backfillExecutor.execute(this::backfill);
+  }
+
+  @PreDestroy
+  public void save() {
+    if (file == null || !enabled) return;
+    synchronized (saveLock) {
+      dirty.set(0);
+      try {
+        index.write(file);
+      } catch (IOException e) {
+        //persistence is best effort, the backfill fills the gap on the next start
+        log.warn("Cannot write semantic index {}", file);
+      }
+    }
+  }
+
+  //backfill walks the whole history in id order and embeds every resume that is not indexed yet
+  private void backfill() {
+    long after = 0;
+    int added = 0;
+    try {
+      while (true) {
+        List<Evaluation> page = repository.findByIdGreaterThanOrderByIdAsc(after, Limit.of(200));
+        if (page.isEmpty()) break;
+        after = page.get(page.size() - 1).getId();
+        //newest evaluation per resume, resumes already indexed only move their ref
+        //the page is in id order, a later evaluation of a resume replaces the earlier one
+        Map<String, Evaluation> pending = new LinkedHashMap<>();
+        for (Evaluation e : page) {
+          String digest = e.getResumeDigest();
+          if (digest == null || index.updateRef(digest, e.getId(), e.getCreatedAt())) continue;
+          pending.put(digest, e);
+        }
+        List<String> digests = new ArrayList<>(pending.keySet());
+        for (int from = 0; from < digests.size(); from += EMBED_BATCH) {
+          List<String> part = digests.subList(from, Math.min(digests.size(), from + EMBED_BATCH));
+          List<Long> ids = part.stream().map(d -> pending.get(d).getId()).toList();
+          List<Instant> created = part.stream().map(d -> pending.get(d).getCreatedAt()).toList();
+          List<String> texts = part.stream().map(blobs::load).toList();
+          add(part, ids, created, texts);
+          added += part.size();
+        }
+      }
+      if (added > 0) log.info("Semantic index backfilled with {} resumes, {} in total", added, index.size());
+      save();
+    } catch (RuntimeException e) {
+      //usually no embedding model, the saved event keeps adding new evaluations
+      log.warn("Semantic index backfill stopped after {} resumes: {}", added, e.getMessage());
+    }
+  }
+
+  //matchesDatabase checks the newest ref of an index against the table by id and createdAt
+  private boolean matchesDatabase(VectorIndex read) {
+    long last = read.lastRef();
+    if (last == 0) return true;
+    Instant indexed = read.lastCreatedAt();
+    return repository.findById(last)
+        .map(e -> indexed != null && e.getCreatedAt() != null && e.getCreatedAt().toEpochMilli() == indexed.toEpochMilli())
+        .orElse(false);
+  }
+
+  //add embeds the resumes and stores their vectors under their digests
+  private void add(List<String> digests, List<Long> ids, List<Instant> created, List<String> texts) {
+    List<String> reduced = texts.stream()
+        .map(t -> preprocessor.reduce(t, PromptPreprocessor.Kind.RESUME).text())
+        .toList();
+    List<float[]> vectors = embed(reduced);
+    for (int i = 0; i < digests.size(); i++) index.put(digests.get(i), ids.get(i), created.get(i), vectors.get(i));
+    if (dirty.addAndGet(digests.size()) >= FLUSH_EVERY) save();
+  }
+
+  //chunks splits the reduced resume into pieces of about chunkWords words along its lines
+  private List<String> chunks(String resume) {
+    String text = preprocessor.reduce(resume, PromptPreprocessor.Kind.RESUME).text();
+    List<String> out = new ArrayList<>();
+    StringBuilder current = new StringBuilder();
+    int words = 0;
+    for (String line : text.split("\n")) {
+      if (line.isBlank()) continue;
+      int n = line.split("\\s+").length;
+      if (words > 0 && words + n > chunkWords) {
+        out.add(current.toString());
+        current.setLength(0);
+        words = 0;
+        if (out.size() == MAX_CHUNKS) return out;
+      }
+      if (current.length() > 0) current.append('\n');
+      current.append(line);
+      words += n;
+    }
+    if (words > 0) out.add(current.toString());
+    return out;
+  }
+
+  private List<float[]> embed(List<String> texts) {
+    requireEnabled();
+    EmbeddingModel model = models.getIfAvailable();
+    if (model == null) throw new IllegalStateException("No embedding model configured");
+    List<float[]> vectors = model.embed(texts);
+    if (vectors.size() != texts.size()) throw new IllegalStateException("Embedding model returned " + vectors.size()
+        + " vectors for " + texts.size() + " texts");
+    return vectors;
+  }
+
+  private void requireEnabled() {
+    if (!enabled) throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Semantic matching is disabled");
+  }
+
+  private double credit(double similarity) {
+    return Math.max(0, Math.min(1, (similarity - floor) / (threshold - floor)));
+  }
+
+  private static double best(float[] unit, List<float[]> chunks) {
+    double best = -1;
+    for (float[] c : chunks) {
+      double dot = 0;
+      for (int i = 0; i < unit.length; i++) dot += unit[i] * c[i];
+      best = Math.max(best, dot);
+    }
+    return best;
+  }
+}
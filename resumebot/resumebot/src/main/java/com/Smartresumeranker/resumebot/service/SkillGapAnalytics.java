@@ -0,0 +1,264 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+
+import com.Smartresumeranker.resumebot.dto.SkillCount;
+import com.Smartresumeranker.resumebot.dto.SkillGapReport;
+import com.Smartresumeranker.resumebot.dto.SkillGapWeek;
+import com.Smartresumeranker.resumebot.model.Evaluation;
+import com.Smartresumeranker.resumebot.repository.EvaluationRepository;
+
+import jakarta.annotation.PostConstruct;
+
+// SkillGapAnalytics keeps the most often missing skills per job description, per user and over all evaluations,
+// in total and per week, updated from EvaluationSavedEvent, so a report never reads the evaluation table
+// every scope key has a SpaceSaving sketch for all time and one per week (Monday, UTC) for the last
+// resumebot.analytics.weeks weeks; a save updates a few counters and a report reads a few sketches, both cost the
+// same whatever the number of evaluations
+// a job description is keyed by its profile id when it was registered, by the digest of its text otherwise
+// at most max-keys job descriptions and users are kept each, the least recently updated one is dropped first
+// the counters live in memory, at most (1 + 2 * max-keys) * (sketch-size + weeks * week-sketch-size) of them,
+// about 120 bytes each: 256k counters, some 30 MB, with the defaults; at startup the backfill streams the whole
+// table through them in keyset chunks
+// a save locks only the scopes it updates, one at a time, so saving threads rarely meet
+@Component
+public class SkillGapAnalytics {
+  private static final Logger log = LoggerFactory.getLogger(SkillGapAnalytics.class);
+  // MAX_SKILL_LENGTH caps the length of a skill name, the model sometimes writes a sentence
+  private static final int MAX_SKILL_LENGTH = 100;
+
+  // Scope is what a report is about, the key tells which job description or user
+  public enum Scope {
+    ALL("all"), JOB_DESCRIPTION("job-description"), USER("user");
+
+    private final String label;
+
+    Scope(String label) {
+      this.label = label;
+    }
+  }
+
+  private static final class Week {
+    final SpaceSaving skills;
+    long evaluations;
+
+    Week(int weekSketchSize) {
+      this.skills = new SpaceSaving(weekSketchSize);
+    }
+  }
+
+  // Tally is the sketches of one scope key, guarded by itself
+  private static final class Tally {
+    final SpaceSaving allTime;
+    final NavigableMap<Long, Week> weeks = new TreeMap<>();
+    long evaluations;
+
+    Tally(int sketchSize) {
+      this.allTime = new SpaceSaving(sketchSize);
+    }
+  }
+
+  private final EvaluationRepository repository;
+  private final Executor executor;
+  private final boolean enabled;
+  private final int sketchSize;
+  private final int weekSketchSize;
+  private final int retainedWeeks;
+  private final boolean backfill;
+  private final int chunk;
+  private final Tally all;
+  // the key maps are access ordered, even a lookup changes them, they are guarded by themselves
+  private final Map<String, Tally> byJobDescription;
+  private final Map<String, Tally> byUser;
+  // counted are the evaluation ids already in the counters, the backfill and the saved event both see new rows
+  // guarded by itself
+  private final BitSet counted = new BitSet();
+
+  public SkillGapAnalytics(EvaluationRepository repository, @Qualifier("analyticsExecutor") Executor executor,
+      @Value("${resumebot.analytics.enabled:true}") boolean enabled,
+      @Value("${resumebot.analytics.sketch-size:64}") int sketchSize,
+      @Value("${resumebot.analytics.week-sketch-size:16}") int weekSketchSize,
+      @Value("${resumebot.analytics.weeks:12}") int retainedWeeks,
+      @Value("${resumebot.analytics.max-keys:500}") int maxKeys,
+      @Value("${resumebot.analytics.backfill:true}") boolean backfill,
+      @Value("${resumebot.analytics.backfill-chunk:500}") int chunk) {
+    this.repository = repository;
+    this.executor = executor;
+    this.enabled = enabled;
+    this.sketchSize = Math.max(1, sketchSize);
+    this.weekSketchSize = Math.max(1, weekSketchSize);
+    this.retainedWeeks = Math.max(1, retainedWeeks);
+    this.backfill = backfill;
+    this.chunk = Math.max(1, chunk);
+    this.all = new Tally(this.sketchSize);
+    this.byJobDescription = lru(maxKeys);
+    this.byUser = lru(maxKeys);
+  }
+
+  // onSaved counts the missing skills of a new evaluation, a few counter updates on the saving thread
+  @EventListener
+  public void onSaved(EvaluationSavedEvent event) {
+    if (!enabled) return;
+    record(event.id(), event.createdAt(), jobDescriptionKey(event.jobDescriptionId(), event.jobDescriptionDigest()),
+        event.owner(), event.missingSkills());
+  }
+
+  // report returns the k most often missing skills of the scope key, all time and for the last weeks weeks
+  // an unknown key is an empty report, the counters only know keys that had evaluations
+  public SkillGapReport report(Scope scope, String key, int weeks, int k) {
+    Tally tally = switch (scope) {
+      case ALL -> all;
+      case JOB_DESCRIPTION -> lookup(byJobDescription, key);
+      case USER -> lookup(byUser, key);
+    };
+    String shownKey = scope == Scope.ALL ? "" : key;
+    if (tally == null) return new SkillGapReport(scope.label, shownKey, 0, List.of(), List.of());
+    synchronized (tally) {
+      List<SkillGapWeek> recent = new ArrayList<>();
+      for (Map.Entry<Long, Week> e : tally.weeks.descendingMap().entrySet()) {
+        if (recent.size() == weeks) break;
+        Week w = e.getValue();
+        recent.add(new SkillGapWeek(LocalDate.ofEpochDay(e.getKey()), w.evaluations, counts(w.skills, w.evaluations, k)));
+      }
+      return new SkillGapReport(scope.label, shownKey, tally.evaluations, counts(tally.allTime, tally.evaluations, k), recent);
+    }
+  }
+
+  // record counts one evaluation in its scopes, false when it was already counted
+  boolean record(long id, Instant createdAt, String jobDescription, String owner, List<String> missingSkills) {
+    if (id >= 0 && id <= Integer.MAX_VALUE) {
+      synchronized (counted) {
+        if (counted.get((int) id)) return false;
+        counted.set((int) id);
+      }
+    }
+    Set<String> skills = skills(missingSkills);
+    long week = weekStart(createdAt == null ? Instant.now() : createdAt);
+    add(all, week, skills);
+    if (jobDescription != null) add(tally(byJobDescription, jobDescription), week, skills);
+    if (owner != null) add(tally(byUser, owner), week, skills);
+    return true;
+  }
+
+  // jobDescriptionKey is the profile id of a registered job description, the digest of its text otherwise
+  public static String jobDescriptionKey(Long jobDescriptionId, String jobDescriptionDigest) {
+    return jobDescriptionId != null ? String.valueOf(jobDescriptionId) : jobDescriptionDigest;
+  }
+
+  public int retainedWeeks() {
+    return retainedWeeks;
+  }
+
+  public int sketchSize() {
+    return sketchSize;
+  }
+
+  @PostConstruct
+  void start() {
+    if (enabled && backfill) executor.execute(this::backfill);
+  }
+
+  //backfill streams the table in id order, chunk rows at a time, rows the saved event counted already are skipped
+  private void backfill() {
+    long after = 0;
+    int added = 0;
+    try {
+      while (true) {
+        List<Evaluation> page = repository.findByIdGreaterThanOrderByIdAsc(after, Limit.of(chunk));
+        if (page.isEmpty()) break;
+        after = page.get(page.size() - 1).getId();
+        for (Evaluation e : page) {
+          if (record(e.getId(), e.getCreatedAt(), jobDescriptionKey(e.getJobDescriptionId(), e.getJobDescriptionDigest()),
+              e.getOwner(), e.getMissingSkills())) added++;
+        }
+      }
+      if (added > 0) log.info("Skill gap analytics backfilled with {} evaluations", added);
+    } catch (RuntimeException e) {
+      //the counters stay as they are, the saved event keeps counting new evaluations
+      log.warn("Skill gap analytics backfill stopped after {} evaluations: {}", added, e.getMessage());
+    }
+  }
+
+  //add counts the evaluation in the all time sketch and in its week, only the newest retainedWeeks weeks are kept
+  //a tally dropped from its key map in the meantime is updated in vain, it was the least recently used one
+  private void add(Tally tally, long week, Set<String> skills) {
+    synchronized (tally) {
+      tally.evaluations++;
+      Week w = tally.weeks.computeIfAbsent(week, k -> new Week(weekSketchSize));
+      w.evaluations++;
+      for (String skill : skills) {
+        tally.allTime.add(skill);
+        w.skills.add(skill);
+      }
+      while (tally.weeks.size() > retainedWeeks) tally.weeks.pollFirstEntry();
+    }
+  }
+
+  private Tally tally(Map<String, Tally> keys, String key) {
+    synchronized (keys) {
+      return keys.computeIfAbsent(key, k -> new Tally(sketchSize));
+    }
+  }
+
+  private static Tally lookup(Map<String, Tally> keys, String key) {
+    synchronized (keys) {
+      return keys.get(key);
+    }
+  }
+
+  private static List<SkillCount> counts(SpaceSaving sketch, long evaluations, int k) {
+    return sketch.top(k).stream()
+        .map(e -> new SkillCount(e.item(), e.count(), e.error(), evaluations == 0 ? 0 : (double) e.count() / evaluations))
+        .toList();
+  }
+
+  //skills normalizes the names, a skill listed twice in one evaluation counts once
+  private static Set<String> skills(List<String> missingSkills) {
+    Set<String> out = new LinkedHashSet<>();
+    if (missingSkills == null) return out;
+    for (String skill : missingSkills) {
+      if (skill == null) continue;
+      String s = skill.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+      if (s.isEmpty()) continue;
+      out.add(s.length() <= MAX_SKILL_LENGTH ? s : s.substring(0, MAX_SKILL_LENGTH));
+    }
+    return out;
+  }
+
+  private static long weekStart(Instant instant) {
+    return instant.atZone(ZoneOffset.UTC).toLocalDate().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)).toEpochDay();
+  }
+
+  private static Map<String, Tally> lru(int maxKeys) {
+    int max = Math.max(1, maxKeys);
+    return new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Tally> eldest) {
+        return size() > max;
+      }
+    };
+  }
+}
@@ -0,0 +1,69 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// SpaceSaving counts the most frequent items of a stream in a fixed number of counters (Metwally et al.)
+// an item without a counter takes over the smallest one: its count starts at that count + 1, the old count is
+// its error, so count - error <= true count <= count; every item seen more than total / capacity times is
+// guaranteed to have a counter
+// memory and the cost of add are bounded by the capacity, not by the length of the stream
+// not thread safe, the owner locks around it
+public class SpaceSaving {
+  // Entry is one counted item, error is the most its count can be above the true count
+  public record Entry(String item, long count, long error) {}
+
+  private static final class Counter {
+    long count;
+    long error;
+  }
+
+  private final int capacity;
+  private final Map<String, Counter> counters;
+  private long total;
+
+  public SpaceSaving(int capacity) {
+    if (capacity < 1) throw new IllegalArgumentException("Capacity must be at least 1");
+    this.capacity = capacity;
+    this.counters = new HashMap<>(capacity * 4 / 3 + 1);
+  }
+
+  public void add(String item) {
+    total++;
+    Counter c = counters.get(item);
+    if (c == null) {
+      if (counters.size() < capacity) {
+        c = new Counter();
+        counters.put(item, c);
+      } else {
+        //the scan is over capacity counters, a small constant
+        Map.Entry<String, Counter> min = null;
+        for (Map.Entry<String, Counter> e : counters.entrySet()) {
+          if (min == null || e.getValue().count < min.getValue().count) min = e;
+        }
+        c = counters.remove(min.getKey());
+        c.error = c.count;
+        counters.put(item, c);
+      }
+    }
+    c.count++;
+  }
+
+  // top returns the k items with the highest counts, highest first
+  public List<Entry> top(int k) {
+    List<Entry> out = new ArrayList<>(counters.size());
+    for (Map.Entry<String, Counter> e : counters.entrySet()) {
+      out.add(new Entry(e.getKey(), e.getValue().count, e.getValue().error));
+    }
+    out.sort(Comparator.comparingLong(Entry::count).reversed().thenComparing(Entry::item));
+    return out.size() <= k ? out : out.subList(0, Math.max(0, k));
+  }
+
+  // total is the number of items added
+  public long total() {
+    return total;
+  }
+}
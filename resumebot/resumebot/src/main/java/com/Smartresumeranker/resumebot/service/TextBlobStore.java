@@ -0,0 +1,62 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import com.Smartresumeranker.resumebot.model.Evaluation;
+import com.Smartresumeranker.resumebot.model.TextBlob;
+import com.Smartresumeranker.resumebot.repository.TextBlobRepository;
+
+// TextBlobStore is the content addressed store of resume and job description texts
+// a text is written once under its SHA-256, every later evaluation with the same text only stores the digest
+@Component
+public class TextBlobStore {
+  private final TextBlobRepository repository;
+  // known remembers recently stored digests, a job description reused for a whole batch costs no query at all
+  private final Set<String> known;
+
+  public TextBlobStore(TextBlobRepository repository,
+      @Value("${resumebot.storage.known-digests:10000}") int knownDigests) {
+    this.repository = repository;
+    this.known = Collections.newSetFromMap(Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+        return size() > knownDigests;
+      }
+    }));
+  }
+
+  // store writes the text when it is not stored yet and returns its digest, null for a null text
+  public String store(String text) {
+    if (text == null) return null;
+    String digest = Digests.sha256(text);
+    if (known.contains(digest)) return digest;
+    if (!repository.existsById(digest)) {
+      try {
+        repository.save(new TextBlob(digest, text));
+      } catch (DataIntegrityViolationException e) {
+        //another request stored the same text in the meantime, the content is identical
+      }
+    }
+    known.add(digest);
+    return digest;
+  }
+
+  public String load(String digest) {
+    if (digest == null) return null;
+    return repository.findById(digest).map(TextBlob::getContent).orElse(null);
+  }
+
+  // fill loads the resume and job description texts of an evaluation read from the database
+  public Evaluation fill(Evaluation evaluation) {
+    evaluation.setResumeText(load(evaluation.getResumeDigest()));
+    evaluation.setJobDescription(load(evaluation.getJobDescriptionDigest()));
+    return evaluation;
+  }
+}
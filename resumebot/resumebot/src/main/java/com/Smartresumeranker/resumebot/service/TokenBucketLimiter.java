@@ -0,0 +1,70 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+// TokenBucketLimiter is a set of token buckets by key (an account, an ip address, ...)
+// every bucket holds up to capacity tokens and refills capacity tokens per period, a call takes one token
+// buckets are created on first use and the least recently used ones are dropped beyond maxKeys, a dropped
+// bucket starts full again, so maxKeys has to be well above the number of keys active within one period
+public final class TokenBucketLimiter {
+  private static final class Bucket {
+    double tokens;
+    long refilledAt;
+  }
+
+  private final double capacity;
+  private final double tokensPerNano;
+  private final LongSupplier clock;
+  // access ordered, the eldest bucket is the least recently used one; guarded by this
+  private final LinkedHashMap<String, Bucket> buckets;
+
+  public TokenBucketLimiter(int capacity, Duration period, int maxKeys) {
+    this(capacity, period, maxKeys, System::nanoTime);
+  }
+
+  // package private constructor for tests, with a clock in nanos
+  TokenBucketLimiter(int capacity, Duration period, int maxKeys, LongSupplier clock) {
+    if (capacity < 1 || period.isNegative() || period.isZero()) {
+      throw new IllegalArgumentException("Rate limit needs a capacity of at least 1 and a positive period");
+    }
+    this.capacity = capacity;
+    this.tokensPerNano = capacity / (double) period.toNanos();
+    this.clock = clock;
+    this.buckets = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+        return size() > maxKeys;
+      }
+    };
+  }
+
+  // tryAcquire takes one token from the bucket of key, it returns 0 when it got one, otherwise the nanos until
+  // the bucket has a token again
+  public long tryAcquire(String key) {
+    return tryAcquire(key, 1);
+  }
+
+  // tryAcquire with a cost takes that many tokens at once, a cost above the capacity is never allowed
+  public synchronized long tryAcquire(String key, double cost) {
+    long now = clock.getAsLong();
+    Bucket b = buckets.get(key);
+    if (b == null) {
+      b = new Bucket();
+      b.tokens = capacity;
+      b.refilledAt = now;
+      buckets.put(key, b);
+    } else {
+      b.tokens = Math.min(capacity, b.tokens + (now - b.refilledAt) * tokensPerNano);
+      b.refilledAt = now;
+    }
+    if (cost > capacity) return Long.MAX_VALUE;
+    if (b.tokens >= cost) {
+      b.tokens -= cost;
+      return 0;
+    }
+    return (long) Math.ceil((cost - b.tokens) / tokensPerNano);
+  }
+}
@@ -0,0 +1,28 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.time.Duration;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+// TooManyRequestsException is a 429 answer with a Retry-After header, in whole seconds rounded up
+public class TooManyRequestsException extends ResponseStatusException {
+  private final long retryAfterSeconds;
+
+  public TooManyRequestsException(String reason, Duration retryAfter) {
+    super(HttpStatus.TOO_MANY_REQUESTS, reason);
+    this.retryAfterSeconds = Math.max(1, (retryAfter.toMillis() + 999) / 1000);
+  }
+
+  public long getRetryAfterSeconds() {
+    return retryAfterSeconds;
+  }
+
+  @Override
+  public HttpHeaders getHeaders() {
+    HttpHeaders headers = new HttpHeaders();
+    headers.set(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+    return headers;
+  }
+}
@@ -0,0 +1,109 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.Smartresumeranker.resumebot.dto.CacheStats;
+import com.Smartresumeranker.resumebot.model.UserAccount;
+import com.Smartresumeranker.resumebot.repository.UserAccountRepository;
+
+// UserAccountCache is the read-through cache of user accounts by email, used by sign in, sign up and the
+// OAuth login, a hit saves the account query and the join for its roles
+// it keeps immutable snapshots, never the entities, and every write goes through save or update, which
+// replace the cached snapshot; the ttl bounds how long a change made elsewhere (another instance, the h2 console)
+// stays unseen; unknown emails are not cached, a sign up is visible at once
+@Component
+public class UserAccountCache {
+  // Account is the cached snapshot of a user account
+  public record Account(Long id, String email, String passwordHash, Set<String> roles) {
+    static Account of(UserAccount ua) {
+      return new Account(ua.getId(), ua.getEmail(), ua.getPasswordHash(), Set.copyOf(ua.getRoles()));
+    }
+  }
+
+  private record Entry(Account account, long expiresAt) {}
+
+  private final UserAccountRepository repo;
+  private final Duration ttl;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  // access ordered map, the eldest entry is the least recently used one; guarded by this
+  private final LinkedHashMap<String, Entry> entries;
+
+  public UserAccountCache(UserAccountRepository repo,
+      @Value("${resumebot.auth.user-cache.max-entries:10000}") int maxEntries,
+      @Value("${resumebot.auth.user-cache.ttl:PT5M}") Duration ttl) {
+    this.repo = repo;
+    this.ttl = ttl;
+    this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  // find returns the account of the email, from the cache or loaded and cached
+  public Optional<Account> find(String email) {
+    String key = UserAccount.normalizeEmail(email);
+    if (key == null) return Optional.empty();
+    synchronized (this) {
+      Entry e = entries.get(key);
+      if (e != null && e.expiresAt() >= System.currentTimeMillis()) {
+        hits.incrementAndGet();
+        return Optional.of(e.account());
+      }
+      if (e != null) entries.remove(key);
+    }
+    misses.incrementAndGet();
+    //loaded outside the lock, two concurrent misses both load and store the same snapshot
+    Optional<Account> loaded = repo.findByEmail(key).map(Account::of);
+    loaded.ifPresent(this::put);
+    return loaded;
+  }
+
+  // save stores a new or changed account and caches what was stored
+  public Account save(UserAccount ua) {
+    try {
+      Account saved = Account.of(repo.save(ua));
+      put(saved);
+      return saved;
+    } catch (RuntimeException e) {
+      //a failed save (a concurrent sign up with the same email) leaves nothing stale behind
+      evict(ua.getEmail());
+      throw e;
+    }
+  }
+
+  // update loads the account, applies the change and saves it, the cached snapshot is replaced
+  public Account update(Long id, Consumer<UserAccount> change) {
+    UserAccount ua = repo.findById(id).orElseThrow(() -> new IllegalStateException("Unknown user account " + id));
+    String before = ua.getEmail();
+    change.accept(ua);
+    if (!before.equals(ua.getEmail())) evict(before);
+    return save(ua);
+  }
+
+  public synchronized void evict(String email) {
+    String key = UserAccount.normalizeEmail(email);
+    if (key != null) entries.remove(key);
+  }
+
+  public synchronized CacheStats stats() {
+    long h = hits.get();
+    long m = misses.get();
+    return new CacheStats(h, m, entries.size(), h + m == 0 ? 0.0 : (double) h / (h + m));
+  }
+
+  private synchronized void put(Account account) {
+    entries.put(account.email(), new Entry(account, System.currentTimeMillis() + ttl.toMillis()));
+  }
+}
@@ -0,0 +1,278 @@
+package com.Smartresumeranker.resumebot.service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+// VectorIndex keeps unit length vectors in one flat float[] and answers top-k cosine queries with a linear scan
+// a vector costs dim * 4 bytes plus its key, no per vector object, 100k resumes of 768 dimensions are ~300 MB
+// and a full scan of them is a few tens of milliseconds
+// every vector has a key (the resume digest) and a ref (the latest evaluation id of that resume); the index also
+// remembers the createdAt of its newest ref, so a loaded index can be checked against the database it was built from
+// thread safe, searches run in parallel, writes are exclusive
+public class VectorIndex {
+  // Hit is one search result, score is the cosine similarity
+  public record Hit(String key, long ref, float score) {}
+
+  // MAGIC names the file format, version 2 added the newest ref and its createdAt to the header
+  private static final int MAGIC = 0x56494432;
+  private static final long UNKNOWN = Long.MIN_VALUE;
+
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+  private final Map<String, Integer> slots = new HashMap<>();
+  private int dim;
+  private int size;
+  private float[] data = new float[0];
+  private long[] refs = new long[0];
+  private String[] keys = new String[0];
+  private long lastRef;
+  private long lastCreatedAt = UNKNOWN;
+
+  // put stores or replaces the vector of a key, every vector of an index has the same dimension
+  // createdAt is the creation time of the ref evaluation, null when unknown
+  public void put(String key, long ref, Instant createdAt, float[] vector) {
+    float[] unit = normalize(vector);
+    lock.writeLock().lock();
+    try {
+      if (dim == 0) dim = unit.length;
+      if (unit.length != dim) {
+        throw new IllegalArgumentException("Vector has " + unit.length + " dimensions, the index " + dim);
+      }
+      Integer slot = slots.get(key);
+      if (slot == null) {
+        grow(size + 1);
+        slot = size++;
+        slots.put(key, slot);
+        keys[slot] = key;
+      }
+      System.arraycopy(unit, 0, data, slot * dim, dim);
+      refs[slot] = ref;
+      stamp(ref, createdAt);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  // updateRef points an indexed key at a newer evaluation, false when the key is not indexed
+  public boolean updateRef(String key, long ref, Instant createdAt) {
+    lock.writeLock().lock();
+    try {
+      Integer slot = slots.get(key);
+      if (slot == null) return false;
+      refs[slot] = Math.max(refs[slot], ref);
+      stamp(ref, createdAt);
+      return true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  public boolean contains(String key) {
+    lock.readLock().lock();
+    try {
+      return slots.containsKey(key);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  public int size() {
+    lock.readLock().lock();
+    try {
+      return size;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  // lastRef is the newest evaluation id the index has seen, 0 for an empty index
+  public long lastRef() {
+    lock.readLock().lock();
+    try {
+      return lastRef;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  // lastCreatedAt is the createdAt of lastRef, null when it is not known
+  public Instant lastCreatedAt() {
+    lock.readLock().lock();
+    try {
+      return lastRef == 0 || lastCreatedAt == UNKNOWN ? null : Instant.ofEpochMilli(lastCreatedAt);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  // search returns the k most similar vectors, best first
+  public List<Hit> search(float[] query, int k) {
+    return search(query, k, null);
+  }
+
+  // search returns the k most similar vectors whose key the filter accepts, best first, a null filter takes all
+  public List<Hit> search(float[] query, int k, Predicate<String> filter) {
+    float[] q = normalize(query);
+    lock.readLock().lock();
+    try {
+      if (size == 0 || k <= 0) return List.of();
+      if (q.length != dim) throw new IllegalArgumentException("Query has " + q.length + " dimensions, the index " + dim);
+      //primitive min heap of the best k slots, the root is the weakest of them
+      int n = Math.min(k, size);
+      int[] heapSlot = new int[n];
+      float[] heapScore = new float[n];
+      int filled = 0;
+      for (int slot = 0; slot < size; slot++) {
+        if (filter != null && !filter.test(keys[slot])) continue;
+        float score = dot(q, slot);
+        if (filled < n) {
+          heapSlot[filled] = slot;
+          heapScore[filled] = score;
+          siftUp(heapSlot, heapScore, filled++);
+        } else if (score > heapScore[0]) {
+          heapSlot[0] = slot;
+          heapScore[0] = score;
+          siftDown(heapSlot, heapScore, n);
+        }
+      }
+      List<Hit> hits = new ArrayList<>(filled);
+      for (int i = 0; i < filled; i++) hits.add(new Hit(keys[heapSlot[i]], refs[heapSlot[i]], heapScore[i]));
+      hits.sort(Comparator.comparingDouble(Hit::score).reversed());
+      return hits;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  // write stores the index, through a temp file so a crash never leaves half a file
+  // the temp file has a unique name, two writers never share it
+  public void write(Path file) throws IOException {
+    lock.readLock().lock();
+    Path tmp = null;
+    try {
+      Path dir = file.toAbsolutePath().getParent();
+      Files.createDirectories(dir);
+      tmp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+        out.writeInt(MAGIC);
+        out.writeInt(dim);
+        out.writeInt(size);
+        out.writeLong(lastRef);
+        out.writeLong(lastCreatedAt);
+        for (int slot = 0; slot < size; slot++) {
+          out.writeUTF(keys[slot]);
+          out.writeLong(refs[slot]);
+          for (int i = 0; i < dim; i++) out.writeFloat(data[slot * dim + i]);
+        }
+      }
+      Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      tmp = null;
+    } finally {
+      lock.readLock().unlock();
+      if (tmp != null) Files.deleteIfExists(tmp);
+    }
+  }
+
+  // read loads an index written by write
+  public static VectorIndex read(Path file) throws IOException {
+    VectorIndex index = new VectorIndex();
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != MAGIC) throw new IOException("Not a vector index: " + file);
+      int dim = in.readInt();
+      int size = in.readInt();
+      long lastRef = in.readLong();
+      long lastCreatedAt = in.readLong();
+      float[] v = new float[dim];
+      for (int slot = 0; slot < size; slot++) {
+        String key = in.readUTF();
+        long ref = in.readLong();
+        for (int i = 0; i < dim; i++) v[i] = in.readFloat();
+        index.put(key, ref, null, v);
+      }
+      index.lastRef = lastRef;
+      index.lastCreatedAt = lastCreatedAt;
+    }
+    return index;
+  }
+
+  //stamp remembers the newest ref and its createdAt, called under the write lock
+  private void stamp(long ref, Instant createdAt) {
+    if (ref > lastRef) {
+      lastRef = ref;
+      lastCreatedAt = createdAt == null ? UNKNOWN : createdAt.toEpochMilli();
+    } else if (ref == lastRef && createdAt != null) {
+      lastCreatedAt = createdAt.toEpochMilli();
+    }
+  }
+
+  private static void siftUp(int[] slots, float[] scores, int i) {
+    while (i > 0) {
+      int parent = (i - 1) / 2;
+      if (scores[parent] <= scores[i]) return;
+      swap(slots, scores, i, parent);
+      i = parent;
+    }
+  }
+
+  private static void siftDown(int[] slots, float[] scores, int n) {
+    int i = 0;
+    while (true) {
+      int smallest = i, l = 2 * i + 1, r = l + 1;
+      if (l < n && scores[l] < scores[smallest]) smallest = l;
+      if (r < n && scores[r] < scores[smallest]) smallest = r;
+      if (smallest == i) return;
+      swap(slots, scores, i, smallest);
+      i = smallest;
+    }
+  }
+
+  private static void swap(int[] slots, float[] scores, int a, int b) {
+    int s = slots[a];
+    slots[a] = slots[b];
+    slots[b] = s;
+    float f = scores[a];
+    scores[a] = scores[b];
+    scores[b] = f;
+  }
+
+  private float dot(float[] q, int slot) {
+    int base = slot * dim;
+    float sum = 0;
+    for (int i = 0; i < dim; i++) sum += q[i] * data[base + i];
+    return sum;
+  }
+
+  private void grow(int needed) {
+    if (needed <= keys.length) return;
+    int capacity = Math.max(16, Math.max(needed, keys.length + (keys.length >> 1)));
+    data = Arrays.copyOf(data, capacity * dim);
+    refs = Arrays.copyOf(refs, capacity);
+    keys = Arrays.copyOf(keys, capacity);
+  }
+
+  // normalize returns a unit length copy, so the dot product is the cosine similarity
+  static float[] normalize(float[] v) {
+    double norm = 0;
+    for (float x : v) norm += x * x;
+    norm = Math.sqrt(norm);
+    float[] out = new float[v.length];
+    if (norm == 0) return out;
+    for (int i = 0; i < v.length; i++) out[i] = (float) (v[i] / norm);
+    return out;
+  }
+}
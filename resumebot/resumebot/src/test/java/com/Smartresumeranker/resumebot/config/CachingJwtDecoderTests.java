@@ -0,0 +1,65 @@
+package com.Smartresumeranker.resumebot.config;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import com.Smartresumeranker.resumebot.service.AuthMetrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class CachingJwtDecoderTests {
+
+	@Test
+	void tokenIsServedFromTheCacheOnlyUntilItExpires() throws Exception {
+		AtomicInteger decodes = new AtomicInteger();
+		Instant expiresAt = Instant.now().plusSeconds(2);
+		//the delegate verifies the expiry like the real one, so a late decode fails
+		JwtDecoder delegate = token -> {
+			decodes.incrementAndGet();
+			if (!expiresAt.isAfter(Instant.now())) throw new BadJwtException("expired");
+			return jwt(token, expiresAt);
+		};
+		CachingJwtDecoder decoder = new CachingJwtDecoder(delegate, 10, new AuthMetrics(new SimpleMeterRegistry()));
+
+		assertEquals("user", decoder.decode("token").getSubject());
+		assertEquals("user", decoder.decode("token").getSubject());
+		assertEquals(1, decodes.get());
+
+		//past exp the entry is dropped and the delegate decides again
+		Thread.sleep(Math.max(0, expiresAt.toEpochMilli() - System.currentTimeMillis()) + 50);
+		assertThrows(BadJwtException.class, () -> decoder.decode("token"));
+		assertEquals(2, decodes.get());
+		assertEquals(0, decoder.size());
+	}
+
+	@Test
+	void failedChecksAndTokensWithoutExpiryAreNotCached() {
+		AtomicInteger decodes = new AtomicInteger();
+		JwtDecoder delegate = token -> {
+			decodes.incrementAndGet();
+			if (token.equals("forged")) throw new BadJwtException("bad signature");
+			return jwt(token, null);
+		};
+		CachingJwtDecoder decoder = new CachingJwtDecoder(delegate, 10, new AuthMetrics(new SimpleMeterRegistry()));
+		assertThrows(BadJwtException.class, () -> decoder.decode("forged"));
+		assertThrows(BadJwtException.class, () -> decoder.decode("forged"));
+		decoder.decode("forever");
+		decoder.decode("forever");
+		assertEquals(4, decodes.get());
+		assertEquals(0, decoder.size());
+	}
+
+	private static Jwt jwt(String token, Instant expiresAt) {
+		Instant issuedAt = Instant.now().minusSeconds(1);
+		return Jwt.withTokenValue(token).header("alg", "HS256").subject("user").issuedAt(issuedAt)
+				.expiresAt(expiresAt).build();
+	}
+}
@@ -0,0 +1,176 @@
+package com.Smartresumeranker.resumebot.controller;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.time.Instant;
+import java.util.Set;
+
+import org.hamcrest.Matchers;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.web.server.ResponseStatusException;
+
+import com.Smartresumeranker.resumebot.dto.JobDescriptionRequest;
+import com.Smartresumeranker.resumebot.model.Evaluation;
+import com.Smartresumeranker.resumebot.repository.EvaluationRepository;
+import com.Smartresumeranker.resumebot.service.JobDescriptionService;
+
+//a user only sees their own evaluations, an admin may see everybody's and the metrics
+@SpringBootTest
+@AutoConfigureMockMvc
+class OwnerScopeTests {
+
+	@Autowired
+	MockMvc mvc;
+
+	@Autowired
+	JwtEncoder jwtEncoder;
+
+	@Autowired
+	EvaluationRepository repository;
+
+	@Autowired
+	JobDescriptionService jobDescriptions;
+
+	@BeforeEach
+	void evaluations() {
+		repository.deleteAll();
+		for (String owner : new String[] {"ann@example.com", "bob@example.com", "bob@example.com"}) {
+			Evaluation e = new Evaluation();
+			e.setOwner(owner);
+			e.setMatchScore(50);
+			repository.save(e);
+		}
+	}
+
+	@Test
+	void listingShowsOnlyTheCallersEvaluations() throws Exception {
+		String ann = token("ann@example.com", "USER");
+		mvc.perform(get("/api/rank").header("Authorization", ann))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.items[*].owner", Matchers.everyItem(Matchers.is("ann@example.com"))))
+				.andExpect(jsonPath("$.items.length()").value(1));
+		mvc.perform(get("/api/rank").param("owner", "me").header("Authorization", ann))
+				.andExpect(jsonPath("$.items.length()").value(1));
+		mvc.perform(get("/api/rank").param("owner", "bob@example.com").header("Authorization", ann))
+				.andExpect(status().isForbidden());
+
+		String admin = token("root@example.com", "USER", "ADMIN");
+		mvc.perform(get("/api/rank").param("owner", "bob@example.com").header("Authorization", admin))
+				.andExpect(jsonPath("$.items.length()").value(2));
+		mvc.perform(get("/api/rank").header("Authorization", admin))
+				.andExpect(jsonPath("$.items.length()").value(3));
+	}
+
+	@Test
+	void detailIsOnlyServedToItsOwnerOrAnAdmin() throws Exception {
+		Long bobs = repository.findAll().stream().filter(e -> "bob@example.com".equals(e.getOwner())).findFirst()
+				.orElseThrow().getId();
+		mvc.perform(get("/api/rank/" + bobs).header("Authorization", token("ann@example.com", "USER")))
+				.andExpect(status().isNotFound());
+		mvc.perform(get("/api/rank/" + bobs).header("Authorization", token("bob@example.com", "USER")))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.owner").value("bob@example.com"));
+		mvc.perform(get("/api/rank/" + bobs).header("Authorization", token("root@example.com", "ADMIN")))
+				.andExpect(status().isOk());
+		mvc.perform(get("/api/rank/" + (bobs + 1000)).header("Authorization", token("root@example.com", "ADMIN")))
+				.andExpect(status().isNotFound());
+	}
+
+	@Test
+	void searchShowsOnlyTheCallersEvaluations() throws Exception {
+		String ann = token("ann@example.com", "USER");
+		mvc.perform(get("/api/rank/search").param("q", "java").param("owner", "bob@example.com").header("Authorization", ann))
+				.andExpect(status().isForbidden());
+		mvc.perform(get("/api/rank/search").param("q", "java").header("Authorization", ann))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$[*].owner", Matchers.everyItem(Matchers.is("ann@example.com"))));
+		mvc.perform(get("/api/rank/search").param("q", "java").param("owner", "bob@example.com")
+				.header("Authorization", token("root@example.com", "ADMIN")))
+				.andExpect(status().isOk());
+	}
+
+	@Test
+	void jobDescriptionProfilesAreOnlyServedToTheirOwner() throws Exception {
+		Long bobs = jobDescriptions.register(new JobDescriptionRequest("Backend", "Java and Kafka"), "bob@example.com").id();
+		mvc.perform(get("/api/job-descriptions/" + bobs).header("Authorization", token("bob@example.com", "USER")))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.title").value("Backend"));
+		//another user's profile is answered like an unknown one
+		String ann = token("ann@example.com", "USER");
+		mvc.perform(get("/api/job-descriptions/" + bobs).header("Authorization", ann))
+				.andExpect(status().isNotFound());
+		mvc.perform(get("/api/job-descriptions").header("Authorization", ann))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$[?(@.id == " + bobs + ")]").isEmpty());
+		assertThrows(ResponseStatusException.class, () -> jobDescriptions.prepared(bobs, "ann@example.com"));
+		assertEquals(bobs, jobDescriptions.prepared(bobs, "bob@example.com").id());
+	}
+
+	@Test
+	void skillGapReportsOfOtherUsersNeedAnAdmin() throws Exception {
+		String ann = token("ann@example.com", "USER");
+		mvc.perform(get("/api/analytics/skill-gaps").param("user", "me").header("Authorization", ann))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.key").value("ann@example.com"));
+		mvc.perform(get("/api/analytics/skill-gaps").param("user", "bob@example.com").header("Authorization", ann))
+				.andExpect(status().isForbidden());
+		Long bobs = jobDescriptions.register(new JobDescriptionRequest("Backend", "Java and Kafka"), "bob@example.com").id();
+		mvc.perform(get("/api/analytics/skill-gaps").param("jobDescriptionId", bobs.toString()).header("Authorization", ann))
+				.andExpect(status().isNotFound());
+
+		mvc.perform(get("/api/analytics/skill-gaps").param("jobDescriptionDigest", "abc").header("Authorization", ann))
+				.andExpect(status().isForbidden());
+		//without a scope a user gets their own report, not the one of every evaluation
+		mvc.perform(get("/api/analytics/skill-gaps").header("Authorization", ann))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.scope").value("user"))
+				.andExpect(jsonPath("$.key").value("ann@example.com"));
+
+		String admin = token("root@example.com", "ADMIN");
+		mvc.perform(get("/api/analytics/skill-gaps").param("user", "bob@example.com").header("Authorization", admin))
+				.andExpect(status().isOk());
+		mvc.perform(get("/api/analytics/skill-gaps").header("Authorization", admin))
+				.andExpect(jsonPath("$.scope").value("all"));
+		mvc.perform(get("/api/analytics/skill-gaps").param("jobDescriptionDigest", "abc").header("Authorization", admin))
+				.andExpect(status().isOk());
+		mvc.perform(get("/api/analytics/skill-gaps").param("jobDescriptionId", bobs.toString()).header("Authorization", admin))
+				.andExpect(status().isOk());
+	}
+
+	@Test
+	void prometheusScrapeNeedsAnAdmin() throws Exception {
+		mvc.perform(get("/actuator/health")).andExpect(status().isOk());
+		mvc.perform(get("/actuator/prometheus").header("Authorization", token("ann@example.com", "USER")))
+				.andExpect(status().isForbidden());
+		//the tests run without the prometheus registry, the metrics endpoint sits behind the same rule
+		mvc.perform(get("/actuator/metrics").header("Authorization", token("ann@example.com", "USER")))
+				.andExpect(status().isForbidden());
+		mvc.perform(get("/actuator/metrics").header("Authorization", token("root@example.com", "ADMIN")))
+				.andExpect(status().isOk());
+	}
+
+	private String token(String email, String... roles) {
+		JwtClaimsSet claims = JwtClaimsSet.builder()
+				.subject(email)
+				.issuedAt(Instant.now())
+				.expiresAt(Instant.now().plusSeconds(600))
+				.claim("roles", Set.of(roles))
+				.build();
+		JwsHeader header = JwsHeader.with(MacAlgorithm.HS256).build();
+		return "Bearer " + jwtEncoder.encode(JwtEncoderParameters.from(header, claims)).getTokenValue();
+	}
+}
@@ -0,0 +1,98 @@
+package com.Smartresumeranker.resumebot.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class EvaluationAdmissionTests {
+
+	@Test
+	void waitingUserIsServedBeforeTheBacklogOfAnother() throws Exception {
+		EvaluationAdmission admission = admission(1, 10);
+		List<String> order = new CopyOnWriteArrayList<>();
+		ExecutorService executor = Executors.newCachedThreadPool();
+		try {
+			EvaluationAdmission.Ticket running = admission.admit("heavy", 1);
+			for (int i = 0; i < 3; i++) {
+				executor.submit(() -> take(admission, "heavy", order));
+				awaitQueued(admission, i + 1);
+			}
+			Future<?> light = executor.submit(() -> take(admission, "light", order));
+			awaitQueued(admission, 4);
+
+			running.close();
+			light.get();
+			executor.shutdown();
+			assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+			//the first heavy call would have been next in arrival order, but heavy was charged for the running slot
+			assertEquals(List.of("light", "heavy", "heavy", "heavy"), order);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void slotsTakenAtOnceAreChargedToTheirUser() throws Exception {
+		EvaluationAdmission admission = admission(2, 10);
+		List<String> order = new CopyOnWriteArrayList<>();
+		ExecutorService executor = Executors.newCachedThreadPool();
+		try {
+			//heavy holds both slots without ever queueing, the batch weighs like its two model calls
+			EvaluationAdmission.Ticket batch = admission.enter("heavy", 2, 2);
+			assertEquals(2, admission.active());
+			executor.submit(() -> take(admission, "heavy", order));
+			awaitQueued(admission, 1);
+			Future<?> light = executor.submit(() -> take(admission, "light", order));
+			awaitQueued(admission, 2);
+
+			batch.close();
+			light.get();
+			executor.shutdown();
+			assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+			assertEquals("light", order.get(0));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void fullQueueIsRefusedWithRetryAfter() throws Exception {
+		EvaluationAdmission admission = admission(1, 0);
+		try (EvaluationAdmission.Ticket running = admission.admit("a", 1)) {
+			TooManyRequestsException e = assertThrows(TooManyRequestsException.class, () -> admission.admit("b", 1));
+			assertTrue(e.getRetryAfterSeconds() >= 1);
+		}
+		//the slot is free again
+		admission.admit("b", 1).close();
+		assertEquals(0, admission.active());
+	}
+
+	private static EvaluationAdmission admission(int maxActive, int maxQueued) {
+		return new EvaluationAdmission(true, maxActive, maxQueued, Duration.ofSeconds(10), 100, Duration.ofMinutes(1), "",
+				new EvaluationMetrics(new SimpleMeterRegistry()));
+	}
+
+	private static void take(EvaluationAdmission admission, String user, List<String> order) {
+		try (EvaluationAdmission.Ticket ticket = admission.admit(user, 1)) {
+			order.add(user);
+		}
+	}
+
+	private static void awaitQueued(EvaluationAdmission admission, int queued) throws InterruptedException {
+		long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+		while (admission.queued() < queued && System.nanoTime() < deadline) Thread.sleep(5);
+		assertEquals(queued, admission.queued());
+	}
+}
@@ -0,0 +1,85 @@
+package com.Smartresumeranker.resumebot.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+class EvaluationBatcherTests {
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	private final ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+
+	@AfterEach
+	void shutdown() {
+		executor.shutdownNow();
+		scheduler.shutdown();
+	}
+
+	@Test
+	void combinedAnswerIsSplitInTheOrderOfTheResumes() {
+		assertEquals(List.of("{\"matchScore\":1}", "{\"matchScore\":2}"),
+				EvaluationBatcher.split("Sure! {\"results\":[{\"matchScore\":1},{\"matchScore\":2}]}", 2));
+		assertNull(EvaluationBatcher.split("{\"results\":[{\"matchScore\":1}]}", 2));
+		assertNull(EvaluationBatcher.split("{\"results\":[{\"matchScore\":1}, 2]}", 2));
+		assertNull(EvaluationBatcher.split("{\"results\":[{\"matchScore\":1},", 2));
+	}
+
+	@Test
+	void everyPromptStartsWithTheSameJobPrefix() {
+		PreparedJob job = new PreparedJob(7L, "Backend engineer", "RULES\nJOB DESCRIPTION:\nBackend engineer\n", null);
+		//the resumes only come after the prefix, so a backend reuses the processed prefix of the previous prompt
+		assertTrue(EvaluationService.buildPrompt("resume-A", job).startsWith(job.promptPrefix() + "RESUME:\n"));
+		assertTrue(EvaluationService.buildPrompt("resume-B", job).startsWith(job.promptPrefix() + "RESUME:\n"));
+		assertTrue(EvaluationBatcher.combinedPrompt(List.of("resume-A", "resume-B"), job).startsWith(job.promptPrefix()));
+	}
+
+	@Test
+	void malformedCombinedAnswerFallsBackToOneCallPerResume() throws Exception {
+		AtomicInteger combinedCalls = new AtomicInteger();
+		//the combined prompt gets one result for two resumes, a single prompt gets the answer of its resume
+		ChatModel model = prompt -> {
+			String text = prompt.getContents();
+			String answer;
+			if (text.contains("numbered RESUMES")) {
+				combinedCalls.incrementAndGet();
+				answer = "{\"results\":[{\"matchScore\":50}]}";
+			} else {
+				answer = text.contains("resume-A") ? "answer-A" : "answer-B";
+			}
+			return new ChatResponse(List.of(new Generation(new AssistantMessage(answer))));
+		};
+		LlmRouter router = new LlmRouter(List.of(new LlmRouter.Backend("stub", "stub", ChatClient.create(model), 4)),
+				executor, Duration.ofSeconds(5), Duration.ofSeconds(10), false, 95, 1);
+		scheduler.initialize();
+		//a long window, the second call fills the bucket and flushes it
+		EvaluationBatcher batcher = new EvaluationBatcher(router, scheduler, executor, true, Duration.ofSeconds(30), 2);
+		PreparedJob job = new PreparedJob(null, "Backend engineer", "JOB DESCRIPTION:\nBackend engineer\n", null);
+
+		CompletableFuture<String> a = CompletableFuture.supplyAsync(() -> batcher.call("resume-A", job, "single resume-A"),
+				executor);
+		CompletableFuture<String> b = CompletableFuture.supplyAsync(() -> batcher.call("resume-B", job, "single resume-B"),
+				executor);
+		assertEquals("answer-A", a.get(10, TimeUnit.SECONDS));
+		assertEquals("answer-B", b.get(10, TimeUnit.SECONDS));
+		assertEquals(1, combinedCalls.get());
+		assertEquals(1, batcher.stats().batches());
+		assertEquals(1, batcher.stats().splitFailures());
+	}
+}
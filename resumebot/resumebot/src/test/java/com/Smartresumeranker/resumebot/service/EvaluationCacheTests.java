@@ -0,0 +1,89 @@
+package com.Smartresumeranker.resumebot.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class EvaluationCacheTests {
+
+	@Test
+	void keyIgnoresWhitespaceButNotThePromptOrTheModel() {
+		EvaluationCache cache = new EvaluationCache(10, Duration.ofHours(1), "", 1, Runnable::run);
+		String key = cache.key("Jane  Doe\nJava", "Backend", "v1", "llama3");
+		assertEquals(key, cache.key(" Jane Doe Java ", "Backend\n", "v1", "llama3"));
+		assertNotEquals(key, cache.key("Jane Doe Java", "Backend", "v2", "llama3"));
+		assertNotEquals(key, cache.key("Jane Doe Java", "Backend", "v1", "qwen"));
+		//the separator keeps the parts apart
+		assertNotEquals(cache.key("ab", "c", "v1", "m"), cache.key("a", "bc", "v1", "m"));
+	}
+
+	@Test
+	void snapshotSurvivesConcurrentSaves(@TempDir Path dir) throws Exception {
+		Path file = dir.resolve("cache.json");
+		//every put flushes, on the putting thread, while other threads save at the same time
+		EvaluationCache cache = new EvaluationCache(1000, Duration.ofHours(1), file.toString(), 1, Runnable::run);
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+		CountDownLatch start = new CountDownLatch(1);
+		try {
+			List<Future<?>> done = new ArrayList<>();
+			for (int t = 0; t < 8; t++) {
+				int thread = t;
+				done.add(pool.submit(() -> {
+					start.await();
+					for (int i = 0; i < 25; i++) {
+						cache.put("key-" + thread + "-" + i, insights(thread * 100 + i));
+						if (i % 5 == 0) cache.save();
+					}
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> f : done) f.get();
+		} finally {
+			pool.shutdown();
+		}
+		cache.save();
+
+		EvaluationCache read = new EvaluationCache(1000, Duration.ofHours(1), file.toString(), 1, Runnable::run);
+		read.load();
+		assertEquals(200, read.stats().size());
+		assertEquals(insights(703), read.get("key-7-3"));
+		//no temp file is left behind
+		try (Stream<Path> files = Files.list(dir)) {
+			assertEquals(List.of(file), files.toList());
+		}
+	}
+
+	@Test
+	void expiredEntriesAreNotServedNorLoaded(@TempDir Path dir) throws Exception {
+		Path file = dir.resolve("cache.json");
+		EvaluationCache cache = new EvaluationCache(10, Duration.ofMillis(-1), file.toString(), 1, Runnable::run);
+		cache.put("old", insights(1));
+		assertNull(cache.get("old"));
+		cache.put("old", insights(1));
+		cache.save();
+		EvaluationCache read = new EvaluationCache(10, Duration.ofHours(1), file.toString(), 1, Runnable::run);
+		read.load();
+		assertEquals(0, read.stats().size());
+		assertTrue(Files.isRegularFile(file));
+	}
+
+	private static EvaluationInsights insights(int score) {
+		return new EvaluationInsights(List.of("Kafka"), List.of("Mention Kafka"), List.of("Built pipelines"), score % 101);
+	}
+}
@@ -0,0 +1,229 @@
+package com.Smartresumeranker.resumebot.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.Smartresumeranker.resumebot.model.EvaluationJob;
+import com.Smartresumeranker.resumebot.model.JobStatus;
+import com.Smartresumeranker.resumebot.repository.EvaluationJobRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+//the workers stand in for nodes, they share nothing but the database
+@DataJpaTest
+@Import(EvaluationJobStore.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class EvaluationJobQueueTests {
+
+	@Autowired
+	EvaluationJobStore store;
+
+	@Autowired
+	EvaluationJobRepository repository;
+
+	@Test
+	void everyJobRunsOnceAcrossWorkers() throws Exception {
+		repository.deleteAll();
+		List<String> ids = new ArrayList<>();
+		for (int i = 0; i < 30; i++) ids.add(store.enqueue("user", "resume-" + i, "jd", null).getPublicId());
+
+		Map<Long, AtomicInteger> runs = new ConcurrentHashMap<>();
+		Map<String, AtomicInteger> byWorker = new ConcurrentHashMap<>();
+		ExecutorService pool = Executors.newFixedThreadPool(6);
+		try {
+			List<EvaluationWorker> workers = new ArrayList<>();
+			for (int w = 0; w < 3; w++) {
+				String worker = "worker-" + w;
+				workers.add(new EvaluationWorker(store, job -> {
+					runs.computeIfAbsent(job.getId(), k -> new AtomicInteger()).incrementAndGet();
+					byWorker.computeIfAbsent(worker, k -> new AtomicInteger()).incrementAndGet();
+					sleep(5);
+					return job.getId();
+				}, pool, worker, 2, Duration.ofMinutes(1), 3, Duration.ZERO));
+			}
+			//the workers poll at the same time, like nodes running their schedules side by side
+			long deadline = System.nanoTime() + Duration.ofSeconds(20).toNanos();
+			while (store.pending() > 0 || workers.stream().anyMatch(w -> w.running() > 0)) {
+				assertTrue(System.nanoTime() < deadline, "jobs did not finish");
+				CountDownLatch start = new CountDownLatch(1);
+				List<Thread> polls = new ArrayList<>();
+				for (EvaluationWorker worker : workers) {
+					Thread t = new Thread(() -> {
+						await(start);
+						worker.poll();
+					});
+					t.start();
+					polls.add(t);
+				}
+				start.countDown();
+				for (Thread t : polls) t.join();
+				sleep(2);
+			}
+		} finally {
+			pool.shutdown();
+			assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+		}
+
+		assertEquals(30, runs.size());
+		assertTrue(runs.values().stream().allMatch(n -> n.get() == 1), "a job ran twice: " + runs);
+		assertTrue(byWorker.size() > 1, "one worker did everything: " + byWorker);
+		for (String id : ids) assertEquals(JobStatus.DONE, store.find(id).orElseThrow().getStatus());
+	}
+
+	@Test
+	void expiredLeaseIsClaimedAgainAndTheLateResultIsDropped() throws Exception {
+		repository.deleteAll();
+		EvaluationJob job = store.enqueue("user", "resume", "jd", null);
+
+		List<EvaluationJob> stalled = store.claim("stalled", 1, Duration.ofMillis(100), 3);
+		assertEquals(1, stalled.size());
+		//the lease still runs, nobody else gets the job
+		assertTrue(store.claim("other", 1, Duration.ofMinutes(1), 3).isEmpty());
+
+		Thread.sleep(150);
+		List<EvaluationJob> reclaimed = store.claim("other", 1, Duration.ofMinutes(1), 3);
+		assertEquals(1, reclaimed.size());
+		assertEquals(2, reclaimed.get(0).getAttempts());
+		//the stalled worker wakes up: its lease is gone, so are its heartbeat and its result
+		assertTrue(store.heartbeat("stalled", List.of(job.getId()), Duration.ofMinutes(1)).isEmpty());
+		assertFalse(store.complete("stalled", job.getId(), 1L));
+		assertTrue(store.complete("other", job.getId(), 2L));
+
+		EvaluationJob done = store.find(job.getPublicId()).orElseThrow();
+		assertEquals(JobStatus.DONE, done.getStatus());
+		assertEquals(2L, done.getEvaluationId());
+	}
+
+	@Test
+	void stopGivesBackQueuedJobsAndLetsRunningOnesFinish() throws Exception {
+		repository.deleteAll();
+		EvaluationJob first = store.enqueue("user", "resume-1", "jd", null);
+		EvaluationJob second = store.enqueue("user", "resume-2", "jd", null);
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger runs = new AtomicInteger();
+		//one executor thread for two claimed jobs, the second one waits in the queue
+		ExecutorService pool = Executors.newSingleThreadExecutor();
+		try {
+			EvaluationWorker worker = new EvaluationWorker(store, job -> {
+				runs.incrementAndGet();
+				started.countDown();
+				await(release);
+				return job.getId();
+			}, pool, "stopping", 2, Duration.ofMinutes(1), 3, Duration.ofSeconds(10));
+			assertEquals(2, worker.poll());
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+			new Thread(() -> {
+				sleep(200);
+				release.countDown();
+			}).start();
+			worker.stop();
+			assertEquals(0, worker.running());
+		} finally {
+			pool.shutdown();
+			assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+		}
+		assertEquals(1, runs.get());
+		EvaluationJob done = store.find(first.getPublicId()).orElseThrow();
+		assertEquals(JobStatus.DONE, done.getStatus());
+		//the queued job never ran, it is back in the queue with its attempt returned
+		EvaluationJob back = store.find(second.getPublicId()).orElseThrow();
+		assertEquals(JobStatus.PENDING, back.getStatus());
+		assertEquals(0, back.getAttempts());
+	}
+
+	@Test
+	void jobWithoutAnEvaluationSlotIsDeferredWithoutUsingAnAttempt() throws Exception {
+		repository.deleteAll();
+		EvaluationJob job = store.enqueue("user", "resume", "jd", null);
+		//one slot, held by somebody else, and no room to queue: every admission is a 429
+		EvaluationAdmission admission = new EvaluationAdmission(true, 1, 0, Duration.ofSeconds(10), 100,
+				Duration.ofMinutes(1), "", new EvaluationMetrics(new SimpleMeterRegistry()));
+		AtomicInteger runs = new AtomicInteger();
+		ExecutorService pool = Executors.newSingleThreadExecutor();
+		try (EvaluationAdmission.Ticket held = admission.enter("other", 1)) {
+			//a single attempt: failing it would fail the job for good
+			EvaluationWorker worker = new EvaluationWorker(store, claimed -> {
+				try (EvaluationAdmission.Ticket ticket = EvaluationJobService.enter(admission, claimed)) {
+					runs.incrementAndGet();
+					return claimed.getId();
+				}
+			}, pool, "saturated", 1, Duration.ofMinutes(1), 1, Duration.ZERO);
+			assertEquals(1, worker.poll());
+			long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+			while (worker.running() > 0) {
+				assertTrue(System.nanoTime() < deadline, "job did not come back");
+				sleep(10);
+			}
+			//the job waits out the Retry-After before anybody claims it again
+			assertTrue(store.claim("other", 1, Duration.ofMinutes(1), 1).isEmpty());
+		} finally {
+			pool.shutdown();
+			assertTrue(pool.awaitTermination(5, TimeUnit.SECONDS));
+		}
+		assertEquals(0, runs.get());
+		EvaluationJob back = store.find(job.getPublicId()).orElseThrow();
+		assertEquals(JobStatus.PENDING, back.getStatus());
+		assertEquals(0, back.getAttempts());
+		assertTrue(back.getAvailableAt().isAfter(Instant.now()));
+	}
+
+	@Test
+	void purgeOnlyDropsFinishedJobsPastTheRetention() throws Exception {
+		repository.deleteAll();
+		EvaluationJob done = store.enqueue("user", "resume-1", "jd", null);
+		EvaluationJob failed = store.enqueue("user", "resume-2", "jd", null);
+		assertEquals(2, store.claim("worker", 2, Duration.ofMinutes(1), 3).size());
+		assertTrue(store.complete("worker", done.getId(), 1L));
+		assertTrue(store.fail("worker", failed.getId(), "broken"));
+		EvaluationJob running = store.enqueue("user", "resume-3", "jd", null);
+		assertEquals(1, store.claim("worker", 1, Duration.ofMinutes(1), 3).size());
+		EvaluationJob pending = store.enqueue("user", "resume-4", "jd", null);
+
+		//finished a moment ago, still polled within the hour
+		assertEquals(0, store.purge(Duration.ofHours(1)));
+		Thread.sleep(20);
+		assertEquals(2, store.purge(Duration.ofMillis(10)));
+		assertTrue(store.find(done.getPublicId()).isEmpty());
+		assertTrue(store.find(failed.getPublicId()).isEmpty());
+		//a job still queued or running is never purged, however old it is
+		assertEquals(JobStatus.RUNNING, store.find(running.getPublicId()).orElseThrow().getStatus());
+		assertEquals(JobStatus.PENDING, store.find(pending.getPublicId()).orElseThrow().getStatus());
+	}
+
+	private static void await(CountDownLatch latch) {
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static void sleep(long millis) {
+		try {
+			Thread.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -0,0 +1,185 @@
+package com.Smartresumeranker.resumebot.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.support.GenericApplicationContext;
+
+import com.Smartresumeranker.resumebot.ResumebotApplication;
+
+// EvaluationLoadTests keeps clients concurrent evaluations running against the application for a while and
+// reports the sustained throughput and latency, once on platform threads (the Tomcat pool) and, on Java 21, once
+// on virtual threads; the model is a stub with a fixed latency and room for every client, so the difference is
+// what the request threads allow; the report goes to the log and to target/load-report.txt
+// tagged load, it only runs with mvn -Pload test, mvn -Pjava21,load test for both modes; tune it with
+// -Dresumebot.load.clients=400 -Dresumebot.load.seconds=20 -Dresumebot.load.latency-ms=500
+@Tag("load")
+class EvaluationLoadTests {
+	private static final Logger log = LoggerFactory.getLogger(EvaluationLoadTests.class);
+
+	private static final int CLIENTS = Integer.getInteger("resumebot.load.clients", 400);
+	private static final int SECONDS = Integer.getInteger("resumebot.load.seconds", 20);
+	private static final long LATENCY_MS = Long.getLong("resumebot.load.latency-ms", 500);
+	private static final Path REPORT = Path.of("target", "load-report.txt");
+	private static final String BOUNDARY = "resumebot-load";
+	private static final String ANSWER = """
+			{"matchScore": 72, "missingSkills": ["Terraform", "GraphQL"],
+			 "suggestions": ["Mention Terraform modules you maintained"],
+			 "rewrittenBullets": ["Cut p99 latency from 900ms to 120ms"]}""";
+
+	private record Run(String mode, long requests, long errors, double throughput, long p50, long p95, long p99) {}
+
+	@Test
+	void sustainedConcurrentEvaluations() throws Exception {
+		List<Run> runs = new ArrayList<>();
+		runs.add(run(false));
+		if (Runtime.version().feature() >= 21) runs.add(run(true));
+		else log.info("virtual threads need Java 21, run mvn -Pjava21,load test for the comparison");
+
+		StringBuilder report = new StringBuilder()
+				.append("%d clients, %d s, model latency %d ms%n".formatted(CLIENTS, SECONDS, LATENCY_MS))
+				.append("%-9s %9s %7s %11s %8s %8s %8s%n".formatted("threads", "requests", "errors", "requests/s", "p50 ms",
+						"p95 ms", "p99 ms"));
+		for (Run r : runs) {
+			report.append("%-9s %9d %7d %11.1f %8d %8d %8d%n".formatted(r.mode(), r.requests(), r.errors(), r.throughput(),
+					r.p50(), r.p95(), r.p99()));
+		}
+		log.info("Load report\n{}", report);
+		Files.writeString(REPORT, report);
+		for (Run r : runs) {
+			assertEquals(0, r.errors(), r.mode() + " run had failed requests");
+			assertTrue(r.requests() > 0, r.mode() + " run completed no request");
+		}
+	}
+
+	private Run run(boolean virtual) throws Exception {
+		String mode = virtual ? "virtual" : "platform";
+		ExecutorService llm = Executors.newCachedThreadPool();
+		LlmRouter.Backend backend = new LlmRouter.Backend("stub", "stub", ChatClient.create(stubModel()), CLIENTS);
+		LlmRouter router = new LlmRouter(List.of(backend), llm, Duration.ofSeconds(60), Duration.ofSeconds(1), false,
+				95, 20);
+		//command line arguments win over the system property the java21 profile sets for all tests
+		//all clients share one account, the admission would rate limit them, it is not what is measured here
+		ConfigurableApplicationContext context = new SpringApplicationBuilder(ResumebotApplication.class)
+				.initializers(ctx -> ((GenericApplicationContext) ctx).registerBean("stubLlmRouter", LlmRouter.class,
+						() -> router, bd -> bd.setPrimary(true)))
+				.run("--server.port=0", "--spring.threads.virtual.enabled=" + virtual,
+						"--spring.datasource.url=jdbc:h2:mem:load-" + mode + ";DB_CLOSE_DELAY=-1",
+						"--spring.main.banner-mode=off", "--logging.level.root=WARN",
+						"--logging.level." + EvaluationLoadTests.class.getName() + "=INFO",
+						"--management.tracing.sampling.probability=0", "--resumebot.semantic.enabled=false",
+						"--resumebot.semantic.index-file=", "--resumebot.cache.evaluation.file=",
+						"--resumebot.cache.text.dir=", "--resumebot.admission.enabled=false");
+		ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+		try {
+			String base = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+			HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+					.connectTimeout(Duration.ofSeconds(10)).build();
+			String token = signUp(http, base, mode);
+
+			//the first quarter warms up, only requests started after it are measured
+			long warmup = System.nanoTime() + TimeUnit.SECONDS.toNanos(Math.max(1, SECONDS / 4));
+			long end = warmup + TimeUnit.SECONDS.toNanos(SECONDS);
+			AtomicLong counter = new AtomicLong();
+			AtomicLong errors = new AtomicLong();
+			List<Long> latencies = Collections.synchronizedList(new ArrayList<>());
+			for (int c = 0; c < CLIENTS; c++) {
+				clients.execute(() -> {
+					while (System.nanoTime() < end) {
+						long start = System.nanoTime();
+						boolean ok = evaluate(http, base, token, counter.incrementAndGet());
+						if (start < warmup) continue;
+						if (ok) latencies.add(System.nanoTime() - start);
+						else errors.incrementAndGet();
+					}
+				});
+			}
+			clients.shutdown();
+			assertTrue(clients.awaitTermination(SECONDS * 2L + 120, TimeUnit.SECONDS), "clients did not finish");
+
+			List<Long> sorted = new ArrayList<>(latencies);
+			Collections.sort(sorted);
+			return new Run(mode, sorted.size(), errors.get(), (double) sorted.size() / SECONDS,
+					percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99));
+		} finally {
+			clients.shutdownNow();
+			context.close();
+			llm.shutdownNow();
+		}
+	}
+
+	private static String signUp(HttpClient http, String base, String mode) throws Exception {
+		String body = "{\"fullName\":\"Load Test\",\"email\":\"load-" + mode + "@example.com\","
+				+ "\"password\":\"load-test-1\",\"confirmPassword\":\"load-test-1\"}";
+		HttpResponse<String> response = http.send(HttpRequest.newBuilder(URI.create(base + "/auth/signup"))
+				.header("Content-Type", "application/json")
+				.POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.ofString());
+		assertEquals(200, response.statusCode(), response.body());
+		return InsightsParser.MAPPER.readTree(response.body()).path("token").asText();
+	}
+
+	//evaluate posts one evaluation with a resume nobody sent before, so the evaluation cache never answers
+	private static boolean evaluate(HttpClient http, String base, String token, long n) {
+		String body = part("resumeText", "Jane Doe, backend engineer " + n + "\nJava, Spring Boot, Kafka, PostgreSQL")
+				+ part("jobDescription", "Senior Java engineer with Spring Boot, Kafka, Terraform and GraphQL")
+				+ "--" + BOUNDARY + "--\r\n";
+		try {
+			HttpResponse<Void> response = http.send(HttpRequest.newBuilder(URI.create(base + "/api/rank"))
+					.header("Authorization", "Bearer " + token)
+					.header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+					.timeout(Duration.ofSeconds(120))
+					.POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.discarding());
+			return response.statusCode() == 200;
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	private static String part(String name, String value) {
+		return "--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"" + name + "\"\r\n\r\n" + value + "\r\n";
+	}
+
+	private static long percentile(List<Long> sorted, int p) {
+		if (sorted.isEmpty()) return 0;
+		int index = (int) Math.ceil(p / 100.0 * sorted.size()) - 1;
+		return TimeUnit.NANOSECONDS.toMillis(sorted.get(Math.max(0, index)));
+	}
+
+	//stubModel answers every prompt after the configured latency, like a backend with a free slot for every call
+	private static ChatModel stubModel() {
+		return prompt -> {
+			try {
+				Thread.sleep(LATENCY_MS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return new ChatResponse(List.of(new Generation(new AssistantMessage(ANSWER))));
+		};
+	}
+}
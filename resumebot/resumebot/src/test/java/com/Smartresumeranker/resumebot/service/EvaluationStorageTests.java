@@ -0,0 +1,65 @@
+package com.Smartresumeranker.resumebot.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import com.Smartresumeranker.resumebot.model.Evaluation;
+import com.Smartresumeranker.resumebot.model.Insights;
+import com.Smartresumeranker.resumebot.repository.EvaluationRepository;
+import com.Smartresumeranker.resumebot.repository.TextBlobRepository;
+
+@DataJpaTest
+@Import(TextBlobStore.class)
+class EvaluationStorageTests {
+
+	@Autowired
+	TextBlobStore blobs;
+
+	@Autowired
+	TextBlobRepository blobRepository;
+
+	@Autowired
+	EvaluationRepository evaluations;
+
+	@Autowired
+	TestEntityManager entityManager;
+
+	@Test
+	void insightsRoundTripThroughTheJsonColumnAndTextsAreStoredOnce() {
+		String jd = "Backend engineer, Java and Kafka";
+		Evaluation first = evaluation(blobs.store("Jane Doe, Java"), blobs.store(jd),
+				new Insights(List.of("Kafka", "quotes \" and \\ slashes"), List.of("Mention Kafka"), null));
+		Evaluation second = evaluation(blobs.store("John Roe, Go"), blobs.store(jd), Insights.EMPTY);
+		entityManager.flush();
+		entityManager.clear();
+
+		//two resumes and the one shared job description
+		assertEquals(3, blobRepository.count());
+		assertEquals(first.getJobDescriptionDigest(), second.getJobDescriptionDigest());
+
+		Evaluation read = blobs.fill(evaluations.findById(first.getId()).orElseThrow());
+		assertEquals(List.of("Kafka", "quotes \" and \\ slashes"), read.getMissingSkills());
+		assertEquals(List.of("Mention Kafka"), read.getSuggestions());
+		assertEquals(List.of(), read.getRewrittenBullets());
+		assertEquals("Jane Doe, Java", read.getResumeText());
+		assertEquals(jd, read.getJobDescription());
+		assertEquals(Insights.EMPTY, evaluations.findById(second.getId()).orElseThrow().getInsights());
+	}
+
+	private Evaluation evaluation(String resumeDigest, String jobDescriptionDigest, Insights insights) {
+		Evaluation evaluation = new Evaluation();
+		evaluation.setOwner("user");
+		evaluation.setResumeDigest(resumeDigest);
+		evaluation.setJobDescriptionDigest(jobDescriptionDigest);
+		evaluation.setInsights(insights);
+		evaluation.setMatchScore(70);
+		return evaluations.save(evaluation);
+	}
+}
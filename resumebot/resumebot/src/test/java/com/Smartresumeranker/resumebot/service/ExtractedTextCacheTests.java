@@ -0,0 +1,49 @@
+package com.Smartresumeranker.resumebot.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ExtractedTextCacheTests {
+
+	@Test
+	void diskStoreIsSharedByDigestAndCappedOldestFirst(@TempDir Path dir) {
+		//room for two 10 byte texts on disk
+		ExtractedTextCache cache = new ExtractedTextCache(1000, dir.toString(), 25, Duration.ofDays(7), null);
+		cache.put("a", "aaaaaaaaaa");
+		cache.put("b", "bbbbbbbbbb");
+		cache.put("c", "cccccccccc");
+		assertFalse(Files.exists(dir.resolve("a.txt")));
+
+		//another node, or this one after a restart, reads the texts from disk
+		ExtractedTextCache other = new ExtractedTextCache(1000, dir.toString(), 25, Duration.ofDays(7), null);
+		assertNull(other.get("a", 100));
+		assertEquals("cccccccccc", other.get("c", 100));
+		assertEquals(1, other.stats().diskHits());
+		assertEquals(100, other.stats().bytesSaved());
+	}
+
+	@Test
+	void textPastTheRetentionIsDeletedNotServed(@TempDir Path dir) throws Exception {
+		new ExtractedTextCache(1000, dir.toString(), 1000, Duration.ofDays(7), null).put("old", "personal data");
+		new ExtractedTextCache(1000, dir.toString(), 1000, Duration.ofDays(7), null).put("new", "personal data");
+		Files.setLastModifiedTime(dir.resolve("old.txt"), FileTime.from(Instant.now().minus(Duration.ofDays(8))));
+
+		ExtractedTextCache cache = new ExtractedTextCache(1000, dir.toString(), 1000, Duration.ofDays(7), null);
+		assertNull(cache.get("old", 100));
+		assertFalse(Files.exists(dir.resolve("old.txt")));
+
+		Files.setLastModifiedTime(dir.resolve("new.txt"), FileTime.from(Instant.now().minus(Duration.ofDays(8))));
+		cache.sweep();
+		assertFalse(Files.exists(dir.resolve("new.txt")));
+	}
+}
@@ -0,0 +1,60 @@
+package com.Smartresumeranker.resumebot.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class InsightsParserTests {
+
+	@Test
+	void fencedAnswerWithCommentsAndTrailingRemarkIsParsed() {
+		InsightsParser.Result r = InsightsParser.parse("""
+				Here is the evaluation:
+				```json
+				{
+				  "matchScore": "78%", // the model's estimate
+				  "missingSkills": ["Terraform", {"skill": "GraphQL"}, null],
+				  "suggestions": ['Quantify impact',],
+				  "rewrittenBullets": ["Cut latency by 80%"]
+				}
+				```
+				Let me know if you need more.
+				""");
+		assertTrue(r.complete());
+		assertTrue(r.recovered());
+		assertEquals(78, r.insights().matchScore());
+		assertEquals(List.of("Terraform", "GraphQL"), r.insights().missingSkills());
+		assertEquals(List.of("Quantify impact"), r.insights().suggestions());
+	}
+
+	@Test
+	void truncatedAnswerKeepsTheCompleteFields() {
+		InsightsParser.Result r = InsightsParser.parse("""
+				{"matchScore": 64, "missingSkills": ["Kafka", "Go"], "suggestions": ["Add metrics", "Mention Ka""");
+		assertFalse(r.empty());
+		assertTrue(r.recovered());
+		assertEquals(64, r.insights().matchScore());
+		assertEquals(List.of("Kafka", "Go"), r.insights().missingSkills());
+		assertEquals(List.of(), r.insights().suggestions());
+		assertEquals(Set.of(InsightsParser.Field.SUGGESTIONS, InsightsParser.Field.REWRITTEN_BULLETS), r.missing());
+	}
+
+	@Test
+	void answerWithoutJsonIsEmpty() {
+		assertTrue(InsightsParser.parse("I cannot evaluate this resume.").empty());
+		assertTrue(InsightsParser.parse(null).empty());
+	}
+
+	@Test
+	void emptySuggestionsBreakTheSchema() {
+		InsightsParser.Result r = InsightsParser.parse(
+				"{\"matchScore\": 90, \"missingSkills\": [], \"suggestions\": [], \"rewrittenBullets\": [\"Led the migration\"]}");
+		assertTrue(r.complete());
+		assertEquals(Set.of(InsightsParser.Field.SUGGESTIONS), InsightsSchema.invalid(r));
+	}
+}
@@ -0,0 +1,93 @@
+package com.Smartresumeranker.resumebot.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+
+class LlmRouterTests {
+
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	@AfterEach
+	void shutdown() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	void backendEntriesMayCarryTheirOwnConcurrency() {
+		List<String[]> specs = LlmRouter.parse("llama3@http://big:11434#8, http://small:11434", "http://default:11434", "qwen");
+		assertEquals(List.of("llama3", "http://big:11434", "8"), java.util.Arrays.asList(specs.get(0)));
+		assertEquals(java.util.Arrays.asList("qwen", "http://small:11434", null), java.util.Arrays.asList(specs.get(1)));
+		assertThrows(IllegalArgumentException.class, () -> LlmRouter.parse("llama3@http://big:11434#0", "", "qwen"));
+		//8 slots plus 2 of max-concurrency, capped by max-in-flight when it is set
+		assertEquals(10, LlmRouter.maxCalls("llama3@http://big:11434#8, http://small:11434", 2, 0));
+		assertEquals(6, LlmRouter.maxCalls("llama3@http://big:11434#8, http://small:11434", 2, 6));
+	}
+
+	@Test
+	void latencyPercentileOnlyCountsTheRecentCalls() {
+		LlmRouter.Backend b = new LlmRouter.Backend("b", "m", null, 1);
+		for (int i = 0; i < 1000; i++) b.record(1_000_000);
+		//the ring holds the last 256 calls, all of them slow now
+		for (int i = 0; i < 256; i++) b.record(9_000_000);
+		assertEquals(9_000_000, b.percentileNanos(50, 20));
+		assertEquals(9, b.percentileMillis(1));
+	}
+
+	@Test
+	void slowCallIsHedgedOntoAnotherBackend() {
+		LlmRouter.Backend slow = backend("slow", stub("slow", 2000));
+		LlmRouter.Backend fast = backend("fast", stub("fast", 10));
+		//one recorded 50ms call makes 50ms the hedge threshold of the slow backend
+		slow.record(Duration.ofMillis(50).toNanos());
+		LlmRouter router = new LlmRouter(List.of(slow, fast), executor, Duration.ofSeconds(5), Duration.ofSeconds(10),
+				true, 95, 1);
+
+		assertEquals("fast", router.call("prompt"));
+		assertEquals(1, fast.hedges.get());
+	}
+
+	@Test
+	void failedCallFailsOverAndDeadlineIsEnforced() {
+		LlmRouter.Backend broken = backend("broken", prompt -> {
+			throw new IllegalStateException("connection refused");
+		});
+		LlmRouter.Backend ok = backend("ok", stub("ok", 0));
+		LlmRouter router = new LlmRouter(List.of(broken, ok), executor, Duration.ofSeconds(5), Duration.ofSeconds(10),
+				false, 95, 1);
+		assertEquals("ok", router.call("prompt"));
+		assertEquals(1, broken.failures.get());
+
+		LlmRouter hanging = new LlmRouter(List.of(backend("hanging", stub("late", 3000))), executor,
+				Duration.ofMillis(200), Duration.ofSeconds(10), false, 95, 1);
+		assertThrows(IllegalStateException.class, () -> hanging.call("prompt"));
+	}
+
+	private static LlmRouter.Backend backend(String name, ChatModel model) {
+		return new LlmRouter.Backend(name, "stub", ChatClient.create(model), 2);
+	}
+
+	//stub answers with the given text after the given latency
+	private static ChatModel stub(String answer, long latencyMillis) {
+		return prompt -> {
+			try {
+				Thread.sleep(latencyMillis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return new ChatResponse(List.of(new Generation(new AssistantMessage(answer))));
+		};
+	}
+}
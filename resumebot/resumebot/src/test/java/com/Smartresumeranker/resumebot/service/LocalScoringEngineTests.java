@@ -0,0 +1,48 @@
+package com.Smartresumeranker.resumebot.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class LocalScoringEngineTests {
+
+	private final LocalScoringEngine engine = new LocalScoringEngine();
+
+	private static final String JD = """
+			We are hiring a backend engineer. Required: Java, Spring Boot, Kubernetes and PostgreSQL.
+			Experience with Kafka and CI/CD pipelines is a plus. You will design REST APIs for our platform.
+			""";
+
+	@Test
+	void findsMissingSkillsThroughAliasesAndStemming() {
+		String resume = "Built REST services in Java with SpringBoot, deployed on k8s clusters, stored data in Postgres.";
+		LocalScoringEngine.Result r = engine.score(JD, resume);
+		assertTrue(r.matchedSkills().containsAll(java.util.List.of("java", "spring boot", "kubernetes", "postgresql", "rest api")));
+		assertEquals(java.util.List.of("kafka", "ci/cd"), r.missingSkills());
+	}
+
+	@Test
+	void betterResumeScoresHigherAndScoringIsDeterministic() {
+		LocalScoringEngine.JobAnalysis job = engine.analyzeJob(JD);
+		String strong = "Java and Spring Boot engineer. Kubernetes, PostgreSQL, Kafka, Jenkins CI/CD, REST APIs for a payments platform.";
+		String weak = "Graphic designer with Figma and Photoshop experience.";
+		int strongScore = engine.score(job, strong).score();
+		assertTrue(strongScore > engine.score(job, weak).score());
+		assertEquals(strongScore, engine.score(job, strong).score());
+		assertEquals(0, engine.score(job, "").score());
+	}
+
+	@Test
+	void skillsEveryResumeListsWeighLessOnceTheCorpusIsLargeEnough() {
+		LocalScoringEngine corpus = new LocalScoringEngine();
+		for (int i = 0; i < 30; i++) {
+			assertTrue(corpus.observe("digest-" + i, "Kafka streaming engineer number " + i));
+		}
+		assertFalse(corpus.observe("digest-0", "Kafka streaming engineer number 0"));
+		String resume = "Built REST services in Java with SpringBoot, deployed on k8s clusters, stored data in Postgres.";
+		//kafka is in every resume of the corpus, ci/cd in none, so ci/cd is the bigger gap now
+		assertEquals(java.util.List.of("ci/cd", "kafka"), corpus.score(JD, resume).missingSkills());
+	}
+}
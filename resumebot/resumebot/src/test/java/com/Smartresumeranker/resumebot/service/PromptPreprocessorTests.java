@@ -0,0 +1,76 @@
+package com.Smartresumeranker.resumebot.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class PromptPreprocessorTests {
+
+	private static final String JD = """
+			Backend Engineer
+
+			Requirements:
+			Java, Spring Boot and   PostgreSQL.
+			Experience with Kafka.
+			Page 1 of 2
+			Benefits
+			Unlimited snacks, gym membership and a yearly offsite in a very nice place with the whole team.
+			We are an equal opportunity employer. All applicants are considered without regard to race or religion.
+			Page 2 of 2
+			""";
+
+	@Test
+	void dropsPageMarksAndBoilerplateAndKeepsSections() {
+		PromptPreprocessor.Processed p = new PromptPreprocessor(true, 1500, 800).jobDescription(JD);
+		assertTrue(p.text().contains("REQUIREMENTS:\nJava, Spring Boot and PostgreSQL."));
+		assertFalse(p.text().contains("Page 1"));
+		assertFalse(p.text().contains("equal opportunity"));
+		assertTrue(p.tokensAfter() < p.tokensBefore());
+	}
+
+	@Test
+	void budgetCutsTheLeastUsefulSectionsFirst() {
+		PromptPreprocessor.Processed p = new PromptPreprocessor(true, 1500, 25).jobDescription(JD);
+		assertTrue(p.text().contains("Kafka"));
+		assertFalse(p.text().contains("snacks"));
+		assertTrue(p.tokensAfter() <= 25);
+	}
+
+	@Test
+	void requirementsAreTheLinesOfTheRequirementsSection() {
+		List<String> requirements = new PromptPreprocessor(true, 1500, 800)
+				.requirements(JD.replace("Experience with Kafka.", "- Experience with Kafka."));
+		assertEquals(List.of("Java, Spring Boot and PostgreSQL.", "Experience with Kafka."), requirements);
+	}
+
+	@Test
+	void keepsLinesThatRepeatInsideAPage() {
+		String resume = """
+				Experience
+				Software Engineer, Acme 2021 - 2023
+				- Led team of 5 engineers
+				Software Engineer, Acme 2019 - 2021
+				- Led team of 3 engineers
+				Skills
+				Java
+				""";
+		String text = new PromptPreprocessor(true, 1500, 800).resume(resume).text();
+		assertTrue(text.contains("Software Engineer, Acme 2019 - 2021\n- Led team of 3 engineers"), text);
+	}
+
+	@Test
+	void dropsHeadersAndFootersRepeatedAtPageBreaks() {
+		String page = "Jane Doe - Resume\nSoftware Engineer, Acme %s\n- Led team of %d engineers\nConfidential, do not share\n\f";
+		String resume = page.formatted("2021 - 2023", 5) + page.formatted("2019 - 2021", 3)
+				+ page.formatted("2017 - 2019", 2);
+		String text = new PromptPreprocessor(true, 1500, 800).resume(resume).text();
+		//the first copy stays, the copies at the next page breaks go
+		assertEquals(1, text.split("Jane Doe - Resume", -1).length - 1, text);
+		assertEquals(1, text.split("Confidential", -1).length - 1, text);
+		assertTrue(text.contains("Acme 2017 - 2019\n- Led team of 2 engineers"), text);
+	}
+}
@@ -0,0 +1,93 @@
+package com.Smartresumeranker.resumebot.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.font.Standard14Fonts;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.server.ResponseStatusException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class ResumeTextExtractorTests {
+
+	private final ThreadPoolTaskExecutor pageExecutor = new ThreadPoolTaskExecutor();
+
+	@BeforeEach
+	void start() {
+		pageExecutor.setCorePoolSize(4);
+		pageExecutor.setMaxPoolSize(4);
+		pageExecutor.initialize();
+	}
+
+	@AfterEach
+	void shutdown() {
+		pageExecutor.shutdown();
+	}
+
+	@Test
+	void uploadLargerThanMaxBytesIsRefused() throws Exception {
+		ResumeTextExtractor extractor = extractor(1000, 8);
+		byte[] fits = new byte[1000];
+		assertArrayEquals(fits, extractor.readLimited(new ByteArrayInputStream(fits), "fits.pdf"));
+		ResponseStatusException e = assertThrows(ResponseStatusException.class,
+				() -> extractor.readLimited(new ByteArrayInputStream(new byte[1001]), "big.pdf"));
+		assertEquals(HttpStatus.PAYLOAD_TOO_LARGE, e.getStatusCode());
+	}
+
+	@Test
+	void parallelExtractionKeepsThePagesInOrder() throws Exception {
+		byte[] pdf = pdf(23);
+		//3 pages per task on 4 threads, the ranges finish in any order
+		String parallel = extractor(10_485_760, 2).extract("cv.pdf", pdf);
+		String sequential = extractor(10_485_760, 100).extract("cv.pdf", pdf);
+		assertEquals(sequential, parallel);
+		int last = -1;
+		for (int page = 1; page <= 23; page++) {
+			int at = parallel.indexOf("Page " + page + " of the resume");
+			assertTrue(at > last, "page " + page + " is out of order");
+			last = at;
+		}
+	}
+
+	private ResumeTextExtractor extractor(long maxBytes, int parallelMinPages) {
+		//no shared text cache budget, every extraction parses the pdf
+		ExtractedTextCache cache = new ExtractedTextCache(0, "", 0, Duration.ofDays(1), null);
+		return new ResumeTextExtractor(pageExecutor, cache, maxBytes, parallelMinPages, 3,
+				new EvaluationMetrics(new SimpleMeterRegistry()));
+	}
+
+	private static byte[] pdf(int pages) throws Exception {
+		try (PDDocument doc = new PDDocument()) {
+			PDType1Font font = new PDType1Font(Standard14Fonts.FontName.HELVETICA);
+			for (int i = 1; i <= pages; i++) {
+				PDPage page = new PDPage();
+				doc.addPage(page);
+				try (PDPageContentStream content = new PDPageContentStream(doc, page)) {
+					content.beginText();
+					content.setFont(font, 12);
+					content.newLineAtOffset(72, 700);
+					content.showText("Page " + i + " of the resume");
+					content.endText();
+				}
+			}
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			doc.save(out);
+			return out.toByteArray();
+		}
+	}
+}
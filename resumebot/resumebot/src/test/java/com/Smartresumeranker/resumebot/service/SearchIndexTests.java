@@ -0,0 +1,75 @@
+package com.Smartresumeranker.resumebot.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SearchIndexTests {
+
+	private static final String JD = "Backend engineer: Java, Kafka, Kubernetes and PostgreSQL";
+
+	@Test
+	void booleanPhraseAndGapQueries() throws Exception {
+		SearchIndex index = new SearchIndex(null);
+		index.add(doc(1, "Java developer, built event streaming on Kafka", List.of("Kubernetes")));
+		index.add(doc(2, "Java developer, ran Kubernetes clusters", List.of("Kafka", "PostgreSQL")));
+		index.add(doc(3, "Python data scientist, machine learning models", List.of("Java", "Kafka", "Kubernetes")));
+		//sealed and buffered documents are searched together
+		index.flush();
+		index.add(doc(4, "Kafka Kafka Kafka streams, Java services on Kubernetes", List.of("Kubernetes")));
+
+		//equal scores, the newer evaluation first
+		assertEquals(List.of(4L, 1L, 3L), ids(index, "gap:kubernetes", SearchIndex.Filter.NONE));
+		//missing only Kubernetes
+		assertEquals(List.of(4L, 1L), ids(index, "gap:kubernetes", new SearchIndex.Filter(null, null, null, 1)));
+		assertEquals(List.of(2L), ids(index, "java -kafka", SearchIndex.Filter.NONE));
+		assertEquals(List.of(3L), ids(index, "\"machine learning\"", SearchIndex.Filter.NONE));
+		assertEquals(List.of(), ids(index, "\"learning machine\"", SearchIndex.Filter.NONE));
+		//a phrase never spans two missing skills
+		assertEquals(List.of(), ids(index, "gap:\"java kafka\"", SearchIndex.Filter.NONE));
+		assertEquals(List.of(2L, 3L), ids(index, "python OR (kubernetes AND NOT gap:kubernetes)", SearchIndex.Filter.NONE)
+				.stream().sorted().toList());
+		assertEquals(4, ids(index, "jd:postgresql", SearchIndex.Filter.NONE).size());
+		//the resume that mentions kafka most ranks first
+		assertEquals(4L, ids(index, "kafka", SearchIndex.Filter.NONE).get(0));
+		assertThrows(IllegalArgumentException.class, () -> SearchQuery.parse("NOT kafka"));
+		assertThrows(IllegalArgumentException.class, () -> SearchQuery.parse("title:java"));
+	}
+
+	@Test
+	void segmentsSurviveARestartAndAreMerged(@TempDir Path dir) throws Exception {
+		SearchIndex index = SearchIndex.open(dir);
+		for (int i = 1; i <= 10; i++) {
+			index.add(doc(i, i % 2 == 0 ? "Go developer, gRPC services" : "Java developer, Spring Boot", List.of("Kubernetes")));
+			index.flush();
+		}
+		//eight single document segments were merged into one
+		assertEquals(3, index.stats().segments());
+		List<Long> before = ids(index, "java OR grpc", SearchIndex.Filter.NONE);
+
+		SearchIndex reopened = SearchIndex.open(dir);
+		assertEquals(10, reopened.stats().documents());
+		assertEquals(10, reopened.maxId());
+		assertEquals(before, ids(reopened, "java OR grpc", SearchIndex.Filter.NONE));
+		assertFalse(reopened.add(doc(3, "Java developer", List.of())));
+		try (var files = Files.list(dir)) {
+			assertEquals(4, files.count());
+		}
+	}
+
+	private static SearchIndex.Doc doc(long id, String resume, List<String> gaps) {
+		return new SearchIndex.Doc(id, "owner", Instant.ofEpochSecond(id), 50, resume, JD, gaps);
+	}
+
+	private static List<Long> ids(SearchIndex index, String query, SearchIndex.Filter filter) {
+		return index.search(SearchQuery.parse(query), filter, 10).stream().map(SearchIndex.Hit::id).toList();
+	}
+}
@@ -0,0 +1,69 @@
+package com.Smartresumeranker.resumebot.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.Smartresumeranker.resumebot.dto.SkillCount;
+import com.Smartresumeranker.resumebot.dto.SkillGapReport;
+
+class SkillGapAnalyticsTests {
+
+	@Test
+	void sketchKeepsTheFrequentSkillsOfALongTail() {
+		SpaceSaving sketch = new SpaceSaving(16);
+		Map<String, Long> truth = new HashMap<>();
+		Random random = new Random(7);
+		for (int i = 0; i < 10_000; i++) {
+			//a third of the stream is three skills, the rest is spread over a thousand others
+			String skill = i % 3 == 0 ? "skill-" + (i / 3 % 3) : "rare-" + random.nextInt(1000);
+			sketch.add(skill);
+			truth.merge(skill, 1L, Long::sum);
+		}
+		List<SpaceSaving.Entry> top = sketch.top(3);
+		assertEquals(List.of("skill-0", "skill-1", "skill-2"), top.stream().map(SpaceSaving.Entry::item).sorted().toList());
+		for (SpaceSaving.Entry e : top) {
+			long count = truth.get(e.item());
+			assertTrue(e.count() - e.error() <= count && count <= e.count(), e.toString());
+		}
+		assertEquals(10_000, sketch.total());
+	}
+
+	@Test
+	void countsPerJobDescriptionUserAndWeek() {
+		SkillGapAnalytics analytics = new SkillGapAnalytics(null, Runnable::run, true, 8, 4, 2, 100, false, 100);
+		Instant week1 = Instant.parse("2026-03-02T10:00:00Z");
+		Instant week2 = Instant.parse("2026-03-11T10:00:00Z");
+		Instant week3 = Instant.parse("2026-03-17T10:00:00Z");
+		analytics.record(1, week1, "7", "ann", List.of("Kubernetes", "Kafka"));
+		analytics.record(2, week2, "7", "bob", List.of("kubernetes", " Kubernetes "));
+		analytics.record(3, week3, "7", "ann", List.of("Terraform"));
+		analytics.record(4, week3, "digest", "ann", List.of("Kubernetes"));
+		assertFalse(analytics.record(4, week3, "digest", "ann", List.of("Kubernetes")));
+
+		SkillGapReport jd = analytics.report(SkillGapAnalytics.Scope.JOB_DESCRIPTION, "7", 4, 5);
+		assertEquals(3, jd.evaluations());
+		SkillCount first = jd.allTime().get(0);
+		assertEquals("kubernetes", first.skill());
+		assertEquals(2, first.count());
+		//only the two newest weeks are kept, newest first
+		assertEquals(List.of(LocalDate.parse("2026-03-16"), LocalDate.parse("2026-03-09")),
+				jd.weeks().stream().map(w -> w.weekStart()).toList());
+
+		SkillGapReport ann = analytics.report(SkillGapAnalytics.Scope.USER, "ann", 1, 5);
+		assertEquals(3, ann.evaluations());
+		assertEquals(1, ann.weeks().size());
+		assertEquals(2, ann.weeks().get(0).evaluations());
+		assertEquals(4, analytics.report(SkillGapAnalytics.Scope.ALL, null, 4, 5).evaluations());
+		assertEquals(0, analytics.report(SkillGapAnalytics.Scope.USER, "nobody", 4, 5).evaluations());
+	}
+}
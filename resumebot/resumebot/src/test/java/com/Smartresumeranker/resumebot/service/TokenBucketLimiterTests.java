@@ -0,0 +1,28 @@
+package com.Smartresumeranker.resumebot.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+class TokenBucketLimiterTests {
+
+	@Test
+	void burstUpToCapacityThenRefillOverThePeriod() {
+		AtomicLong now = new AtomicLong();
+		TokenBucketLimiter limiter = new TokenBucketLimiter(3, Duration.ofSeconds(60), 100, now::get);
+		for (int i = 0; i < 3; i++) assertEquals(0, limiter.tryAcquire("a"));
+		long wait = limiter.tryAcquire("a");
+		assertEquals(TimeUnit.SECONDS.toNanos(20), wait, TimeUnit.MILLISECONDS.toNanos(1));
+		//other keys have their own bucket
+		assertEquals(0, limiter.tryAcquire("b"));
+
+		now.addAndGet(wait);
+		assertEquals(0, limiter.tryAcquire("a"));
+		assertTrue(limiter.tryAcquire("a") > 0);
+	}
+}
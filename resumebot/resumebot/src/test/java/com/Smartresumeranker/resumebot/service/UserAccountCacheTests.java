@@ -0,0 +1,52 @@
+package com.Smartresumeranker.resumebot.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.Smartresumeranker.resumebot.model.UserAccount;
+import com.Smartresumeranker.resumebot.repository.UserAccountRepository;
+
+//every repository call is a transaction of its own, like the sign in and the OAuth login
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UserAccountCacheTests {
+
+	@Autowired
+	UserAccountRepository repository;
+
+	@Test
+	void writesReplaceTheCachedAccountAndEmailsAreNormalized() {
+		repository.deleteAll();
+		UserAccountCache cache = new UserAccountCache(repository, 100, Duration.ofMinutes(5));
+		UserAccount ua = new UserAccount();
+		ua.setEmail(" Jane@Example.com ");
+		ua.setPasswordHash("old-hash");
+		UserAccountCache.Account saved = cache.save(ua);
+
+		assertEquals("old-hash", cache.find("JANE@example.COM").orElseThrow().passwordHash());
+		assertEquals(1, cache.stats().hits());
+
+		//a rehash at sign in must not leave the old hash in the cache
+		cache.update(saved.id(), account -> account.setPasswordHash("new-hash"));
+		assertEquals("new-hash", cache.find("jane@example.com").orElseThrow().passwordHash());
+
+		//a changed email drops the old key
+		cache.update(saved.id(), account -> account.setEmail("jane@new.example.com"));
+		assertTrue(cache.find("jane@example.com").isEmpty());
+		assertEquals(saved.id(), cache.find("Jane@New.Example.com").orElseThrow().id());
+
+		//unknown emails are looked up every time, a sign up right after is seen at once
+		long misses = cache.stats().misses();
+		assertTrue(cache.find("john@example.com").isEmpty());
+		assertTrue(cache.find("john@example.com").isEmpty());
+		assertEquals(misses + 2, cache.stats().misses());
+	}
+}
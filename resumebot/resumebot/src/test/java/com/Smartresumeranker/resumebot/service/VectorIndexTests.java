@@ -0,0 +1,51 @@
+package com.Smartresumeranker.resumebot.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class VectorIndexTests {
+
+	@Test
+	void topKIsOrderedByCosineAndSurvivesARoundTrip(@TempDir Path dir) throws Exception {
+		VectorIndex index = new VectorIndex();
+		index.put("a", 1, null, new float[] {1, 0, 0});
+		index.put("b", 2, null, new float[] {0.7f, 0.7f, 0});
+		index.put("c", 3, null, new float[] {0, 0, 5});
+		index.put("d", 4, null, new float[] {0, 1, 0});
+		index.updateRef("a", 9, null);
+
+		List<VectorIndex.Hit> hits = index.search(new float[] {2, 0.1f, 0}, 2);
+		assertEquals(List.of("a", "b"), hits.stream().map(VectorIndex.Hit::key).toList());
+		assertEquals(9, hits.get(0).ref());
+
+		index.write(dir.resolve("index.bin"));
+		VectorIndex read = VectorIndex.read(dir.resolve("index.bin"));
+		assertEquals(4, read.size());
+		assertEquals(hits, read.search(new float[] {2, 0.1f, 0}, 2));
+	}
+
+	@Test
+	void filterSkipsKeysAndTheNewestRefIsKeptWithItsCreationTime(@TempDir Path dir) throws Exception {
+		Instant created = Instant.parse("2026-01-02T03:04:05.678Z");
+		VectorIndex index = new VectorIndex();
+		index.put("a", 1, Instant.EPOCH, new float[] {1, 0});
+		index.put("b", 7, created, new float[] {0.9f, 0.1f});
+		index.updateRef("a", 3, Instant.EPOCH);
+
+		assertEquals(List.of("b"), index.search(new float[] {1, 0}, 2, "b"::equals).stream()
+				.map(VectorIndex.Hit::key).toList());
+
+		index.write(dir.resolve("index.bin"));
+		VectorIndex read = VectorIndex.read(dir.resolve("index.bin"));
+		assertEquals(7, read.lastRef());
+		assertEquals(created, read.lastCreatedAt());
+		assertNull(new VectorIndex().lastCreatedAt());
+	}
+}